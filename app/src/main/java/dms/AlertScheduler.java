@@ -0,0 +1,408 @@
+package dms;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Raises payment alerts in the background as unpaid loans cross the alert
+// tiers (3 days, 1 day, due today, overdue) and hands them to an AlertSink in
+// batches.
+//
+// Every unpaid loan has at most one timer: the first day of the next tier it
+// has not been alerted for. Timers sit in a wheel of WHEEL_DAYS day slots,
+// each a doubly linked list threaded through arrays indexed by loan id, so
+// setting, cancelling (the loan is paid) and firing a timer are O(1) and a
+// deadline costs 18 bytes. Timers further out than the wheel wait on an
+// overflow list that is swept each time the wheel comes round. A slot holds
+// exactly the loans that change tier on its day, so the thread wakes at
+// midnight and touches only those; nothing ever scans the book.
+//
+// Each (loan, tier) is raised once. A loan that skips tiers, because it was
+// added late or the process was not running, gets only the tier it is in; a
+// loan paid and later reopened is not alerted again for tiers it already
+// had. The record is kept in memory, so a new process raises the current
+// tier of every loan inside the horizon once.
+//
+// Raised alerts queue in primitive arrays. One daemon thread delivers them,
+// at most batchSize per call and one day per call, after waiting lingerMillis
+// so that a burst of new loans goes out together. Alerts for loans paid in
+// the meantime are dropped; a failed delivery is retried every RETRY_MILLIS.
+class AlertScheduler implements LoanPortfolio.Listener, AutoCloseable {
+    static final int WHEEL_DAYS = 1024;
+    static final int DEFAULT_BATCH_SIZE = 4096;
+    static final long DEFAULT_LINGER_MILLIS = 50;
+    static final long RETRY_MILLIS = 5_000;
+
+    private static final int MASK = WHEEL_DAYS - 1;
+    private static final int OVERFLOW = WHEEL_DAYS;
+    private static final int NIL = -1;
+    private static final AlertTier[] TIERS = AlertTier.values();
+    private static final byte NONE = (byte) TIERS.length;
+
+    private static final LongAdder[] RAISED = new LongAdder[TIERS.length];
+    private static final LongAdder DELIVERED = MetricsRegistry.GLOBAL.counter("dms_alerts_delivered_total",
+            "Scheduled alerts handed to the alert sink");
+    private static final LongAdder BATCHES = MetricsRegistry.GLOBAL.counter("dms_alert_batches_total",
+            "Alert batches handed to the alert sink");
+    private static final LongAdder FAILURES = MetricsRegistry.GLOBAL.counter("dms_alert_delivery_failures_total",
+            "Alert batches the sink failed to take");
+
+    static {
+        for (AlertTier tier : TIERS) {
+            RAISED[tier.ordinal()] = MetricsRegistry.GLOBAL.counter("dms_alerts_scheduled_total",
+                    "Alerts raised by the scheduler as loans change tier", "tier", tier.name());
+        }
+    }
+
+    private final CalendarDay calendar;
+    private final AlertSink sink;
+    private final int batchSize;
+    private final long lingerMillis;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    private LoanPortfolio loans;
+
+    // Per loan id. fireDay is 0 when the loan has no timer; prev is the
+    // previous loan in the slot, or -1 - slot for the first one.
+    private int[] dueDay = new int[0];
+    private int[] fireDay = new int[0];
+    private int[] next = new int[0];
+    private int[] prev = new int[0];
+    private byte[] raised = new byte[0];
+    private boolean[] paid = new boolean[0];
+    private final int[] heads = new int[WHEEL_DAYS + 1];
+    private long cursor;
+    private int timers;
+
+    // Alerts raised and not yet delivered, oldest first, in [head, tail).
+    private int[] pendingLoan = new int[64];
+    private int[] pendingDay = new int[64];
+    private byte[] pendingTier = new byte[64];
+    private int pendingHead;
+    private int pendingTail;
+
+    private Thread thread;
+    private boolean running;
+
+    AlertScheduler(AlertSink sink) {
+        this(CalendarDay.SYSTEM, sink, DEFAULT_BATCH_SIZE, DEFAULT_LINGER_MILLIS);
+    }
+
+    AlertScheduler(CalendarDay calendar, AlertSink sink, int batchSize, long lingerMillis) {
+        this.calendar = calendar;
+        this.sink = sink;
+        this.batchSize = batchSize;
+        this.lingerMillis = lingerMillis;
+        Arrays.fill(heads, NIL);
+    }
+
+    // Starts a scheduler on the book when -Ddms.alerts names a sink (see
+    // AlertSink.parse); null otherwise.
+    static AlertScheduler startFromProperty(ConcurrentLoanBook book) {
+        String spec = System.getProperty("dms.alerts");
+        if (spec == null) {
+            return null;
+        }
+        AlertScheduler scheduler = new AlertScheduler(AlertSink.parse(spec));
+        scheduler.start(book);
+        MetricsRegistry.GLOBAL.bind(scheduler);
+        return scheduler;
+    }
+
+    // Schedules every loan in the book, follows its changes from then on and
+    // starts the delivery thread.
+    public void start(ConcurrentLoanBook book) {
+        book.addListener(this, this::load);
+        lock.lock();
+        try {
+            running = true;
+            thread = new Thread(this::run, "dms-alerts");
+            thread.setDaemon(true);
+            thread.start();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Stops the thread once what is pending has been delivered (or failed
+    // once), then closes the sink.
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            running = false;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            if (thread != null) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sink.close();
+    }
+
+    private void load(LoanPortfolio loans) {
+        lock.lock();
+        try {
+            this.loans = loans;
+            cursor = calendar.today();
+            ensureCapacity(loans.size());
+            for (int id = 0; id < loans.size(); id++) {
+                add(id);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void loanAdded(int id) {
+        lock.lock();
+        try {
+            ensureCapacity(id + 1);
+            add(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void paidChanged(int id, boolean isPaid) {
+        lock.lock();
+        try {
+            paid[id] = isPaid;
+            if (isPaid && fireDay[id] != 0) {
+                unlink(id);
+                fireDay[id] = 0;
+                timers--;
+            } else if (!isPaid && fireDay[id] == 0) {
+                schedule(id, cursor);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void add(int id) {
+        dueDay[id] = loans.getDueEpochDay(id);
+        raised[id] = NONE;
+        paid[id] = loans.isPaid(id);
+        if (!paid[id]) {
+            schedule(id, cursor);
+        }
+    }
+
+    // Raises the loan's tier on the given day if it is new to the loan, then
+    // sets its timer for the next tier.
+    private void schedule(int id, long day) {
+        long due = dueDay[id];
+        AlertTier tier = AlertTier.forDaysLeft(due - day);
+        if (tier != null && tier.ordinal() < raised[id]) {
+            raised[id] = (byte) tier.ordinal();
+            enqueue(id, day, tier);
+        }
+        for (int t = raised[id] - 1; t >= 0; t--) {
+            long at = TIERS[t].firstDay(due);
+            if (at > day) {
+                fireDay[id] = (int) at;
+                link(id, at - cursor < WHEEL_DAYS ? (int) (at & MASK) : OVERFLOW);
+                timers++;
+                return;
+            }
+        }
+    }
+
+    private void link(int id, int slot) {
+        int first = heads[slot];
+        next[id] = first;
+        prev[id] = -1 - slot;
+        if (first != NIL) {
+            prev[first] = id;
+        }
+        heads[slot] = id;
+    }
+
+    private void unlink(int id) {
+        int before = prev[id];
+        int after = next[id];
+        if (before >= 0) {
+            next[before] = after;
+        } else {
+            heads[-1 - before] = after;
+        }
+        if (after != NIL) {
+            prev[after] = before;
+        }
+    }
+
+    // Fires every day after the cursor up to today.
+    private void advance(long today) {
+        while (cursor < today) {
+            long day = ++cursor;
+            if ((day & MASK) == 0) {
+                for (int id = heads[OVERFLOW]; id != NIL; ) {
+                    int after = next[id];
+                    if (fireDay[id] - day < WHEEL_DAYS) {
+                        unlink(id);
+                        link(id, fireDay[id] & MASK);
+                    }
+                    id = after;
+                }
+            }
+            int slot = (int) (day & MASK);
+            int id = heads[slot];
+            heads[slot] = NIL;
+            while (id != NIL) {
+                int after = next[id];
+                fireDay[id] = 0;
+                timers--;
+                schedule(id, day);
+                id = after;
+            }
+        }
+    }
+
+    private void enqueue(int id, long day, AlertTier tier) {
+        if (pendingTail == pendingLoan.length) {
+            int count = pendingTail - pendingHead;
+            if (pendingHead > 0 && count < pendingLoan.length / 2) {
+                System.arraycopy(pendingLoan, pendingHead, pendingLoan, 0, count);
+                System.arraycopy(pendingDay, pendingHead, pendingDay, 0, count);
+                System.arraycopy(pendingTier, pendingHead, pendingTier, 0, count);
+            } else {
+                int capacity = pendingLoan.length * 2;
+                int[] loanIds = new int[capacity];
+                int[] days = new int[capacity];
+                byte[] tiers = new byte[capacity];
+                System.arraycopy(pendingLoan, pendingHead, loanIds, 0, count);
+                System.arraycopy(pendingDay, pendingHead, days, 0, count);
+                System.arraycopy(pendingTier, pendingHead, tiers, 0, count);
+                pendingLoan = loanIds;
+                pendingDay = days;
+                pendingTier = tiers;
+            }
+            pendingHead = 0;
+            pendingTail = count;
+        }
+        pendingLoan[pendingTail] = id;
+        pendingDay[pendingTail] = (int) day;
+        pendingTier[pendingTail] = (byte) tier.ordinal();
+        pendingTail++;
+        RAISED[tier.ordinal()].increment();
+        if (pendingTail - pendingHead == 1 || pendingTail - pendingHead == batchSize) {
+            changed.signalAll();
+        }
+    }
+
+    private void run() {
+        lock.lock();
+        try {
+            while (true) {
+                long today = calendar.today();
+                if (today > cursor) {
+                    advance(today);
+                }
+                if (pendingHead == pendingTail) {
+                    if (!running) {
+                        return;
+                    }
+                    changed.await(calendar.millisUntilTomorrow(), TimeUnit.MILLISECONDS);
+                    continue;
+                }
+                long lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+                while (running && lingerNanos > 0 && pendingTail - pendingHead < batchSize) {
+                    lingerNanos = changed.awaitNanos(lingerNanos);
+                }
+
+                // One day's alerts, up to batchSize, skipping loans since paid.
+                int day = pendingDay[pendingHead];
+                List<PaymentAlert> batch = new ArrayList<>(Math.min(batchSize, pendingTail - pendingHead));
+                int taken = 0;
+                while (pendingHead + taken < pendingTail && batch.size() < batchSize
+                        && pendingDay[pendingHead + taken] == day) {
+                    int i = pendingHead + taken++;
+                    int id = pendingLoan[i];
+                    if (!paid[id]) {
+                        batch.add(new PaymentAlert(id, dueDay[id] - (long) day, TIERS[pendingTier[i]]));
+                    }
+                }
+                boolean delivered = batch.isEmpty() || deliver(day, batch);
+                if (delivered) {
+                    pendingHead += taken;
+                    if (pendingHead == pendingTail) {
+                        pendingHead = 0;
+                        pendingTail = 0;
+                    }
+                } else if (!running) {
+                    System.err.println("WARNING: " + (pendingTail - pendingHead) + " alert(s) not delivered");
+                    return;
+                } else {
+                    changed.await(RETRY_MILLIS, TimeUnit.MILLISECONDS);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called with the lock held; releases it while the sink works.
+    private boolean deliver(int day, List<PaymentAlert> batch) {
+        lock.unlock();
+        try {
+            sink.deliver(day, batch);
+            DELIVERED.add(batch.size());
+            BATCHES.increment();
+            return true;
+        } catch (Exception e) {
+            FAILURES.increment();
+            System.err.println("WARNING: Could not deliver alerts: " + e);
+            return false;
+        } finally {
+            lock.lock();
+        }
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= dueDay.length) {
+            return;
+        }
+        int capacity = Math.max(needed, dueDay.length * 2);
+        dueDay = Arrays.copyOf(dueDay, capacity);
+        fireDay = Arrays.copyOf(fireDay, capacity);
+        next = Arrays.copyOf(next, capacity);
+        prev = Arrays.copyOf(prev, capacity);
+        raised = Arrays.copyOf(raised, capacity);
+        paid = Arrays.copyOf(paid, capacity);
+    }
+
+    // Loans with a timer set.
+    public int getTimerCount() {
+        lock.lock();
+        try {
+            return timers;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getPendingCount() {
+        lock.lock();
+        try {
+            return pendingTail - pendingHead;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package dms;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+// Where AlertScheduler delivers alerts: one call per batch, all raised on the
+// same day, on the scheduler's thread. A callback is just a lambda; file and
+// socket sinks write one JSON line per alert:
+//
+//   {"date":"2026-10-17","loanId":12,"tier":"HIGH","daysLeft":1}
+//
+// Throwing makes the scheduler keep the batch and retry it later.
+interface AlertSink {
+    void deliver(long epochDay, List<PaymentAlert> alerts) throws IOException;
+
+    default void close() throws IOException {
+    }
+
+    // file:<path> or socket:<host>:<port>, as given to -Ddms.alerts.
+    static AlertSink parse(String spec) {
+        if (spec.startsWith("file:")) {
+            return new FileSink(Path.of(spec.substring("file:".length())));
+        }
+        if (spec.startsWith("socket:")) {
+            String address = spec.substring("socket:".length());
+            int colon = address.lastIndexOf(':');
+            if (colon > 0) {
+                return new SocketSink(new InetSocketAddress(address.substring(0, colon),
+                        Integer.parseInt(address.substring(colon + 1))));
+            }
+        }
+        throw new IllegalArgumentException("Alert sink must be file:<path> or socket:<host>:<port>, not " + spec);
+    }
+
+    static void encode(JsonWriter json, long epochDay, List<PaymentAlert> alerts) {
+        for (PaymentAlert alert : alerts) {
+            json.beginObject()
+                .name("date").date(epochDay)
+                .name("loanId").value(alert.getLoanId())
+                .name("tier").value(alert.getTier().name())
+                .name("daysLeft").value(alert.getDaysLeft())
+                .endObject().newline();
+        }
+    }
+
+    // Appends to a file, which is created if missing; each batch is flushed.
+    class FileSink implements AlertSink {
+        private final Path path;
+        private final JsonWriter json = new JsonWriter(16 << 10);
+        private OutputStream out;
+
+        FileSink(Path path) {
+            this.path = path;
+        }
+
+        @Override
+        public void deliver(long epochDay, List<PaymentAlert> alerts) throws IOException {
+            if (out == null) {
+                out = new BufferedOutputStream(Files.newOutputStream(path,
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+            }
+            encode(json.reset(), epochDay, alerts);
+            json.writeTo(out);
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (out != null) {
+                out.close();
+            }
+        }
+    }
+
+    // Streams to a TCP listener, typically on localhost. The connection is
+    // opened on first delivery and reopened after a failure.
+    class SocketSink implements AlertSink {
+        private static final int CONNECT_TIMEOUT_MILLIS = 2_000;
+
+        private final InetSocketAddress address;
+        private final JsonWriter json = new JsonWriter(16 << 10);
+        private Socket socket;
+        private OutputStream out;
+
+        SocketSink(InetSocketAddress address) {
+            this.address = address;
+        }
+
+        @Override
+        public void deliver(long epochDay, List<PaymentAlert> alerts) throws IOException {
+            encode(json.reset(), epochDay, alerts);
+            try {
+                if (socket == null) {
+                    socket = new Socket();
+                    socket.connect(address, CONNECT_TIMEOUT_MILLIS);
+                    out = new BufferedOutputStream(socket.getOutputStream());
+                }
+                json.writeTo(out);
+                out.flush();
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            Socket open = socket;
+            socket = null;
+            out = null;
+            if (open != null) {
+                open.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package dms;
+
+// Urgency tiers shown by the payment alerts, from most to least urgent.
+enum AlertTier {
+    OVERDUE,
+    CRITICAL,
+    HIGH,
+    MEDIUM;
+
+    // Loans due further out than this raise no alert.
+    static final int HORIZON_DAYS = 3;
+
+    // Tier for a loan due in daysLeft days, or null when it is not urgent.
+    static AlertTier forDaysLeft(long daysLeft) {
+        if (daysLeft < 0) {
+            return OVERDUE;
+        } else if (daysLeft == 0) {
+            return CRITICAL;
+        } else if (daysLeft == 1) {
+            return HIGH;
+        } else if (daysLeft <= HORIZON_DAYS) {
+            return MEDIUM;
+        }
+        return null;
+    }
+
+    // First day on which a loan due on dueEpochDay is in this tier.
+    long firstDay(long dueEpochDay) {
+        switch (this) {
+            case OVERDUE:
+                return dueEpochDay + 1;
+            case CRITICAL:
+                return dueEpochDay;
+            case HIGH:
+                return dueEpochDay - 1;
+            default:
+                return dueEpochDay - HORIZON_DAYS;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package dms;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+// Today's date as an epoch day, worked out once per calendar day. Each call
+// compares the clock's millis against the bounds of the cached day and only
+// goes through LocalDate and the time zone rules when the day has rolled
+// over (or the clock moved backwards).
+class CalendarDay {
+    static final CalendarDay SYSTEM = new CalendarDay(Clock.systemDefaultZone());
+
+    private final Clock clock;
+    private volatile Day day;
+    private volatile long rollovers;
+
+    private static class Day {
+        final long epochDay;
+        final long startMillis;
+        final long endMillis;
+
+        Day(long epochDay, long startMillis, long endMillis) {
+            this.epochDay = epochDay;
+            this.startMillis = startMillis;
+            this.endMillis = endMillis;
+        }
+    }
+
+    CalendarDay(Clock clock) {
+        this.clock = clock;
+        this.day = dayAt(clock.millis());
+    }
+
+    public long today() {
+        Day current = day;
+        long now = clock.millis();
+        if (now < current.startMillis || now >= current.endMillis) {
+            current = roll(now);
+        }
+        return current.epochDay;
+    }
+
+    public LocalDate todayDate() {
+        return LocalDate.ofEpochDay(today());
+    }
+
+    // Milliseconds until the current day ends, at least 1.
+    public long millisUntilTomorrow() {
+        today();
+        return Math.max(1, day.endMillis - clock.millis());
+    }
+
+    // Times the cached day has been recomputed since construction.
+    public long getRollovers() { return rollovers; }
+
+    private synchronized Day roll(long now) {
+        Day current = day;
+        if (now < current.startMillis || now >= current.endMillis) {
+            current = dayAt(now);
+            day = current;
+            rollovers++;
+        }
+        return current;
+    }
+
+    private Day dayAt(long millis) {
+        ZoneId zone = clock.getZone();
+        LocalDate date = Instant.ofEpochMilli(millis).atZone(zone).toLocalDate();
+        long start = date.atStartOfDay(zone).toInstant().toEpochMilli();
+        long end = date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        return new Day(date.toEpochDay(), start, end);
+    }
+}
@@ -0,0 +1,385 @@
+package dms;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+// Loan book shared between threads (menu, importer, report jobs, servers).
+//
+// Writers change one LoanPortfolio under a StampedLock write lock and, before
+// releasing it, publish a read-only snapshot through a volatile field.
+// Summary readers take that snapshot without locking, so they never wait
+// for a writer and never see half of a batch. A snapshot shares the
+// portfolio's columns and paid chunks; publishing one costs O(n / 65536) and
+// the next toggle copies only the 8 KB paid chunk it touches.
+//
+// Priority and due-date indexes follow the writable portfolio. Queries on
+// them hold the read lock and hand back the snapshot they match.
+//
+// Payments go through the book's PaymentLedger under the same write lock,
+// and its running totals are published together with each snapshot.
+class ConcurrentLoanBook {
+    // A group of changes published as one snapshot.
+    interface Batch {
+        void apply(LoanPortfolio loans);
+    }
+
+    // Loan ids in priority order together with the snapshot they belong to.
+    static class Ranking {
+        private final LoanPortfolio loans;
+        private final int[] ids;
+        private final int total;
+
+        Ranking(LoanPortfolio loans, int[] ids, int total) {
+            this.loans = loans;
+            this.ids = ids;
+            this.total = total;
+        }
+
+        public LoanPortfolio getLoans() { return loans; }
+        public int[] getIds() { return ids; }
+        public int getTotal() { return total; }
+    }
+
+    private static final LongAdder LOANS_ADDED =
+            MetricsRegistry.GLOBAL.counter("dms_loans_added_total", "Loans added to a book");
+
+    private final LoanPortfolio loans;
+    private final PaymentLedger ledger;
+    private final DerivedValues derived = new DerivedValues();
+    private final StampedLock lock = new StampedLock();
+    private PriorityIndex avalanche;
+    private PriorityIndex snowball;
+    private DueDateIndex dueDates;
+    private int[] presortedByRate;
+    private int[] presortedByPrincipal;
+    private int[] presortedByDueDate;
+    private volatile LoanPortfolio snapshot;
+    private volatile PaymentLedger.Totals totals;
+
+    // With an in-memory ledger; loans already flagged paid are booked as paid
+    // in full today.
+    ConcurrentLoanBook(LoanPortfolio loans) {
+        this(newLedger(loans));
+    }
+
+    ConcurrentLoanBook(PaymentLedger ledger) {
+        this(ledger, null);
+    }
+
+    // presorted, when given, holds the orders of the portfolio's first loans
+    // (as stored in its snapshot file) and spares the indexes their sort.
+    ConcurrentLoanBook(PaymentLedger ledger, LoanOrders presorted) {
+        this.loans = ledger.getLoans();
+        this.ledger = ledger;
+        if (presorted != null) {
+            presortedByRate = presorted.getByRate();
+            presortedByPrincipal = presorted.getByPrincipal();
+            presortedByDueDate = presorted.getByDueDate();
+        }
+        publish();
+    }
+
+    private static PaymentLedger newLedger(LoanPortfolio loans) {
+        if (loans.isSnapshot()) {
+            throw new IllegalArgumentException("A loan book needs a writable portfolio");
+        }
+        PaymentLedger ledger = new PaymentLedger(loans);
+        ledger.reconcile(CalendarDay.SYSTEM.today());
+        return ledger;
+    }
+
+    // Registers a listener on the writable portfolio. init runs first under
+    // the same write lock, so the listener hears of every later change and
+    // of no earlier one.
+    public void addListener(LoanPortfolio.Listener listener, Consumer<LoanPortfolio> init) {
+        long stamp = lock.writeLock();
+        try {
+            init.accept(loans);
+            loans.addListener(listener);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Latest published state; never blocks.
+    public LoanPortfolio snapshot() {
+        return snapshot;
+    }
+
+    // Aggregated once per published snapshot and selection, so a burst of
+    // summary requests between two writes costs one pass.
+    public PortfolioStats summary(PortfolioAggregator.Selection selection) {
+        LoanPortfolio current = snapshot;
+        return derived.get(DerivedValues.Kind.SUMMARY, selection.ordinal(), current, 0,
+                () -> PortfolioAggregator.aggregate(current, selection));
+    }
+
+    // Counts, sums and payments as of the latest snapshot, kept up to date
+    // as loans and payments arrive; never blocks and never scans.
+    public PaymentLedger.Totals totals() {
+        return totals;
+    }
+
+    // Hit/miss counts of the summary, alert and due-date caches.
+    public DerivedValues getDerivedValues() {
+        return derived;
+    }
+
+    public int addLoan(String name, double principal, double rate, int timeMonths, LocalDate dueDate) {
+        long stamp = lock.writeLock();
+        try {
+            int id = loans.add(name, principal, rate, timeMonths, dueDate);
+            LOANS_ADDED.increment();
+            publish();
+            return id;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void setPaid(int id, boolean isPaid) {
+        long stamp = lock.writeLock();
+        try {
+            checkId(id);
+            if (loans.isPaid(id) != isPaid) {
+                loans.setPaid(id, isPaid);
+                publish();
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Flips the paid flag and returns the new value.
+    public boolean togglePaid(int id) {
+        long stamp = lock.writeLock();
+        try {
+            checkId(id);
+            boolean isPaid = !loans.isPaid(id);
+            loans.setPaid(id, isPaid);
+            publish();
+            return isPaid;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Applies several changes under one lock hold and publishes them together.
+    public LoanPortfolio update(Batch batch) {
+        long stamp = lock.writeLock();
+        try {
+            int before = loans.size();
+            batch.apply(loans);
+            LOANS_ADDED.add(loans.size() - before);
+            publish();
+            return snapshot;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Records a payment (see PaymentLedger.pay) and returns its event id.
+    public int pay(int id, long cents, long epochDay) {
+        long stamp = lock.writeLock();
+        try {
+            checkId(id);
+            int event = ledger.pay(id, cents, epochDay);
+            publish();
+            return event;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Pays whatever is left on the loan.
+    public int payBalance(int id, long epochDay) {
+        long stamp = lock.writeLock();
+        try {
+            checkId(id);
+            int event = ledger.pay(id, ledger.getBalanceCents(id), epochDay);
+            publish();
+            return event;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int reversePayment(int event, long epochDay) {
+        long stamp = lock.writeLock();
+        try {
+            int reversal = ledger.reverse(event, epochDay);
+            publish();
+            return reversal;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Reads ledger state under the read lock, so it matches one published
+    // snapshot; the query must not keep references to ledger internals.
+    public <T> T readLedger(Function<PaymentLedger, T> query) {
+        long stamp = lock.readLock();
+        try {
+            return query.apply(ledger);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Makes the book's changes durable in the store it is journaled to. The
+    // fsync runs outside the lock. A compaction holds writers off only while
+    // it swaps journals and freezes the state they end at, so no change can
+    // fall between the snapshot and the new journal; the snapshot itself is
+    // written after the lock is released.
+    public void sync(LoanStore store) throws IOException {
+        store.flush();
+        if (!store.needsCheckpoint()) {
+            return;
+        }
+        LoanStore.Checkpoint checkpoint = null;
+        long stamp = lock.writeLock();
+        try {
+            if (store.needsCheckpoint()) {
+                checkpoint = store.beginCheckpoint();
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        if (checkpoint != null) {
+            store.finishCheckpoint(checkpoint);
+        }
+    }
+
+    // Unpaid loans by interest rate, highest first.
+    public Ranking avalanche(int offset, int limit) {
+        ensureAvalanche();
+        long stamp = lock.readLock();
+        try {
+            return new Ranking(snapshot, avalanche.page(offset, limit), avalanche.size());
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Unpaid loans by principal, smallest first.
+    public Ranking snowball(int offset, int limit) {
+        ensureSnowball();
+        long stamp = lock.readLock();
+        try {
+            return new Ranking(snapshot, snowball.page(offset, limit), snowball.size());
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Both payoff orders are read under one lock hold, so the simulation sees
+    // the same set of unpaid loans for each; it then runs without the lock.
+    public StrategyAdvice advise(PayoffSimulator simulator, double monthlyBudget) {
+        ensureAvalanche();
+        ensureSnowball();
+        LoanPortfolio loans;
+        int[] avalancheOrder;
+        int[] snowballOrder;
+        long stamp = lock.readLock();
+        try {
+            loans = snapshot;
+            avalancheOrder = avalanche.page(0, avalanche.size());
+            snowballOrder = snowball.page(0, snowball.size());
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return StrategyAdvice.simulate(simulator, loans, avalancheOrder, snowballOrder, monthlyBudget);
+    }
+
+    // Cached for the current snapshot and day; the list is read-only.
+    public List<PaymentAlert> alerts(long todayEpochDay) {
+        ensureDueDates();
+        long stamp = lock.readLock();
+        try {
+            return derived.get(DerivedValues.Kind.ALERTS, 0, snapshot, todayEpochDay,
+                    () -> Collections.unmodifiableList(dueDates.alerts(todayEpochDay)));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public int countDueOnOrBefore(long epochDay) {
+        ensureDueDates();
+        long stamp = lock.readLock();
+        try {
+            return derived.get(DerivedValues.Kind.DUE_COUNT, 0, snapshot, epochDay,
+                    () -> dueDates.countDueOnOrBefore(epochDay));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Indexes are built on first use, each on its own, so a book that only
+    // serves summaries never pays for sorting and one that only answers
+    // alerts never orders the loans for payoff.
+    private void ensureAvalanche() {
+        long stamp = lock.tryOptimisticRead();
+        if (avalanche != null && lock.validate(stamp)) {
+            return;
+        }
+        stamp = lock.writeLock();
+        try {
+            if (avalanche == null) {
+                avalanche = new PriorityIndex(loans, PriorityIndex.rateDescending(loans), presortedByRate);
+                presortedByRate = null;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void ensureSnowball() {
+        long stamp = lock.tryOptimisticRead();
+        if (snowball != null && lock.validate(stamp)) {
+            return;
+        }
+        stamp = lock.writeLock();
+        try {
+            if (snowball == null) {
+                snowball = new PriorityIndex(loans, PriorityIndex.principalAscending(loans), presortedByPrincipal);
+                presortedByPrincipal = null;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void ensureDueDates() {
+        long stamp = lock.tryOptimisticRead();
+        if (dueDates != null && lock.validate(stamp)) {
+            return;
+        }
+        stamp = lock.writeLock();
+        try {
+            if (dueDates == null) {
+                dueDates = new DueDateIndex(loans, presortedByDueDate);
+                presortedByDueDate = null;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Caller holds the write lock.
+    private void publish() {
+        snapshot = loans.snapshot();
+        totals = ledger.totals();
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= loans.size()) {
+            throw new IndexOutOfBoundsException("No loan with id " + id);
+        }
+    }
+}
@@ -0,0 +1,795 @@
+package dms;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+
+class DebtManagementSystem {
+    private static LoanPortfolio loans = new LoanPortfolio();
+    private static LoanStore store;
+    private static ConcurrentLoanBook book;
+    private static PayoffSimulator simulator = new PayoffSimulator();
+    private static Scanner scanner;
+    private static ReportWriter report = ReportWriter.forStdout();
+    private static MetricsRegistry metrics = MetricsRegistry.GLOBAL;
+    private static final int PLAN_MONTHS_SHOWN = 12;
+    private static final int PLAN_PAYMENTS_SHOWN = 10;
+    
+    public static void main(String[] args) throws IOException {
+        // Loans persist in the directory named by -Ddms.data; without it the
+        // session runs in memory on sample loans
+        String dataDir = System.getProperty("dms.data");
+        if (dataDir != null) {
+            store = LoanStore.open(Path.of(dataDir));
+            loans = store.getLoans();
+        } else {
+            // Add sample loans for demonstration
+            loadSampleLoans();
+        }
+        book = store != null
+                ? new ConcurrentLoanBook(store.getLedger(), store.takeOrders()) : new ConcurrentLoanBook(loans);
+        
+        // A command on the command line prints that one screen and exits,
+        // without the banner, the menu or reading stdin
+        if (args.length > 0) {
+            int status = runCommand(args);
+            if (store != null) {
+                store.close();
+            }
+            if (status != 0) {
+                System.exit(status);
+            }
+            return;
+        }
+        
+        metrics.bind(book);
+        // -Ddms.alerts=file:<path> or socket:<host>:<port> pushes alerts in the
+        // background as loans cross the alert tiers
+        AlertScheduler alerts = AlertScheduler.startFromProperty(book);
+        
+        System.out.println("=====================================================");
+        System.out.println("       PERSONAL DEBT MANAGEMENT SYSTEM");
+        System.out.println("=====================================================");
+        if (store != null) {
+            System.out.println("Loan data: " + dataDir + " (" + loans.size() + " loans)");
+        } else {
+            System.out.println("NOTE: Sample loans have been pre-loaded for demonstration");
+        }
+        System.out.println();
+        
+        scanner = new Scanner(System.in);
+        boolean running = true;
+        while (running) {
+            displayMenu();
+            int choice = getIntInput("Enter your choice: ");
+            System.out.println();
+            
+            switch (choice) {
+                case 1:
+                    addLoan();
+                    break;
+                case 2:
+                    timed("viewAllLoans", DebtManagementSystem::viewAllLoans);
+                    break;
+                case 3:
+                    timed("checkAlerts", DebtManagementSystem::checkAlerts);
+                    break;
+                case 4:
+                    suggestStrategy();
+                    break;
+                case 5:
+                    timed("viewAvalanchePriority", () -> viewAvalanchePriority(Integer.MAX_VALUE));
+                    break;
+                case 6:
+                    timed("viewSnowballPriority", () -> viewSnowballPriority(Integer.MAX_VALUE));
+                    break;
+                case 7:
+                    markLoanAsPaid();
+                    break;
+                case 8:
+                    timed("viewFinancialSummary", DebtManagementSystem::viewFinancialSummary);
+                    break;
+                case 9:
+                    System.out.println("Thank you for using the Debt Management System!");
+                    running = false;
+                    break;
+                case 10:
+                    runStressTest();
+                    break;
+                case 11:
+                    viewMetrics();
+                    break;
+                case 12:
+                    optimizePlan();
+                    break;
+                default:
+                    System.out.println("Invalid choice. Please try again.");
+            }
+            
+            if (running) {
+                System.out.println("\nPress Enter to continue...");
+                scanner.nextLine();
+            }
+        }
+        
+        scanner.close();
+        if (alerts != null) {
+            alerts.close();
+        }
+        if (store != null) {
+            store.close();
+        }
+    }
+    
+    //   summary | loans | alerts | priority [--avalanche | --snowball] [--limit N] | prepare
+    //
+    // Returns the exit status: 0, or 2 for a command line it does not know.
+    private static int runCommand(String[] args) throws IOException {
+        switch (args[0]) {
+            case "summary":
+                viewFinancialSummary();
+                return 0;
+            case "loans":
+                viewAllLoans();
+                return 0;
+            case "alerts":
+                checkAlerts();
+                return 0;
+            case "priority":
+                return priorityCommand(args);
+            case "prepare":
+                return prepare();
+            default:
+                return usage();
+        }
+    }
+    
+    private static int priorityCommand(String[] args) {
+        boolean snowball = false;
+        int limit = Integer.MAX_VALUE;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--avalanche")) {
+                snowball = false;
+            } else if (args[i].equals("--snowball")) {
+                snowball = true;
+            } else if (args[i].equals("--limit") && i + 1 < args.length) {
+                try {
+                    limit = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException e) {
+                    return usage();
+                }
+                if (limit <= 0) {
+                    return usage();
+                }
+            } else {
+                return usage();
+            }
+        }
+        if (snowball) {
+            viewSnowballPriority(limit);
+        } else {
+            viewAvalanchePriority(limit);
+        }
+        return 0;
+    }
+    
+    // Startup preparation for scripted use: compacts the store into a
+    // snapshot carrying the priority and due-date orders, then runs every
+    // command with its output discarded, so that a run under
+    // -XX:ArchiveClassesAtExit archives each class the commands load.
+    private static int prepare() throws IOException {
+        if (store == null) {
+            System.err.println("prepare needs a loan store: -Ddms.data=<dir>");
+            return 2;
+        }
+        store.checkpoint();
+        
+        PrintStream stdout = System.out;
+        ReportWriter stdoutReport = report;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        report = ReportWriter.forStdout();
+        try {
+            runCommand(new String[] {"summary"});
+            runCommand(new String[] {"alerts"});
+            runCommand(new String[] {"priority", "--avalanche", "--limit", "10"});
+            runCommand(new String[] {"priority", "--snowball", "--limit", "10"});
+            viewAllLoans(10);
+        } finally {
+            System.setOut(stdout);
+            report = stdoutReport;
+        }
+        System.out.println("Snapshot written with precomputed orders: " + loans.size() + " loans");
+        return 0;
+    }
+    
+    private static int usage() {
+        System.err.println("Usage: java [-Ddms.data=<dir>] -jar debt-management-system.jar [command]");
+        System.err.println("Commands (without one, the interactive menu starts):");
+        System.err.println("  summary                                        financial summary");
+        System.err.println("  loans                                          all loans");
+        System.err.println("  alerts                                         payment alerts");
+        System.err.println("  priority [--avalanche|--snowball] [--limit N]  payoff priority order");
+        System.err.println("  prepare                                        snapshot the store for fast startup");
+        return 2;
+    }
+    
+    // Times a command that does not wait for input; commands that do start
+    // their own span once the input is in.
+    private static void timed(String operation, Runnable command) {
+        MetricsRegistry.Span span = metrics.start(operation);
+        command.run();
+        span.end(loans.size());
+    }
+    
+    private static void persist() {
+        if (store == null) {
+            return;
+        }
+        try {
+            book.sync(store);
+        } catch (IOException e) {
+            System.out.println("WARNING: Could not save loans: " + e.getMessage());
+        }
+    }
+    
+    private static void loadSampleLoans() {
+        // Sample loan 1: Credit Card - High interest, urgent deadline
+        loans.add(new Loan("Credit Card", 5000, 24.0, 12, LocalDate.now().plusDays(2)));
+        
+        // Sample loan 2: Electric Bill - Low balance, very urgent
+        loans.add(new Loan("Electric Bill", 1500, 5.0, 1, LocalDate.now().plusDays(1)));
+        
+        // Sample loan 3: Car Loan - Medium interest, not urgent
+        loans.add(new Loan("Car Loan", 15000, 12.0, 36, LocalDate.now().plusDays(20)));
+        
+        // Sample loan 4: Personal Loan - High balance, medium interest
+        loans.add(new Loan("Personal Loan", 8000, 18.0, 24, LocalDate.now().plusDays(15)));
+        
+        // Sample loan 5: Student Loan - Low interest, not urgent
+        loans.add(new Loan("Student Loan", 20000, 8.0, 48, LocalDate.now().plusDays(30)));
+        
+        // Sample loan 6: Medical Bill - Small balance, urgent
+        loans.add(new Loan("Medical Bill", 2500, 10.0, 6, LocalDate.now().plusDays(3)));
+    }
+    
+    private static void displayMenu() {
+        
+System.out.println("\n======================================================");
+        System.out.println("                    MAIN MENU");
+        System.out.println("=====================================================");
+        System.out.println("1. Add New Loan");
+        System.out.println("2. View All Loans");
+        System.out.println("3. Check Payment Alerts");
+        System.out.println("4. Get Strategy Suggestion (Smart Recommendation)");
+        System.out.println("5. View Avalanche Priority");
+        System.out.println("6. View Snowball Priority");
+        System.out.println("7. Mark Loan as Paid");
+        System.out.println("8. View Financial Summary");
+        System.out.println("9. Exit");
+        System.out.println("10. Stress Test Payoff Plan (What-If Scenarios)");
+        System.out.println("11. Runtime Metrics");
+        System.out.println("12. Optimized Payoff Plan (Month by Month)");
+        System.out.println("=====================================================");
+    }
+    
+    private static void addLoan() {
+        System.out.println("===================================================");
+        System.out.println("                  ADD NEW LOAN");
+        System.out.println("===================================================");
+        
+        String name = getStringInput("Enter loan name (e.g., Electric Bill, Credit Card): ");
+        double principal = getDoubleInput("Enter principal amount: ");
+        double rate = getDoubleInput("Enter interest rate (%): ");
+        int timeMonths = getIntInput("Enter time period (months): ");
+        
+        System.out.print("Enter due date (YYYY-MM-DD): ");
+        String dateStr = scanner.nextLine();
+        LocalDate dueDate = LocalDate.parse(dateStr);
+        
+        MetricsRegistry.Span span = metrics.start("addLoan");
+        int id = book.addLoan(name, principal, rate, timeMonths, dueDate);
+        persist();
+        span.end(loans.size());
+        
+        System.out.println("\nLoan added successfully!");
+        report.text("Interest: ").cents(loans.interestCents(id)).newline();
+        report.text("Total Amount: ").cents(loans.totalCents(id)).newline();
+        report.flush();
+    }
+    
+    private static void viewAllLoans() {
+        viewAllLoans(loans.size());
+    }
+    
+    private static void viewAllLoans(int limit) {
+        report.line(LoanReport.TABLE_RULE);
+        report.line("                                     ALL LOANS");
+        report.line(LoanReport.TABLE_RULE);
+        
+        if (loans.isEmpty()) {
+            report.line("No loans added yet.");
+            report.flush();
+            return;
+        }
+        
+        report.line(LoanReport.TABLE_HEADER);
+        report.line(LoanReport.TABLE_RULE);
+        LoanReport.loanTable(report, loans, 0, limit);
+        report.flush();
+    }
+    
+    private static void checkAlerts() {
+        report.line("===================================================");
+        report.line("                PAYMENT ALERTS");
+        report.line("===================================================");
+        
+        List<PaymentAlert> alerts = book.alerts(CalendarDay.SYSTEM.today());
+        metrics.countAlerts(alerts);
+        LoanReport.alerts(report, loans, alerts);
+        
+        if (alerts.isEmpty()) {
+            report.line("No urgent payments at this time.");
+        }
+        report.flush();
+    }
+    
+    private static void suggestStrategy() {
+        double monthlyBudget = 0;
+        if (loans.unpaidCount() > 0) {
+            simulator.load(loans, book.avalanche(0, Integer.MAX_VALUE).getIds());
+            System.out.println("Minimum payments on your unpaid loans: " +
+                             String.format("%.2f", simulator.totalMinimumPayment()) + " per month");
+            monthlyBudget = getBudgetInput("Enter your monthly budget for loan payments: ");
+            System.out.println();
+        }
+        MetricsRegistry.Span span = metrics.start("suggestStrategy");
+        suggestStrategy(monthlyBudget);
+        span.end(loans.size());
+    }
+    
+    private static void suggestStrategy(double monthlyBudget) {
+        report.line("===================================================");
+        report.line("            SMART STRATEGY RECOMMENDATION");
+        report.line("===================================================");
+        
+        PortfolioStats stats = book.summary(PortfolioAggregator.Selection.UNPAID);
+        int unpaidCount = stats.getUnpaidCount();
+        
+        if (unpaidCount == 0) {
+            report.line("No unpaid loans. You're debt-free!");
+            report.flush();
+            return;
+        }
+        
+        double avgInterestRate = stats.getRate().getAverage();
+        double avgPrincipal = stats.getPrincipal().getAverage();
+        double minPrincipal = stats.getPrincipal().getMin();
+        double maxInterestRate = stats.getRate().getMax();
+        double minInterestRate = stats.getRate().getMin();
+        
+        LocalDate start = CalendarDay.SYSTEM.todayDate();
+        int urgentCount = book.countDueOnOrBefore(start.toEpochDay() + 7);
+        
+        double interestVariance = maxInterestRate - minInterestRate;
+        
+        report.line("SITUATION ANALYSIS:");
+        report.line("================================================");
+        report.text("Total unpaid loans: ").integer(unpaidCount).newline();
+        report.text("Urgent deadlines (<=7 days): ").integer(urgentCount).newline();
+        report.text("Average interest rate: ").money(avgInterestRate).line("%");
+        report.text("Highest interest rate: ").money(maxInterestRate).line("%");
+        report.text("Interest rate variance: ").money(interestVariance).line("%");
+        report.text("Smallest loan: ").money(minPrincipal).newline();
+        report.text("Average loan size: ").money(avgPrincipal).newline();
+        report.newline();
+        
+        // Simulate both orderings month by month under the same budget
+        StrategyAdvice advice = book.advise(simulator, monthlyBudget);
+        PayoffResult avalancheResult = advice.getAvalanche();
+        PayoffResult snowballResult = advice.getSnowball();
+        
+        report.text("PAYOFF SIMULATION (budget ").money(monthlyBudget).line(" per month):");
+        report.line("================================================");
+        printPayoffResult(avalancheResult, start);
+        printPayoffResult(snowballResult, start);
+        if (advice.isBelowMinimum()) {
+            report.text("WARNING: Your budget is below the minimum payments (")
+                  .money(advice.getMinimumPayments()).line(" per month).");
+        }
+        report.newline();
+        
+        // Determine recommended strategy
+        String recommendedStrategy;
+        double savings = advice.getSavings();
+        int avalancheFirstWin = avalancheResult.getFirstPayoffMonth();
+        int snowballFirstWin = snowballResult.getFirstPayoffMonth();
+        
+        if (advice.getChoice() == StrategyAdvice.Choice.AVALANCHE) {
+            recommendedStrategy = "AVALANCHE METHOD";
+        } else if (advice.getChoice() == StrategyAdvice.Choice.SNOWBALL) {
+            recommendedStrategy = "SNOWBALL METHOD";
+        } else {
+            recommendedStrategy = "EITHER METHOD WORKS";
+        }
+        
+        report.line("|====================================================|");
+        report.line("|           RECOMMENDED PAYMENT STRATEGY             |");
+        report.line("|====================================================|");
+        report.text("|  >>> ").text(recommendedStrategy).line(" <<<                          |");
+        report.line("|====================================================|");
+        report.newline();
+        report.line("REASON:");
+        
+        if (advice.getChoice() == StrategyAdvice.Choice.AVALANCHE) {
+            report.text("Paying the highest interest rates first saves ").money(savings).text("\n" +
+                    "in interest compared to paying the smallest balances first.\n" +
+                    "Your rates range from ").money(minInterestRate).text("%" +
+                    " to ").money(maxInterestRate).text("%.\n\n" +
+                    "BENEFITS:\n" +
+                    "- Saves the MOST money on interest in the long run\n" +
+                    "- Mathematically optimal approach\n" +
+                    "- Best for financially disciplined individuals\n\n" +
+                    "STRATEGY: Pay loans with highest interest rates first.\n" +
+                    "Example: If Credit Card is 24% and Student Loan is 8%,\n" +
+                    "         focus on Credit Card first to minimize interest costs.");
+            
+        } else if (advice.getChoice() == StrategyAdvice.Choice.SNOWBALL) {
+            if (advice.isSnowballCheaper()) {
+                report.text("Paying the smallest balances first saves ").money(-savings).text("\n" +
+                        "in interest with your budget, because cleared loans free up\n" +
+                        "their minimum payments sooner.\n\n");
+            } else {
+                report.text("Both methods cost about the same in interest (difference: ")
+                      .money(Math.abs(savings)).text("),\n" +
+                        "but Snowball clears your first loan in month ").integer(snowballFirstWin);
+                if (avalancheFirstWin < 0) {
+                    report.text(".");
+                } else {
+                    report.text(" instead of month ").integer(avalancheFirstWin).text(".");
+                }
+                report.text("\n\n");
+            }
+            report.text(
+                    "BENEFITS:\n" +
+                    "- Psychological wins - see debts eliminated quickly\n" +
+                    "- Builds momentum and motivation\n" +
+                    "- Simplifies finances faster (fewer accounts to manage)\n" +
+                    "- Best for those who need motivation boosts\n\n" +
+                    "STRATEGY: Pay smallest loans first, then move to larger ones.\n" +
+                    "Example: If you have 1500, 2500, and 5000 loans,\n" +
+                    "         knock out the 1500 first for a quick win.");
+            
+        } else {
+            report.text("Both methods give nearly the same result with your budget:\n" +
+                    "- Similar total interest (difference: ").money(Math.abs(savings)).text(")\n" +
+                    "- Your first loan is cleared at the same time\n\n" +
+                    "SUGGESTION: Choose based on your personality:\n" +
+                    "- AVALANCHE if you're financially disciplined and want to save more\n" +
+                    "- SNOWBALL if you need motivation from quick wins");
+        }
+        report.newline();
+        
+        // Handle urgent deadlines separately
+        if (urgentCount > 0) {
+            report.newline();
+            report.line("??  IMPORTANT NOTICE:");
+            report.line("================================================");
+            report.text("You have ").integer(urgentCount).line(" loan(s) with urgent deadlines (<=7 days)!");
+            report.line("PRIORITY ACTION: Handle urgent deadlines FIRST to avoid:");
+            report.line("- Late payment fees");
+            report.line("- Interest rate increases");
+            report.line("- Credit score damage");
+            report.newline();
+            report.text("Then apply the ").text(recommendedStrategy).line(" to remaining loans.");
+        }
+        
+        report.newline();
+        report.line("================================================");
+        report.line("TIP: Regardless of method, always pay minimum on all loans");
+        report.line("      to avoid defaults, then put extra money toward your");
+        report.text("      priority loan based on ").text(recommendedStrategy).line(".");
+        report.line("================================================");
+        report.flush();
+    }
+    
+    private static void printPayoffResult(PayoffResult result, LocalDate start) {
+        report.column(result.getStrategy() + ":", 10)
+              .text(" interest ").money(result.getTotalInterest());
+        if (result.isDebtFree()) {
+            report.text(", debt-free in ").integer(result.getMonthsToDebtFree()).text(" months (")
+                  .date(result.getDebtFreeDate(start).toEpochDay()).text(")");
+        } else {
+            report.text(", NOT debt-free within ").integer(PayoffSimulator.DEFAULT_HORIZON_MONTHS / 12).text(" years");
+        }
+        if (result.getFirstPayoffMonth() >= 0) {
+            report.text(", first loan cleared in month ").integer(result.getFirstPayoffMonth());
+        }
+        report.newline();
+    }
+    
+    private static void optimizePlan() {
+        System.out.println("===================================================");
+        System.out.println("          OPTIMIZED PAYOFF PLAN");
+        System.out.println("===================================================");
+        
+        if (loans.unpaidCount() == 0) {
+            System.out.println("No unpaid loans. You're debt-free!");
+            return;
+        }
+        
+        simulator.load(loans, book.avalanche(0, Integer.MAX_VALUE).getIds());
+        System.out.println("Minimum payments on your unpaid loans: " +
+                         String.format("%.2f", simulator.totalMinimumPayment()) + " per month");
+        PayoffSolver.Config config = new PayoffSolver.Config(
+                getBudgetInput("Enter your monthly budget for loan payments: "));
+        System.out.println();
+        System.out.println("Searching payoff orders for up to " + (config.timeBudgetMillis / 1000) + " seconds" +
+                         " (late fee " + String.format("%.0f%%", config.lateFeeRate * 100) +
+                         " of the balance left after a due date)...");
+        System.out.println();
+        
+        MetricsRegistry.Span span = metrics.start("optimizePlan");
+        LocalDate start = CalendarDay.SYSTEM.todayDate();
+        LoanPortfolio snapshot = book.snapshot();
+        PayoffPlan plan = new PayoffSolver(config).solve(snapshot, start);
+        
+        printPayoffResult(plan.getResult(), start);
+        report.text("Late fees: ").money(plan.getTotalFees())
+              .text("   Total cost: ").money(plan.getTotalCost()).newline();
+        report.text("Best fixed rule: ").text(plan.getBaseline()).text(", total cost ").money(plan.getBaselineCost())
+              .text(" (this plan saves ").money(plan.getSavings()).line(")");
+        if (!plan.isSearched()) {
+            report.line("Only the fixed rules were compared (budget below the minimum payments");
+            report.text("or more than ").integer(PayoffSolver.MAX_SEARCH_LOANS).line(" unpaid loans).");
+        } else {
+            if (plan.isOptimal()) {
+                report.text("Search complete: no payoff order costs less (");
+            } else {
+                report.text("Time limit reached: best order found so far (");
+            }
+            report.integer(plan.getNodes()).text(" search nodes in ")
+                  .integer(plan.getElapsedNanos() / 1_000_000).line(" ms)");
+        }
+        if (plan.getResult().getShortfallMonths() > 0) {
+            report.text("WARNING: The budget misses minimum payments in ")
+                  .integer(plan.getResult().getShortfallMonths()).line(" month(s).");
+        }
+        report.newline();
+        
+        int months = Math.min(plan.getMonths(), PLAN_MONTHS_SHOWN);
+        report.text("PAYMENT PLAN (first ").integer(months).line(" months):");
+        report.line("================================================");
+        for (int month = 1; month <= months; month++) {
+            report.text("Month ").column(month, 3).text(" (by ").date(start.plusMonths(month).toEpochDay())
+                  .text(")   still owed ").money(plan.getRemaining(month)).newline();
+            int count = plan.getPaymentCount(month);
+            for (int k = 0; k < Math.min(count, PLAN_PAYMENTS_SHOWN); k++) {
+                int id = plan.getPaymentLoanId(month, k);
+                report.spaces(4).column(snapshot.getName(id) + " (ID " + id + ")", 30)
+                      .money(plan.getPaymentAmount(month, k)).newline();
+            }
+            if (count > PLAN_PAYMENTS_SHOWN) {
+                report.spaces(4).text("... and ").integer(count - PLAN_PAYMENTS_SHOWN).line(" more payments");
+            }
+        }
+        report.flush();
+        span.end(snapshot.size());
+    }
+    
+    private static void runStressTest() {
+        System.out.println("===================================================");
+        System.out.println("          PAYOFF STRESS TEST (WHAT-IF)");
+        System.out.println("===================================================");
+        
+        if (loans.unpaidCount() == 0) {
+            System.out.println("No unpaid loans. You're debt-free!");
+            return;
+        }
+        
+        double monthlyBudget = getBudgetInput("Enter your monthly budget for loan payments: ");
+        ScenarioRunner.Config config = new ScenarioRunner.Config(monthlyBudget);
+        
+        System.out.println();
+        System.out.println("Running " + config.scenarios + " scenarios per strategy (seed " + config.seed + "):");
+        System.out.println("- " + String.format("%.0f%%", config.variableRateShare * 100) +
+                         " of loans get rate increases of up to " +
+                         String.format("%.1f", config.maxRateIncrease) + " points");
+        System.out.println("- Each month's payment is missed with " +
+                         String.format("%.0f%%", config.missedMonthProbability * 100) + " probability");
+        System.out.println("- " + String.format("%.0f%%", config.budgetCutProbability * 100) +
+                         " of scenarios cut the budget by up to " +
+                         String.format("%.0f%%", config.maxBudgetCut * 100));
+        System.out.println();
+        
+        MetricsRegistry.Span span = metrics.start("runStressTest");
+        printScenarioReport("AVALANCHE",
+                new ScenarioRunner(loans, book.avalanche(0, Integer.MAX_VALUE).getIds(), config).run());
+        printScenarioReport("SNOWBALL",
+                new ScenarioRunner(loans, book.snowball(0, Integer.MAX_VALUE).getIds(), config).run());
+        span.end(loans.size());
+    }
+    
+    private static void printScenarioReport(String strategy, ScenarioReport report) {
+        System.out.println(strategy + ":");
+        System.out.println("  Interest cost  P50: " + String.format("%.2f", report.getInterestPercentile(50)) +
+                         "   P95: " + String.format("%.2f", report.getInterestPercentile(95)));
+        System.out.println("  Months to payoff  P50: " + report.getMonthsPercentile(50) +
+                         "   P95: " + report.getMonthsPercentile(95));
+        if (report.getNotDebtFreeCount() > 0) {
+            System.out.println("  Not debt-free within " + (report.getHorizonMonths() / 12) + " years: " +
+                             String.format("%.1f%%", report.getNotDebtFreeShare() * 100) + " of scenarios");
+        }
+        System.out.println();
+    }
+    
+    private static void viewAvalanchePriority(int limit) {
+        System.out.println("===================================================");
+        System.out.println("          AVALANCHE METHOD - PRIORITY ORDER");
+        System.out.println("===================================================");
+        System.out.println("Strategy: Pay highest interest rate first");
+        System.out.println();
+        
+        displayPriorityList(book.avalanche(0, limit).getIds(), "interest rate");
+    }
+    
+    private static void viewSnowballPriority(int limit) {
+        System.out.println("?????????????????????????????????????????????????????????");
+        System.out.println("          SNOWBALL METHOD - PRIORITY ORDER");
+        System.out.println("?????????????????????????????????????????????????????????");
+        System.out.println("Strategy: Pay smallest balance first");
+        System.out.println();
+        
+        displayPriorityList(book.snowball(0, limit).getIds(), "principal amount");
+    }
+    
+    private static void displayPriorityList(int[] ids, String sortBy) {
+        if (ids.length == 0) {
+            System.out.println("No unpaid loans.");
+            return;
+        }
+        
+        LoanReport.priorityList(report, loans, ids, 0, CalendarDay.SYSTEM.today());
+        report.flush();
+    }
+    
+    private static void markLoanAsPaid() {
+        System.out.println("===================================================");
+        System.out.println("              MARK LOAN AS PAID");
+        System.out.println("===================================================");
+        
+        if (loans.isEmpty()) {
+            System.out.println("No loans available.");
+            return;
+        }
+        
+        LoanReport.paidToggleList(report, loans, 0, loans.size());
+        report.flush();
+        
+        int choice = getIntInput("\nEnter loan number to toggle paid status: ");
+        
+        if (choice <= 0 || choice > loans.size()) {
+            System.out.println("Invalid loan number.");
+            return;
+        }
+        int id = choice - 1;
+        if (loans.isPaid(id)) {
+            // Reverses the payment that settled it
+            MetricsRegistry.Span span = metrics.start("markLoanAsPaid");
+            book.togglePaid(id);
+            persist();
+            span.end(loans.size());
+            System.out.println("\n" + loans.getName(id) + " marked as PENDING");
+            return;
+        }
+        
+        long balance = book.readLedger(ledger -> ledger.getBalanceCents(id));
+        report.newline().text("Remaining balance: ").cents(balance).newline();
+        report.flush();
+        String amount = getStringInput("Enter payment amount (press Enter to pay in full): ").trim();
+        MetricsRegistry.Span span = metrics.start("markLoanAsPaid");
+        try {
+            long today = CalendarDay.SYSTEM.today();
+            if (amount.isEmpty()) {
+                book.payBalance(id, today);
+            } else {
+                book.pay(id, Money.cents(Double.parseDouble(amount)), today);
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid amount.");
+            return;
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+        persist();
+        span.end(loans.size());
+        if (loans.isPaid(id)) {
+            System.out.println("\n" + loans.getName(id) + " marked as PAID");
+        } else {
+            long left = book.readLedger(ledger -> ledger.getBalanceCents(id));
+            report.newline().text("Partial payment recorded for ").text(loans.getName(id))
+                  .text(". Remaining balance: ").cents(left).newline();
+            report.flush();
+        }
+    }
+    
+    private static void viewFinancialSummary() {
+        System.out.println("====================================================");
+        System.out.println("              FINANCIAL SUMMARY");
+        System.out.println("====================================================");
+        
+        // Running totals published with the latest snapshot, so the counts
+        // and sums always agree and nothing is recomputed
+        PaymentLedger.Totals totals = book.totals();
+        if (totals.getLoanCount() == 0) {
+            System.out.println("No loans added yet.");
+            return;
+        }
+        
+        long totalPrincipal = totals.getPrincipalCents();
+        long totalInterest = totals.getInterestCents();
+        long totalAmount = totals.getTotalCents();
+        int paidCount = totals.getPaidCount();
+        int unpaidCount = totals.getUnpaidCount();
+        
+        System.out.println("Total Loans: " + totals.getLoanCount());
+        System.out.println("  Paid: " + paidCount);
+        System.out.println("  Unpaid: " + unpaidCount);
+        System.out.println();
+        report.text("Total Principal: ").cents(totalPrincipal).newline();
+        report.text("Total Interest:  ").cents(totalInterest).newline();
+        report.line("===========================");
+        report.text("TOTAL AMOUNT DUE: ").cents(totalAmount).newline();
+        report.line("===========================");
+        report.text("Payments Received: ").cents(totals.getReceivedCents()).newline();
+        report.text("Outstanding Balance: ").cents(totals.getOutstandingCents()).newline();
+        report.flush();
+    }
+    
+    private static void viewMetrics() {
+        report.line("=====================================================");
+        report.line("                 RUNTIME METRICS");
+        report.line("=====================================================");
+        metrics.dump(report);
+        report.flush();
+    }
+    
+    private static int getIntInput(String prompt) {
+        System.out.print(prompt);
+        while (!scanner.hasNextInt()) {
+            scanner.next();
+            System.out.print("Invalid input. " + prompt);
+        }
+        int value = scanner.nextInt();
+        scanner.nextLine();
+        return value;
+    }
+    
+    private static double getDoubleInput(String prompt) {
+        System.out.print(prompt);
+        while (!scanner.hasNextDouble()) {
+            scanner.next();
+            System.out.print("Invalid input. " + prompt);
+        }
+        double value = scanner.nextDouble();
+        scanner.nextLine();
+        return value;
+    }
+    
+    // Asks again until the budget is a positive amount.
+    private static double getBudgetInput(String prompt) {
+        double value = getDoubleInput(prompt);
+        while (!(value > 0) || Double.isInfinite(value)) {
+            value = getDoubleInput("Budget must be a positive amount. " + prompt);
+        }
+        return value;
+    }
+    
+    private static String getStringInput(String prompt) {
+        System.out.print(prompt);
+        return scanner.nextLine();
+    }
+}
\ No newline at end of file
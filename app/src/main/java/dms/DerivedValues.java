@@ -0,0 +1,79 @@
+package dms;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Memo of values derived from a published loan snapshot: summaries, the
+// alert list and due-date counts. Each entry remembers the snapshot it was
+// computed from plus a key (the selection, the calendar day, the day bound),
+// and is only reused for that exact pair. Every write publishes a new
+// snapshot, so adding a loan or changing a paid flag invalidates everything
+// derived from the old state, and day-dependent entries go stale at
+// midnight because the day is part of their key.
+//
+// Entries are immutable and replaced whole; two threads that miss together
+// both compute and one result wins, which is harmless.
+class DerivedValues {
+    enum Kind { SUMMARY, ALERTS, DUE_COUNT }
+
+    private static class Entry {
+        final LoanPortfolio loans;
+        final long key;
+        final Object value;
+
+        Entry(LoanPortfolio loans, long key, Object value) {
+            this.loans = loans;
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private final Entry[][] entries = new Entry[Kind.values().length][];
+    private final LongAdder[] hits = new LongAdder[Kind.values().length];
+    private final LongAdder[] misses = new LongAdder[Kind.values().length];
+
+    DerivedValues() {
+        entries[Kind.SUMMARY.ordinal()] = new Entry[PortfolioAggregator.Selection.values().length];
+        entries[Kind.ALERTS.ordinal()] = new Entry[1];
+        entries[Kind.DUE_COUNT.ordinal()] = new Entry[1];
+        for (int i = 0; i < hits.length; i++) {
+            hits[i] = new LongAdder();
+            misses[i] = new LongAdder();
+        }
+    }
+
+    // The cached value for (kind, slot) if it was computed from this snapshot
+    // with this key, otherwise computes and remembers a new one.
+    @SuppressWarnings("unchecked")
+    <T> T get(Kind kind, int slot, LoanPortfolio loans, long key, Supplier<T> compute) {
+        Entry[] slots = entries[kind.ordinal()];
+        Entry entry = slots[slot];
+        if (entry != null && entry.loans == loans && entry.key == key) {
+            hits[kind.ordinal()].increment();
+            return (T) entry.value;
+        }
+        misses[kind.ordinal()].increment();
+        T value = compute.get();
+        slots[slot] = new Entry(loans, key, value);
+        return value;
+    }
+
+    public long getHits(Kind kind) { return hits[kind.ordinal()].sum(); }
+    public long getMisses(Kind kind) { return misses[kind.ordinal()].sum(); }
+
+    public long getHits() {
+        long sum = 0;
+        for (LongAdder adder : hits) {
+            sum += adder.sum();
+        }
+        return sum;
+    }
+
+    public long getMisses() {
+        long sum = 0;
+        for (LongAdder adder : misses) {
+            sum += adder.sum();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,74 @@
+package dms;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// Unpaid loans ordered by due date. Every question the alerts ask
+// ("overdue", "due today", "due within N days") is a contiguous rank range,
+// so it is answered in O(log n + k) with the caller reading the clock once.
+class DueDateIndex {
+    private final LoanPortfolio loans;
+    private final PriorityIndex byDueDate;
+
+    DueDateIndex(LoanPortfolio loans) {
+        this.loans = loans;
+        this.byDueDate = new PriorityIndex(loans, PriorityIndex.dueDateAscending(loans));
+    }
+
+    // Starts from loans already sorted by due date (LoanOrders.getByDueDate),
+    // if given.
+    DueDateIndex(LoanPortfolio loans, int[] presorted) {
+        this.loans = loans;
+        this.byDueDate = new PriorityIndex(loans, PriorityIndex.dueDateAscending(loans), presorted);
+    }
+
+    public int size() {
+        return byDueDate.size();
+    }
+
+    // Unpaid loans due strictly before the given day.
+    public int countDueBefore(long epochDay) {
+        return byDueDate.countWhile(id -> loans.getDueEpochDay(id) < epochDay);
+    }
+
+    public int countDueOnOrBefore(long epochDay) {
+        return countDueBefore(epochDay + 1);
+    }
+
+    // Unpaid loans due in [fromEpochDay, toEpochDay], earliest first.
+    public int[] dueBetween(long fromEpochDay, long toEpochDay) {
+        int from = countDueBefore(fromEpochDay);
+        int to = countDueOnOrBefore(toEpochDay);
+        return byDueDate.page(from, to - from);
+    }
+
+    public int[] overdue(long todayEpochDay) {
+        return byDueDate.page(0, countDueBefore(todayEpochDay));
+    }
+
+    public int[] dueOn(long epochDay) {
+        return dueBetween(epochDay, epochDay);
+    }
+
+    // Due from today through today + days; overdue loans are not included.
+    public int[] dueWithin(long todayEpochDay, int days) {
+        return dueBetween(todayEpochDay, todayEpochDay + days);
+    }
+
+    public List<PaymentAlert> alerts(LocalDate today) {
+        return alerts(today.toEpochDay());
+    }
+
+    // Every unpaid loan inside the alert horizon with its tier, most urgent
+    // (earliest due) first.
+    public List<PaymentAlert> alerts(long todayEpochDay) {
+        int[] ids = byDueDate.page(0, countDueOnOrBefore(todayEpochDay + AlertTier.HORIZON_DAYS));
+        List<PaymentAlert> alerts = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            long daysLeft = loans.getDaysUntilDue(id, todayEpochDay);
+            alerts.add(new PaymentAlert(id, daysLeft, AlertTier.forDaysLeft(daysLeft)));
+        }
+        return alerts;
+    }
+}
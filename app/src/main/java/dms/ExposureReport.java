@@ -0,0 +1,54 @@
+package dms;
+
+// Totals across every customer in a PortfolioRegistry as of one day. Amounts
+// are exact cents; partial reports from different partitions merge by
+// addition, so the result does not depend on which partition finished first.
+class ExposureReport {
+    private final long epochDay;
+    private long customers;
+    private long residentCustomers;
+    private long loans;
+    private long unpaidLoans;
+    private long exposureCents;
+    private long overdueLoans;
+    private long overdueCents;
+
+    ExposureReport(long epochDay) {
+        this.epochDay = epochDay;
+    }
+
+    void add(PortfolioRegistry.Summary summary, boolean resident) {
+        customers++;
+        if (resident) {
+            residentCustomers++;
+        }
+        loans += summary.getLoanCount();
+        unpaidLoans += summary.getUnpaidCount();
+        exposureCents += summary.getExposureCents();
+        int overdue = summary.countDueBefore(epochDay);
+        overdueLoans += overdue;
+        overdueCents += summary.centsDueBefore(overdue);
+    }
+
+    void merge(ExposureReport other) {
+        customers += other.customers;
+        residentCustomers += other.residentCustomers;
+        loans += other.loans;
+        unpaidLoans += other.unpaidLoans;
+        exposureCents += other.exposureCents;
+        overdueLoans += other.overdueLoans;
+        overdueCents += other.overdueCents;
+    }
+
+    public long getEpochDay() { return epochDay; }
+    public long getCustomers() { return customers; }
+    public long getResidentCustomers() { return residentCustomers; }
+    public long getLoans() { return loans; }
+    public long getUnpaidLoans() { return unpaidLoans; }
+
+    // Outstanding balance (principal plus interest, less payments) of every
+    // unpaid loan.
+    public long getExposureCents() { return exposureCents; }
+    public long getOverdueLoans() { return overdueLoans; }
+    public long getOverdueCents() { return overdueCents; }
+}
@@ -0,0 +1,285 @@
+package dms;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// UTF-8 JSON encoder over one growable byte array. Numbers and dates are
+// written digit by digit, the same way LoanExporter writes them, so encoding
+// a response allocates nothing once the array has grown to fit. Writers are
+// reset and reused. Callers emit begin/end, names and values; the writer
+// places the commas and colons.
+class JsonWriter {
+    private static final long[] POWERS_OF_TEN = {1, 10, 100, 1000, 10000};
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private byte[] buf;
+    private int pos;
+    private boolean needComma;
+
+    JsonWriter(int initialCapacity) {
+        buf = new byte[initialCapacity];
+    }
+
+    public JsonWriter reset() {
+        pos = 0;
+        needComma = false;
+        return this;
+    }
+
+    public int size() {
+        return pos;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buf, 0, pos);
+    }
+
+    public String toString() {
+        return new String(buf, 0, pos, StandardCharsets.UTF_8);
+    }
+
+    public JsonWriter beginObject() {
+        separate();
+        put('{');
+        needComma = false;
+        return this;
+    }
+
+    public JsonWriter endObject() {
+        put('}');
+        needComma = true;
+        return this;
+    }
+
+    public JsonWriter beginArray() {
+        separate();
+        put('[');
+        needComma = false;
+        return this;
+    }
+
+    public JsonWriter endArray() {
+        put(']');
+        needComma = true;
+        return this;
+    }
+
+    // Ends one line of JSON lines output; the next value starts afresh.
+    public JsonWriter newline() {
+        put('\n');
+        needComma = false;
+        return this;
+    }
+
+    public JsonWriter name(String name) {
+        separate();
+        quoted(name);
+        put(':');
+        needComma = false;
+        return this;
+    }
+
+    public JsonWriter value(String s) {
+        separate();
+        if (s == null) {
+            ascii("null");
+        } else {
+            quoted(s);
+        }
+        needComma = true;
+        return this;
+    }
+
+    public JsonWriter value(long value) {
+        separate();
+        integer(value);
+        needComma = true;
+        return this;
+    }
+
+    public JsonWriter value(boolean value) {
+        separate();
+        ascii(value ? "true" : "false");
+        needComma = true;
+        return this;
+    }
+
+    // Amounts with two decimals, as every screen and export shows them.
+    public JsonWriter money(double value) {
+        return fixed(value, 2, false);
+    }
+
+    // An exact amount in cents, with two decimals.
+    public JsonWriter cents(long cents) {
+        if (cents == Long.MIN_VALUE) {
+            return money(Money.toDouble(cents));
+        }
+        separate();
+        needComma = true;
+        return units(cents, 2, false);
+    }
+
+    // Up to four decimals with trailing zeros trimmed (rates, percentages).
+    public JsonWriter decimal(double value) {
+        return fixed(value, 4, true);
+    }
+
+    // "YYYY-MM-DD" for an epoch day.
+    public JsonWriter date(long epochDay) {
+        separate();
+        long z = epochDay + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        long day = doy - (153 * mp + 2) / 5 + 1;
+        long month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+        ensure(12);
+        buf[pos++] = '"';
+        buf[pos++] = (byte) ('0' + year / 1000 % 10);
+        buf[pos++] = (byte) ('0' + year / 100 % 10);
+        buf[pos++] = (byte) ('0' + year / 10 % 10);
+        buf[pos++] = (byte) ('0' + year % 10);
+        buf[pos++] = '-';
+        buf[pos++] = (byte) ('0' + month / 10);
+        buf[pos++] = (byte) ('0' + month % 10);
+        buf[pos++] = '-';
+        buf[pos++] = (byte) ('0' + day / 10);
+        buf[pos++] = (byte) ('0' + day % 10);
+        buf[pos++] = '"';
+        needComma = true;
+        return this;
+    }
+
+    private JsonWriter fixed(double value, int decimals, boolean trim) {
+        separate();
+        needComma = true;
+        long scale = POWERS_OF_TEN[decimals];
+        double scaled = value * scale;
+        if (Double.isNaN(scaled) || Double.isInfinite(scaled)) {
+            ascii("null");
+            return this;
+        }
+        if (Math.abs(scaled) >= 1e15) {
+            ascii(BigDecimal.valueOf(value).setScale(decimals, RoundingMode.HALF_UP).toPlainString());
+            return this;
+        }
+        return units(Math.round(scaled), decimals, trim);
+    }
+
+    private JsonWriter units(long units, int decimals, boolean trim) {
+        long scale = POWERS_OF_TEN[decimals];
+        if (units < 0) {
+            put('-');
+            units = -units;
+        }
+        integer(units / scale);
+        long fraction = units % scale;
+        int places = decimals;
+        if (trim) {
+            while (places > 1 && fraction % 10 == 0) {
+                fraction /= 10;
+                places--;
+            }
+        }
+        ensure(1 + places);
+        buf[pos++] = '.';
+        for (long p = POWERS_OF_TEN[places - 1]; p > 0; p /= 10) {
+            buf[pos++] = (byte) ('0' + fraction / p % 10);
+        }
+        return this;
+    }
+
+    private void integer(long value) {
+        ensure(20);
+        if (value == Long.MIN_VALUE) {
+            ascii(Long.toString(value));
+            return;
+        }
+        if (value < 0) {
+            buf[pos++] = '-';
+            value = -value;
+        }
+        int start = pos;
+        do {
+            buf[pos++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        for (int i = start, j = pos - 1; i < j; i++, j--) {
+            byte t = buf[i];
+            buf[i] = buf[j];
+            buf[j] = t;
+        }
+    }
+
+    private void quoted(String s) {
+        // At most 6 bytes per char, for an escaped control character
+        ensure(2 + 6 * s.length());
+        buf[pos++] = '"';
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                buf[pos++] = '\\';
+                buf[pos++] = (byte) c;
+            } else if (c < 0x20) {
+                buf[pos++] = '\\';
+                buf[pos++] = 'u';
+                buf[pos++] = '0';
+                buf[pos++] = '0';
+                buf[pos++] = HEX[c >> 4];
+                buf[pos++] = HEX[c & 0xF];
+            } else if (c < 0x80) {
+                buf[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                buf[pos++] = (byte) (0xC0 | c >> 6);
+                buf[pos++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                buf[pos++] = (byte) (0xF0 | codePoint >> 18);
+                buf[pos++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                buf[pos++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                buf[pos++] = (byte) (0x80 | codePoint & 0x3F);
+            } else {
+                // A lone surrogate has no UTF-8 form
+                if (Character.isSurrogate(c)) {
+                    c = '\uFFFD';
+                }
+                buf[pos++] = (byte) (0xE0 | c >> 12);
+                buf[pos++] = (byte) (0x80 | c >> 6 & 0x3F);
+                buf[pos++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        buf[pos++] = '"';
+    }
+
+    private void ascii(String s) {
+        ensure(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            buf[pos++] = (byte) s.charAt(i);
+        }
+    }
+
+    private void separate() {
+        if (needComma) {
+            put(',');
+        }
+    }
+
+    private void put(int b) {
+        ensure(1);
+        buf[pos++] = (byte) b;
+    }
+
+    private void ensure(int bytes) {
+        if (pos + bytes > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + bytes));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package dms;
+
+import java.time.LocalDate;
+
+class Loan {
+    private String name;
+    private long principalCents;
+    private int rateBps;
+    private long interestCents;
+    private int timeMonths;
+    private LocalDate dueDate;
+    private boolean isPaid;
+    
+    // The principal is rounded to the cent and the rate to the basis point.
+    public Loan(String name, double principal, double rate, int timeMonths, LocalDate dueDate) {
+        this(name, Money.cents(principal), Money.basisPoints(rate), timeMonths, dueDate, false);
+    }
+    
+    private Loan(String name, long principalCents, int rateBps, int timeMonths, LocalDate dueDate, boolean isPaid) {
+        this.name = name;
+        this.principalCents = principalCents;
+        this.rateBps = rateBps;
+        this.timeMonths = timeMonths;
+        this.interestCents = Money.interest(principalCents, rateBps, timeMonths);
+        this.dueDate = dueDate;
+        this.isPaid = isPaid;
+    }
+    
+    public static Loan ofCents(String name, long principalCents, int rateBps, int timeMonths, LocalDate dueDate) {
+        return new Loan(name, principalCents, rateBps, timeMonths, dueDate, false);
+    }
+    
+    public long interestCents() {
+        return interestCents;
+    }
+    
+    public long totalCents() {
+        return principalCents + interestCents;
+    }
+    
+    public double calculateInterest() {
+        return Money.toDouble(interestCents());
+    }
+    
+    public double calculateTotal() {
+        return Money.toDouble(totalCents());
+    }
+    
+    public long getDaysUntilDue() {
+        return dueDate.toEpochDay() - CalendarDay.SYSTEM.today();
+    }
+    
+    public String getName() { return name; }
+    public double getPrincipal() { return Money.toDouble(principalCents); }
+    public double getRate() { return Money.toDouble(rateBps); }
+    public long getPrincipalCents() { return principalCents; }
+    public int getRateBps() { return rateBps; }
+    public int getTimeMonths() { return timeMonths; }
+    public LocalDate getDueDate() { return dueDate; }
+    public boolean isPaid() { return isPaid; }
+    public void setPaid(boolean paid) { isPaid = paid; }
+}
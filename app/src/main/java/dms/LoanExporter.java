@@ -0,0 +1,227 @@
+package dms;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Streaming writer for the "View All Loans" columns (name, principal, rate,
+// term, interest, total, due date, status) as CSV or JSON lines. Rows are
+// encoded into one reusable block that is flushed when full, and the output
+// can be read back by LoanImporter.
+class LoanExporter {
+    private static final int BLOCK_SIZE = 1 << 16;
+    private static final String CSV_HEADER = "name,principal,rate,timeMonths,interest,total,dueDate,status\n";
+    private static final long[] POWERS_OF_TEN = {1, 10, 100, 1000, 10000};
+
+    private final LoanPortfolio loans;
+    private final byte[] buf = new byte[BLOCK_SIZE];
+    private int pos;
+    private OutputStream out;
+
+    LoanExporter(LoanPortfolio loans) {
+        this.loans = loans;
+    }
+
+    public long exportFile(Path file) throws IOException {
+        try (OutputStream stream = Files.newOutputStream(file)) {
+            return export(stream, LoanImporter.Format.forFile(file));
+        }
+    }
+
+    // Writes every loan and returns the number of rows.
+    public long export(OutputStream stream, LoanImporter.Format format) throws IOException {
+        out = stream;
+        pos = 0;
+        if (format == LoanImporter.Format.CSV) {
+            ascii(CSV_HEADER);
+        }
+        int n = loans.size();
+        for (int id = 0; id < n; id++) {
+            if (format == LoanImporter.Format.CSV) {
+                csvRow(id);
+            } else {
+                jsonRow(id);
+            }
+        }
+        flush();
+        out.flush();
+        out = null;
+        return n;
+    }
+
+    private void csvRow(int id) throws IOException {
+        csvString(loans.getName(id));
+        writeByte(',');
+        units(loans.getPrincipalCents(id), 2, false);
+        writeByte(',');
+        units(loans.getRateBps(id), 2, true);
+        writeByte(',');
+        integer(loans.getTimeMonths(id));
+        writeByte(',');
+        units(loans.interestCents(id), 2, false);
+        writeByte(',');
+        units(loans.totalCents(id), 2, false);
+        writeByte(',');
+        date(loans.getDueEpochDay(id));
+        writeByte(',');
+        ascii(loans.isPaid(id) ? "PAID" : "PENDING");
+        writeByte('\n');
+    }
+
+    private void jsonRow(int id) throws IOException {
+        ascii("{\"name\":");
+        jsonString(loans.getName(id));
+        ascii(",\"principal\":");
+        units(loans.getPrincipalCents(id), 2, false);
+        ascii(",\"rate\":");
+        units(loans.getRateBps(id), 2, true);
+        ascii(",\"timeMonths\":");
+        integer(loans.getTimeMonths(id));
+        ascii(",\"interest\":");
+        units(loans.interestCents(id), 2, false);
+        ascii(",\"total\":");
+        units(loans.totalCents(id), 2, false);
+        ascii(",\"dueDate\":\"");
+        date(loans.getDueEpochDay(id));
+        ascii("\",\"status\":\"");
+        ascii(loans.isPaid(id) ? "PAID" : "PENDING");
+        ascii("\"}\n");
+    }
+
+    // units / 10^decimals (cents or basis points with 2 decimals), optionally
+    // with trailing zeros trimmed (but always at least one decimal).
+    private void units(long units, int decimals, boolean trim) throws IOException {
+        long scale = POWERS_OF_TEN[decimals];
+        if (units < 0) {
+            writeByte('-');
+            units = -units;
+        }
+        integer(units / scale);
+        long fraction = units % scale;
+        int places = decimals;
+        if (trim) {
+            while (places > 1 && fraction % 10 == 0) {
+                fraction /= 10;
+                places--;
+            }
+        }
+        writeByte('.');
+        for (long p = POWERS_OF_TEN[places - 1]; p > 0; p /= 10) {
+            writeByte((int) ('0' + fraction / p % 10));
+        }
+    }
+
+    private void integer(long value) throws IOException {
+        ensure(20);
+        if (value < 0) {
+            buf[pos++] = '-';
+            value = -value;
+        }
+        int start = pos;
+        do {
+            buf[pos++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        for (int i = start, j = pos - 1; i < j; i++, j--) {
+            byte t = buf[i];
+            buf[i] = buf[j];
+            buf[j] = t;
+        }
+    }
+
+    // YYYY-MM-DD from an epoch day (inverse of LoanImporter.epochDay).
+    private void date(long epochDay) throws IOException {
+        long z = epochDay + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        long day = doy - (153 * mp + 2) / 5 + 1;
+        long month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+        ensure(10);
+        buf[pos++] = (byte) ('0' + year / 1000 % 10);
+        buf[pos++] = (byte) ('0' + year / 100 % 10);
+        buf[pos++] = (byte) ('0' + year / 10 % 10);
+        buf[pos++] = (byte) ('0' + year % 10);
+        buf[pos++] = '-';
+        buf[pos++] = (byte) ('0' + month / 10);
+        buf[pos++] = (byte) ('0' + month % 10);
+        buf[pos++] = '-';
+        buf[pos++] = (byte) ('0' + day / 10);
+        buf[pos++] = (byte) ('0' + day % 10);
+    }
+
+    private void csvString(String s) throws IOException {
+        boolean quote = s.indexOf(',') >= 0 || s.indexOf('"') >= 0 || s.indexOf('\n') >= 0 || s.indexOf('\r') >= 0;
+        if (!quote) {
+            text(s);
+            return;
+        }
+        writeByte('"');
+        text(s.replace("\"", "\"\""));
+        writeByte('"');
+    }
+
+    private void jsonString(String s) throws IOException {
+        writeByte('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                writeByte('\\');
+                writeByte(c);
+            } else if (c < 0x20) {
+                ascii(String.format("\\u%04x", (int) c));
+            } else if (c < 0x80) {
+                writeByte(c);
+            } else {
+                int codePoint = s.codePointAt(i);
+                text(new String(Character.toChars(codePoint)));
+                i += Character.charCount(codePoint) - 1;
+            }
+        }
+        writeByte('"');
+    }
+
+    private void text(String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80) {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                ensure(bytes.length);
+                System.arraycopy(bytes, 0, buf, pos, bytes.length);
+                pos += bytes.length;
+                return;
+            }
+        }
+        ascii(s);
+    }
+
+    private void ascii(String s) throws IOException {
+        ensure(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            buf[pos++] = (byte) s.charAt(i);
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
+        ensure(1);
+        buf[pos++] = (byte) b;
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (pos + bytes > buf.length) {
+            flush();
+            if (bytes > buf.length) {
+                throw new IOException("Field of " + bytes + " bytes does not fit the export buffer");
+            }
+        }
+    }
+
+    private void flush() throws IOException {
+        out.write(buf, 0, pos);
+        pos = 0;
+    }
+}
@@ -0,0 +1,708 @@
+package dms;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Streaming bulk loader for CSV and JSON-lines loan files.
+//
+// Input is read in large blocks and parsed in place: numbers and ISO dates
+// are decoded straight from the bytes, and repeated loan names come from a
+// small cache instead of a new String per row. Bad rows are skipped and
+// reported with their line number; good rows go straight into the portfolio.
+//
+// CSV columns are taken from a header row (name, principal, rate, timeMonths,
+// dueDate and optional status; other columns such as interest/total are
+// ignored) or default to name,principal,rate,timeMonths,dueDate[,status].
+// JSON lines are flat objects with the same keys.
+class LoanImporter {
+    enum Format {
+        CSV, JSON_LINES;
+
+        static Format forFile(Path file) {
+            String name = file.getFileName().toString().toLowerCase();
+            return name.endsWith(".jsonl") || name.endsWith(".ndjson") || name.endsWith(".json")
+                    ? JSON_LINES : CSV;
+        }
+    }
+
+    static final int MAX_REPORTED_ERRORS = 100;
+
+    private static final int BLOCK_SIZE = 1 << 16;
+    private static final int COLUMNS = 6;
+    private static final int NAME = 0, PRINCIPAL = 1, RATE = 2, TIME = 3, DUE = 4, STATUS = 5;
+    private static final String[][] COLUMN_NAMES = {
+        {"name", "loan name", "loan"},
+        {"principal", "amount"},
+        {"rate", "rate(%)", "interest rate"},
+        {"timemonths", "time(mo)", "time", "months", "term"},
+        {"duedate", "due date", "due"},
+        {"status", "paid"},
+    };
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22,
+    };
+
+    private final LoanPortfolio loans;
+
+    // Current row, decoded field by field.
+    private final int[] fieldStart = new int[32];
+    private final int[] fieldEnd = new int[32];
+    private final int[] column = {0, 1, 2, 3, 4, 5};
+    private String rowName;
+    private double rowPrincipal;
+    private double rowRate;
+    private int rowTimeMonths;
+    private int rowDueEpochDay;
+    private boolean rowPaid;
+    private String error;
+
+    // Tiny direct-mapped cache of recently seen names.
+    private final byte[][] cachedNameBytes = new byte[256][];
+    private final String[] cachedNames = new String[256];
+
+    private long lineNumber;
+    private long imported;
+    private long rejected;
+    private final List<String> errors = new ArrayList<>();
+
+    LoanImporter(LoanPortfolio loans) {
+        this.loans = loans;
+    }
+
+    static class Result {
+        private final long imported;
+        private final long rejected;
+        private final List<String> errors;
+
+        Result(long imported, long rejected, List<String> errors) {
+            this.imported = imported;
+            this.rejected = rejected;
+            this.errors = errors;
+        }
+
+        public long getImported() { return imported; }
+        public long getRejected() { return rejected; }
+
+        // The first MAX_REPORTED_ERRORS problems, as "line N: message".
+        public List<String> getErrors() { return errors; }
+    }
+
+    public Result importFile(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return importStream(in, Format.forFile(file));
+        }
+    }
+
+    public Result importStream(InputStream in, Format format) throws IOException {
+        lineNumber = 0;
+        imported = 0;
+        rejected = 0;
+        errors.clear();
+        for (int i = 0; i < COLUMNS; i++) {
+            column[i] = i;
+        }
+
+        byte[] buf = new byte[BLOCK_SIZE];
+        int start = 0;
+        int end = 0;
+        boolean eof = false;
+        while (true) {
+            int newline = indexOf(buf, start, end, (byte) '\n');
+            if (newline < 0) {
+                if (eof) {
+                    if (start < end) {
+                        line(buf, start, end, format);
+                    }
+                    break;
+                }
+                if (start > 0) {
+                    System.arraycopy(buf, start, buf, 0, end - start);
+                    end -= start;
+                    start = 0;
+                }
+                if (end == buf.length) {
+                    buf = Arrays.copyOf(buf, buf.length * 2);
+                }
+                int n = in.read(buf, end, buf.length - end);
+                if (n < 0) {
+                    eof = true;
+                } else {
+                    end += n;
+                }
+                continue;
+            }
+            line(buf, start, newline, format);
+            start = newline + 1;
+        }
+        return new Result(imported, rejected, new ArrayList<>(errors));
+    }
+
+    private void line(byte[] buf, int start, int end, Format format) {
+        lineNumber++;
+        if (end > start && buf[end - 1] == '\r') {
+            end--;
+        }
+        if (lineNumber == 1 && end - start >= 3
+                && buf[start] == (byte) 0xEF && buf[start + 1] == (byte) 0xBB && buf[start + 2] == (byte) 0xBF) {
+            start += 3;
+        }
+        if (isBlank(buf, start, end)) {
+            return;
+        }
+        error = null;
+        boolean ok = format == Format.CSV ? parseCsv(buf, start, end) : parseJson(buf, start, end);
+        if (!ok) {
+            if (error != null) {
+                reject(error);
+            }
+            return;
+        }
+        int id = loans.add(rowName, rowPrincipal, rowRate, rowTimeMonths, rowDueEpochDay);
+        if (rowPaid) {
+            loans.setPaid(id, true);
+        }
+        imported++;
+    }
+
+    private void reject(String message) {
+        rejected++;
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add("line " + lineNumber + ": " + message);
+        }
+    }
+
+    // ---- CSV ----------------------------------------------------------------
+
+    private boolean parseCsv(byte[] buf, int start, int end) {
+        int fields = splitCsv(buf, start, end);
+        if (fields < 0) {
+            error = "unterminated quoted field";
+            return false;
+        }
+        if (lineNumber == 1 && !isNumber(buf, fieldStart[Math.min(1, fields - 1)], fieldEnd[Math.min(1, fields - 1)])) {
+            readHeader(buf, fields);
+            return false;
+        }
+        rowPaid = false;
+        int required = 0;
+        for (int c = 0; c < STATUS; c++) {
+            required = Math.max(required, column[c] + 1);
+        }
+        if (fields < required) {
+            error = "expected at least " + required + " fields but found " + fields;
+            return false;
+        }
+        return field(buf, NAME, fieldStart[column[NAME]], fieldEnd[column[NAME]])
+                && field(buf, PRINCIPAL, fieldStart[column[PRINCIPAL]], fieldEnd[column[PRINCIPAL]])
+                && field(buf, RATE, fieldStart[column[RATE]], fieldEnd[column[RATE]])
+                && field(buf, TIME, fieldStart[column[TIME]], fieldEnd[column[TIME]])
+                && field(buf, DUE, fieldStart[column[DUE]], fieldEnd[column[DUE]])
+                && (column[STATUS] >= fields
+                    || field(buf, STATUS, fieldStart[column[STATUS]], fieldEnd[column[STATUS]]));
+    }
+
+    // Splits a line into fields, unquoting quoted fields in place. Returns
+    // the number of fields, or -1 for an unterminated quote.
+    private int splitCsv(byte[] buf, int start, int end) {
+        int fields = 0;
+        int i = start;
+        while (fields < fieldStart.length) {
+            if (i < end && buf[i] == '"') {
+                int out = i + 1;
+                int j = i + 1;
+                fieldStart[fields] = out;
+                while (true) {
+                    if (j >= end) {
+                        return -1;
+                    }
+                    if (buf[j] == '"') {
+                        if (j + 1 < end && buf[j + 1] == '"') {
+                            buf[out++] = '"';
+                            j += 2;
+                            continue;
+                        }
+                        j++;
+                        break;
+                    }
+                    buf[out++] = buf[j++];
+                }
+                fieldEnd[fields++] = out;
+                while (j < end && buf[j] != ',') {
+                    j++;
+                }
+                i = j;
+            } else {
+                fieldStart[fields] = i;
+                while (i < end && buf[i] != ',') {
+                    i++;
+                }
+                fieldEnd[fields++] = i;
+            }
+            if (i >= end) {
+                break;
+            }
+            i++;
+        }
+        return fields;
+    }
+
+    private void readHeader(byte[] buf, int fields) {
+        Arrays.fill(column, Integer.MAX_VALUE);
+        for (int f = 0; f < fields; f++) {
+            String name = new String(buf, fieldStart[f], fieldEnd[f] - fieldStart[f], StandardCharsets.UTF_8)
+                    .trim().toLowerCase();
+            for (int c = 0; c < COLUMNS; c++) {
+                if (column[c] == Integer.MAX_VALUE && Arrays.asList(COLUMN_NAMES[c]).contains(name)) {
+                    column[c] = f;
+                }
+            }
+        }
+        for (int c = 0; c < STATUS; c++) {
+            if (column[c] == Integer.MAX_VALUE) {
+                error = "header has no '" + COLUMN_NAMES[c][0] + "' column";
+                Arrays.fill(column, Integer.MAX_VALUE);
+                column[NAME] = 0;
+                column[PRINCIPAL] = 1;
+                column[RATE] = 2;
+                column[TIME] = 3;
+                column[DUE] = 4;
+                column[STATUS] = 5;
+                reject(error);
+                error = null;
+                return;
+            }
+        }
+    }
+
+    // ---- JSON lines -----------------------------------------------------------
+
+    private boolean parseJson(byte[] buf, int start, int end) {
+        rowPaid = false;
+        int seen = 0;
+        int i = skipSpace(buf, start, end);
+        if (i >= end || buf[i] != '{') {
+            error = "expected a JSON object";
+            return false;
+        }
+        i = skipSpace(buf, i + 1, end);
+        if (i < end && buf[i] == '}') {
+            error = "empty JSON object";
+            return false;
+        }
+        while (true) {
+            if (i >= end || buf[i] != '"') {
+                error = "expected a quoted key";
+                return false;
+            }
+            int keyEnd = parseJsonString(buf, i + 1, end);
+            if (keyEnd < 0) {
+                return false;
+            }
+            int key = jsonKey(buf, stringStart, stringEnd);
+            i = skipSpace(buf, keyEnd, end);
+            if (i >= end || buf[i] != ':') {
+                error = "expected ':' after key";
+                return false;
+            }
+            i = skipSpace(buf, i + 1, end);
+            int valueStart;
+            int valueEnd;
+            if (i < end && buf[i] == '"') {
+                i = parseJsonString(buf, i + 1, end);
+                if (i < 0) {
+                    return false;
+                }
+                valueStart = stringStart;
+                valueEnd = stringEnd;
+            } else {
+                valueStart = i;
+                while (i < end && buf[i] != ',' && buf[i] != '}' && buf[i] != ' ' && buf[i] != '\t') {
+                    i++;
+                }
+                valueEnd = i;
+            }
+            if (key >= 0) {
+                if (!field(buf, key, valueStart, valueEnd)) {
+                    return false;
+                }
+                seen |= 1 << key;
+            }
+            i = skipSpace(buf, i, end);
+            if (i < end && buf[i] == ',') {
+                i = skipSpace(buf, i + 1, end);
+                continue;
+            }
+            if (i < end && buf[i] == '}') {
+                break;
+            }
+            error = "expected ',' or '}'";
+            return false;
+        }
+        for (int c = 0; c < STATUS; c++) {
+            if ((seen & (1 << c)) == 0) {
+                error = "missing \"" + COLUMN_NAMES[c][0] + "\"";
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int stringStart;
+    private int stringEnd;
+
+    // Decodes a JSON string starting just after its opening quote, in place.
+    // Sets stringStart/stringEnd and returns the index after the closing quote.
+    private int parseJsonString(byte[] buf, int i, int end) {
+        int out = i;
+        stringStart = i;
+        while (i < end) {
+            byte b = buf[i];
+            if (b == '"') {
+                stringEnd = out;
+                return i + 1;
+            }
+            if (b != '\\') {
+                buf[out++] = b;
+                i++;
+                continue;
+            }
+            if (i + 1 >= end) {
+                break;
+            }
+            byte e = buf[i + 1];
+            i += 2;
+            switch (e) {
+                case 'n': buf[out++] = '\n'; break;
+                case 't': buf[out++] = '\t'; break;
+                case 'r': buf[out++] = '\r'; break;
+                case 'b': buf[out++] = '\b'; break;
+                case 'f': buf[out++] = '\f'; break;
+                case 'u': {
+                    if (i + 4 > end) {
+                        error = "bad \\u escape";
+                        return -1;
+                    }
+                    int cp = 0;
+                    for (int k = 0; k < 4; k++) {
+                        int d = Character.digit(buf[i + k], 16);
+                        if (d < 0) {
+                            error = "bad \\u escape";
+                            return -1;
+                        }
+                        cp = cp * 16 + d;
+                    }
+                    i += 4;
+                    // The encoded form is never longer than the 6-byte escape.
+                    byte[] utf8 = String.valueOf((char) cp).getBytes(StandardCharsets.UTF_8);
+                    System.arraycopy(utf8, 0, buf, out, utf8.length);
+                    out += utf8.length;
+                    break;
+                }
+                default: buf[out++] = e;
+            }
+        }
+        error = "unterminated string";
+        return -1;
+    }
+
+    private static int jsonKey(byte[] buf, int start, int end) {
+        if (equalsAscii(buf, start, end, "name")) return NAME;
+        if (equalsAscii(buf, start, end, "principal")) return PRINCIPAL;
+        if (equalsAscii(buf, start, end, "rate")) return RATE;
+        if (equalsAscii(buf, start, end, "timeMonths")) return TIME;
+        if (equalsAscii(buf, start, end, "dueDate")) return DUE;
+        if (equalsAscii(buf, start, end, "status")) return STATUS;
+        return -1;
+    }
+
+    // ---- Fields ---------------------------------------------------------------
+
+    private boolean field(byte[] buf, int which, int start, int end) {
+        while (start < end && (buf[start] == ' ' || buf[start] == '\t')) {
+            start++;
+        }
+        while (end > start && (buf[end - 1] == ' ' || buf[end - 1] == '\t')) {
+            end--;
+        }
+        switch (which) {
+            case NAME:
+                if (start == end) {
+                    error = "empty loan name";
+                    return false;
+                }
+                rowName = name(buf, start, end);
+                return true;
+            case PRINCIPAL:
+                rowPrincipal = parseDouble(buf, start, end);
+                if (!(rowPrincipal >= 0 && rowPrincipal <= Money.MAX_AMOUNT)) {
+                    error = "invalid principal '" + text(buf, start, end) + "'";
+                    return false;
+                }
+                return true;
+            case RATE:
+                rowRate = parseDouble(buf, start, end);
+                if (!(rowRate >= 0 && rowRate <= Money.MAX_RATE)) {
+                    error = "invalid rate '" + text(buf, start, end) + "'";
+                    return false;
+                }
+                return true;
+            case TIME:
+                long months = parseLong(buf, start, end);
+                if (months < 1 || months > 1200) {
+                    error = "invalid time period '" + text(buf, start, end) + "'";
+                    return false;
+                }
+                rowTimeMonths = (int) months;
+                return true;
+            case DUE:
+                long day = parseIsoDate(buf, start, end);
+                if (day == Long.MIN_VALUE) {
+                    error = "invalid due date '" + text(buf, start, end) + "' (expected YYYY-MM-DD)";
+                    return false;
+                }
+                rowDueEpochDay = (int) day;
+                return true;
+            default:
+                if (equalsIgnoreCase(buf, start, end, "PAID") || equalsIgnoreCase(buf, start, end, "true")) {
+                    rowPaid = true;
+                } else if (start == end || equalsIgnoreCase(buf, start, end, "PENDING")
+                        || equalsIgnoreCase(buf, start, end, "false")) {
+                    rowPaid = false;
+                } else {
+                    error = "invalid status '" + text(buf, start, end) + "'";
+                    return false;
+                }
+                return true;
+        }
+    }
+
+    private String name(byte[] buf, int start, int end) {
+        int hash = 1;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + buf[i];
+        }
+        int slot = (hash ^ (hash >>> 8)) & (cachedNames.length - 1);
+        byte[] cached = cachedNameBytes[slot];
+        if (cached != null && Arrays.equals(cached, 0, cached.length, buf, start, end)) {
+            return cachedNames[slot];
+        }
+        String name = new String(buf, start, end - start, StandardCharsets.UTF_8);
+        cachedNameBytes[slot] = Arrays.copyOfRange(buf, start, end);
+        cachedNames[slot] = name;
+        return name;
+    }
+
+    // Decimal parser for [-]digits[.digits][e[-]digits]. Values with at most 15
+    // significant digits and a small scale are converted exactly with one
+    // division; anything else falls back to Double.parseDouble. Returns NaN
+    // on malformed input.
+    static double parseDouble(byte[] buf, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buf[i] == '-' || buf[i] == '+')) {
+            negative = buf[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean seenDigit = false;
+        boolean simple = true;
+        while (i < end && buf[i] >= '0' && buf[i] <= '9') {
+            seenDigit = true;
+            if (digits < 18) {
+                mantissa = mantissa * 10 + (buf[i] - '0');
+                if (mantissa != 0) {
+                    digits++;
+                }
+            } else {
+                simple = false;
+            }
+            i++;
+        }
+        if (i < end && buf[i] == '.') {
+            i++;
+            while (i < end && buf[i] >= '0' && buf[i] <= '9') {
+                seenDigit = true;
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (buf[i] - '0');
+                    if (mantissa != 0) {
+                        digits++;
+                    }
+                    scale++;
+                } else {
+                    simple = false;
+                }
+                i++;
+            }
+        }
+        if (!seenDigit) {
+            return Double.NaN;
+        }
+        if (i < end) {
+            if ((buf[i] != 'e' && buf[i] != 'E') || !isNumber(buf, i + 1, end)) {
+                return Double.NaN;
+            }
+            simple = false;
+        }
+        if (simple && digits <= 15 && scale < POWERS_OF_TEN.length) {
+            double value = mantissa / POWERS_OF_TEN[scale];
+            return negative ? -value : value;
+        }
+        try {
+            return Double.parseDouble(text(buf, start, end));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    // Returns Long.MIN_VALUE on malformed or overflowing input.
+    static long parseLong(byte[] buf, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buf[i] == '-' || buf[i] == '+')) {
+            negative = buf[i] == '-';
+            i++;
+        }
+        if (i >= end || end - i > 18) {
+            return Long.MIN_VALUE;
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int d = buf[i] - '0';
+            if (d < 0 || d > 9) {
+                return Long.MIN_VALUE;
+            }
+            value = value * 10 + d;
+        }
+        return negative ? -value : value;
+    }
+
+    // YYYY-MM-DD to epoch day, validating month and day-of-month. Returns
+    // Long.MIN_VALUE when the text is not a valid ISO date.
+    static long parseIsoDate(byte[] buf, int start, int end) {
+        if (end - start != 10 || buf[start + 4] != '-' || buf[start + 7] != '-') {
+            return Long.MIN_VALUE;
+        }
+        int year = digits(buf, start, 4);
+        int month = digits(buf, start + 5, 2);
+        int day = digits(buf, start + 8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+            return Long.MIN_VALUE;
+        }
+        return epochDay(year, month, day);
+    }
+
+    // Days since 1970-01-01 for a proleptic Gregorian date (H. Hinnant's
+    // days_from_civil).
+    static long epochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yoe = y - era * 400;
+        int doy = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097L + doe - 719468;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+                return leap ? 29 : 28;
+            case 4: case 6: case 9: case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static int digits(byte[] buf, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            int d = buf[i] - '0';
+            if (d < 0 || d > 9) {
+                return -1;
+            }
+            value = value * 10 + d;
+        }
+        return value;
+    }
+
+    private static boolean isNumber(byte[] buf, int start, int end) {
+        int i = start;
+        if (i < end && (buf[i] == '-' || buf[i] == '+')) {
+            i++;
+        }
+        if (i >= end) {
+            return false;
+        }
+        for (; i < end; i++) {
+            byte b = buf[i];
+            if ((b < '0' || b > '9') && b != '.' && b != 'e' && b != 'E' && b != '-' && b != '+' && b != ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isBlank(byte[] buf, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (buf[i] != ' ' && buf[i] != '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int skipSpace(byte[] buf, int i, int end) {
+        while (i < end && (buf[i] == ' ' || buf[i] == '\t')) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int indexOf(byte[] buf, int start, int end, byte b) {
+        for (int i = start; i < end; i++) {
+            if (buf[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean equalsAscii(byte[] buf, int start, int end, String s) {
+        if (end - start != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (buf[start + i] != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equalsIgnoreCase(byte[] buf, int start, int end, String s) {
+        if (end - start != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (Character.toUpperCase(buf[start + i]) != Character.toUpperCase(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String text(byte[] buf, int start, int end) {
+        int length = Math.min(end - start, 40);
+        return new String(buf, start, length, StandardCharsets.UTF_8);
+    }
+}
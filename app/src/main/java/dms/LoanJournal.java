@@ -0,0 +1,348 @@
+package dms;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+// Append-only log of portfolio changes made since the last snapshot.
+//
+// Appends only encode into an in-memory buffer. A committer thread writes
+// whatever has accumulated and forces it with one fsync, so every change
+// that arrives while a sync is in flight shares the next one (group commit).
+// Callers that need durability wait for their sequence number.
+//
+//   header  int magic "DMSJ", int version, long generation
+//   entry   int payload length, int CRC32 of payload, payload
+//   ADD     byte 1, double principal, double rate, int timeMonths,
+//           int dueEpochDay, short name length, UTF-8 name
+//   PAID    byte 2, int loan id, byte paid
+//   PAYMENT byte 3, int loan id, byte kind, long amount cents, int epochDay,
+//           int linked event (PaymentLedger; kept in its own journal file)
+//
+// Replay stops at the first truncated or corrupt entry, which is where a
+// crash in the middle of a write leaves the file.
+class LoanJournal implements Closeable {
+    static final int MAGIC = 0x4A534D44; // "DMSJ" read little-endian
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final byte ADD = 1;
+    static final byte PAID = 2;
+    static final byte PAYMENT = 3;
+    // The largest entry: an ADD with a name of 0xFFFF bytes.
+    static final int MAX_PAYLOAD_BYTES = 1 + 8 + 8 + 4 + 4 + 2 + 0xFFFF;
+    // Replay maps this much of the file at a time, so journals of any length
+    // read with long offsets and bounded address space.
+    static final int READ_WINDOW_BYTES = 64 << 20;
+
+    // Receives replayed entries in order.
+    interface Replayer {
+        void add(String name, double principal, double rate, int timeMonths, int dueEpochDay);
+        void paid(int id, boolean isPaid);
+        void payment(int id, int kind, long amountCents, int epochDay, int linkedEvent);
+    }
+
+    private final FileChannel channel;
+    private final long generation;
+    private final Thread committer;
+    private final CRC32 crc = new CRC32();
+
+    private ByteBuffer pending = newBuffer(1 << 16);
+    private ByteBuffer writing = newBuffer(1 << 16);
+    private long appendedSeq;
+    private long durableSeq;
+    private long size;
+    private boolean closed;
+    private IOException failure;
+
+    private LoanJournal(FileChannel channel, long generation, long size) {
+        this.channel = channel;
+        this.generation = generation;
+        this.size = size;
+        this.committer = new Thread(this::commitLoop, "loan-journal-committer");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    // Creates an empty journal of the given generation, replacing any file.
+    public static LoanJournal create(Path file, long generation) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = newBuffer(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putLong(generation).flip();
+            while (header.hasRemaining()) {
+                out.write(header);
+            }
+            out.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return open(file, generation, HEADER_BYTES);
+    }
+
+    // Replays an existing journal and reopens it for appending after the last
+    // intact entry. Returns null if the file belongs to another generation.
+    public static LoanJournal replay(Path file, long generation, Replayer replayer) throws IOException {
+        long validLength = read(file, generation, replayer);
+        return validLength < 0 ? null : open(file, generation, validLength);
+    }
+
+    // Replays the intact entries without opening the file for appending.
+    // Returns the length of the intact prefix, or -1 if the file belongs to
+    // another generation.
+    public static long read(Path file, long generation, Replayer replayer) throws IOException {
+        return read(file, generation, replayer, READ_WINDOW_BYTES);
+    }
+
+    static long read(Path file, long generation, Replayer replayer, int windowBytes) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (in.size() < HEADER_BYTES) {
+                return -1;
+            }
+            MappedByteBuffer header = in.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getLong(8) != generation) {
+                return -1;
+            }
+            return replayEntries(in, windowBytes, replayer);
+        }
+    }
+
+    // Maps the file one window at a time. An entry that would cross the end
+    // of a window starts the next one, so entries are always read whole.
+    private static long replayEntries(FileChannel in, int windowBytes, Replayer replayer) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] name = new byte[256];
+        long limit = in.size();
+        long position = HEADER_BYTES;
+        ByteBuffer window = null;
+        long windowStart = 0;
+        while (limit - position >= 8) {
+            if (window == null || position + 8 > windowStart + window.limit()) {
+                windowStart = position;
+                window = map(in, position, Math.min(Math.max(windowBytes, 8), limit - position));
+            }
+            int offset = (int) (position - windowStart);
+            int length = window.getInt(offset);
+            int checksum = window.getInt(offset + 4);
+            long start = position + 8;
+            if (length <= 0 || length > MAX_PAYLOAD_BYTES || length > limit - start) {
+                break;
+            }
+            if (start + length > windowStart + window.limit()) {
+                windowStart = position;
+                window = map(in, position, Math.min(Math.max(windowBytes, 8 + length), limit - position));
+                offset = 0;
+            }
+            ByteBuffer payload = window.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            payload.limit(offset + 8 + length).position(offset + 8);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            byte type = payload.get();
+            if (type == ADD) {
+                double principal = payload.getDouble();
+                double rate = payload.getDouble();
+                int timeMonths = payload.getInt();
+                int dueEpochDay = payload.getInt();
+                int nameLength = payload.getShort() & 0xFFFF;
+                if (nameLength > name.length) {
+                    name = new byte[nameLength];
+                }
+                payload.get(name, 0, nameLength);
+                replayer.add(new String(name, 0, nameLength, StandardCharsets.UTF_8),
+                        principal, rate, timeMonths, dueEpochDay);
+            } else if (type == PAID) {
+                replayer.paid(payload.getInt(), payload.get() != 0);
+            } else if (type == PAYMENT) {
+                replayer.payment(payload.getInt(), payload.get(), payload.getLong(), payload.getInt(), payload.getInt());
+            } else {
+                break;
+            }
+            position = start + length;
+        }
+        return position;
+    }
+
+    private static ByteBuffer map(FileChannel in, long position, long length) throws IOException {
+        MappedByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, position, length);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    private static LoanJournal open(Path file, long generation, long validLength) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE);
+        channel.truncate(validLength);
+        channel.position(validLength);
+        return new LoanJournal(channel, generation, validLength);
+    }
+
+    public long getGeneration() { return generation; }
+
+    // Bytes in the journal file, including appends not yet written.
+    public synchronized long size() {
+        return size + pending.position();
+    }
+
+    public synchronized long appendAdd(String name, double principal, double rate, int timeMonths, int dueEpochDay) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("Loan name is too long to journal: " + bytes.length + " bytes");
+        }
+        int payload = 1 + 8 + 8 + 4 + 4 + 2 + bytes.length;
+        ByteBuffer out = reserve(payload);
+        int start = out.position();
+        out.put(ADD).putDouble(principal).putDouble(rate).putInt(timeMonths).putInt(dueEpochDay)
+           .putShort((short) bytes.length).put(bytes);
+        return seal(out, start, payload);
+    }
+
+    public synchronized long appendPaid(int id, boolean isPaid) {
+        int payload = 1 + 4 + 1;
+        ByteBuffer out = reserve(payload);
+        int start = out.position();
+        out.put(PAID).putInt(id).put((byte) (isPaid ? 1 : 0));
+        return seal(out, start, payload);
+    }
+
+    public synchronized long appendPayment(int id, int kind, long amountCents, int epochDay, int linkedEvent) {
+        int payload = 1 + 4 + 1 + 8 + 4 + 4;
+        ByteBuffer out = reserve(payload);
+        int start = out.position();
+        out.put(PAYMENT).putInt(id).put((byte) kind).putLong(amountCents).putInt(epochDay).putInt(linkedEvent);
+        return seal(out, start, payload);
+    }
+
+    // Blocks until everything appended so far is on disk.
+    public void sync() throws IOException {
+        long target;
+        synchronized (this) {
+            target = appendedSeq;
+        }
+        awaitDurable(target);
+    }
+
+    public synchronized void awaitDurable(long seq) throws IOException {
+        while (durableSeq < seq && failure == null) {
+            if (closed && pending.position() == 0 && !committer.isAlive()) {
+                break;
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for journal commit");
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        synchronized (this) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    private ByteBuffer reserve(int payload) {
+        if (closed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+        int needed = 8 + payload;
+        if (pending.remaining() < needed) {
+            ByteBuffer bigger = newBuffer(Math.max(pending.capacity() * 2, pending.position() + needed));
+            pending.flip();
+            bigger.put(pending);
+            pending = bigger;
+        }
+        pending.putInt(payload).putInt(0);
+        return pending;
+    }
+
+    private long seal(ByteBuffer out, int start, int payload) {
+        ByteBuffer view = out.duplicate();
+        view.position(start).limit(start + payload);
+        crc.reset();
+        crc.update(view);
+        out.putInt(start - 4, (int) crc.getValue());
+        appendedSeq++;
+        notifyAll();
+        return appendedSeq;
+    }
+
+    private void commitLoop() {
+        while (true) {
+            ByteBuffer batch;
+            long batchSeq;
+            synchronized (this) {
+                while (pending.position() == 0 && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.position() == 0) {
+                    return;
+                }
+                batch = pending;
+                pending = writing;
+                writing = batch;
+                batchSeq = appendedSeq;
+            }
+            try {
+                batch.flip();
+                int bytes = batch.remaining();
+                while (batch.hasRemaining()) {
+                    channel.write(batch);
+                }
+                channel.force(false);
+                synchronized (this) {
+                    size += bytes;
+                    durableSeq = batchSeq;
+                    notifyAll();
+                }
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                    notifyAll();
+                }
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private static ByteBuffer newBuffer(int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
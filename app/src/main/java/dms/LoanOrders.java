@@ -0,0 +1,43 @@
+package dms;
+
+// Every loan of a portfolio sorted the three ways the book's indexes need:
+// rate descending (Avalanche), principal ascending (Snowball) and due date
+// ascending, ties by id, paid loans included.
+//
+// Those keys never change once a loan is added, so orders taken when a
+// snapshot is written stay valid however the paid flags move afterwards.
+// Stored with the snapshot, they let a freshly opened book build its indexes
+// by filtering out paid loans instead of sorting a million ids.
+class LoanOrders {
+    private final int[] byRate;
+    private final int[] byPrincipal;
+    private final int[] byDueDate;
+
+    LoanOrders(int[] byRate, int[] byPrincipal, int[] byDueDate) {
+        this.byRate = byRate;
+        this.byPrincipal = byPrincipal;
+        this.byDueDate = byDueDate;
+    }
+
+    static LoanOrders of(LoanPortfolio loans) {
+        return new LoanOrders(sorted(loans, PriorityIndex.rateDescending(loans)),
+                sorted(loans, PriorityIndex.principalAscending(loans)),
+                sorted(loans, PriorityIndex.dueDateAscending(loans)));
+    }
+
+    // Loans covered: ids [0, size()).
+    public int size() { return byRate.length; }
+    public int[] getByRate() { return byRate; }
+    public int[] getByPrincipal() { return byPrincipal; }
+    public int[] getByDueDate() { return byDueDate; }
+
+    private static int[] sorted(LoanPortfolio loans, LoanPortfolio.IdComparator order) {
+        int[] ids = new int[loans.size()];
+        for (int id = 0; id < ids.length; id++) {
+            ids[id] = id;
+        }
+        // Stable, so equal keys stay in id order
+        LoanPortfolio.sort(ids, order);
+        return ids;
+    }
+}
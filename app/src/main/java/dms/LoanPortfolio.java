@@ -0,0 +1,377 @@
+package dms;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Column-oriented loan store. Each loan is an index into parallel primitive
+// arrays, so aggregate and priority passes stream through memory instead of
+// chasing Loan objects around the heap.
+class LoanPortfolio {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int size;
+    private long[] principalCents = new long[INITIAL_CAPACITY];
+    private int[] rateBps = new int[INITIAL_CAPACITY];
+    // Derived from principal, rate and term, which never change once added,
+    // so each loan's interest is worked out once rather than on every read.
+    private long[] interestCents = new long[INITIAL_CAPACITY];
+    private int[] timeMonths = new int[INITIAL_CAPACITY];
+    private int[] dueEpochDay = new int[INITIAL_CAPACITY];
+    private int[] nameId = new int[INITIAL_CAPACITY];
+    private int paidCount;
+
+    // Paid flags live in chunks of PAID_CHUNK_WORDS words so a snapshot can
+    // share them; setPaid copies only the chunk it changes once shared.
+    static final int PAID_CHUNK_SHIFT = 16;
+    static final int PAID_CHUNK_WORDS = 1 << (PAID_CHUNK_SHIFT - 6);
+    private long[][] paid = new long[1][];
+    private boolean[] paidShared = new boolean[1];
+    private int paidWords;
+
+    // Snapshots are read-only views that share this portfolio's columns.
+    private boolean frozen;
+
+    // Loan names repeat heavily in real books ("Credit Card", "Electric Bill"),
+    // so every distinct name is stored once and loans refer to it by id.
+    private String[] names = new String[INITIAL_CAPACITY];
+    private int nameCount;
+    private final Map<String, Integer> nameIds = new HashMap<>();
+
+    private final List<Listener> listeners = new ArrayList<>();
+
+    // Orders two loan ids; used to sort id arrays without boxing.
+    interface IdComparator {
+        int compare(int a, int b);
+    }
+
+    // Notified after every change so derived indexes can update incrementally.
+    interface Listener {
+        void loanAdded(int id);
+        void paidChanged(int id, boolean isPaid);
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    LoanPortfolio() {
+    }
+
+    // Adopts fully built columns (e.g. read from a snapshot file) without
+    // copying them. The arrays must hold at least size entries.
+    static LoanPortfolio fromColumns(int size, long[] principalCents, int[] rateBps, int[] timeMonths,
+                                     int[] dueEpochDay, int[] nameId, long[][] paid,
+                                     String[] names, int nameCount) {
+        LoanPortfolio loans = new LoanPortfolio();
+        loans.size = size;
+        loans.principalCents = principalCents;
+        loans.rateBps = rateBps;
+        loans.timeMonths = timeMonths;
+        loans.interestCents = new long[principalCents.length];
+        for (int id = 0; id < size; id++) {
+            loans.interestCents[id] = Money.interest(principalCents[id], rateBps[id], timeMonths[id]);
+        }
+        loans.dueEpochDay = dueEpochDay;
+        loans.nameId = nameId;
+        if (paid.length > 0) {
+            loans.paid = paid;
+            loans.paidShared = new boolean[paid.length];
+            for (long[] chunk : paid) {
+                if (chunk != null) {
+                    loans.paidWords += chunk.length;
+                    for (long word : chunk) {
+                        loans.paidCount += Long.bitCount(word);
+                    }
+                }
+            }
+        }
+        loans.names = names.length > 0 ? names : new String[INITIAL_CAPACITY];
+        loans.nameCount = nameCount;
+        for (int i = 0; i < nameCount; i++) {
+            loans.nameIds.put(names[i], i);
+        }
+        return loans;
+    }
+
+    // Chunk arrays sized to hold the paid flags of n loans, for bulk loading.
+    static long[][] newPaidChunks(int n) {
+        int words = Math.max(1, (n + 63) >>> 6);
+        int chunks = (words + PAID_CHUNK_WORDS - 1) / PAID_CHUNK_WORDS;
+        long[][] paid = new long[chunks][];
+        for (int c = 0; c < chunks; c++) {
+            paid[c] = new long[Math.min(PAID_CHUNK_WORDS, words - c * PAID_CHUNK_WORDS)];
+        }
+        return paid;
+    }
+
+    // Read-only point-in-time view. Columns are append-only, so the view can
+    // share them outright; paid chunks are shared until this portfolio next
+    // changes them. Cost is proportional to size / 65536, not size.
+    public LoanPortfolio snapshot() {
+        if (frozen) {
+            return this;
+        }
+        LoanPortfolio view = new LoanPortfolio();
+        view.size = size;
+        view.principalCents = principalCents;
+        view.rateBps = rateBps;
+        view.interestCents = interestCents;
+        view.timeMonths = timeMonths;
+        view.dueEpochDay = dueEpochDay;
+        view.nameId = nameId;
+        view.names = names;
+        view.nameCount = nameCount;
+        view.paid = paid.clone();
+        view.paidShared = new boolean[paid.length];
+        Arrays.fill(view.paidShared, true);
+        view.paidWords = paidWords;
+        view.paidCount = paidCount;
+        view.frozen = true;
+        Arrays.fill(paidShared, true);
+        return view;
+    }
+
+    public boolean isSnapshot() {
+        return frozen;
+    }
+
+    // Raw column access for bulk persistence; callers must not modify them.
+    long[] principalCentsColumn() { return principalCents; }
+    int[] rateBpsColumn() { return rateBps; }
+    int[] timeMonthsColumn() { return timeMonths; }
+    int[] dueEpochDayColumn() { return dueEpochDay; }
+    int[] nameIdColumn() { return nameId; }
+    long[][] paidChunks() { return paid; }
+    String[] nameDictionary() { return names; }
+    int nameCount() { return nameCount; }
+
+    public int add(Loan loan) {
+        int id = addCents(loan.getName(), loan.getPrincipalCents(), loan.getRateBps(),
+                loan.getTimeMonths(), (int) loan.getDueDate().toEpochDay());
+        if (loan.isPaid()) {
+            setPaid(id, true);
+        }
+        return id;
+    }
+
+    public int add(String name, double principal, double rate, int timeMonths, LocalDate dueDate) {
+        return add(name, principal, rate, timeMonths, (int) dueDate.toEpochDay());
+    }
+
+    // Amounts are rounded to the cent and rates to the basis point.
+    public int add(String name, double principal, double rate, int timeMonths, int dueEpochDay) {
+        return addCents(name, Money.cents(principal), Money.basisPoints(rate), timeMonths, dueEpochDay);
+    }
+
+    public int addCents(String name, long principalCents, int rateBps, int timeMonths, int dueEpochDay) {
+        checkWritable();
+        ensureCapacity(size + 1);
+        int id = size;
+        this.principalCents[id] = principalCents;
+        this.rateBps[id] = rateBps;
+        this.interestCents[id] = Money.interest(principalCents, rateBps, timeMonths);
+        this.timeMonths[id] = timeMonths;
+        this.dueEpochDay[id] = dueEpochDay;
+        this.nameId[id] = intern(name);
+        size++;
+        for (Listener listener : listeners) {
+            listener.loanAdded(id);
+        }
+        return id;
+    }
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+    public int paidCount() { return paidCount; }
+    public int unpaidCount() { return size - paidCount; }
+
+    public String getName(int id) { return names[nameId[id]]; }
+    public double getPrincipal(int id) { return Money.toDouble(principalCents[id]); }
+    public double getRate(int id) { return Money.toDouble(rateBps[id]); }
+    public long getPrincipalCents(int id) { return principalCents[id]; }
+    public int getRateBps(int id) { return rateBps[id]; }
+    public int getTimeMonths(int id) { return timeMonths[id]; }
+    public int getDueEpochDay(int id) { return dueEpochDay[id]; }
+    public LocalDate getDueDate(int id) { return LocalDate.ofEpochDay(dueEpochDay[id]); }
+
+    public boolean isPaid(int id) {
+        return (paid[id >>> PAID_CHUNK_SHIFT][(id >>> 6) & (PAID_CHUNK_WORDS - 1)] & (1L << id)) != 0;
+    }
+
+    public void setPaid(int id, boolean isPaid) {
+        checkWritable();
+        if (isPaid(id) == isPaid) {
+            return;
+        }
+        int chunk = id >>> PAID_CHUNK_SHIFT;
+        if (paidShared[chunk]) {
+            paid[chunk] = paid[chunk].clone();
+            paidShared[chunk] = false;
+        }
+        paid[chunk][(id >>> 6) & (PAID_CHUNK_WORDS - 1)] ^= 1L << id;
+        paidCount += isPaid ? 1 : -1;
+        for (Listener listener : listeners) {
+            listener.paidChanged(id, isPaid);
+        }
+    }
+
+    // Same simple-interest formula as Loan.calculateInterest(), exact to the cent.
+    public long interestCents(int id) {
+        return interestCents[id];
+    }
+
+    public long totalCents(int id) {
+        return principalCents[id] + interestCents[id];
+    }
+
+    public double calculateInterest(int id) {
+        return Money.toDouble(interestCents(id));
+    }
+
+    public double calculateTotal(int id) {
+        return Money.toDouble(totalCents(id));
+    }
+
+    // Callers read the clock once per pass and hand in today's epoch day.
+    public long getDaysUntilDue(int id, long todayEpochDay) {
+        return dueEpochDay[id] - todayEpochDay;
+    }
+
+    public Loan toLoan(int id) {
+        Loan loan = Loan.ofCents(getName(id), principalCents[id], rateBps[id], timeMonths[id], getDueDate(id));
+        loan.setPaid(isPaid(id));
+        return loan;
+    }
+
+    public int[] unpaidIds() {
+        int[] ids = new int[unpaidCount()];
+        int n = 0;
+        int words = (size + 63) >>> 6;
+        for (int w = 0; w < words; w++) {
+            long unpaid = ~paid[w >>> (PAID_CHUNK_SHIFT - 6)][w & (PAID_CHUNK_WORDS - 1)];
+            while (unpaid != 0) {
+                int id = (w << 6) + Long.numberOfTrailingZeros(unpaid);
+                if (id >= size) {
+                    break;
+                }
+                ids[n++] = id;
+                unpaid &= unpaid - 1;
+            }
+        }
+        return ids;
+    }
+
+    // Approximate heap bytes held per loan, including spare capacity and the
+    // shared name dictionary.
+    public double bytesPerLoan() {
+        if (size == 0) {
+            return 0;
+        }
+        long bytes = (long) principalCents.length * (8 + 4 + 8 + 4 + 4 + 4) + (long) paidWords * 8;
+        for (int i = 0; i < nameCount; i++) {
+            bytes += 40 + names[i].length();
+        }
+        bytes += (long) names.length * 4;
+        return (double) bytes / size;
+    }
+
+    // Stable merge sort of loan ids, so ties keep insertion order the way
+    // List.sort did.
+    static void sort(int[] ids, IdComparator cmp) {
+        if (ids.length < 2) {
+            return;
+        }
+        int[] buf = ids.clone();
+        mergeSort(buf, ids, 0, ids.length, cmp);
+    }
+
+    private static void mergeSort(int[] src, int[] dst, int lo, int hi, IdComparator cmp) {
+        if (hi - lo < 8) {
+            for (int i = lo + 1; i < hi; i++) {
+                int v = dst[i];
+                int j = i - 1;
+                while (j >= lo && cmp.compare(dst[j], v) > 0) {
+                    dst[j + 1] = dst[j];
+                    j--;
+                }
+                dst[j + 1] = v;
+            }
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        mergeSort(dst, src, lo, mid, cmp);
+        mergeSort(dst, src, mid, hi, cmp);
+        if (cmp.compare(src[mid - 1], src[mid]) <= 0) {
+            System.arraycopy(src, lo, dst, lo, hi - lo);
+            return;
+        }
+        for (int i = lo, p = lo, q = mid; i < hi; i++) {
+            if (q >= hi || (p < mid && cmp.compare(src[p], src[q]) <= 0)) {
+                dst[i] = src[p++];
+            } else {
+                dst[i] = src[q++];
+            }
+        }
+    }
+
+    private int intern(String name) {
+        Integer existing = nameIds.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        if (nameCount == names.length) {
+            names = Arrays.copyOf(names, nameCount * 2);
+        }
+        names[nameCount] = name;
+        nameIds.put(name, nameCount);
+        return nameCount++;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed > principalCents.length) {
+            int capacity = Math.max(needed, principalCents.length + (principalCents.length >> 1));
+            principalCents = Arrays.copyOf(principalCents, capacity);
+            rateBps = Arrays.copyOf(rateBps, capacity);
+            interestCents = Arrays.copyOf(interestCents, capacity);
+            timeMonths = Arrays.copyOf(timeMonths, capacity);
+            dueEpochDay = Arrays.copyOf(dueEpochDay, capacity);
+            nameId = Arrays.copyOf(nameId, capacity);
+        }
+        int words = (needed + 63) >>> 6;
+        if (words > paidWords) {
+            growPaid(words);
+        }
+    }
+
+    // Full chunks stay at PAID_CHUNK_WORDS; only the last one grows by doubling.
+    private void growPaid(int words) {
+        int chunks = (words + PAID_CHUNK_WORDS - 1) / PAID_CHUNK_WORDS;
+        if (chunks > paid.length) {
+            int capacity = Math.max(chunks, paid.length * 2);
+            paid = Arrays.copyOf(paid, capacity);
+            paidShared = Arrays.copyOf(paidShared, capacity);
+        }
+        paidWords = 0;
+        for (int c = 0; c < chunks; c++) {
+            int want = c < chunks - 1 ? PAID_CHUNK_WORDS : words - c * PAID_CHUNK_WORDS;
+            long[] chunk = paid[c];
+            if (chunk == null || chunk.length < want) {
+                int length = c < chunks - 1 ? PAID_CHUNK_WORDS
+                        : Math.min(PAID_CHUNK_WORDS, Math.max(want, chunk == null ? 1 : chunk.length * 2));
+                paid[c] = chunk == null ? new long[length] : Arrays.copyOf(chunk, length);
+                paidShared[c] = false;
+            }
+            paidWords += paid[c].length;
+        }
+    }
+
+    private void checkWritable() {
+        if (frozen) {
+            throw new UnsupportedOperationException("Portfolio snapshot is read-only");
+        }
+    }
+}
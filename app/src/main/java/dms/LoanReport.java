@@ -0,0 +1,83 @@
+package dms;
+
+import java.util.List;
+
+// The menu's per-loan listings, rendered into a ReportWriter. Each takes an
+// offset and limit so a large book can be shown (or streamed) a page at a
+// time; the menu renders everything in one call.
+class LoanReport {
+    static final String TABLE_RULE =
+            "=======================================================================================";
+    static final String TABLE_HEADER = String.format("%-20s %-12s %-8s %-10s %-12s %-12s %-12s %-10s",
+            "Loan Name", "Principal", "Rate(%)", "Time(mo)", "Interest", "Total", "Due Date", "Status");
+
+    // "View All Loans" rows for ids [offset, offset + limit).
+    static void loanTable(ReportWriter out, LoanPortfolio loans, int offset, int limit) {
+        int end = (int) Math.min(loans.size(), (long) offset + limit);
+        for (int id = offset; id < end; id++) {
+            out.column(loans.getName(id), 20).spaces(1)
+               .centsColumn(loans.getPrincipalCents(id), 12).spaces(1)
+               .centsColumn(loans.getRateBps(id), 8).spaces(1)
+               .column(loans.getTimeMonths(id), 10).spaces(1)
+               .centsColumn(loans.interestCents(id), 12).spaces(1)
+               .centsColumn(loans.totalCents(id), 12).spaces(1)
+               .dateColumn(loans.getDueEpochDay(id), 12).spaces(1)
+               .column(loans.isPaid(id) ? "PAID" : "PENDING", 10)
+               .newline();
+        }
+    }
+
+    // "Mark Loan as Paid" choices, numbered from 1, for ids [offset, offset + limit).
+    static void paidToggleList(ReportWriter out, LoanPortfolio loans, int offset, int limit) {
+        int end = (int) Math.min(loans.size(), (long) offset + limit);
+        for (int id = offset; id < end; id++) {
+            out.integer(id + 1).text(". ").text(loans.getName(id))
+               .text(" - ").cents(loans.totalCents(id))
+               .text(loans.isPaid(id) ? " [PAID]" : " [PENDING]")
+               .newline();
+        }
+    }
+
+    // One priority page; ids[0] has rank firstRank (0 for the top loan).
+    static void priorityList(ReportWriter out, LoanPortfolio loans, int[] ids, int firstRank, long todayEpochDay) {
+        for (int i = 0; i < ids.length; i++) {
+            int id = ids[i];
+            out.text("Priority #").integer(firstRank + i + 1).text(": ").line(loans.getName(id));
+            out.text("  Principal: ").cents(loans.getPrincipalCents(id)).newline();
+            out.text("  Rate: ").cents(loans.getRateBps(id)).line("%");
+            out.text("  Total Amount: ").cents(loans.totalCents(id)).newline();
+            out.text("  Due: ").date(loans.getDueEpochDay(id))
+               .text(" (").integer(loans.getDaysUntilDue(id, todayEpochDay)).line(" days)");
+            out.newline();
+        }
+    }
+
+    static void alerts(ReportWriter out, LoanPortfolio loans, List<PaymentAlert> alerts) {
+        for (PaymentAlert alert : alerts) {
+            int id = alert.getLoanId();
+            long daysLeft = alert.getDaysLeft();
+
+            switch (alert.getTier()) {
+                case OVERDUE:
+                    out.text("OVERDUE: ").line(loans.getName(id));
+                    out.text("    Overdue by ").integer(Math.abs(daysLeft)).line(" day(s)");
+                    break;
+                case CRITICAL:
+                    out.text("CRITICAL: ").line(loans.getName(id));
+                    out.line("    Due TODAY!");
+                    break;
+                case HIGH:
+                    out.text("HIGH: ").line(loans.getName(id));
+                    out.line("    Due TOMORROW");
+                    break;
+                default:
+                    out.text("MEDIUM: ").line(loans.getName(id));
+                    out.text("    Due in ").integer(daysLeft).line(" days");
+            }
+
+            out.text("    Amount: ").cents(loans.totalCents(id)).newline();
+            out.text("    Due Date: ").date(loans.getDueEpochDay(id)).newline();
+            out.newline();
+        }
+    }
+}
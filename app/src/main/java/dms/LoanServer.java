@@ -0,0 +1,796 @@
+package dms;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// JSON over HTTP for the loan book, on the JDK's built-in server:
+//
+//   java [-Ddms.data=<dir>] [-Ddms.port=8080] dms.LoanServer
+//   java -Ddms.tenants=<dir> [-Ddms.residentLoans=4000000]
+//        [-Ddms.summaryLoans=4000000] dms.LoanServer
+//
+// With -Ddms.alerts=file:<path> or socket:<host>:<port> a single book also
+// pushes alerts there as loans cross the alert tiers (see AlertScheduler).
+//
+//   GET  /summary                          counts and totals
+//   GET  /loans?offset=0&limit=100         loans in id order
+//   GET  /loans/{id}
+//   POST /loans                            add loans: one JSON object, or JSON
+//                                          lines (application/x-ndjson)
+//   POST /loans/{id}/paid[?paid=true]      set paid; without ?paid it toggles
+//   GET  /loans/{id}/payments[?date=]      balance (as of date) and payment
+//                                          history, newest first
+//   POST /loans/{id}/payments[?amount=]    record a payment; without amount
+//                                          it pays the whole balance
+//   POST /payments/{event}/reversal        reverse an earlier payment
+//   GET  /alerts[?date=YYYY-MM-DD]         due-date alerts, most urgent first
+//   GET  /priority/avalanche?offset&limit  unpaid loans, highest rate first
+//   GET  /priority/snowball?offset&limit   unpaid loans, smallest principal first
+//   GET  /strategy?budget=2000             Avalanche vs Snowball recommendation
+//   GET  /plan?budget=2000[&millis=2000][&months=12]
+//                                          cheapest payoff order found within
+//                                          millis, with its first months of
+//                                          payments (see PayoffSolver)
+//   GET  /metrics                          Prometheus text: request latencies,
+//                                          alert tallies, book and JVM gauges
+//
+// With dms.tenants every customer has their own book in <dir>/<customerId>,
+// served under /customers/{customerId}/summary, /customers/{customerId}/loans
+// and so on; books are opened on demand and the least recently used are
+// closed once the resident-loan budget is exceeded (see PortfolioRegistry).
+// A customer's book is created by its first POST; reads of a customer
+// without one answer 404.
+//
+//   GET  /report[?date=YYYY-MM-DD]         exposure and overdue loans across
+//                                          all customers
+//
+// Every exchange runs on its own virtual thread when the JVM has them (21+)
+// and on a fixed pool otherwise. Reads use the book's published snapshot;
+// writes go through the book and answer once the journal's group commit has
+// made them durable. Responses are encoded into pooled JsonWriters and sent
+// with a known length in one write.
+class LoanServer implements HttpHandler {
+    static final int DEFAULT_PORT = 8080;
+    static final int DEFAULT_PAGE = 100;
+    static final int MAX_PAGE = 10_000;
+    static final int MAX_BODY_BYTES = 64 << 20;
+    static final int MAX_PLAN_MILLIS = 10_000;
+
+    private static final Set<String> ROUTE_WORDS = Set.of("summary", "loans", "paid", "payments", "reversal",
+            "alerts", "priority", "avalanche", "snowball", "strategy", "plan", "customers", "report",
+            "metrics");
+    private static final int POOLED_WRITERS = 256;
+    private static final int WRITER_CAPACITY = 16 << 10;
+
+    private final ConcurrentLoanBook book;
+    private final LoanStore store;
+    private final PortfolioRegistry registry;
+    private final ArrayBlockingQueue<JsonWriter> writers = new ArrayBlockingQueue<>(POOLED_WRITERS);
+    private HttpServer server;
+    private ExecutorService executor;
+
+    // The store may be null for an in-memory book.
+    LoanServer(ConcurrentLoanBook book, LoanStore store) {
+        this.book = book;
+        this.store = store;
+        this.registry = null;
+    }
+
+    LoanServer(PortfolioRegistry registry) {
+        this.book = null;
+        this.store = null;
+        this.registry = registry;
+    }
+
+    public static void main(String[] args) throws IOException {
+        String tenantDir = System.getProperty("dms.tenants");
+        if (tenantDir != null) {
+            serveTenants(Path.of(tenantDir));
+            return;
+        }
+        String dataDir = System.getProperty("dms.data");
+        int port = Integer.getInteger("dms.port", DEFAULT_PORT);
+        LoanStore store = dataDir != null ? LoanStore.open(Path.of(dataDir)) : null;
+        LoanPortfolio loans = store != null ? store.getLoans() : new LoanPortfolio();
+        ConcurrentLoanBook book = store != null
+                ? new ConcurrentLoanBook(store.getLedger(), store.takeOrders()) : new ConcurrentLoanBook(loans);
+        MetricsRegistry.GLOBAL.bind(book);
+        AlertScheduler alerts = AlertScheduler.startFromProperty(book);
+        LoanServer server = new LoanServer(book, store);
+        server.start(new InetSocketAddress(port));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.stop();
+                if (alerts != null) {
+                    alerts.close();
+                }
+                if (store != null) {
+                    store.close();
+                }
+            } catch (IOException e) {
+                System.err.println("WARNING: Could not save loans: " + e.getMessage());
+            }
+        }));
+        System.out.println("Serving " + loans.size() + " loans on http://localhost:" + server.getPort() + "/ (" +
+                           (server.isVirtual() ? "virtual threads" : "thread pool") + ")");
+    }
+
+    private static void serveTenants(Path root) throws IOException {
+        int port = Integer.getInteger("dms.port", DEFAULT_PORT);
+        long residentLoans = Long.getLong("dms.residentLoans", PortfolioRegistry.DEFAULT_RESIDENT_LOANS);
+        long summaryLoans = Long.getLong("dms.summaryLoans", PortfolioRegistry.DEFAULT_SUMMARY_LOANS);
+        PortfolioRegistry registry = new PortfolioRegistry(root, PortfolioRegistry.DEFAULT_PARTITIONS,
+                residentLoans, summaryLoans);
+        MetricsRegistry.GLOBAL.bind(registry);
+        LoanServer server = new LoanServer(registry);
+        server.start(new InetSocketAddress(port));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.stop();
+                registry.close();
+            } catch (IOException e) {
+                System.err.println("WARNING: Could not save loans: " + e.getMessage());
+            }
+        }));
+        System.out.println("Serving " + registry.getCustomerCount() + " customers on http://localhost:" +
+                           server.getPort() + "/ (" + (server.isVirtual() ? "virtual threads" : "thread pool") + ")");
+    }
+
+    public void start(InetSocketAddress address) throws IOException {
+        // Small responses would otherwise wait on Nagle's algorithm between the
+        // header and body writes of a keep-alive exchange
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        executor = newRequestExecutor();
+        server = HttpServer.create(address, 1024);
+        server.createContext("/", this);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public boolean isVirtual() {
+        return !(executor instanceof java.util.concurrent.ThreadPoolExecutor);
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() is looked up reflectively so
+    // the server still builds and runs on Java 17.
+    static ExecutorService newRequestExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(Math.max(16, 4 * Runtime.getRuntime().availableProcessors()));
+        }
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        MetricsRegistry.Span span = MetricsRegistry.GLOBAL.start(
+                operation(exchange.getRequestMethod(), exchange.getRequestURI().getPath()));
+        try {
+            if (exchange.getRequestURI().getPath().equals("/metrics")) {
+                metrics(exchange);
+            } else {
+                respond(exchange);
+            }
+        } finally {
+            span.end(book != null ? book.snapshot().size() : 0);
+        }
+    }
+
+    private void metrics(HttpExchange exchange) throws IOException {
+        byte[] body = MetricsRegistry.GLOBAL.toPrometheus().getBytes(StandardCharsets.UTF_8);
+        try {
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        JsonWriter json = writers.poll();
+        if (json == null) {
+            json = new JsonWriter(WRITER_CAPACITY);
+        }
+        try {
+            int status;
+            try {
+                status = route(exchange, json.reset());
+            } catch (IndexOutOfBoundsException e) {
+                status = error(json.reset(), 404, e.getMessage());
+            } catch (IllegalArgumentException | UncheckedIOException e) {
+                status = error(json.reset(), 400, e.getMessage());
+            } catch (RuntimeException e) {
+                status = error(json.reset(), 500, e.toString());
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, json.size());
+            try (OutputStream out = exchange.getResponseBody()) {
+                json.writeTo(out);
+            }
+        } finally {
+            exchange.close();
+            writers.offer(json);
+        }
+    }
+
+    private int route(HttpExchange exchange, JsonWriter json) throws IOException {
+        String method = exchange.getRequestMethod();
+        String[] path = exchange.getRequestURI().getPath().split("/");
+        String resource = path.length > 1 ? path[1] : "";
+
+        if (registry != null && resource.equals("customers") && path.length > 3) {
+            // Only writes create a customer; reading an unknown one is a 404
+            String customerId = customerId(path[2]);
+            try (PortfolioRegistry.Lease lease = method.equals("POST") ? registry.acquire(customerId)
+                                                                       : registry.lookup(customerId)) {
+                return routeBook(exchange, json, lease.getBook(), lease.getStore(), path, 3);
+            }
+        }
+        if (registry != null && resource.equals("report") && path.length == 2) {
+            return method.equals("GET") ? report(json, exchange.getRequestURI().getRawQuery())
+                                        : notAllowed(json, method);
+        }
+        if (book != null) {
+            return routeBook(exchange, json, book, store, path, 1);
+        }
+        return error(json, 404, "No such resource: " + exchange.getRequestURI().getPath());
+    }
+
+    // path[first] names the resource within the book: /summary, /loans, ...
+    private int routeBook(HttpExchange exchange, JsonWriter json, ConcurrentLoanBook book, LoanStore store,
+                          String[] path, int first) throws IOException {
+        String method = exchange.getRequestMethod();
+        String query = exchange.getRequestURI().getRawQuery();
+        int length = path.length - first + 1;
+        String resource = length > 1 ? path[first] : "";
+        boolean get = method.equals("GET");
+        boolean post = method.equals("POST");
+
+        if (resource.equals("summary") && length == 2) {
+            return get ? summary(json, book) : notAllowed(json, method);
+        }
+        if (resource.equals("loans") && length == 2) {
+            if (get) {
+                return listLoans(json, book, query);
+            }
+            return post ? addLoans(exchange, json, book, store) : notAllowed(json, method);
+        }
+        if (resource.equals("loans") && length == 3) {
+            return get ? loan(json, book, loanId(path[first + 1])) : notAllowed(json, method);
+        }
+        if (resource.equals("loans") && length == 4 && path[first + 2].equals("paid")) {
+            return post ? markPaid(json, book, store, loanId(path[first + 1]), query) : notAllowed(json, method);
+        }
+        if (resource.equals("loans") && length == 4 && path[first + 2].equals("payments")) {
+            if (get) {
+                return payments(json, book, loanId(path[first + 1]), query);
+            }
+            return post ? pay(json, book, store, loanId(path[first + 1]), query) : notAllowed(json, method);
+        }
+        if (resource.equals("payments") && length == 4 && path[first + 2].equals("reversal")) {
+            return post ? reversePayment(json, book, store, eventId(path[first + 1]), query)
+                        : notAllowed(json, method);
+        }
+        if (resource.equals("alerts") && length == 2) {
+            return get ? alerts(json, book, query) : notAllowed(json, method);
+        }
+        if (resource.equals("priority") && length == 3
+                && (path[first + 1].equals("avalanche") || path[first + 1].equals("snowball"))) {
+            return get ? priority(json, book, path[first + 1], query) : notAllowed(json, method);
+        }
+        if (resource.equals("strategy") && length == 2) {
+            return get ? strategy(json, book, query) : notAllowed(json, method);
+        }
+        if (resource.equals("plan") && length == 2) {
+            return get ? plan(json, book, query) : notAllowed(json, method);
+        }
+        return error(json, 404, "No such resource: " + exchange.getRequestURI().getPath());
+    }
+
+    private int report(JsonWriter json, String query) {
+        long today = dayParam(query);
+        ExposureReport report = registry.report(today);
+        json.beginObject()
+            .name("date").date(today)
+            .name("customers").value(report.getCustomers())
+            .name("residentCustomers").value(report.getResidentCustomers())
+            .name("loans").value(report.getLoans())
+            .name("unpaid").value(report.getUnpaidLoans())
+            .name("exposure").cents(report.getExposureCents())
+            .name("overdue").value(report.getOverdueLoans())
+            .name("overdueAmount").cents(report.getOverdueCents())
+            .endObject();
+        return 200;
+    }
+
+    private int summary(JsonWriter json, ConcurrentLoanBook book) {
+        PaymentLedger.Totals totals = book.totals();
+        json.beginObject()
+            .name("loans").value(totals.getLoanCount())
+            .name("paid").value(totals.getPaidCount())
+            .name("unpaid").value(totals.getUnpaidCount())
+            .name("totalPrincipal").cents(totals.getPrincipalCents())
+            .name("totalInterest").cents(totals.getInterestCents())
+            .name("totalAmountDue").cents(totals.getTotalCents())
+            .name("received").cents(totals.getReceivedCents())
+            .name("outstanding").cents(totals.getOutstandingCents())
+            .endObject();
+        return 200;
+    }
+
+    private int listLoans(JsonWriter json, ConcurrentLoanBook book, String query) {
+        LoanPortfolio loans = book.snapshot();
+        int offset = intParam(query, "offset", 0);
+        int limit = pageLimit(query);
+        int end = (int) Math.min(loans.size(), (long) offset + limit);
+        long today = CalendarDay.SYSTEM.today();
+        json.beginObject()
+            .name("total").value(loans.size())
+            .name("offset").value(offset)
+            .name("loans").beginArray();
+        for (int id = offset; id < end; id++) {
+            loan(json, loans, id, today);
+        }
+        json.endArray().endObject();
+        return 200;
+    }
+
+    private int loan(JsonWriter json, ConcurrentLoanBook book, int id) {
+        LoanPortfolio loans = book.snapshot();
+        if (id >= loans.size()) {
+            throw new IndexOutOfBoundsException("No loan with id " + id);
+        }
+        loan(json, loans, id, CalendarDay.SYSTEM.today());
+        return 200;
+    }
+
+    // A single JSON object (pretty-printed or not) or one object per line.
+    private int addLoans(HttpExchange exchange, JsonWriter json, ConcurrentLoanBook book, LoanStore store)
+            throws IOException {
+        byte[] body = exchange.getRequestBody().readNBytes(MAX_BODY_BYTES + 1);
+        if (body.length > MAX_BODY_BYTES) {
+            return error(json, 413, "Request body is larger than " + MAX_BODY_BYTES + " bytes");
+        }
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType == null || !contentType.contains("ndjson")) {
+            for (int i = 0; i < body.length; i++) {
+                if (body[i] == '\n' || body[i] == '\r') {
+                    body[i] = ' ';
+                }
+            }
+        }
+        LoanImporter.Result[] result = new LoanImporter.Result[1];
+        int[] firstId = new int[1];
+        LoanPortfolio loans = book.update(writable -> {
+            firstId[0] = writable.size();
+            try {
+                result[0] = new LoanImporter(writable)
+                        .importStream(new ByteArrayInputStream(body), LoanImporter.Format.JSON_LINES);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        persist(book, store);
+
+        long today = CalendarDay.SYSTEM.today();
+        json.beginObject()
+            .name("imported").value(result[0].getImported())
+            .name("rejected").value(result[0].getRejected())
+            .name("errors").beginArray();
+        for (String error : result[0].getErrors()) {
+            json.value(error);
+        }
+        json.endArray().name("loans").beginArray();
+        int end = (int) Math.min(loans.size(), firstId[0] + Math.min(result[0].getImported(), MAX_PAGE));
+        for (int id = firstId[0]; id < end; id++) {
+            loan(json, loans, id, today);
+        }
+        json.endArray().endObject();
+        return result[0].getImported() > 0 ? 201 : 400;
+    }
+
+    private int markPaid(JsonWriter json, ConcurrentLoanBook book, LoanStore store, int id, String query)
+            throws IOException {
+        String paid = param(query, "paid");
+        if (paid == null) {
+            book.togglePaid(id);
+        } else if (paid.equals("true") || paid.equals("false")) {
+            book.setPaid(id, paid.equals("true"));
+        } else {
+            throw new IllegalArgumentException("paid must be true or false");
+        }
+        persist(book, store);
+        loan(json, book.snapshot(), id, CalendarDay.SYSTEM.today());
+        return 200;
+    }
+
+    // Serialized under the book's read lock, so the balance and the history
+    // belong to the same state.
+    private int payments(JsonWriter json, ConcurrentLoanBook book, int id, String query) {
+        String date = param(query, "date");
+        int limit = pageLimit(query);
+        book.readLedger(ledger -> {
+            if (id >= ledger.getLoans().size()) {
+                throw new IndexOutOfBoundsException("No loan with id " + id);
+            }
+            json.beginObject()
+                .name("id").value(id)
+                .name("total").cents(ledger.getLoans().totalCents(id))
+                .name("paid").cents(ledger.getPaidCents(id))
+                .name("balance").cents(ledger.getBalanceCents(id));
+            if (date != null) {
+                long day = epochDay(date);
+                long paid = ledger.getPaidCentsAt(id, day);
+                json.name("date").date(day)
+                    .name("paidAtDate").cents(paid)
+                    .name("balanceAtDate").cents(ledger.getLoans().totalCents(id) - paid);
+            }
+            json.name("payments").beginArray();
+            int n = 0;
+            for (int e = ledger.lastEvent(id); e >= 0 && n < limit; e = ledger.getPreviousEvent(e), n++) {
+                payment(json.beginObject(), ledger, e).endObject();
+            }
+            json.endArray().endObject();
+            return null;
+        });
+        return 200;
+    }
+
+    private int pay(JsonWriter json, ConcurrentLoanBook book, LoanStore store, int id, String query)
+            throws IOException {
+        String amount = param(query, "amount");
+        long day = dayParam(query);
+        int event = amount == null ? book.payBalance(id, day)
+                                   : book.pay(id, Money.cents(Double.parseDouble(amount)), day);
+        persist(book, store);
+        return paymentEvent(json, book, event);
+    }
+
+    private int reversePayment(JsonWriter json, ConcurrentLoanBook book, LoanStore store, int event, String query)
+            throws IOException {
+        int reversal = book.reversePayment(event, dayParam(query));
+        persist(book, store);
+        return paymentEvent(json, book, reversal);
+    }
+
+    private static int paymentEvent(JsonWriter json, ConcurrentLoanBook book, int event) {
+        book.readLedger(ledger -> {
+            int id = ledger.getLoanId(event);
+            payment(json.beginObject(), ledger, event)
+                .name("balance").cents(ledger.getBalanceCents(id))
+                .name("status").value(ledger.getLoans().isPaid(id) ? "PAID" : "PENDING")
+                .endObject();
+            return null;
+        });
+        return 201;
+    }
+
+    // The event's fields, inside an object the caller opens and closes.
+    private static JsonWriter payment(JsonWriter json, PaymentLedger ledger, int event) {
+        json.name("event").value(event)
+            .name("loan").value(ledger.getLoanId(event))
+            .name("kind").value(ledger.getKind(event).name())
+            .name("amount").cents(ledger.getAmountCents(event))
+            .name("date").date(ledger.getEpochDay(event));
+        int linked = ledger.getLinkedEvent(event);
+        if (linked >= 0) {
+            json.name(ledger.getKind(event) == PaymentLedger.Kind.REVERSAL ? "reverses" : "reversedBy").value(linked);
+        }
+        return json;
+    }
+
+    private int alerts(JsonWriter json, ConcurrentLoanBook book, String query) {
+        long today = dayParam(query);
+        List<PaymentAlert> alerts = book.alerts(today);
+        MetricsRegistry.GLOBAL.countAlerts(alerts);
+        LoanPortfolio loans = book.snapshot();
+        json.beginObject()
+            .name("date").date(today)
+            .name("alerts").beginArray();
+        for (PaymentAlert alert : alerts) {
+            int id = alert.getLoanId();
+            json.beginObject()
+                .name("tier").value(alert.getTier().name())
+                .name("daysLeft").value(alert.getDaysLeft())
+                .name("id").value(id)
+                .name("name").value(loans.getName(id))
+                .name("total").cents(loans.totalCents(id))
+                .name("dueDate").date(loans.getDueEpochDay(id))
+                .endObject();
+        }
+        json.endArray().endObject();
+        return 200;
+    }
+
+    private int priority(JsonWriter json, ConcurrentLoanBook book, String strategy, String query) {
+        int offset = intParam(query, "offset", 0);
+        int limit = pageLimit(query);
+        ConcurrentLoanBook.Ranking ranking = strategy.equals("avalanche")
+                ? book.avalanche(offset, limit)
+                : book.snowball(offset, limit);
+        LoanPortfolio loans = ranking.getLoans();
+        long today = CalendarDay.SYSTEM.today();
+        json.beginObject()
+            .name("strategy").value(strategy.toUpperCase())
+            .name("total").value(ranking.getTotal())
+            .name("offset").value(offset)
+            .name("loans").beginArray();
+        for (int id : ranking.getIds()) {
+            loan(json, loans, id, today);
+        }
+        json.endArray().endObject();
+        return 200;
+    }
+
+    private int strategy(JsonWriter json, ConcurrentLoanBook book, String query) {
+        String budget = param(query, "budget");
+        if (budget == null) {
+            throw new IllegalArgumentException("budget is required, e.g. /strategy?budget=2000");
+        }
+        double monthlyBudget = PayoffSimulator.checkBudget(Double.parseDouble(budget));
+        PortfolioStats stats = book.summary(PortfolioAggregator.Selection.UNPAID);
+        LocalDate start = CalendarDay.SYSTEM.todayDate();
+        json.beginObject()
+            .name("monthlyBudget").money(monthlyBudget)
+            .name("unpaidLoans").value(stats.getUnpaidCount());
+        if (stats.getUnpaidCount() == 0) {
+            json.name("recommendation").value("DEBT_FREE").endObject();
+            return 200;
+        }
+        StrategyAdvice advice = book.advise(new PayoffSimulator(), monthlyBudget);
+        json.name("urgentLoans").value(book.countDueOnOrBefore(start.toEpochDay() + 7))
+            .name("averageRate").decimal(stats.getRate().getAverage())
+            .name("minRate").decimal(stats.getRate().getMin())
+            .name("maxRate").decimal(stats.getRate().getMax())
+            .name("smallestLoan").money(stats.getPrincipal().getMin())
+            .name("averageLoan").money(stats.getPrincipal().getAverage())
+            .name("minimumPayments").money(advice.getMinimumPayments())
+            .name("belowMinimum").value(advice.isBelowMinimum())
+            .name("recommendation").value(advice.getChoice().name())
+            .name("interestSavedByAvalanche").money(advice.getSavings());
+        payoff(json.name("avalanche"), advice.getAvalanche(), start);
+        payoff(json.name("snowball"), advice.getSnowball(), start);
+        json.endObject();
+        return 200;
+    }
+
+    private int plan(JsonWriter json, ConcurrentLoanBook book, String query) {
+        String budget = param(query, "budget");
+        if (budget == null) {
+            throw new IllegalArgumentException("budget is required, e.g. /plan?budget=2000");
+        }
+        PayoffSolver.Config config = new PayoffSolver.Config(Double.parseDouble(budget));
+        config.timeBudgetMillis = Math.min(MAX_PLAN_MILLIS,
+                intParam(query, "millis", (int) config.timeBudgetMillis));
+        LocalDate start = CalendarDay.SYSTEM.todayDate();
+        LoanPortfolio loans = book.snapshot();
+        PayoffPlan plan = new PayoffSolver(config).solve(loans, start);
+        PayoffResult result = plan.getResult();
+        json.beginObject()
+            .name("monthlyBudget").money(plan.getMonthlyBudget())
+            .name("unpaidLoans").value(result.getLoanCount())
+            .name("totalInterest").money(plan.getTotalInterest())
+            .name("lateFees").money(plan.getTotalFees())
+            .name("totalCost").money(plan.getTotalCost())
+            .name("baseline").value(plan.getBaseline())
+            .name("baselineCost").money(plan.getBaselineCost())
+            .name("savings").money(plan.getSavings())
+            .name("searched").value(plan.isSearched())
+            .name("optimal").value(plan.isOptimal())
+            .name("nodes").value(plan.getNodes())
+            .name("elapsedMillis").value(plan.getElapsedNanos() / 1_000_000);
+        payoff(json.name("payoff"), result, start);
+        json.name("order").beginArray();
+        for (int i = 0; i < result.getLoanCount(); i++) {
+            json.value(result.getLoanId(i));
+        }
+        json.endArray().name("months").beginArray();
+        int months = Math.min(plan.getMonths(), intParam(query, "months", 12));
+        for (int month = 1; month <= months; month++) {
+            json.beginObject()
+                .name("month").value(month)
+                .name("date").date(start.plusMonths(month).toEpochDay())
+                .name("remaining").money(plan.getRemaining(month))
+                .name("payments").beginArray();
+            for (int k = 0; k < plan.getPaymentCount(month); k++) {
+                json.beginObject()
+                    .name("id").value(plan.getPaymentLoanId(month, k))
+                    .name("amount").money(plan.getPaymentAmount(month, k))
+                    .endObject();
+            }
+            json.endArray().endObject();
+        }
+        json.endArray().endObject();
+        return 200;
+    }
+
+    private static void persist(ConcurrentLoanBook book, LoanStore store) throws IOException {
+        if (store != null) {
+            book.sync(store);
+        }
+    }
+
+    private static void payoff(JsonWriter json, PayoffResult result, LocalDate start) {
+        json.beginObject()
+            .name("totalInterest").money(result.getTotalInterest())
+            .name("totalPaid").money(result.getTotalPaid())
+            .name("debtFree").value(result.isDebtFree());
+        if (result.isDebtFree()) {
+            json.name("monthsToDebtFree").value(result.getMonthsToDebtFree())
+                .name("debtFreeDate").date(result.getDebtFreeDate(start).toEpochDay());
+        }
+        json.name("firstPayoffMonth").value(result.getFirstPayoffMonth())
+            .name("shortfallMonths").value(result.getShortfallMonths())
+            .endObject();
+    }
+
+    private static void loan(JsonWriter json, LoanPortfolio loans, int id, long today) {
+        json.beginObject()
+            .name("id").value(id)
+            .name("name").value(loans.getName(id))
+            .name("principal").cents(loans.getPrincipalCents(id))
+            .name("rate").decimal(loans.getRate(id))
+            .name("timeMonths").value(loans.getTimeMonths(id))
+            .name("interest").cents(loans.interestCents(id))
+            .name("total").cents(loans.totalCents(id))
+            .name("dueDate").date(loans.getDueEpochDay(id))
+            .name("daysUntilDue").value(loans.getDaysUntilDue(id, today))
+            .name("status").value(loans.isPaid(id) ? "PAID" : "PENDING")
+            .endObject();
+    }
+
+    private static int error(JsonWriter json, int status, String message) {
+        json.beginObject().name("error").value(message).endObject();
+        return status;
+    }
+
+    private static int notAllowed(JsonWriter json, String method) {
+        return error(json, 405, "Method " + method + " is not allowed here");
+    }
+
+    // Label for the request's timing series: the route with ids replaced,
+    // e.g. "POST /customers/{customer}/loans/{id}/paid". Unknown paths share
+    // one label, and so do methods other than GET and POST, so scanners
+    // cannot create unbounded series.
+    static String operation(String method, String path) {
+        if (!method.equals("GET") && !method.equals("POST")) {
+            return "other";
+        }
+        StringBuilder label = new StringBuilder(method).append(' ');
+        String[] segments = path.split("/");
+        for (int i = 1; i < segments.length; i++) {
+            String segment = segments[i];
+            label.append('/');
+            if (i == 2 && segments[1].equals("customers")) {
+                label.append("{customer}");
+            } else if (!segment.isEmpty() && segment.chars().allMatch(Character::isDigit)) {
+                label.append("{id}");
+            } else if (ROUTE_WORDS.contains(segment)) {
+                label.append(segment);
+            } else {
+                return method + " other";
+            }
+        }
+        return label.toString();
+    }
+
+    private static String customerId(String segment) {
+        if (!PortfolioRegistry.isValidId(segment)) {
+            throw new IndexOutOfBoundsException("No customer with id " + segment);
+        }
+        return segment;
+    }
+
+    private static int loanId(String segment) {
+        try {
+            int id = Integer.parseInt(segment);
+            if (id < 0) {
+                throw new IndexOutOfBoundsException("No loan with id " + id);
+            }
+            return id;
+        } catch (NumberFormatException e) {
+            throw new IndexOutOfBoundsException("No loan with id " + segment);
+        }
+    }
+
+    private static int eventId(String segment) {
+        try {
+            return Integer.parseInt(segment);
+        } catch (NumberFormatException e) {
+            throw new IndexOutOfBoundsException("No payment with id " + segment);
+        }
+    }
+
+    // ?date=YYYY-MM-DD, or today.
+    private static long dayParam(String query) {
+        String date = param(query, "date");
+        return date != null ? epochDay(date) : CalendarDay.SYSTEM.today();
+    }
+
+    // A malformed date is the client's mistake, so 400 rather than 500.
+    private static long epochDay(String date) {
+        try {
+            return LocalDate.parse(date).toEpochDay();
+        } catch (DateTimeException e) {
+            throw new IllegalArgumentException("Invalid date (expected YYYY-MM-DD): " + date);
+        }
+    }
+
+    private static int pageLimit(String query) {
+        int limit = intParam(query, "limit", DEFAULT_PAGE);
+        if (limit > MAX_PAGE) {
+            throw new IllegalArgumentException("limit must be at most " + MAX_PAGE);
+        }
+        return limit;
+    }
+
+    private static int intParam(String query, String name, int defaultValue) {
+        String value = param(query, name);
+        if (value == null) {
+            return defaultValue;
+        }
+        int parsed = Integer.parseInt(value);
+        if (parsed < 0) {
+            throw new IllegalArgumentException(name + " must not be negative");
+        }
+        return parsed;
+    }
+
+    private static String param(String query, String name) {
+        if (query == null) {
+            return null;
+        }
+        int start = 0;
+        while (start <= query.length()) {
+            int end = query.indexOf('&', start);
+            if (end < 0) {
+                end = query.length();
+            }
+            int equals = query.indexOf('=', start);
+            if (equals > start && equals < end && query.regionMatches(start, name, 0, name.length())
+                    && equals - start == name.length()) {
+                return URLDecoder.decode(query.substring(equals + 1, end), StandardCharsets.UTF_8);
+            }
+            start = end + 1;
+        }
+        return null;
+    }
+}
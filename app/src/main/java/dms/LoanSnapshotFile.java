@@ -0,0 +1,238 @@
+package dms;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Binary snapshot of a LoanPortfolio. The file mirrors the in-memory columns:
+// a 64-byte header followed by one fixed-width section per column and the name
+// dictionary. Each section is memory-mapped and bulk-copied straight into a
+// primitive array, so opening a file is a handful of memcpys rather than a
+// parse.
+//
+//   header   magic "DMSLOANS", version, generation, loan count, name count,
+//            name section bytes
+//   columns  principal cents long[n], rate basis points int[n],
+//            timeMonths int[n], dueEpochDay int[n], nameId int[n],
+//            paid long[(n + 63) / 64]
+//   names    per name: int byte length + UTF-8 bytes
+//   orders   loan ids by rate int[n], by principal int[n], by due date int[n]
+//            (LoanOrders), so indexes over the loaded book need no sort
+//
+// All values are little-endian and every section starts on an 8-byte boundary.
+// Version 1 files, which held principal and rate as double[n], are still read
+// and converted to cents and basis points; version 1 and 2 files have no
+// orders.
+class LoanSnapshotFile {
+    static final long MAGIC = 0x534E414F4C534D44L; // "DMSLOANS" read little-endian
+    static final int VERSION = 3;
+    static final int VERSION_DOUBLE_COLUMNS = 1;
+    static final int VERSION_NO_ORDERS = 2;
+    static final int HEADER_BYTES = 64;
+
+    private final long generation;
+    private final LoanPortfolio loans;
+    private final LoanOrders orders;
+
+    private LoanSnapshotFile(long generation, LoanPortfolio loans, LoanOrders orders) {
+        this.generation = generation;
+        this.loans = loans;
+        this.orders = orders;
+    }
+
+    // Journal generation that this snapshot already includes.
+    public long getGeneration() { return generation; }
+    public LoanPortfolio getLoans() { return loans; }
+
+    // Orders of the loans in the file, or null for files without them.
+    public LoanOrders getOrders() { return orders; }
+
+    public static LoanSnapshotFile read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException(file + " is not a loan snapshot file");
+            }
+            ByteBuffer header = map(channel, FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getLong(0) != MAGIC) {
+                throw new IOException(file + " is not a loan snapshot file");
+            }
+            int version = header.getInt(8);
+            if (version != VERSION && version != VERSION_NO_ORDERS && version != VERSION_DOUBLE_COLUMNS) {
+                throw new IOException(file + " has unsupported snapshot version " + version);
+            }
+            long generation = header.getLong(16);
+            int n = header.getInt(24);
+            int nameCount = header.getInt(28);
+            long nameBytes = header.getLong(32);
+            // The last order section ends the file unpadded
+            long orderBytes = version == VERSION ? align(nameBytes) - nameBytes + 2 * align(4L * n) + 4L * n : 0;
+            if (channel.size() < HEADER_BYTES + columnBytes(version, n) + nameBytes + orderBytes) {
+                throw new IOException(file + " is truncated");
+            }
+
+            int capacity = Math.max(n, 16);
+            long[] principalCents = new long[capacity];
+            int[] rateBps = new int[capacity];
+            int[] timeMonths = new int[capacity];
+            int[] dueEpochDay = new int[capacity];
+            int[] nameId = new int[capacity];
+            long[][] paid = LoanPortfolio.newPaidChunks(n);
+
+            long offset = HEADER_BYTES;
+            if (version == VERSION_DOUBLE_COLUMNS) {
+                DoubleBuffer principal = map(channel, FileChannel.MapMode.READ_ONLY, offset, 8L * n).asDoubleBuffer();
+                offset += align(8L * n);
+                DoubleBuffer rate = map(channel, FileChannel.MapMode.READ_ONLY, offset, 8L * n).asDoubleBuffer();
+                offset += align(8L * n);
+                for (int i = 0; i < n; i++) {
+                    principalCents[i] = Money.cents(principal.get(i));
+                    rateBps[i] = Money.basisPoints(rate.get(i));
+                }
+            } else {
+                map(channel, FileChannel.MapMode.READ_ONLY, offset, 8L * n).asLongBuffer().get(principalCents, 0, n);
+                offset += align(8L * n);
+                map(channel, FileChannel.MapMode.READ_ONLY, offset, 4L * n).asIntBuffer().get(rateBps, 0, n);
+                offset += align(4L * n);
+            }
+            map(channel, FileChannel.MapMode.READ_ONLY, offset, 4L * n).asIntBuffer().get(timeMonths, 0, n);
+            offset += align(4L * n);
+            map(channel, FileChannel.MapMode.READ_ONLY, offset, 4L * n).asIntBuffer().get(dueEpochDay, 0, n);
+            offset += align(4L * n);
+            map(channel, FileChannel.MapMode.READ_ONLY, offset, 4L * n).asIntBuffer().get(nameId, 0, n);
+            offset += align(4L * n);
+            LongBuffer paidWords = map(channel, FileChannel.MapMode.READ_ONLY, offset, 8L * words(n)).asLongBuffer();
+            for (long[] chunk : paid) {
+                paidWords.get(chunk, 0, Math.min(chunk.length, paidWords.remaining()));
+            }
+            offset += 8L * words(n);
+
+            String[] names = new String[Math.max(nameCount, 16)];
+            ByteBuffer section = map(channel, FileChannel.MapMode.READ_ONLY, offset, nameBytes);
+            byte[] scratch = new byte[64];
+            for (int i = 0; i < nameCount; i++) {
+                int length = section.getInt();
+                if (length > scratch.length) {
+                    scratch = new byte[length];
+                }
+                section.get(scratch, 0, length);
+                names[i] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+            }
+            offset += align(nameBytes);
+
+            LoanOrders orders = null;
+            if (version == VERSION) {
+                int[][] columns = new int[3][n];
+                for (int[] column : columns) {
+                    map(channel, FileChannel.MapMode.READ_ONLY, offset, 4L * n).asIntBuffer().get(column);
+                    offset += align(4L * n);
+                }
+                orders = new LoanOrders(columns[0], columns[1], columns[2]);
+            }
+            return new LoanSnapshotFile(generation, LoanPortfolio.fromColumns(
+                    n, principalCents, rateBps, timeMonths, dueEpochDay, nameId, paid, names, nameCount), orders);
+        }
+    }
+
+    // Writes the portfolio and its orders to the given file, replacing any
+    // previous contents, and forces it to disk.
+    public static void write(Path file, LoanPortfolio loans, long generation) throws IOException {
+        int n = loans.size();
+        LoanOrders orders = LoanOrders.of(loans);
+        int nameCount = loans.nameCount();
+        String[] dictionary = loans.nameDictionary();
+        byte[][] encoded = new byte[nameCount][];
+        long nameBytes = 0;
+        for (int i = 0; i < nameCount; i++) {
+            encoded[i] = dictionary[i].getBytes(StandardCharsets.UTF_8);
+            nameBytes += 4 + encoded[i].length;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer header = map(channel, FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+            header.putLong(0, MAGIC);
+            header.putInt(8, VERSION);
+            header.putLong(16, generation);
+            header.putInt(24, n);
+            header.putInt(28, nameCount);
+            header.putLong(32, nameBytes);
+            header.force();
+
+            long offset = HEADER_BYTES;
+            MappedByteBuffer section = map(channel, FileChannel.MapMode.READ_WRITE, offset, 8L * n);
+            section.asLongBuffer().put(loans.principalCentsColumn(), 0, n);
+            section.force();
+            offset += align(8L * n);
+            section = map(channel, FileChannel.MapMode.READ_WRITE, offset, 4L * n);
+            section.asIntBuffer().put(loans.rateBpsColumn(), 0, n);
+            section.force();
+            offset += align(4L * n);
+            section = map(channel, FileChannel.MapMode.READ_WRITE, offset, 4L * n);
+            section.asIntBuffer().put(loans.timeMonthsColumn(), 0, n);
+            section.force();
+            offset += align(4L * n);
+            section = map(channel, FileChannel.MapMode.READ_WRITE, offset, 4L * n);
+            section.asIntBuffer().put(loans.dueEpochDayColumn(), 0, n);
+            section.force();
+            offset += align(4L * n);
+            section = map(channel, FileChannel.MapMode.READ_WRITE, offset, 4L * n);
+            section.asIntBuffer().put(loans.nameIdColumn(), 0, n);
+            section.force();
+            offset += align(4L * n);
+            section = map(channel, FileChannel.MapMode.READ_WRITE, offset, 8L * words(n));
+            LongBuffer paidWords = section.asLongBuffer();
+            for (long[] chunk : loans.paidChunks()) {
+                if (chunk == null || !paidWords.hasRemaining()) {
+                    break;
+                }
+                paidWords.put(chunk, 0, Math.min(chunk.length, paidWords.remaining()));
+            }
+            section.force();
+            offset += 8L * words(n);
+
+            section = map(channel, FileChannel.MapMode.READ_WRITE, offset, nameBytes);
+            for (byte[] name : encoded) {
+                section.putInt(name.length);
+                section.put(name);
+            }
+            section.force();
+            offset += align(nameBytes);
+
+            for (int[] column : new int[][] {orders.getByRate(), orders.getByPrincipal(), orders.getByDueDate()}) {
+                section = map(channel, FileChannel.MapMode.READ_WRITE, offset, 4L * n);
+                section.asIntBuffer().put(column, 0, n);
+                section.force();
+                offset += align(4L * n);
+            }
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, FileChannel.MapMode mode, long offset, long length)
+            throws IOException {
+        MappedByteBuffer buffer = channel.map(mode, offset, length);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    private static long columnBytes(int version, int n) {
+        if (version == VERSION_DOUBLE_COLUMNS) {
+            return 2 * align(8L * n) + 3 * align(4L * n) + 8L * words(n);
+        }
+        return align(8L * n) + 4 * align(4L * n) + 8L * words(n);
+    }
+
+    private static int words(int n) {
+        return (n + 63) >>> 6;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
@@ -0,0 +1,417 @@
+package dms;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+// Durable home of a LoanPortfolio in a directory:
+//
+//   loans.dat         snapshot (LoanSnapshotFile) covering journal
+//                     generations before its own
+//   loans.journal     changes since that snapshot (LoanJournal)
+//   payments.dat      snapshot of the payment history (PaymentSnapshotFile)
+//   payments.journal  payment events since that snapshot (LoanJournal)
+//
+// Opening maps the snapshots and replays the journals. From then on the
+// store listens to the portfolio and ledger and journals every add, paid
+// toggle and payment. Once either journal outgrows its snapshot, sync()
+// compacts each into a new snapshot; the ledger snapshot is the full event
+// history, so nothing is lost by resetting the payments journal.
+//
+// Compaction happens in two steps so that writers are held off only for the
+// first. beginCheckpoint() renames each journal to *.retired, starts an
+// empty one of the next generation and freezes the state the retired one
+// ends at. finishCheckpoint() then writes that state as the next-generation
+// snapshot, with writers running, and deletes the retired journal.
+//
+// A crash before the snapshot is in place leaves a retired journal of the
+// snapshot's own generation; opening replays it, finishes the snapshot and
+// then replays the new journal. A crash after that leaves journals of an
+// older generation, which are ignored because their changes are already in
+// the snapshot. Stores written before payments.dat existed open as
+// generation 0 with no payment snapshot.
+class LoanStore implements LoanPortfolio.Listener, PaymentLedger.Listener, Closeable {
+    static final String SNAPSHOT_FILE = "loans.dat";
+    static final String JOURNAL_FILE = "loans.journal";
+    static final String PAYMENTS_SNAPSHOT_FILE = "payments.dat";
+    static final String PAYMENTS_FILE = "payments.journal";
+    static final String RETIRED_SUFFIX = ".retired";
+
+    // The state a checkpoint writes, frozen by beginCheckpoint().
+    static class Checkpoint {
+        private final LoanPortfolio loans;
+        private final PaymentLedger ledger;
+        private final long generation;
+        private final long paymentsGeneration;
+        private boolean written;
+
+        Checkpoint(LoanPortfolio loans, PaymentLedger ledger, long generation, long paymentsGeneration) {
+            this.loans = loans;
+            this.ledger = ledger;
+            this.generation = generation;
+            this.paymentsGeneration = paymentsGeneration;
+        }
+    }
+
+    // Journals smaller than this are never worth compacting.
+    private static final long MIN_COMPACT_BYTES = 1 << 20;
+
+    private final Path snapshotFile;
+    private final Path journalFile;
+    private final Path paymentsSnapshotFile;
+    private final Path paymentsFile;
+    private final LoanPortfolio loans;
+    private final PaymentLedger ledger;
+    private final boolean created;
+    private volatile LoanJournal journal;
+    private volatile LoanJournal payments;
+    private long generation;
+    private long paymentsGeneration;
+    // Size of payments.dat when last written. Payment events cost about as
+    // much in the journal as in the snapshot, so the journal is compacted
+    // once it outgrows the snapshot it follows: each rewrite then covers at
+    // least as many new events as old ones.
+    private volatile long paymentsSnapshotBytes;
+    // A begun checkpoint whose snapshots are not all written yet, and
+    // whether some thread is writing them.
+    private volatile Checkpoint unfinished;
+    private volatile boolean writing;
+    private LoanOrders orders;
+
+    private LoanStore(Path dir, LoanPortfolio loans, long generation, LoanJournal journal, PaymentLedger ledger,
+                      long paymentsGeneration, LoanJournal payments, boolean created, LoanOrders orders) {
+        this.snapshotFile = dir.resolve(SNAPSHOT_FILE);
+        this.journalFile = dir.resolve(JOURNAL_FILE);
+        this.paymentsSnapshotFile = dir.resolve(PAYMENTS_SNAPSHOT_FILE);
+        this.paymentsFile = dir.resolve(PAYMENTS_FILE);
+        this.loans = loans;
+        this.generation = generation;
+        this.journal = journal;
+        this.ledger = ledger;
+        this.paymentsGeneration = paymentsGeneration;
+        this.payments = payments;
+        this.created = created;
+        this.orders = orders;
+        loans.addListener(this);
+        ledger.addListener(this);
+    }
+
+    public static LoanStore open(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        Path snapshotFile = dir.resolve(SNAPSHOT_FILE);
+        Path journalFile = dir.resolve(JOURNAL_FILE);
+        boolean created = !Files.exists(snapshotFile) && !Files.exists(journalFile);
+
+        LoanPortfolio loans;
+        LoanOrders orders = null;
+        long generation = 0;
+        if (Files.exists(snapshotFile)) {
+            LoanSnapshotFile snapshot = LoanSnapshotFile.read(snapshotFile);
+            loans = snapshot.getLoans();
+            orders = snapshot.getOrders();
+            generation = snapshot.getGeneration();
+        } else {
+            loans = new LoanPortfolio();
+        }
+
+        Path retiredFile = retired(journalFile);
+        if (Files.exists(retiredFile)) {
+            if (LoanJournal.read(retiredFile, generation, replayer(loans)) >= 0) {
+                generation++;
+                writeSnapshot(snapshotFile, loans, generation);
+            }
+            Files.delete(retiredFile);
+        }
+        LoanJournal journal = null;
+        if (Files.exists(journalFile)) {
+            journal = LoanJournal.replay(journalFile, generation, replayer(loans));
+        }
+        if (journal == null) {
+            journal = LoanJournal.create(journalFile, generation);
+        }
+
+        Path paymentsSnapshotFile = dir.resolve(PAYMENTS_SNAPSHOT_FILE);
+        Path paymentsFile = dir.resolve(PAYMENTS_FILE);
+        PaymentLedger ledger;
+        long paymentsGeneration = 0;
+        if (Files.exists(paymentsSnapshotFile)) {
+            PaymentSnapshotFile snapshot = PaymentSnapshotFile.read(paymentsSnapshotFile, loans);
+            ledger = snapshot.getLedger();
+            paymentsGeneration = snapshot.getGeneration();
+        } else {
+            ledger = new PaymentLedger(loans);
+        }
+        Path retiredPayments = retired(paymentsFile);
+        if (Files.exists(retiredPayments)) {
+            if (LoanJournal.read(retiredPayments, paymentsGeneration, ledgerReplayer(ledger)) >= 0) {
+                paymentsGeneration++;
+                writePaymentsSnapshot(paymentsSnapshotFile, ledger, paymentsGeneration);
+            }
+            Files.delete(retiredPayments);
+        }
+        LoanJournal payments = null;
+        if (Files.exists(paymentsFile)) {
+            payments = LoanJournal.replay(paymentsFile, paymentsGeneration, ledgerReplayer(ledger));
+        }
+        if (payments == null) {
+            payments = LoanJournal.create(paymentsFile, paymentsGeneration);
+        }
+        LoanStore store = new LoanStore(dir, loans, generation, journal, ledger, paymentsGeneration, payments,
+                created, orders);
+        store.paymentsSnapshotBytes = Files.exists(paymentsSnapshotFile) ? Files.size(paymentsSnapshotFile) : 0;
+        ledger.reconcile(CalendarDay.SYSTEM.today());
+        return store;
+    }
+
+    // The portfolio stored in dir, loaded without opening the journal for
+    // writing (for reports over stores nobody has open). Empty if the
+    // directory holds no loan data.
+    public static LoanPortfolio read(Path dir) throws IOException {
+        Path snapshotFile = dir.resolve(SNAPSHOT_FILE);
+        Path journalFile = dir.resolve(JOURNAL_FILE);
+        LoanPortfolio loans;
+        long generation = 0;
+        if (Files.exists(snapshotFile)) {
+            LoanSnapshotFile snapshot = LoanSnapshotFile.read(snapshotFile);
+            loans = snapshot.getLoans();
+            generation = snapshot.getGeneration();
+        } else {
+            loans = new LoanPortfolio();
+        }
+        Path retiredFile = retired(journalFile);
+        if (Files.exists(retiredFile) && LoanJournal.read(retiredFile, generation, replayer(loans)) >= 0) {
+            generation++;
+        }
+        if (Files.exists(journalFile)) {
+            LoanJournal.read(journalFile, generation, replayer(loans));
+        }
+        return loans;
+    }
+
+    // The portfolio and payment history stored in dir, loaded read-only like
+    // read(dir), with balances reconciled as open() would.
+    public static PaymentLedger readLedger(Path dir) throws IOException {
+        LoanPortfolio loans = read(dir);
+        Path paymentsSnapshotFile = dir.resolve(PAYMENTS_SNAPSHOT_FILE);
+        Path paymentsFile = dir.resolve(PAYMENTS_FILE);
+        PaymentLedger ledger;
+        long paymentsGeneration = 0;
+        if (Files.exists(paymentsSnapshotFile)) {
+            PaymentSnapshotFile snapshot = PaymentSnapshotFile.read(paymentsSnapshotFile, loans);
+            ledger = snapshot.getLedger();
+            paymentsGeneration = snapshot.getGeneration();
+        } else {
+            ledger = new PaymentLedger(loans);
+        }
+        Path retiredPayments = retired(paymentsFile);
+        if (Files.exists(retiredPayments)
+                && LoanJournal.read(retiredPayments, paymentsGeneration, ledgerReplayer(ledger)) >= 0) {
+            paymentsGeneration++;
+        }
+        if (Files.exists(paymentsFile)) {
+            LoanJournal.read(paymentsFile, paymentsGeneration, ledgerReplayer(ledger));
+        }
+        ledger.reconcile(CalendarDay.SYSTEM.today());
+        return ledger;
+    }
+
+    private static LoanJournal.Replayer replayer(LoanPortfolio loans) {
+        return new LoanJournal.Replayer() {
+            @Override
+            public void add(String name, double principal, double rate, int timeMonths, int dueEpochDay) {
+                loans.add(name, principal, rate, timeMonths, dueEpochDay);
+            }
+
+            @Override
+            public void paid(int id, boolean isPaid) {
+                loans.setPaid(id, isPaid);
+            }
+
+            @Override
+            public void payment(int id, int kind, long amountCents, int epochDay, int linkedEvent) {
+                // Payments have their own journal
+            }
+        };
+    }
+
+    private static LoanJournal.Replayer ledgerReplayer(PaymentLedger ledger) {
+        return new LoanJournal.Replayer() {
+            @Override
+            public void add(String name, double principal, double rate, int timeMonths, int dueEpochDay) {
+                // Loans and paid flags have their own journal
+            }
+
+            @Override
+            public void paid(int id, boolean isPaid) {
+            }
+
+            @Override
+            public void payment(int id, int kind, long amountCents, int epochDay, int linkedEvent) {
+                ledger.replay(id, kind, amountCents, epochDay, linkedEvent);
+            }
+        };
+    }
+
+    public LoanPortfolio getLoans() { return loans; }
+    public PaymentLedger getLedger() { return ledger; }
+
+    // True when the directory held no loan data before this store opened it.
+    public boolean isCreated() { return created; }
+
+    // Orders stored with the snapshot this store opened, for the book built
+    // on it (null if the snapshot had none). Handed over once so the store
+    // does not hold on to them.
+    public LoanOrders takeOrders() {
+        LoanOrders taken = orders;
+        orders = null;
+        return taken;
+    }
+
+    public long getJournalBytes() { return journal.size(); }
+    public long getPaymentsJournalBytes() { return payments.size(); }
+
+    @Override
+    public void loanAdded(int id) {
+        // The journal keeps doubles; cents and basis points round-trip exactly.
+        journal.appendAdd(loans.getName(id), loans.getPrincipal(id), loans.getRate(id),
+                loans.getTimeMonths(id), loans.getDueEpochDay(id));
+    }
+
+    @Override
+    public void paidChanged(int id, boolean isPaid) {
+        journal.appendPaid(id, isPaid);
+    }
+
+    @Override
+    public void paymentRecorded(int event) {
+        payments.appendPayment(ledger.getLoanId(event), ledger.getKind(event).ordinal(),
+                ledger.getAmountCents(event), ledger.getEpochDay(event), ledger.getLinkedEvent(event));
+    }
+
+    // Makes every change so far durable, compacting the journals into fresh
+    // snapshots when either has grown larger than its snapshot.
+    public void sync() throws IOException {
+        flush();
+        if (needsCheckpoint()) {
+            checkpoint();
+        }
+    }
+
+    // Waits until every change journaled so far is on disk. Unlike sync() it
+    // never reads the portfolio, so any thread may call it while others
+    // keep changing loans; concurrent callers share one fsync.
+    public void flush() throws IOException {
+        journal.sync();
+        payments.sync();
+    }
+
+    // True when a journal has outgrown its snapshot, or when a begun
+    // checkpoint failed to write and nobody is retrying it.
+    public boolean needsCheckpoint() {
+        if (unfinished != null) {
+            return !writing;
+        }
+        return outgrows(journal.size(), estimatedSnapshotBytes())
+                || outgrows(payments.size(), paymentsSnapshotBytes);
+    }
+
+    // Writes new snapshots of the whole portfolio and payment history and
+    // starts empty journals.
+    public void checkpoint() throws IOException {
+        finishCheckpoint(beginCheckpoint());
+    }
+
+    // Retires both journals for empty ones of the next generation and
+    // freezes the state they end at. The portfolio and ledger must not
+    // change meanwhile (ConcurrentLoanBook holds its write lock); this costs
+    // the journals' fsyncs and a copy of the ledger's mutable columns, not a
+    // snapshot write. An unfinished checkpoint is handed out again instead
+    // of retiring a second pair of journals.
+    public Checkpoint beginCheckpoint() throws IOException {
+        Checkpoint checkpoint = unfinished;
+        if (checkpoint == null) {
+            long next = generation + 1;
+            long nextPayments = paymentsGeneration + 1;
+            journal = retire(journal, journalFile, next);
+            payments = retire(payments, paymentsFile, nextPayments);
+            LoanPortfolio view = loans.snapshot();
+            checkpoint = new Checkpoint(view, ledger.snapshot(view), next, nextPayments);
+            generation = next;
+            paymentsGeneration = nextPayments;
+            unfinished = checkpoint;
+        }
+        writing = true;
+        return checkpoint;
+    }
+
+    // Writes a begun checkpoint's snapshots and deletes the journals they
+    // replace. Needs no lock: the frozen state does not change while the
+    // portfolio and ledger carry on. If a write fails the checkpoint stays
+    // unfinished and the next sync retries it.
+    public void finishCheckpoint(Checkpoint checkpoint) throws IOException {
+        synchronized (checkpoint) {
+            try {
+                if (checkpoint.written) {
+                    return;
+                }
+                writeSnapshot(snapshotFile, checkpoint.loans, checkpoint.generation);
+                Files.deleteIfExists(retired(journalFile));
+                paymentsSnapshotBytes = writePaymentsSnapshot(paymentsSnapshotFile, checkpoint.ledger,
+                        checkpoint.paymentsGeneration);
+                Files.deleteIfExists(retired(paymentsFile));
+                checkpoint.written = true;
+                unfinished = null;
+            } finally {
+                writing = false;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            try {
+                journal.close();
+            } finally {
+                payments.close();
+            }
+        }
+    }
+
+    private static Path retired(Path journalFile) {
+        return journalFile.resolveSibling(journalFile.getFileName() + RETIRED_SUFFIX);
+    }
+
+    private static LoanJournal retire(LoanJournal journal, Path file, long next) throws IOException {
+        journal.close();
+        Files.move(file, retired(file), StandardCopyOption.ATOMIC_MOVE);
+        return LoanJournal.create(file, next);
+    }
+
+    private static void writeSnapshot(Path file, LoanPortfolio loans, long generation) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        LoanSnapshotFile.write(tmp, loans, generation);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Returns the size of the written file.
+    private static long writePaymentsSnapshot(Path file, PaymentLedger ledger, long generation) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        PaymentSnapshotFile.write(tmp, ledger, generation);
+        long bytes = Files.size(tmp);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return bytes;
+    }
+
+    private static boolean outgrows(long journalBytes, long snapshotBytes) {
+        return journalBytes > MIN_COMPACT_BYTES && journalBytes > snapshotBytes;
+    }
+
+    private long estimatedSnapshotBytes() {
+        return LoanSnapshotFile.HEADER_BYTES + 44L * loans.size();
+    }
+}
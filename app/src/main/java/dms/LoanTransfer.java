@@ -0,0 +1,42 @@
+package dms;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+// Non-interactive bulk import/export against a loan store:
+//
+//   java -Ddms.data=<dir> dms.LoanTransfer import loans.csv|loans.jsonl
+//   java -Ddms.data=<dir> dms.LoanTransfer export out.csv|out.jsonl
+//
+// The format follows the file extension. An import ends with a checkpoint,
+// so the new loans land in the snapshot instead of a huge journal.
+class LoanTransfer {
+    public static void main(String[] args) throws IOException {
+        String dataDir = System.getProperty("dms.data");
+        if (args.length != 2 || dataDir == null
+                || !(args[0].equals("import") || args[0].equals("export"))) {
+            System.err.println("Usage: java -Ddms.data=<dir> dms.LoanTransfer import|export <file.csv|file.jsonl>");
+            System.exit(2);
+        }
+        Path file = Path.of(args[1]);
+        try (LoanStore store = LoanStore.open(Path.of(dataDir))) {
+            if (args[0].equals("import")) {
+                long start = System.nanoTime();
+                LoanImporter.Result result = new LoanImporter(store.getLoans()).importFile(file);
+                store.checkpoint();
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.println("Imported " + result.getImported() + " loan(s), rejected " +
+                                   result.getRejected() + " line(s) in " + String.format("%.2f", seconds) + "s");
+                for (String error : result.getErrors()) {
+                    System.out.println("  " + error);
+                }
+                if (result.getRejected() > result.getErrors().size()) {
+                    System.out.println("  ... and " + (result.getRejected() - result.getErrors().size()) + " more");
+                }
+            } else {
+                long rows = new LoanExporter(store.getLoans()).exportFile(file);
+                System.out.println("Exported " + rows + " loan(s) to " + file);
+            }
+        }
+    }
+}
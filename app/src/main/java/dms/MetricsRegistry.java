@@ -0,0 +1,307 @@
+package dms;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+import jdk.jfr.EventType;
+
+// Named counters, gauges and latency histograms for the running process,
+// readable as a menu dump or as Prometheus text (GET /metrics).
+//
+// A metric family has a name, a help line and a type, and holds one series
+// per value of at most one label (operation="checkAlerts", tier="HIGH").
+// Looking a series up costs two ConcurrentHashMap reads; code on a hot path
+// keeps the LongAdder or LatencyHistogram it gets back and records into it
+// directly, which never locks. Counters and gauges owned by other objects
+// (cache hits, portfolio size) are registered as suppliers and only read
+// when exported.
+//
+// Label values are escaped for the Prometheus text format (backslash, double
+// quote and newline), so any string is safe as one.
+class MetricsRegistry {
+    static final MetricsRegistry GLOBAL = new MetricsRegistry();
+
+    static final String OPERATION_SECONDS = "dms_operation_duration_seconds";
+    static final String LOANS_PROCESSED = "dms_loans_processed_total";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    enum Type {
+        COUNTER("counter"), GAUGE("gauge"), SUMMARY("summary");
+
+        private final String text;
+
+        Type(String text) {
+            this.text = text;
+        }
+    }
+
+    private static class Family {
+        final String name;
+        final String help;
+        final Type type;
+        // Label text (tier="HIGH", or "" without a label) to a LongAdder,
+        // LongSupplier, DoubleSupplier or LatencyHistogram.
+        final Map<String, Object> series = new ConcurrentHashMap<>();
+
+        Family(String name, String help, Type type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    // One timed operation: a histogram sample, a count of the loans it
+    // worked on and, when a JFR recording wants it, an OperationEvent. The
+    // event is only allocated while a recording has dms.Operation enabled.
+    static class Span {
+        private static final EventType OPERATION_EVENT = EventType.getEventType(OperationEvent.class);
+
+        private final String operation;
+        private final LatencyHistogram histogram;
+        private final LongAdder loans;
+        private final OperationEvent event;
+        private final long startNanos;
+
+        private Span(String operation, LatencyHistogram histogram, LongAdder loans) {
+            this.operation = operation;
+            this.histogram = histogram;
+            this.loans = loans;
+            this.event = OPERATION_EVENT.isEnabled() ? new OperationEvent() : null;
+            if (event != null) {
+                event.begin();
+            }
+            this.startNanos = System.nanoTime();
+        }
+
+        boolean isRecorded() {
+            return event != null;
+        }
+
+        public long end(long loanCount) {
+            long nanos = histogram.recordSince(startNanos);
+            loans.add(loanCount);
+            if (event == null) {
+                return nanos;
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = operation;
+                event.loans = loanCount;
+                event.commit();
+            }
+            return nanos;
+        }
+    }
+
+    private final Map<String, Family> families = new ConcurrentHashMap<>();
+    private final LongAdder[] alertsByTier = new LongAdder[AlertTier.values().length];
+
+    MetricsRegistry() {
+        for (AlertTier tier : AlertTier.values()) {
+            alertsByTier[tier.ordinal()] = counter("dms_alerts_total", "Payment alerts raised, by tier",
+                    "tier", tier.name());
+        }
+        counter("dms_calendar_rollovers_total", "Times the cached calendar day was recomputed",
+                "", "", CalendarDay.SYSTEM::getRollovers);
+        gauge("dms_heap_used_bytes", "JVM heap in use", "", "",
+                () -> ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+        gauge("dms_heap_max_bytes", "JVM heap limit", "", "", () -> {
+            MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+            return heap.getMax() >= 0 ? heap.getMax() : heap.getCommitted();
+        });
+    }
+
+    public LongAdder counter(String name, String help) {
+        return counter(name, help, "", "");
+    }
+
+    public LongAdder counter(String name, String help, String label, String value) {
+        return (LongAdder) family(name, help, Type.COUNTER).series
+                .computeIfAbsent(labels(label, value), k -> new LongAdder());
+    }
+
+    // A counter kept by someone else; replaces any earlier series of the
+    // same name and label.
+    public void counter(String name, String help, String label, String value, LongSupplier supplier) {
+        family(name, help, Type.COUNTER).series.put(labels(label, value), supplier);
+    }
+
+    public void gauge(String name, String help, String label, String value, DoubleSupplier supplier) {
+        family(name, help, Type.GAUGE).series.put(labels(label, value), supplier);
+    }
+
+    public LatencyHistogram timer(String name, String help, String label, String value) {
+        return (LatencyHistogram) family(name, help, Type.SUMMARY).series
+                .computeIfAbsent(labels(label, value), k -> new LatencyHistogram());
+    }
+
+    // Starts timing one operation; call end() on the result when it is done.
+    public Span start(String operation) {
+        return new Span(operation,
+                timer(OPERATION_SECONDS, "Time taken by menu commands and HTTP requests", "operation", operation),
+                counter(LOANS_PROCESSED, "Loans in the portfolios operations worked on", "operation", operation));
+    }
+
+    public void countAlerts(List<PaymentAlert> alerts) {
+        for (PaymentAlert alert : alerts) {
+            alertsByTier[alert.getTier().ordinal()].increment();
+        }
+    }
+
+    // Gauges and cache counters of the book being served; a later call for
+    // another book replaces them.
+    public void bind(ConcurrentLoanBook book) {
+        gauge("dms_loans", "Loans in the book", "", "", () -> book.totals().getLoanCount());
+        gauge("dms_loans_unpaid", "Unpaid loans in the book", "", "", () -> book.totals().getUnpaidCount());
+        gauge("dms_outstanding", "Amount still owed on the book", "", "",
+                () -> Money.toDouble(book.totals().getOutstandingCents()));
+        gauge("dms_portfolio_bytes", "Approximate heap held by the book's loan columns", "", "", () -> {
+            LoanPortfolio loans = book.snapshot();
+            return loans.bytesPerLoan() * loans.size();
+        });
+        DerivedValues derived = book.getDerivedValues();
+        for (DerivedValues.Kind kind : DerivedValues.Kind.values()) {
+            counter("dms_derived_cache_hits_total", "Summaries, alert lists and due counts served from cache",
+                    "kind", kind.name(), () -> derived.getHits(kind));
+            counter("dms_derived_cache_misses_total", "Summaries, alert lists and due counts computed",
+                    "kind", kind.name(), () -> derived.getMisses(kind));
+        }
+    }
+
+    public void bind(AlertScheduler scheduler) {
+        gauge("dms_alert_timers", "Unpaid loans waiting to cross their next alert tier", "", "",
+                scheduler::getTimerCount);
+        gauge("dms_alerts_pending", "Scheduled alerts raised and not yet delivered", "", "",
+                scheduler::getPendingCount);
+    }
+
+    public void bind(PortfolioRegistry registry) {
+        gauge("dms_customers", "Customers known to the registry", "", "", registry::getCustomerCount);
+        gauge("dms_customers_resident", "Customers whose books are open", "", "", registry::getResidentCount);
+        gauge("dms_loans_resident", "Loans in open customer books", "", "", registry::getResidentLoans);
+        gauge("dms_loans_summarized", "Unpaid loans in summaries kept for closed customer books", "", "",
+                registry::getSummaryLoans);
+        counter("dms_customer_loads_total", "Customer books opened", "", "", registry::getLoads);
+        counter("dms_customer_evictions_total", "Customer books closed to stay within budget", "", "",
+                registry::getEvictions);
+    }
+
+    // Prometheus text exposition format, version 0.0.4.
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder(4096);
+        for (Family family : new TreeMap<>(families).values()) {
+            out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(family.name).append(' ').append(family.type.text).append('\n');
+            for (Map.Entry<String, Object> series : new TreeMap<>(family.series).entrySet()) {
+                String labels = series.getKey();
+                Object metric = series.getValue();
+                if (metric instanceof LatencyHistogram) {
+                    LatencyHistogram histogram = (LatencyHistogram) metric;
+                    for (double q : QUANTILES) {
+                        String quantile = "quantile=\"" + q + "\"";
+                        sample(out, family.name, labels.isEmpty() ? quantile : labels + "," + quantile,
+                                histogram.getPercentileNanos(q * 100) / 1e9);
+                    }
+                    sample(out, family.name + "_sum", labels, histogram.getSumNanos() / 1e9);
+                    sample(out, family.name + "_count", labels, histogram.getCount());
+                } else {
+                    sample(out, family.name, labels, read(metric));
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    // The menu's "Runtime Metrics" screen.
+    public void dump(ReportWriter out) {
+        Family operations = families.get(OPERATION_SECONDS);
+        if (operations != null && !operations.series.isEmpty()) {
+            out.column("Operation", 28).column("Count", 8).column("Mean(ms)", 10).column("P50(ms)", 10)
+               .column("P99(ms)", 10).line("Max(ms)");
+            for (Map.Entry<String, Object> series : new TreeMap<>(operations.series).entrySet()) {
+                LatencyHistogram histogram = (LatencyHistogram) series.getValue();
+                String label = series.getKey();
+                out.column(label.substring(label.indexOf('"') + 1, label.length() - 1), 28)
+                   .column(histogram.getCount(), 8)
+                   .column(histogram.getMeanNanos() / 1e6, 3, 10)
+                   .column(histogram.getPercentileNanos(50) / 1e6, 3, 10)
+                   .column(histogram.getPercentileNanos(99) / 1e6, 3, 10)
+                   .fixed(histogram.getMaxNanos() / 1e6, 3).newline();
+            }
+            out.newline();
+        }
+        for (Family family : new TreeMap<>(families).values()) {
+            if (family.type == Type.SUMMARY) {
+                continue;
+            }
+            for (Map.Entry<String, Object> series : new TreeMap<>(family.series).entrySet()) {
+                String labels = series.getKey();
+                String name = labels.isEmpty() ? family.name : family.name + "{" + labels + "}";
+                double value = read(series.getValue());
+                out.column(name, 55).spaces(1);
+                if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+                    out.integer((long) value).newline();
+                } else {
+                    out.fixed(value, 2).newline();
+                }
+            }
+        }
+    }
+
+    private Family family(String name, String help, Type type) {
+        Family family = families.computeIfAbsent(name, n -> new Family(n, help, type));
+        if (family.type != type) {
+            throw new IllegalArgumentException("Metric " + name + " is already a " + family.type.text);
+        }
+        return family;
+    }
+
+    // Label values are escaped as the text format requires.
+    private static String labels(String label, String value) {
+        if (label.isEmpty()) {
+            return "";
+        }
+        StringBuilder labels = new StringBuilder(label).append("=\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                labels.append('\\').append(c);
+            } else if (c == '\n') {
+                labels.append("\\n");
+            } else {
+                labels.append(c);
+            }
+        }
+        return labels.append('"').toString();
+    }
+
+    private static double read(Object metric) {
+        if (metric instanceof LongAdder) {
+            return ((LongAdder) metric).sum();
+        }
+        if (metric instanceof LongSupplier) {
+            return ((LongSupplier) metric).getAsLong();
+        }
+        return ((DoubleSupplier) metric).getAsDouble();
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+}
@@ -0,0 +1,95 @@
+package dms;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// Fixed-point arithmetic on plain longs and ints. Amounts are held in cents
+// and rates in basis points (hundredths of a percent), so interest and sums
+// are exact integers rather than accumulations of binary fractions. All
+// methods are static and work on primitives; nothing is allocated except on
+// the rare rounding-tie fallback when converting from a double.
+//
+// Every amount up to MAX_AMOUNT has a cent count below 2^53, so cents / 100.0
+// is the double nearest the exact decimal and converting it back with
+// cents(double) returns the same count.
+class Money {
+    static final double MAX_AMOUNT = 1e13;
+    static final double MAX_RATE = 1e6;
+
+    // principal * (bps / 10000) * (months / 12)
+    private static final long INTEREST_DIVISOR = 10000L * 12;
+    // INTEREST_DIVISOR is 64 * 1875. For 0 <= n < 2^57, n / 1875 is the high
+    // word of n times ceil(2^73 / 1875), shifted right by 9: that reciprocal
+    // is 733 / 2^73 too large, and 733 * n stays below 2^73, so the product
+    // never reaches the next quotient.
+    private static final long RECIPROCAL_1875 = 0x45E7B272F608770FL;
+
+    private static final long[] POWERS_OF_TEN = {1, 10, 100, 1000, 10000};
+
+    // Nearest cent, rounding half up the way "%.2f" would print the value.
+    static long cents(double amount) {
+        if (!(Math.abs(amount) <= MAX_AMOUNT)) {
+            throw new IllegalArgumentException("Amount out of range: " + amount);
+        }
+        return round(amount, 2);
+    }
+
+    // Nearest basis point of a percentage rate (12.5% is 1250).
+    static int basisPoints(double ratePercent) {
+        if (!(Math.abs(ratePercent) <= MAX_RATE)) {
+            throw new IllegalArgumentException("Rate out of range: " + ratePercent);
+        }
+        return (int) round(ratePercent, 2);
+    }
+
+    static double toDouble(long hundredths) {
+        return hundredths / 100.0;
+    }
+
+    // Simple interest over timeMonths, to the nearest cent (halves round up).
+    // Ordinary loans (principal and rate * months both below 2^31) take a
+    // multiply, a shift and a reciprocal multiply, with no 64-bit divide;
+    // anything larger goes through splitInterest.
+    static long interest(long principalCents, int rateBps, int timeMonths) {
+        long factor = (long) rateBps * timeMonths;
+        if (((principalCents | factor) & ~0x7FFFFFFFL) != 0) {
+            return splitInterest(principalCents, factor);
+        }
+        // Below 2^62 + 2^16, so n >>> 6 is below 2^57
+        long n = principalCents * factor + INTEREST_DIVISOR / 2;
+        return Math.multiplyHigh(n >>> 6, RECIPROCAL_1875) >>> 9;
+    }
+
+    static long total(long principalCents, int rateBps, int timeMonths) {
+        return principalCents + interest(principalCents, rateBps, timeMonths);
+    }
+
+    // Splits the principal so the product cannot overflow; throws only for
+    // amounts far beyond MAX_AMOUNT. Kept out of interest() so the common
+    // path stays small enough to inline into loops.
+    private static long splitInterest(long principalCents, long factor) {
+        long whole = Math.floorDiv(principalCents, INTEREST_DIVISOR);
+        long rest = Math.floorMod(principalCents, INTEREST_DIVISOR);
+        return Math.addExact(Math.multiplyExact(whole, factor),
+                Math.floorDiv(rest * factor + INTEREST_DIVISOR / 2, INTEREST_DIVISOR));
+    }
+
+    // value * 10^decimals rounded half up on its shortest decimal form, for
+    // 0 to 4 decimals and |value| * 10^decimals below 1e15. Values a few ulps
+    // from a tie go through BigDecimal so they round the same digits
+    // Formatter would.
+    static long round(double value, int decimals) {
+        double magnitude = Math.abs(value);
+        double scaled = magnitude * POWERS_OF_TEN[decimals];
+        double whole = Math.floor(scaled);
+        double fraction = scaled - whole;
+        long units;
+        if (Math.abs(fraction - 0.5) > 4 * Math.ulp(scaled)) {
+            units = (long) whole + (fraction > 0.5 ? 1 : 0);
+        } else {
+            units = new BigDecimal(Double.toString(magnitude)).setScale(decimals, RoundingMode.HALF_UP)
+                    .unscaledValue().longValue();
+        }
+        return value < 0 ? -units : units;
+    }
+}
@@ -0,0 +1,27 @@
+package dms;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// JFR event for one timed operation (see MetricsRegistry.Span). Costs next
+// to nothing unless a recording enables it, e.g.
+//
+//   java -XX:StartFlightRecording=filename=dms.jfr,settings=profile ...
+//   jfr print --events dms.Operation dms.jfr
+@Name("dms.Operation")
+@Label("Loan Book Operation")
+@Category("Debt Management")
+@Description("A menu command or HTTP request against the loan book")
+@StackTrace(false)
+class OperationEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Loans")
+    @Description("Loans in the portfolio the operation worked on")
+    long loans;
+}
@@ -0,0 +1,18 @@
+package dms;
+
+// An unpaid loan that falls inside the alert horizon.
+class PaymentAlert {
+    private final int loanId;
+    private final long daysLeft;
+    private final AlertTier tier;
+
+    PaymentAlert(int loanId, long daysLeft, AlertTier tier) {
+        this.loanId = loanId;
+        this.daysLeft = daysLeft;
+        this.tier = tier;
+    }
+
+    public int getLoanId() { return loanId; }
+    public long getDaysLeft() { return daysLeft; }
+    public AlertTier getTier() { return tier; }
+}
@@ -0,0 +1,511 @@
+package dms;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+// Append-only record of payments against the loans of one portfolio.
+//
+// Every event is a row in parallel columns (loan, kind, signed amount, day,
+// link) and is chained to the previous event of the same loan, so a loan's
+// history is a walk back from its latest event. A REVERSAL cancels one
+// earlier PAYMENT or PARTIAL by booking the opposite amount; nothing is ever
+// removed or rewritten.
+//
+// The ledger listens to the portfolio and keeps the paid flags and its own
+// balances in step: a loan is PAID exactly when its payments cover its
+// total. Recording the final payment sets the flag; flagging a loan paid
+// some other way (menu toggle, import, HTTP) books a PAYMENT of what was
+// left, and clearing the flag reverses the latest payment.
+//
+// Payments are never dated after today, and each loan's events are in date
+// order; different loans' events may arrive out of date order (a backdated
+// payment on one loan after a later one on another). A second column keeps
+// every event sorted by day, so "as of day X" is a prefix of it.
+//
+// Running totals (loan count, principal, interest, received) are updated
+// as loans and events arrive, so a summary never touches the columns.
+// Every so often the paid amount of each loan is copied into a snapshot of
+// a prefix of the day order; balances as of any day are rebuilt from the
+// last snapshot before it plus the events after that, so the replay is
+// never longer than one interval. A backdated event drops the snapshots it
+// lands before.
+//
+// Not thread-safe on its own; ConcurrentLoanBook calls it under its lock.
+class PaymentLedger implements LoanPortfolio.Listener {
+    enum Kind { PAYMENT, PARTIAL, REVERSAL }
+
+    // Notified after every appended event (e.g. to journal it).
+    interface Listener {
+        void paymentRecorded(int event);
+    }
+
+    // Portfolio-wide figures as of one moment; all amounts in cents.
+    static class Totals {
+        private final int loanCount;
+        private final int paidCount;
+        private final long principalCents;
+        private final long interestCents;
+        private final long receivedCents;
+        private final int eventCount;
+
+        Totals(int loanCount, int paidCount, long principalCents, long interestCents,
+               long receivedCents, int eventCount) {
+            this.loanCount = loanCount;
+            this.paidCount = paidCount;
+            this.principalCents = principalCents;
+            this.interestCents = interestCents;
+            this.receivedCents = receivedCents;
+            this.eventCount = eventCount;
+        }
+
+        public int getLoanCount() { return loanCount; }
+        public int getPaidCount() { return paidCount; }
+        public int getUnpaidCount() { return loanCount - paidCount; }
+        public long getPrincipalCents() { return principalCents; }
+        public long getInterestCents() { return interestCents; }
+        public long getTotalCents() { return principalCents + interestCents; }
+        public long getReceivedCents() { return receivedCents; }
+        public long getOutstandingCents() { return principalCents + interestCents - receivedCents; }
+        public int getEventCount() { return eventCount; }
+    }
+
+    private static class Snapshot {
+        final int events;
+        final long receivedCents;
+        final long[] paidCents;
+
+        Snapshot(int events, long receivedCents, long[] paidCents) {
+            this.events = events;
+            this.receivedCents = receivedCents;
+            this.paidCents = paidCents;
+        }
+    }
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final Kind[] KINDS = Kind.values();
+
+    // A snapshot copies one long per loan with payments, so one is taken at
+    // most every that many events; the copy then costs O(1) per event.
+    static final int MIN_SNAPSHOT_INTERVAL = 4096;
+
+    private static final LongAdder[] RECORDED = new LongAdder[KINDS.length];
+
+    static {
+        for (Kind k : KINDS) {
+            RECORDED[k.ordinal()] = MetricsRegistry.GLOBAL.counter("dms_payments_total",
+                    "Payment events recorded, by kind", "kind", k.name());
+        }
+    }
+
+    private final LoanPortfolio loans;
+    private final List<Listener> listeners = new ArrayList<>();
+    private boolean replaying;
+    // Snapshots are read-only copies for persistence.
+    private boolean frozen;
+
+    private int size;
+    private int[] loanId = new int[INITIAL_CAPACITY];
+    private byte[] kind = new byte[INITIAL_CAPACITY];
+    private long[] amountCents = new long[INITIAL_CAPACITY];
+    private int[] epochDay = new int[INITIAL_CAPACITY];
+    // Previous event of the same loan, or -1.
+    private int[] previous = new int[INITIAL_CAPACITY];
+    // For a REVERSAL the event it cancels; for a payment the REVERSAL that
+    // cancelled it, or -1.
+    private int[] link = new int[INITIAL_CAPACITY];
+    // Event ids sorted by (day, id).
+    private int[] byDay = new int[INITIAL_CAPACITY];
+
+    // Per loan, allocated up to the highest loan that has events.
+    private long[] paidCents = new long[0];
+    private int[] lastEvent = new int[0];
+
+    private final List<Snapshot> snapshots = new ArrayList<>();
+
+    private int paidCount;
+    private long principalCents;
+    private long interestCents;
+    private long receivedCents;
+
+    PaymentLedger(LoanPortfolio loans) {
+        if (loans.isSnapshot()) {
+            throw new IllegalArgumentException("A payment ledger needs a writable portfolio");
+        }
+        this.loans = loans;
+        for (int id = 0; id < loans.size(); id++) {
+            principalCents += loans.getPrincipalCents(id);
+            interestCents += loans.interestCents(id);
+        }
+        paidCount = loans.paidCount();
+        loans.addListener(this);
+    }
+
+    // Adopts columns read from a snapshot file without copying them. The
+    // event arrays must hold at least size entries; the per-loan arrays may
+    // be shorter than the portfolio.
+    static PaymentLedger fromColumns(LoanPortfolio loans, int size, int[] loanId, byte[] kind, long[] amountCents,
+                                     int[] epochDay, int[] previous, int[] link, int[] byDay,
+                                     long[] paidCents, int[] lastEvent) {
+        PaymentLedger ledger = new PaymentLedger(loans);
+        ledger.size = size;
+        ledger.loanId = loanId;
+        ledger.kind = kind;
+        ledger.amountCents = amountCents;
+        ledger.epochDay = epochDay;
+        ledger.previous = previous;
+        ledger.link = link;
+        ledger.byDay = byDay;
+        ledger.paidCents = paidCents;
+        ledger.lastEvent = lastEvent;
+        for (long paid : paidCents) {
+            ledger.receivedCents += paid;
+        }
+        ledger.rebuildSnapshots();
+        return ledger;
+    }
+
+    private PaymentLedger(LoanPortfolio view, PaymentLedger source) {
+        this.loans = view;
+        this.frozen = true;
+        size = source.size;
+        loanId = source.loanId;
+        kind = source.kind;
+        amountCents = source.amountCents;
+        epochDay = source.epochDay;
+        previous = source.previous;
+        link = Arrays.copyOf(source.link, size);
+        byDay = Arrays.copyOf(source.byDay, size);
+        paidCents = source.paidCents.clone();
+        lastEvent = source.lastEvent.clone();
+        paidCount = source.paidCount;
+        principalCents = source.principalCents;
+        interestCents = source.interestCents;
+        receivedCents = source.receivedCents;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    // Read-only point-in-time copy over a snapshot of the portfolio taken at
+    // the same moment. Event rows never change once appended, so those
+    // columns are shared; the day order, reversal links and per-loan
+    // balances change in place and are copied, about 8 bytes per event and
+    // 12 per loan. As-of queries on the copy replay from the first event.
+    public PaymentLedger snapshot(LoanPortfolio view) {
+        if (!view.isSnapshot() || view.size() != loans.size()) {
+            throw new IllegalArgumentException("A ledger snapshot needs a snapshot of its own portfolio");
+        }
+        return new PaymentLedger(view, this);
+    }
+
+    public LoanPortfolio getLoans() { return loans; }
+
+    public Totals totals() {
+        return new Totals(loans.size(), paidCount, principalCents, interestCents, receivedCents, size);
+    }
+
+    // Brings flags and balances in line after loading. A loan with payments
+    // is PAID exactly when they cover it (repairing a flag whose journal
+    // entry was lost in a crash); a loan flagged paid without any is booked
+    // as paid in full on the given day.
+    public void reconcile(long today) {
+        for (int id = 0; id < loans.size(); id++) {
+            if (lastEvent(id) >= 0) {
+                loans.setPaid(id, getBalanceCents(id) <= 0);
+            } else if (loans.isPaid(id) && getBalanceCents(id) > 0) {
+                append(id, Kind.PAYMENT, getBalanceCents(id), today, -1);
+            }
+        }
+    }
+
+    // Records a payment dated on or after the latest event. Paying the whole
+    // balance is a PAYMENT and marks the loan paid; less is a PARTIAL.
+    public int pay(int id, long cents, long day) {
+        checkLoan(id);
+        long balance = getBalanceCents(id);
+        if (cents <= 0) {
+            throw new IllegalArgumentException("Payment must be positive");
+        }
+        if (cents > balance) {
+            throw new IllegalArgumentException(String.format("Payment of %.2f is more than the balance of %.2f",
+                    Money.toDouble(cents), Money.toDouble(balance)));
+        }
+        checkDay(id, day);
+        int event = append(id, cents == balance ? Kind.PAYMENT : Kind.PARTIAL, cents, day, -1);
+        if (cents == balance) {
+            loans.setPaid(id, true);
+        }
+        return event;
+    }
+
+    // Cancels an earlier payment; the loan goes back to PENDING if that
+    // leaves a balance.
+    public int reverse(int event, long day) {
+        if (event < 0 || event >= size) {
+            throw new IndexOutOfBoundsException("No payment with id " + event);
+        }
+        if (kind[event] == Kind.REVERSAL.ordinal()) {
+            throw new IllegalArgumentException("Payment " + event + " is itself a reversal");
+        }
+        if (link[event] >= 0) {
+            throw new IllegalArgumentException("Payment " + event + " was already reversed by " + link[event]);
+        }
+        int id = loanId[event];
+        checkDay(id, day);
+        int reversal = append(id, Kind.REVERSAL, -amountCents[event], day, event);
+        if (loans.isPaid(id) && getBalanceCents(id) > 0) {
+            loans.setPaid(id, false);
+        }
+        return reversal;
+    }
+
+    // Re-applies a journaled event without validation or notification.
+    void replay(int id, int kindOrdinal, long cents, int day, int linked) {
+        if (kindOrdinal < 0 || kindOrdinal >= KINDS.length || id < 0 || id >= loans.size()
+                || (KINDS[kindOrdinal] == Kind.REVERSAL && (linked < 0 || linked >= size))) {
+            throw new IllegalArgumentException("Journaled payment does not match the loans");
+        }
+        replaying = true;
+        try {
+            append(id, KINDS[kindOrdinal], cents, day, linked);
+        } finally {
+            replaying = false;
+        }
+    }
+
+    @Override
+    public void loanAdded(int id) {
+        principalCents += loans.getPrincipalCents(id);
+        interestCents += loans.interestCents(id);
+    }
+
+    @Override
+    public void paidChanged(int id, boolean isPaid) {
+        paidCount += isPaid ? 1 : -1;
+        long balance = getBalanceCents(id);
+        long day = CalendarDay.SYSTEM.today();
+        if (isPaid && balance > 0) {
+            append(id, Kind.PAYMENT, balance, day, -1);
+        } else if (!isPaid && balance <= 0) {
+            for (int e = lastEvent(id); e >= 0; e = previous[e]) {
+                if (kind[e] != Kind.REVERSAL.ordinal() && link[e] < 0) {
+                    append(id, Kind.REVERSAL, -amountCents[e], day, e);
+                    break;
+                }
+            }
+        }
+    }
+
+    public int size() { return size; }
+    public int getLoanId(int event) { return loanId[event]; }
+    public Kind getKind(int event) { return KINDS[kind[event]]; }
+    // Negative for a reversal.
+    public long getAmountCents(int event) { return amountCents[event]; }
+    public int getEpochDay(int event) { return epochDay[event]; }
+    public int getPreviousEvent(int event) { return previous[event]; }
+    public int getLinkedEvent(int event) { return link[event]; }
+    public boolean isReversed(int event) { return kind[event] != Kind.REVERSAL.ordinal() && link[event] >= 0; }
+
+    // Latest event of the loan, or -1; follow getPreviousEvent for the rest.
+    public int lastEvent(int id) {
+        return id < lastEvent.length ? lastEvent[id] : -1;
+    }
+
+    public long getPaidCents(int id) {
+        return id < paidCents.length ? paidCents[id] : 0;
+    }
+
+    public long getBalanceCents(int id) {
+        return loans.totalCents(id) - getPaidCents(id);
+    }
+
+    // Paid on one loan by the end of the given day.
+    public long getPaidCentsAt(int id, long day) {
+        long paid = getPaidCents(id);
+        // The whole chain, so events journaled before per-loan order was
+        // enforced still count by their own day
+        for (int e = lastEvent(id); e >= 0; e = previous[e]) {
+            if (epochDay[e] > day) {
+                paid -= amountCents[e];
+            }
+        }
+        return paid;
+    }
+
+    // Received across all loans by the end of the given day.
+    public long getReceivedCentsAt(long day) {
+        int end = eventsThrough(day);
+        Snapshot base = snapshotBefore(end);
+        long received = base != null ? base.receivedCents : 0;
+        for (int i = base != null ? base.events : 0; i < end; i++) {
+            received += amountCents[byDay[i]];
+        }
+        return received;
+    }
+
+    // Paid per loan by the end of the given day, indexed by loan id and
+    // sized to the portfolio.
+    public long[] getPaidCentsAt(long day) {
+        int end = eventsThrough(day);
+        Snapshot base = snapshotBefore(end);
+        long[] paid = new long[loans.size()];
+        if (base != null) {
+            System.arraycopy(base.paidCents, 0, paid, 0, base.paidCents.length);
+        }
+        for (int i = base != null ? base.events : 0; i < end; i++) {
+            paid[loanId[byDay[i]]] += amountCents[byDay[i]];
+        }
+        return paid;
+    }
+
+    public int getSnapshotCount() { return snapshots.size(); }
+
+    // Raw column access for bulk persistence; callers must not modify them.
+    int[] loanIdColumn() { return loanId; }
+    byte[] kindColumn() { return kind; }
+    long[] amountCentsColumn() { return amountCents; }
+    int[] epochDayColumn() { return epochDay; }
+    int[] previousColumn() { return previous; }
+    int[] linkColumn() { return link; }
+    int[] byDayColumn() { return byDay; }
+    long[] paidCentsColumn() { return paidCents; }
+    int[] lastEventColumn() { return lastEvent; }
+
+    private int append(int id, Kind k, long cents, long day, int linked) {
+        if (frozen) {
+            throw new UnsupportedOperationException("Ledger snapshot is read-only");
+        }
+        ensureCapacity(size + 1);
+        ensureLoanCapacity(id + 1);
+        int event = size;
+        loanId[event] = id;
+        kind[event] = (byte) k.ordinal();
+        amountCents[event] = cents;
+        epochDay[event] = (int) day;
+        previous[event] = lastEvent[id];
+        link[event] = linked;
+        if (k == Kind.REVERSAL) {
+            link[linked] = event;
+        }
+        lastEvent[id] = event;
+        paidCents[id] += cents;
+        receivedCents += cents;
+        int position = eventsThrough(day);
+        System.arraycopy(byDay, position, byDay, position + 1, size - position);
+        byDay[position] = event;
+        size++;
+        // Snapshots past a backdated event no longer describe their prefix
+        while (!snapshots.isEmpty() && snapshots.get(snapshots.size() - 1).events > position) {
+            snapshots.remove(snapshots.size() - 1);
+        }
+        Snapshot last = snapshots.isEmpty() ? null : snapshots.get(snapshots.size() - 1);
+        int since = size - (last != null ? last.events : 0);
+        if (position == size - 1 && since >= Math.max(MIN_SNAPSHOT_INTERVAL, paidCents.length)) {
+            long[] paid = Arrays.copyOf(paidCents, Math.min(paidCents.length, loans.size()));
+            snapshots.add(new Snapshot(size, receivedCents, paid));
+        }
+        if (!replaying) {
+            RECORDED[k.ordinal()].increment();
+            for (Listener listener : listeners) {
+                listener.paymentRecorded(event);
+            }
+        }
+        return event;
+    }
+
+    // Takes the snapshots append() would have taken had the events arrived
+    // in day order, in one pass over byDay.
+    private void rebuildSnapshots() {
+        snapshots.clear();
+        long[] paid = new long[paidCents.length];
+        long received = 0;
+        int since = 0;
+        for (int i = 0; i < size; i++) {
+            int event = byDay[i];
+            paid[loanId[event]] += amountCents[event];
+            received += amountCents[event];
+            if (++since >= Math.max(MIN_SNAPSHOT_INTERVAL, paid.length)) {
+                snapshots.add(new Snapshot(i + 1, received, Arrays.copyOf(paid, Math.min(paid.length, loans.size()))));
+                since = 0;
+            }
+        }
+    }
+
+    // Events on or before a day, a prefix of byDay.
+    private int eventsThrough(long day) {
+        int lo = 0;
+        int hi = size;
+        if (hi > 0 && epochDay[byDay[hi - 1]] <= day) {
+            return hi;
+        }
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (epochDay[byDay[mid]] <= day) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private Snapshot snapshotBefore(int events) {
+        Snapshot found = null;
+        int lo = 0;
+        int hi = snapshots.size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (snapshots.get(mid).events <= events) {
+                found = snapshots.get(mid);
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    private void checkDay(int id, long day) {
+        if (day > CalendarDay.SYSTEM.today()) {
+            throw new IllegalArgumentException("Payments cannot be dated in the future");
+        }
+        int last = lastEvent(id);
+        if (last >= 0 && day < epochDay[last]) {
+            throw new IllegalArgumentException("Payments on a loan must be recorded in date order; its latest is " +
+                    "dated " + LocalDate.ofEpochDay(epochDay[last]));
+        }
+    }
+
+    private void checkLoan(int id) {
+        if (id < 0 || id >= loans.size()) {
+            throw new IndexOutOfBoundsException("No loan with id " + id);
+        }
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed > loanId.length) {
+            int capacity = Math.max(needed, loanId.length + (loanId.length >> 1));
+            loanId = Arrays.copyOf(loanId, capacity);
+            kind = Arrays.copyOf(kind, capacity);
+            amountCents = Arrays.copyOf(amountCents, capacity);
+            epochDay = Arrays.copyOf(epochDay, capacity);
+            previous = Arrays.copyOf(previous, capacity);
+            link = Arrays.copyOf(link, capacity);
+            byDay = Arrays.copyOf(byDay, capacity);
+        }
+    }
+
+    private void ensureLoanCapacity(int needed) {
+        if (needed > paidCents.length) {
+            int old = paidCents.length;
+            int capacity = Math.max(needed, Math.max(INITIAL_CAPACITY, old + (old >> 1)));
+            paidCents = Arrays.copyOf(paidCents, capacity);
+            lastEvent = Arrays.copyOf(lastEvent, capacity);
+            Arrays.fill(lastEvent, old, capacity, -1);
+        }
+    }
+}
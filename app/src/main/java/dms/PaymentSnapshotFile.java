@@ -0,0 +1,201 @@
+package dms;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Binary snapshot of a PaymentLedger, laid out like LoanSnapshotFile: a
+// 64-byte header followed by one fixed-width section per ledger column, each
+// copied straight into a primitive array on load.
+//
+//   header   magic "DMSPAYMT", version, generation, event count,
+//            loan count (per-loan sections)
+//   events   loan id int[n], kind byte[n], amount cents long[n],
+//            epochDay int[n], previous event int[n], link int[n],
+//            event ids by day int[n]
+//   loans    paid cents long[m], last event int[m]
+//
+// All values are little-endian and every section starts on an 8-byte
+// boundary. A section can be larger than one mapping may cover (2 GB), so
+// each is copied through windows of at most WINDOW_BYTES.
+class PaymentSnapshotFile {
+    static final long MAGIC = 0x544D594153534D44L; // "DMSPAYMT" read little-endian
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 64;
+
+    private static final int WINDOW_BYTES = 1 << 30;
+
+    private final long generation;
+    private final PaymentLedger ledger;
+
+    private PaymentSnapshotFile(long generation, PaymentLedger ledger) {
+        this.generation = generation;
+        this.ledger = ledger;
+    }
+
+    // Payments journal generation that this snapshot already includes.
+    public long getGeneration() { return generation; }
+    public PaymentLedger getLedger() { return ledger; }
+
+    // Reads the ledger of the given portfolio, which must already hold every
+    // loan the events refer to.
+    public static PaymentSnapshotFile read(Path file, LoanPortfolio loans) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException(file + " is not a payment snapshot file");
+            }
+            ByteBuffer header = map(channel, FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getLong(0) != MAGIC) {
+                throw new IOException(file + " is not a payment snapshot file");
+            }
+            int version = header.getInt(8);
+            if (version != VERSION) {
+                throw new IOException(file + " has unsupported snapshot version " + version);
+            }
+            long generation = header.getLong(16);
+            int n = header.getInt(24);
+            int m = header.getInt(28);
+            if (n < 0 || m < 0 || m > loans.size()) {
+                throw new IOException(file + " does not match the loans it was opened with");
+            }
+            if (channel.size() < fileBytes(n, m)) {
+                throw new IOException(file + " is truncated");
+            }
+
+            int capacity = Math.max(n, 16);
+            int[] loanId = new int[capacity];
+            byte[] kind = new byte[capacity];
+            long[] amountCents = new long[capacity];
+            int[] epochDay = new int[capacity];
+            int[] previous = new int[capacity];
+            int[] link = new int[capacity];
+            int[] byDay = new int[capacity];
+            long[] paidCents = new long[m];
+            int[] lastEvent = new int[m];
+
+            long offset = HEADER_BYTES;
+            offset = readInts(channel, offset, loanId, n);
+            offset = readBytes(channel, offset, kind, n);
+            offset = readLongs(channel, offset, amountCents, n);
+            offset = readInts(channel, offset, epochDay, n);
+            offset = readInts(channel, offset, previous, n);
+            offset = readInts(channel, offset, link, n);
+            offset = readInts(channel, offset, byDay, n);
+            offset = readLongs(channel, offset, paidCents, m);
+            readInts(channel, offset, lastEvent, m);
+            return new PaymentSnapshotFile(generation, PaymentLedger.fromColumns(loans, n, loanId, kind,
+                    amountCents, epochDay, previous, link, byDay, paidCents, lastEvent));
+        }
+    }
+
+    // Writes the ledger to the given file, replacing any previous contents,
+    // and forces it to disk.
+    public static void write(Path file, PaymentLedger ledger, long generation) throws IOException {
+        int n = ledger.size();
+        int m = Math.min(ledger.paidCentsColumn().length, ledger.getLoans().size());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer header = map(channel, FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+            header.putLong(0, MAGIC);
+            header.putInt(8, VERSION);
+            header.putLong(16, generation);
+            header.putInt(24, n);
+            header.putInt(28, m);
+            header.force();
+
+            long offset = HEADER_BYTES;
+            offset = writeInts(channel, offset, ledger.loanIdColumn(), n);
+            offset = writeBytes(channel, offset, ledger.kindColumn(), n);
+            offset = writeLongs(channel, offset, ledger.amountCentsColumn(), n);
+            offset = writeInts(channel, offset, ledger.epochDayColumn(), n);
+            offset = writeInts(channel, offset, ledger.previousColumn(), n);
+            offset = writeInts(channel, offset, ledger.linkColumn(), n);
+            offset = writeInts(channel, offset, ledger.byDayColumn(), n);
+            offset = writeLongs(channel, offset, ledger.paidCentsColumn(), m);
+            writeInts(channel, offset, ledger.lastEventColumn(), m);
+        }
+    }
+
+    // Each reader and writer returns the offset of the next section.
+    private static long readInts(FileChannel channel, long offset, int[] values, int count) throws IOException {
+        for (int i = 0; i < count; ) {
+            int window = Math.min(count - i, WINDOW_BYTES / 4);
+            map(channel, FileChannel.MapMode.READ_ONLY, offset + 4L * i, 4L * window)
+                    .asIntBuffer().get(values, i, window);
+            i += window;
+        }
+        return offset + align(4L * count);
+    }
+
+    private static long readLongs(FileChannel channel, long offset, long[] values, int count) throws IOException {
+        for (int i = 0; i < count; ) {
+            int window = Math.min(count - i, WINDOW_BYTES / 8);
+            map(channel, FileChannel.MapMode.READ_ONLY, offset + 8L * i, 8L * window)
+                    .asLongBuffer().get(values, i, window);
+            i += window;
+        }
+        return offset + align(8L * count);
+    }
+
+    private static long readBytes(FileChannel channel, long offset, byte[] values, int count) throws IOException {
+        for (int i = 0; i < count; ) {
+            int window = Math.min(count - i, WINDOW_BYTES);
+            map(channel, FileChannel.MapMode.READ_ONLY, offset + i, window).get(values, i, window);
+            i += window;
+        }
+        return offset + align(count);
+    }
+
+    private static long writeInts(FileChannel channel, long offset, int[] values, int count) throws IOException {
+        for (int i = 0; i < count; ) {
+            int window = Math.min(count - i, WINDOW_BYTES / 4);
+            MappedByteBuffer section = map(channel, FileChannel.MapMode.READ_WRITE, offset + 4L * i, 4L * window);
+            section.asIntBuffer().put(values, i, window);
+            section.force();
+            i += window;
+        }
+        return offset + align(4L * count);
+    }
+
+    private static long writeLongs(FileChannel channel, long offset, long[] values, int count) throws IOException {
+        for (int i = 0; i < count; ) {
+            int window = Math.min(count - i, WINDOW_BYTES / 8);
+            MappedByteBuffer section = map(channel, FileChannel.MapMode.READ_WRITE, offset + 8L * i, 8L * window);
+            section.asLongBuffer().put(values, i, window);
+            section.force();
+            i += window;
+        }
+        return offset + align(8L * count);
+    }
+
+    private static long writeBytes(FileChannel channel, long offset, byte[] values, int count) throws IOException {
+        for (int i = 0; i < count; ) {
+            int window = Math.min(count - i, WINDOW_BYTES);
+            MappedByteBuffer section = map(channel, FileChannel.MapMode.READ_WRITE, offset + i, window);
+            section.put(values, i, window);
+            section.force();
+            i += window;
+        }
+        return offset + align(count);
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, FileChannel.MapMode mode, long offset, long length)
+            throws IOException {
+        MappedByteBuffer buffer = channel.map(mode, offset, length);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    // The last section ends the file unpadded.
+    private static long fileBytes(int n, int m) {
+        return HEADER_BYTES + 5 * align(4L * n) + align(n) + align(8L * n) + align(8L * m) + 4L * m;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
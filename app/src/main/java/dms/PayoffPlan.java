@@ -0,0 +1,88 @@
+package dms;
+
+// Outcome of one PayoffSolver run: the payoff order it settled on, what
+// that order costs, and the payments it makes month by month.
+//
+// The schedule is kept in columns: month m (1-based) owns payment entries
+// [monthStart[m - 1], monthStart[m]), each a loan id and the amount paid on
+// it that month (minimum plus any extra).
+class PayoffPlan {
+    private final double monthlyBudget;
+    private final PayoffResult result;
+    private final double totalFees;
+    private final String baseline;
+    private final double baselineCost;
+    private final boolean searched;
+    private final boolean optimal;
+    private final long nodes;
+    private final long elapsedNanos;
+    private final int[] monthStart;
+    private final int[] paymentLoan;
+    private final double[] paymentAmount;
+    private final double[] remaining;
+    private final int[] dueMonths;
+
+    PayoffPlan(double monthlyBudget, PayoffResult result, double totalFees, String baseline, double baselineCost,
+               boolean searched, boolean optimal, long nodes, long elapsedNanos, int[] monthStart, int[] paymentLoan,
+               double[] paymentAmount, double[] remaining, int[] dueMonths) {
+        this.monthlyBudget = monthlyBudget;
+        this.result = result;
+        this.totalFees = totalFees;
+        this.baseline = baseline;
+        this.baselineCost = baselineCost;
+        this.searched = searched;
+        this.optimal = optimal;
+        this.nodes = nodes;
+        this.elapsedNanos = elapsedNanos;
+        this.monthStart = monthStart;
+        this.paymentLoan = paymentLoan;
+        this.paymentAmount = paymentAmount;
+        this.remaining = remaining;
+        this.dueMonths = dueMonths;
+    }
+
+    public double getMonthlyBudget() { return monthlyBudget; }
+    public PayoffResult getResult() { return result; }
+    public double getTotalInterest() { return result.getTotalInterest(); }
+    public double getTotalFees() { return totalFees; }
+    public double getTotalCost() { return result.getTotalInterest() + totalFees; }
+
+    // The cheapest of the fixed orders the search started from (AVALANCHE,
+    // SNOWBALL or DUE_DATE), costed with late fees like the plan itself.
+    public String getBaseline() { return baseline; }
+    public double getBaselineCost() { return baselineCost; }
+    public double getSavings() { return Math.max(0, baselineCost - getTotalCost()); }
+
+    // False when only the fixed rules were compared: the budget is below the
+    // minimum payments or the book is too big to search.
+    public boolean isSearched() { return searched; }
+
+    // True when the search ran to completion, so no payoff order costs less;
+    // false when the deadline cut it short and this is the best one found.
+    public boolean isOptimal() { return optimal; }
+    public long getNodes() { return nodes; }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    // Months with payments; the last one is when the debt is cleared or the
+    // horizon ends.
+    public int getMonths() { return monthStart.length - 1; }
+
+    public int getPaymentCount(int month) {
+        return monthStart[month] - monthStart[month - 1];
+    }
+
+    public int getPaymentLoanId(int month, int index) {
+        return paymentLoan[monthStart[month - 1] + index];
+    }
+
+    public double getPaymentAmount(int month, int index) {
+        return paymentAmount[monthStart[month - 1] + index];
+    }
+
+    // Total still owed across the loans at the end of the month.
+    public double getRemaining(int month) { return remaining[month - 1]; }
+
+    // Month by which the loan at an order position must be cleared to avoid
+    // its late fee (see PayoffSolver), or 0 when that is beyond the horizon.
+    public int getDueMonth(int position) { return dueMonths[position]; }
+}
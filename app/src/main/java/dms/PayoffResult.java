@@ -0,0 +1,58 @@
+package dms;
+
+import java.time.LocalDate;
+
+// Outcome of one PayoffSimulator run.
+class PayoffResult {
+    private final String strategy;
+    private final double monthlyBudget;
+    private final double totalInterest;
+    private final double totalPaid;
+    private final int monthsToDebtFree;
+    private final int shortfallMonths;
+    private final int[] loanIds;
+    private final int[] payoffMonths;
+
+    PayoffResult(String strategy, double monthlyBudget, double totalInterest, double totalPaid,
+                 int monthsToDebtFree, int shortfallMonths, int[] loanIds, int[] payoffMonths) {
+        this.strategy = strategy;
+        this.monthlyBudget = monthlyBudget;
+        this.totalInterest = totalInterest;
+        this.totalPaid = totalPaid;
+        this.monthsToDebtFree = monthsToDebtFree;
+        this.shortfallMonths = shortfallMonths;
+        this.loanIds = loanIds;
+        this.payoffMonths = payoffMonths;
+    }
+
+    public String getStrategy() { return strategy; }
+    public double getMonthlyBudget() { return monthlyBudget; }
+    public double getTotalInterest() { return totalInterest; }
+    public double getTotalPaid() { return totalPaid; }
+    public int getShortfallMonths() { return shortfallMonths; }
+    public boolean isDebtFree() { return monthsToDebtFree >= 0; }
+
+    // -1 when the loans are not cleared within the simulated horizon.
+    public int getMonthsToDebtFree() { return monthsToDebtFree; }
+
+    public int getLoanCount() { return loanIds.length; }
+
+    // Loans in the order they were prioritised.
+    public int getLoanId(int position) { return loanIds[position]; }
+    public int getPayoffMonth(int position) { return payoffMonths[position]; }
+
+    // Earliest month in which any loan is cleared, or -1.
+    public int getFirstPayoffMonth() {
+        int first = -1;
+        for (int month : payoffMonths) {
+            if (month >= 0 && (first < 0 || month < first)) {
+                first = month;
+            }
+        }
+        return first;
+    }
+
+    public LocalDate getDebtFreeDate(LocalDate start) {
+        return isDebtFree() ? start.plusMonths(monthsToDebtFree) : null;
+    }
+}
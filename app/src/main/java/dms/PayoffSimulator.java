@@ -0,0 +1,220 @@
+package dms;
+
+import java.util.Arrays;
+
+// Month-by-month payoff simulation of the unpaid loans under a monthly budget.
+//
+// Every month each open balance accrues rate/12 interest, every loan receives
+// its amortized minimum payment (over its term) in priority order, and any
+// budget left over goes to the highest-priority open loan. Budget freed by a
+// cleared loan rolls into the next one. The loans are loaded once into
+// primitive work arrays, and run() allocates nothing, so the same simulator
+// can be re-run many times (different budgets, rates, orders).
+//
+// Balances are doubles rather than Money cents on purpose. Compounding has
+// no exact cent answer to keep, run() is the inner loop of the stress test,
+// and results are rounded only when printed.
+class PayoffSimulator {
+    static final int DEFAULT_HORIZON_MONTHS = 360;
+
+    private static final double EPSILON = 1e-6;
+
+    private final int horizonMonths;
+
+    // Work arrays, indexed by position in the payment order.
+    private int count;
+    private int[] loanIds = new int[0];
+    private double[] principal = new double[0];
+    private double[] baseMonthlyRate = new double[0];
+    private double[] monthlyRate = new double[0];
+    private int[] termMonths = new int[0];
+    private double[] minPayment = new double[0];
+    private double[] balance = new double[0];
+    private int[] payoffMonth = new int[0];
+    private final boolean[] missedMonth;
+
+    // Results of the last run.
+    private double totalInterest;
+    private double totalPaid;
+    private int monthsToDebtFree;
+    private int shortfallMonths;
+
+    PayoffSimulator() {
+        this(DEFAULT_HORIZON_MONTHS);
+    }
+
+    PayoffSimulator(int horizonMonths) {
+        this.horizonMonths = horizonMonths;
+        this.missedMonth = new boolean[horizonMonths + 1];
+    }
+
+    // A budget given by a user must be finite and positive: a NaN or
+    // infinite one turns every balance into NaN, which reads as cleared.
+    static double checkBudget(double monthlyBudget) {
+        if (!(monthlyBudget > 0) || Double.isInfinite(monthlyBudget)) {
+            throw new IllegalArgumentException("Monthly budget must be a positive amount, not " + monthlyBudget);
+        }
+        return monthlyBudget;
+    }
+
+    // Loads the given loans in payment order (first = highest priority).
+    public void load(LoanPortfolio loans, int[] order) {
+        ensureCapacity(order.length);
+        count = order.length;
+        for (int i = 0; i < count; i++) {
+            int id = order[i];
+            loanIds[i] = id;
+            principal[i] = loans.getPrincipal(id);
+            baseMonthlyRate[i] = loans.getRate(id) / (100 * 12);
+            termMonths[i] = loans.getTimeMonths(id);
+        }
+        resetScenario();
+    }
+
+    // Restores the loaded rates and clears missed months.
+    public void resetScenario() {
+        for (int i = 0; i < count; i++) {
+            monthlyRate[i] = baseMonthlyRate[i];
+            minPayment[i] = minimumPayment(principal[i], monthlyRate[i], termMonths[i]);
+        }
+        Arrays.fill(missedMonth, false);
+    }
+
+    // Raises the annual rate of the loan at an order position by the given
+    // percentage points for the next runs; the minimum payment is re-amortized.
+    public void shockRate(int position, double extraAnnualRate) {
+        monthlyRate[position] = baseMonthlyRate[position] + extraAnnualRate / (100 * 12);
+        minPayment[position] = minimumPayment(principal[position], monthlyRate[position], termMonths[position]);
+    }
+
+    // A missed month accrues interest but makes no payment at all.
+    public void setMissedMonth(int month, boolean missed) {
+        missedMonth[month] = missed;
+    }
+
+    // Level payment that amortizes the principal over the loan term.
+    static double minimumPayment(double principal, double monthlyRate, int termMonths) {
+        int n = Math.max(1, termMonths);
+        if (monthlyRate == 0) {
+            return principal / n;
+        }
+        return principal * monthlyRate / (1 - Math.pow(1 + monthlyRate, -n));
+    }
+
+    public double totalMinimumPayment() {
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += minPayment[i];
+        }
+        return sum;
+    }
+
+    public void run(double monthlyBudget) {
+        System.arraycopy(principal, 0, balance, 0, count);
+        Arrays.fill(payoffMonth, 0, count, -1);
+        totalInterest = 0;
+        totalPaid = 0;
+        monthsToDebtFree = -1;
+        shortfallMonths = 0;
+
+        int open = 0;
+        for (int i = 0; i < count; i++) {
+            if (balance[i] > EPSILON) {
+                open++;
+            } else {
+                payoffMonth[i] = 0;
+            }
+        }
+        if (open == 0) {
+            monthsToDebtFree = 0;
+            return;
+        }
+
+        int first = 0;
+        for (int month = 1; month <= horizonMonths; month++) {
+            double budget = missedMonth[month] ? 0 : monthlyBudget;
+            double available = budget;
+            boolean shortfall = false;
+
+            // Accrue interest, then cover minimums in priority order.
+            for (int i = first; i < count; i++) {
+                double b = balance[i];
+                if (b <= 0) {
+                    continue;
+                }
+                double interest = b * monthlyRate[i];
+                totalInterest += interest;
+                b += interest;
+                double pay = Math.min(Math.min(minPayment[i], b), available);
+                if (pay < Math.min(minPayment[i], b) - EPSILON) {
+                    shortfall = true;
+                }
+                available -= pay;
+                balance[i] = b - pay;
+            }
+
+            // Whatever is left goes to the highest-priority open loans.
+            for (int i = first; i < count && available > 0; i++) {
+                double b = balance[i];
+                if (b <= 0) {
+                    continue;
+                }
+                double pay = Math.min(b, available);
+                available -= pay;
+                balance[i] = b - pay;
+            }
+            totalPaid += budget - available;
+            if (shortfall) {
+                shortfallMonths++;
+            }
+
+            for (int i = first; i < count; i++) {
+                if (balance[i] > 0 && balance[i] <= EPSILON) {
+                    balance[i] = 0;
+                }
+                if (balance[i] == 0 && payoffMonth[i] < 0) {
+                    payoffMonth[i] = month;
+                    open--;
+                }
+            }
+            while (first < count && balance[first] == 0) {
+                first++;
+            }
+            if (open == 0) {
+                monthsToDebtFree = month;
+                return;
+            }
+        }
+    }
+
+    public PayoffResult result(String strategy, double monthlyBudget) {
+        return new PayoffResult(strategy, monthlyBudget, totalInterest, totalPaid, monthsToDebtFree,
+                shortfallMonths, Arrays.copyOf(loanIds, count), Arrays.copyOf(payoffMonth, count));
+    }
+
+    public int getLoanCount() { return count; }
+    public int getHorizonMonths() { return horizonMonths; }
+    public double getTotalInterest() { return totalInterest; }
+    public double getTotalPaid() { return totalPaid; }
+    public int getShortfallMonths() { return shortfallMonths; }
+
+    // -1 when the loans are not cleared within the horizon.
+    public int getMonthsToDebtFree() { return monthsToDebtFree; }
+
+    // Month (1-based) in which the loan at the given order position was
+    // cleared, or -1.
+    public int getPayoffMonth(int position) { return payoffMonth[position]; }
+
+    private void ensureCapacity(int needed) {
+        if (needed > loanIds.length) {
+            loanIds = new int[needed];
+            principal = new double[needed];
+            baseMonthlyRate = new double[needed];
+            monthlyRate = new double[needed];
+            termMonths = new int[needed];
+            minPayment = new double[needed];
+            balance = new double[needed];
+            payoffMonth = new int[needed];
+        }
+    }
+}
@@ -0,0 +1,566 @@
+package dms;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+// Searches for the cheapest payoff order under a monthly budget, where the
+// cost is the interest paid plus late fees.
+//
+// Months run as in PayoffSimulator: interest accrues, every open loan gets its
+// minimum payment, and the rest of the budget goes to open loans in priority
+// order. On top of that every loan is due: a balance still open at the end of
+// the month holding its due date (month 1 for overdue loans) is charged a late
+// fee of lateFeeRate times that balance, added to the balance. Avalanche and
+// Snowball ignore due dates; the solver weighs them against the rates.
+//
+// The search is branch-and-bound over priority orders. A node fixes the first
+// k loans to receive extra payments and holds the balances at the start of the
+// month in which the next choice starts to matter (the month the fixed loans
+// leave budget over while others are open), so a child only simulates the
+// months its own choice decides. A child is pruned when its cost so far plus
+// a lower bound on the rest reaches the best complete order found. The bound
+// is the interest of a relaxed payoff with no minimums and no fees, where the
+// whole budget always goes to the highest-rate open loan; any real order pays
+// at least that much.
+//
+// The fixed rules (AVALANCHE, SNOWBALL, DUE_DATE) are costed first. The
+// cheapest one seeds the incumbent and gives the order children are tried in,
+// so the first dive reproduces it and later leaves can only improve on it.
+// Subtrees under the first SPLIT_DEPTH choices run as fork-join tasks on the
+// common pool and share the incumbent. Every node checks the deadline; once it
+// passes the search unwinds and the best order so far is returned with
+// isOptimal() false.
+//
+// When the budget does not cover the minimum payments, which minimums get paid
+// depends on the whole order and prefix states no longer hold; books above
+// MAX_SEARCH_LOANS would hold too much on the search path. In both cases only
+// the fixed rules are compared.
+//
+// Costs stay in doubles, compared with EPSILON of slack, like the simulator's.
+// A plan is an estimate under an assumed fee rather than a ledger entry, and
+// every node simulates months of payments, so cents would cost time and buy
+// no accuracy that matters.
+class PayoffSolver {
+    static final int SPLIT_DEPTH = 1;
+    static final int MAX_SEARCH_LOANS = 1000;
+    static final int MAX_PLAN_PAYMENTS = 1 << 22;
+
+    private static final double EPSILON = 1e-6;
+
+    static class Config {
+        double monthlyBudget;
+        long timeBudgetMillis = 2_000;
+        // Share of the open balance charged when a loan is not cleared by its
+        // due month.
+        double lateFeeRate = 0.05;
+        int horizonMonths = PayoffSimulator.DEFAULT_HORIZON_MONTHS;
+
+        Config(double monthlyBudget) {
+            this.monthlyBudget = PayoffSimulator.checkBudget(monthlyBudget);
+        }
+    }
+
+    private final Config config;
+    private final double budget;
+    private final int horizon;
+
+    // Loans by position: the unpaid ids in id order.
+    private int n;
+    private int[] loanIds;
+    private double[] principal;
+    private double[] monthlyRate;
+    private double[] minPayment;
+    private int[] dueMonth;
+    private int[] rateOrder;
+    private int[] childOrder;
+    private boolean[] allPlaced;
+
+    private volatile double bestCost;
+    private int[] bestOrder;
+    private volatile boolean expired;
+    private long deadline;
+    private final LongAdder nodes = new LongAdder();
+
+    PayoffSolver(Config config) {
+        this.config = config;
+        this.budget = PayoffSimulator.checkBudget(config.monthlyBudget);
+        this.horizon = config.horizonMonths;
+    }
+
+    public PayoffPlan solve(LoanPortfolio loans, LocalDate start) {
+        long startNanos = System.nanoTime();
+        deadline = startNanos + config.timeBudgetMillis * 1_000_000;
+        load(loans, start);
+
+        Worker worker = new Worker();
+        String[] rules = {"AVALANCHE", "SNOWBALL", "DUE_DATE"};
+        int[][] orders = {rateOrder, order(Comparator.comparingDouble(i -> principal[i])),
+                order(Comparator.<Integer>comparingInt(i -> loans.getDueEpochDay(loanIds[i]))
+                        .thenComparingDouble(i -> -monthlyRate[i]))};
+        int baseline = 0;
+        double baselineCost = Double.MAX_VALUE;
+        for (int r = 0; r < rules.length; r++) {
+            double cost = cost(orders[r], worker);
+            if (cost < baselineCost - EPSILON) {
+                baseline = r;
+                baselineCost = cost;
+            }
+        }
+        bestOrder = orders[baseline];
+        bestCost = baselineCost;
+        childOrder = bestOrder;
+
+        boolean searched = n > 0 && n <= MAX_SEARCH_LOANS && totalMinimumPayment() <= budget;
+        if (searched) {
+            ForkJoinPool.commonPool().invoke(new SearchTask(root(), 0));
+        }
+        return plan(bestOrder, rules[baseline], baselineCost, searched, System.nanoTime() - startNanos);
+    }
+
+    private void load(LoanPortfolio loans, LocalDate start) {
+        loanIds = loans.unpaidIds();
+        n = loanIds.length;
+        principal = new double[n];
+        monthlyRate = new double[n];
+        minPayment = new double[n];
+        dueMonth = new int[n];
+        allPlaced = new boolean[n];
+        Arrays.fill(allPlaced, true);
+        for (int i = 0; i < n; i++) {
+            int id = loanIds[i];
+            principal[i] = loans.getPrincipal(id);
+            monthlyRate[i] = loans.getRate(id) / (100 * 12);
+            minPayment[i] = PayoffSimulator.minimumPayment(principal[i], monthlyRate[i], loans.getTimeMonths(id));
+            dueMonth[i] = dueMonth(start, loans.getDueDate(id));
+        }
+        rateOrder = order(Comparator.comparingDouble(i -> -monthlyRate[i]));
+    }
+
+    // Month (1-based) whose end is on or after the due date; 0 when that is
+    // past the horizon, so no fee is ever charged.
+    private int dueMonth(LocalDate start, LocalDate due) {
+        if (!due.isAfter(start)) {
+            return 1;
+        }
+        long months = ChronoUnit.MONTHS.between(start, due);
+        if (start.plusMonths(months).isBefore(due)) {
+            months++;
+        }
+        return months > horizon ? 0 : (int) Math.max(1, months);
+    }
+
+    // Positions sorted stably, so ties keep id order as PriorityIndex does.
+    private int[] order(Comparator<Integer> comparator) {
+        Integer[] boxed = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            boxed[i] = i;
+        }
+        Arrays.sort(boxed, comparator);
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = boxed[i];
+        }
+        return order;
+    }
+
+    private double totalMinimumPayment() {
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += minPayment[i];
+        }
+        return sum;
+    }
+
+    // Scratch space for one searching thread.
+    private final class Worker {
+        final double[] relaxed = new double[n];
+        double interest;
+        double fees;
+        double left;
+        int open;
+        int openOutside;
+        boolean shortfall;
+    }
+
+    // One month from balance into next: interest and minimums (fixed loans
+    // first, in order), extra to the fixed loans in order, then late fees.
+    // Leaves the unspent budget in worker.left; paid, when given, collects
+    // each loan's payments.
+    private void month(double[] balance, double[] next, int month, int[] order, int count, boolean[] placed,
+                       Worker w, double[] paid) {
+        System.arraycopy(balance, 0, next, 0, n);
+        w.interest = 0;
+        w.fees = 0;
+        w.shortfall = false;
+        double available = budget;
+        for (int k = 0; k < count; k++) {
+            available = minimum(next, order[k], available, w, paid);
+        }
+        if (count < n) {
+            for (int i = 0; i < n; i++) {
+                if (!placed[i]) {
+                    available = minimum(next, i, available, w, paid);
+                }
+            }
+        }
+        for (int k = 0; k < count && available > 0; k++) {
+            int i = order[k];
+            double b = next[i];
+            if (b <= 0) {
+                continue;
+            }
+            double pay = Math.min(b, available);
+            available -= pay;
+            next[i] = b - pay;
+            if (paid != null) {
+                paid[i] += pay;
+            }
+        }
+        w.left = available;
+
+        int open = 0;
+        int outside = 0;
+        for (int i = 0; i < n; i++) {
+            double b = next[i];
+            if (b > 0 && b <= EPSILON) {
+                next[i] = 0;
+            } else if (b > 0) {
+                if (dueMonth[i] == month) {
+                    double fee = b * config.lateFeeRate;
+                    next[i] = b + fee;
+                    w.fees += fee;
+                }
+                open++;
+                if (!placed[i]) {
+                    outside++;
+                }
+            }
+        }
+        w.open = open;
+        w.openOutside = outside;
+    }
+
+    private double minimum(double[] next, int i, double available, Worker w, double[] paid) {
+        double b = next[i];
+        if (b <= 0) {
+            return available;
+        }
+        double interest = b * monthlyRate[i];
+        w.interest += interest;
+        b += interest;
+        double due = Math.min(minPayment[i], b);
+        double pay = Math.min(due, available);
+        if (pay < due - EPSILON) {
+            w.shortfall = true;
+        }
+        next[i] = b - pay;
+        if (paid != null) {
+            paid[i] += pay;
+        }
+        return available - pay;
+    }
+
+    private double cost(int[] order, Worker w) {
+        double[] balance = principal.clone();
+        double[] next = new double[n];
+        double cost = 0;
+        for (int month = 1; month <= horizon; month++) {
+            month(balance, next, month, order, n, allPlaced, w, null);
+            cost += w.interest + w.fees;
+            double[] swap = balance;
+            balance = next;
+            next = swap;
+            if (w.open == 0) {
+                break;
+            }
+        }
+        return cost;
+    }
+
+    private static final class Node {
+        final int[] order;
+        final boolean[] placed;
+        final int count;
+        final double[] balance;
+        final int month;
+        final double cost;
+        final boolean done;
+        double bound;
+
+        Node(int[] order, boolean[] placed, int count, double[] balance, int month, double cost, boolean done) {
+            this.order = order;
+            this.placed = placed;
+            this.count = count;
+            this.balance = balance;
+            this.month = month;
+            this.cost = cost;
+            this.done = done;
+        }
+    }
+
+    private Node root() {
+        return new Node(new int[n], new boolean[n], 0, principal.clone(), 1, 0, false);
+    }
+
+    // Fixes loan i next and simulates until another choice is needed.
+    private Node child(Node parent, int i, Worker w) {
+        int[] order = parent.order.clone();
+        boolean[] placed = parent.placed.clone();
+        int count = parent.count;
+        order[count++] = i;
+        placed[i] = true;
+
+        double[] balance = parent.balance.clone();
+        double[] next = new double[n];
+        double cost = parent.cost;
+        int month = parent.month;
+        boolean done = false;
+        while (!done) {
+            if (month > horizon) {
+                done = true;
+                break;
+            }
+            month(balance, next, month, order, count, placed, w, null);
+            if (w.left > 0 && w.openOutside > 0) {
+                break;
+            }
+            cost += w.interest + w.fees;
+            double[] swap = balance;
+            balance = next;
+            next = swap;
+            month++;
+            done = w.open == 0;
+        }
+        return new Node(order, placed, count, balance, month, cost, done);
+    }
+
+    // Interest of the relaxed payoff from the node's month on, stopping early
+    // once it reaches limit.
+    private double relaxedInterest(Node node, double limit, Worker w) {
+        double[] b = w.relaxed;
+        System.arraycopy(node.balance, 0, b, 0, n);
+        double total = 0;
+        int first = 0;
+        for (int month = node.month; month <= horizon && total < limit; month++) {
+            while (first < n && b[rateOrder[first]] <= 0) {
+                first++;
+            }
+            if (first == n) {
+                break;
+            }
+            double available = budget;
+            for (int k = first; k < n; k++) {
+                int i = rateOrder[k];
+                double v = b[i];
+                if (v <= 0) {
+                    continue;
+                }
+                double interest = v * monthlyRate[i];
+                total += interest;
+                v += interest;
+                double pay = Math.min(v, available);
+                available -= pay;
+                v -= pay;
+                b[i] = v <= EPSILON ? 0 : v;
+            }
+        }
+        return total;
+    }
+
+    // Expands a node into its children; a finished child is offered as a
+    // complete order, the rest come back bounded and not yet pruned.
+    private List<Node> expand(Node node, Worker w) {
+        List<Node> children = new ArrayList<>();
+        for (int i : childOrder) {
+            if (isExpired()) {
+                break;
+            }
+            if (node.placed[i] || node.balance[i] <= 0) {
+                continue;
+            }
+            Node child = child(node, i, w);
+            nodes.increment();
+            if (child.done) {
+                offer(child);
+                continue;
+            }
+            double limit = bestCost - child.cost;
+            child.bound = child.cost + relaxedInterest(child, limit, w);
+            if (child.bound < bestCost - EPSILON) {
+                children.add(child);
+            }
+        }
+        return children;
+    }
+
+    private void search(Node node, Worker w) {
+        for (int i : childOrder) {
+            if (isExpired()) {
+                return;
+            }
+            if (node.placed[i] || node.balance[i] <= 0) {
+                continue;
+            }
+            Node child = child(node, i, w);
+            nodes.increment();
+            if (child.done) {
+                offer(child);
+            } else if (child.cost + relaxedInterest(child, bestCost - child.cost, w) < bestCost - EPSILON) {
+                search(child, w);
+            }
+        }
+    }
+
+    private class SearchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Node node;
+        private final int depth;
+
+        SearchTask(Node node, int depth) {
+            this.node = node;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            Worker worker = new Worker();
+            if (node.bound >= bestCost - EPSILON) {
+                return;
+            }
+            if (depth >= SPLIT_DEPTH) {
+                search(node, worker);
+                return;
+            }
+            List<SearchTask> tasks = new ArrayList<>();
+            for (Node child : expand(node, worker)) {
+                tasks.add(new SearchTask(child, depth + 1));
+            }
+            invokeAll(tasks);
+        }
+    }
+
+    // Loans cleared by their minimums alone were never fixed; they go last.
+    private synchronized void offer(Node leaf) {
+        if (leaf.cost >= bestCost - EPSILON) {
+            return;
+        }
+        int[] order = Arrays.copyOf(leaf.order, n);
+        int count = leaf.count;
+        for (int i = 0; i < n; i++) {
+            if (!leaf.placed[i]) {
+                order[count++] = i;
+            }
+        }
+        bestOrder = order;
+        bestCost = leaf.cost;
+    }
+
+    private boolean isExpired() {
+        if (!expired && System.nanoTime() - deadline > 0) {
+            expired = true;
+        }
+        return expired;
+    }
+
+    // Replays the order month by month, recording every payment.
+    private PayoffPlan plan(int[] order, String baseline, double baselineCost, boolean searched, long elapsedNanos) {
+        Worker w = new Worker();
+        double[] balance = principal.clone();
+        double[] next = new double[n];
+        double[] paid = new double[n];
+        int[] payoffMonth = new int[n];
+        Arrays.fill(payoffMonth, -1);
+        for (int i = 0; i < n; i++) {
+            if (balance[i] <= EPSILON) {
+                payoffMonth[i] = 0;
+            }
+        }
+        int[] monthStart = new int[horizon + 1];
+        int[] paymentLoan = new int[Math.min(MAX_PLAN_PAYMENTS, Math.max(16, n * 4))];
+        double[] paymentAmount = new double[paymentLoan.length];
+        double[] remaining = new double[horizon];
+        double interest = 0;
+        double fees = 0;
+        double totalPaid = 0;
+        int shortfallMonths = 0;
+        int monthsToDebtFree = n == 0 || allZero(balance) ? 0 : -1;
+        int recorded = 0;
+        int entries = 0;
+
+        for (int month = 1; month <= horizon && monthsToDebtFree < 0; month++) {
+            Arrays.fill(paid, 0);
+            month(balance, next, month, order, n, allPlaced, w, paid);
+            interest += w.interest;
+            fees += w.fees;
+            totalPaid += budget - w.left;
+            if (w.shortfall) {
+                shortfallMonths++;
+            }
+            double[] swap = balance;
+            balance = next;
+            next = swap;
+
+            double owed = 0;
+            for (int k = 0; k < n; k++) {
+                int i = order[k];
+                owed += balance[i];
+                if (balance[i] == 0 && payoffMonth[i] < 0) {
+                    payoffMonth[i] = month;
+                }
+            }
+            if (w.open == 0) {
+                monthsToDebtFree = month;
+            }
+            if (recorded == month - 1 && entries + n <= MAX_PLAN_PAYMENTS) {
+                if (entries + n > paymentLoan.length) {
+                    int capacity = Math.min(MAX_PLAN_PAYMENTS, Math.max(entries + n, paymentLoan.length * 2));
+                    paymentLoan = Arrays.copyOf(paymentLoan, capacity);
+                    paymentAmount = Arrays.copyOf(paymentAmount, capacity);
+                }
+                for (int k = 0; k < n; k++) {
+                    int i = order[k];
+                    if (paid[i] > 0) {
+                        paymentLoan[entries] = loanIds[i];
+                        paymentAmount[entries] = paid[i];
+                        entries++;
+                    }
+                }
+                remaining[month - 1] = owed;
+                monthStart[month] = entries;
+                recorded = month;
+            }
+        }
+
+        int[] ids = new int[n];
+        int[] payoffs = new int[n];
+        int[] dues = new int[n];
+        for (int k = 0; k < n; k++) {
+            ids[k] = loanIds[order[k]];
+            payoffs[k] = payoffMonth[order[k]];
+            dues[k] = dueMonth[order[k]];
+        }
+        PayoffResult result = new PayoffResult("OPTIMIZED", budget, interest, totalPaid, monthsToDebtFree,
+                shortfallMonths, ids, payoffs);
+        return new PayoffPlan(budget, result, fees, baseline, baselineCost, searched,
+                searched && !expired, nodes.sum(), elapsedNanos,
+                Arrays.copyOf(monthStart, recorded + 1), Arrays.copyOf(paymentLoan, entries),
+                Arrays.copyOf(paymentAmount, entries), Arrays.copyOf(remaining, recorded), dues);
+    }
+
+    private static boolean allZero(double[] balance) {
+        for (double b : balance) {
+            if (b > EPSILON) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
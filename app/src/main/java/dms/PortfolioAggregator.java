@@ -0,0 +1,169 @@
+package dms;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Single-pass aggregation kernel over a LoanPortfolio. Interest and total are
+// computed once per loan, and every column gets count/sum/min/max/mean/variance.
+// Sums are exact cents (basis points for the rate), so they do not drift with
+// portfolio size.
+//
+// The range is always split the same way (halves aligned to LEAF_SIZE), and
+// partial results are merged in the same order whether or not the halves run
+// on separate threads, so parallel and sequential results are bit-identical.
+class PortfolioAggregator {
+    enum Selection { ALL, UNPAID, PAID }
+
+    static final int LEAF_SIZE = 2048;
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    public static PortfolioStats aggregate(LoanPortfolio loans, Selection selection) {
+        return aggregate(loans, selection, loans.size() >= PARALLEL_THRESHOLD);
+    }
+
+    public static PortfolioStats aggregate(LoanPortfolio loans, Selection selection, boolean parallel) {
+        Partial result;
+        if (parallel) {
+            result = ForkJoinPool.commonPool().invoke(new AggregateTask(loans, selection, 0, loans.size()));
+        } else {
+            result = compute(loans, selection, 0, loans.size());
+        }
+        return new PortfolioStats(loans.size(), loans.paidCount(),
+                result.principal, result.rate, result.interest, result.total);
+    }
+
+    private static Partial compute(LoanPortfolio loans, Selection selection, int lo, int hi) {
+        if (hi - lo <= LEAF_SIZE) {
+            return leaf(loans, selection, lo, hi);
+        }
+        int mid = split(lo, hi);
+        Partial left = compute(loans, selection, lo, mid);
+        left.merge(compute(loans, selection, mid, hi));
+        return left;
+    }
+
+    private static int split(int lo, int hi) {
+        int leaves = (hi - lo + LEAF_SIZE - 1) / LEAF_SIZE;
+        return lo + (leaves / 2) * LEAF_SIZE;
+    }
+
+    // Two sweeps over a cache-resident block: exact integer sums/min/max first,
+    // then squared deviations from the block mean.
+    private static Partial leaf(LoanPortfolio loans, Selection selection, int lo, int hi) {
+        Partial p = new Partial();
+        long n = 0;
+        long sumP = 0, sumR = 0, sumI = 0, sumT = 0;
+        long minP = Long.MAX_VALUE, minR = Long.MAX_VALUE, minI = Long.MAX_VALUE, minT = Long.MAX_VALUE;
+        long maxP = Long.MIN_VALUE, maxR = Long.MIN_VALUE, maxI = Long.MIN_VALUE, maxT = Long.MIN_VALUE;
+        for (int id = lo; id < hi; id++) {
+            if (!selected(loans, selection, id)) {
+                continue;
+            }
+            long principal = loans.getPrincipalCents(id);
+            long rate = loans.getRateBps(id);
+            long interest = loans.interestCents(id);
+            long total = principal + interest;
+            n++;
+            sumP += principal;
+            sumR += rate;
+            sumI += interest;
+            sumT += total;
+            minP = Math.min(minP, principal);
+            minR = Math.min(minR, rate);
+            minI = Math.min(minI, interest);
+            minT = Math.min(minT, total);
+            maxP = Math.max(maxP, principal);
+            maxR = Math.max(maxR, rate);
+            maxI = Math.max(maxI, interest);
+            maxT = Math.max(maxT, total);
+        }
+        if (n == 0) {
+            return p;
+        }
+        double meanP = (double) sumP / n, meanR = (double) sumR / n;
+        double meanI = (double) sumI / n, meanT = (double) sumT / n;
+        double m2P = 0, m2R = 0, m2I = 0, m2T = 0;
+        for (int id = lo; id < hi; id++) {
+            if (!selected(loans, selection, id)) {
+                continue;
+            }
+            long principal = loans.getPrincipalCents(id);
+            long interest = loans.interestCents(id);
+            double dP = principal - meanP;
+            double dR = loans.getRateBps(id) - meanR;
+            double dI = interest - meanI;
+            double dT = principal + interest - meanT;
+            m2P += dP * dP;
+            m2R += dR * dR;
+            m2I += dI * dI;
+            m2T += dT * dT;
+        }
+        set(p.principal, n, sumP, minP, maxP, m2P);
+        set(p.rate, n, sumR, minR, maxR, m2R);
+        set(p.interest, n, sumI, minI, maxI, m2I);
+        set(p.total, n, sumT, minT, maxT, m2T);
+        return p;
+    }
+
+    private static boolean selected(LoanPortfolio loans, Selection selection, int id) {
+        switch (selection) {
+            case UNPAID:
+                return !loans.isPaid(id);
+            case PAID:
+                return loans.isPaid(id);
+            default:
+                return true;
+        }
+    }
+
+    private static void set(PortfolioStats.Metric m, long n, long sum, long min, long max, double m2) {
+        m.count = n;
+        m.sum = sum;
+        m.min = min;
+        m.max = max;
+        m.m2 = m2;
+    }
+
+    private static class Partial {
+        final PortfolioStats.Metric principal = new PortfolioStats.Metric();
+        final PortfolioStats.Metric rate = new PortfolioStats.Metric();
+        final PortfolioStats.Metric interest = new PortfolioStats.Metric();
+        final PortfolioStats.Metric total = new PortfolioStats.Metric();
+
+        void merge(Partial other) {
+            principal.merge(other.principal);
+            rate.merge(other.rate);
+            interest.merge(other.interest);
+            total.merge(other.total);
+        }
+    }
+
+    private static class AggregateTask extends RecursiveTask<Partial> {
+        private static final long serialVersionUID = 1L;
+
+        private final LoanPortfolio loans;
+        private final Selection selection;
+        private final int lo;
+        private final int hi;
+
+        AggregateTask(LoanPortfolio loans, Selection selection, int lo, int hi) {
+            this.loans = loans;
+            this.selection = selection;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (hi - lo <= PARALLEL_THRESHOLD) {
+                return PortfolioAggregator.compute(loans, selection, lo, hi);
+            }
+            int mid = split(lo, hi);
+            AggregateTask right = new AggregateTask(loans, selection, mid, hi);
+            right.fork();
+            Partial left = new AggregateTask(loans, selection, lo, mid).compute();
+            left.merge(right.join());
+            return left;
+        }
+    }
+}
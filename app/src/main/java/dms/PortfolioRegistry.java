@@ -0,0 +1,571 @@
+package dms;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Loan books of many customers, each in its own LoanStore directory under
+// one root (<root>/<customerId>/loans.dat + loans.journal).
+//
+// Customers are spread over independent partitions by a hash of their id.
+// A partition has its own lock, guarding only its id map and its LRU list of
+// resident books; opening or closing a store happens under the customer's
+// own monitor, outside the partition lock, so a slow disk stalls one
+// customer rather than its whole partition.
+//
+// Books are opened on first use and stay resident while they are leased.
+// When a partition holds more than its share of the resident-loan budget,
+// its least recently used unleased books are synced, closed and dropped.
+// Global reports count customers that are not resident from a Summary
+// (unpaid due days and outstanding balances, about 12 bytes per unpaid
+// loan). Eviction leaves one behind, and a report that finds none reads the
+// store once, read-only. Summaries are kept per partition in LRU order and
+// dropped past the partition's share of the summary budget, so their
+// memory is bounded no matter how many loans the registry holds.
+//
+// Global reports run one task per partition on the common fork-join pool
+// and merge the partial results; no lock is held for longer than it takes
+// to copy a partition's customer list.
+class PortfolioRegistry implements Closeable {
+    static final int DEFAULT_PARTITIONS = 64;
+    static final long DEFAULT_RESIDENT_LOANS = 4_000_000;
+    static final long DEFAULT_SUMMARY_LOANS = 4_000_000;
+    static final int MAX_ID_LENGTH = 64;
+
+    private final Path root;
+    private final Partition[] partitions;
+    private final long residentLoansPerPartition;
+    private final long summaryLoansPerPartition;
+
+    PortfolioRegistry(Path root) throws IOException {
+        this(root, DEFAULT_PARTITIONS, DEFAULT_RESIDENT_LOANS);
+    }
+
+    PortfolioRegistry(Path root, int partitionCount, long residentLoans) throws IOException {
+        this(root, partitionCount, residentLoans, DEFAULT_SUMMARY_LOANS);
+    }
+
+    // residentLoans and summaryLoans are budgets for all partitions together.
+    PortfolioRegistry(Path root, int partitionCount, long residentLoans, long summaryLoans) throws IOException {
+        if (partitionCount < 1 || Integer.bitCount(partitionCount) != 1) {
+            throw new IllegalArgumentException("Partition count must be a power of two: " + partitionCount);
+        }
+        this.root = root;
+        this.partitions = new Partition[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new Partition();
+        }
+        this.residentLoansPerPartition = Math.max(1, residentLoans / partitionCount);
+        this.summaryLoansPerPartition = Math.max(1, summaryLoans / partitionCount);
+        Files.createDirectories(root);
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path dir : dirs) {
+                String id = dir.getFileName().toString();
+                if (isValidId(id)) {
+                    Partition partition = partition(id);
+                    partition.customers.put(id, new Customer(id));
+                }
+            }
+        }
+    }
+
+    // Leased access to one customer's book. The book stays open until every
+    // lease on it is closed; it must not be used after that.
+    class Lease implements AutoCloseable {
+        private final Customer customer;
+        private boolean closed;
+
+        private Lease(Customer customer) {
+            this.customer = customer;
+        }
+
+        public String getCustomerId() { return customer.id; }
+        public ConcurrentLoanBook getBook() { return customer.book; }
+        public LoanStore getStore() { return customer.store; }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                release(customer);
+            }
+        }
+    }
+
+    // Unpaid loans of one customer by due date, with running totals of their
+    // outstanding balances, so the overdue count and amount for any day is a
+    // binary search.
+    static class Summary {
+        private final int loanCount;
+        private final int[] dueEpochDays;
+        private final long[] cumulativeCents;
+
+        private Summary(int loanCount, int[] dueEpochDays, long[] cumulativeCents) {
+            this.loanCount = loanCount;
+            this.dueEpochDays = dueEpochDays;
+            this.cumulativeCents = cumulativeCents;
+        }
+
+        static Summary of(PaymentLedger ledger) {
+            LoanPortfolio loans = ledger.getLoans();
+            int[] ids = loans.unpaidIds();
+            LoanPortfolio.sort(ids, (a, b) -> Integer.compare(loans.getDueEpochDay(a), loans.getDueEpochDay(b)));
+            int[] due = new int[ids.length];
+            long[] cumulative = new long[ids.length + 1];
+            for (int i = 0; i < ids.length; i++) {
+                due[i] = loans.getDueEpochDay(ids[i]);
+                cumulative[i + 1] = cumulative[i] + ledger.getBalanceCents(ids[i]);
+            }
+            return new Summary(loans.size(), due, cumulative);
+        }
+
+        public int getLoanCount() { return loanCount; }
+        public int getUnpaidCount() { return dueEpochDays.length; }
+        public long getExposureCents() { return cumulativeCents[dueEpochDays.length]; }
+
+        // Unpaid loans due strictly before the given day.
+        public int countDueBefore(long epochDay) {
+            int lo = 0;
+            int hi = dueEpochDays.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (dueEpochDays[mid] < epochDay) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        // Amount owed on the first count loans in due-date order.
+        public long centsDueBefore(int count) {
+            return cumulativeCents[count];
+        }
+    }
+
+    // Guarded by its own monitor: book, store and the hot summary. Guarded by
+    // the partition lock: leases, resident and accountedLoans.
+    private static class Customer {
+        final String id;
+        ConcurrentLoanBook book;
+        LoanStore store;
+        LoanPortfolio hotSummaryLoans;
+        Summary hotSummary;
+        int leases;
+        boolean resident;
+        long accountedLoans;
+
+        Customer(String id) {
+            this.id = id;
+        }
+    }
+
+    private static class Partition {
+        final Map<String, Customer> customers = new HashMap<>();
+        // Access order, so iteration starts at the least recently used.
+        final LinkedHashMap<String, Customer> resident = new LinkedHashMap<>(16, 0.75f, true);
+        // Summaries of customers that are not resident, also in access order.
+        final LinkedHashMap<String, Summary> summaries = new LinkedHashMap<>(16, 0.75f, true);
+        long residentLoans;
+        long summaryLoans;
+        long loads;
+        long evictions;
+    }
+
+    // Opens the customer's book if needed (creating an empty one for a new
+    // id) and pins it in memory until the lease is closed.
+    public Lease acquire(String customerId) throws IOException {
+        return lease(customerId, true);
+    }
+
+    // Like acquire, but only for customers that already have a book: an
+    // unknown id is an IndexOutOfBoundsException, and nothing is created
+    // for it on disk or in the registry. For reads.
+    public Lease lookup(String customerId) throws IOException {
+        return lease(customerId, false);
+    }
+
+    private Lease lease(String customerId, boolean create) throws IOException {
+        if (!isValidId(customerId)) {
+            throw new IllegalArgumentException("Invalid customer id: " + customerId);
+        }
+        Partition partition = partition(customerId);
+        Customer customer;
+        synchronized (partition) {
+            customer = create ? partition.customers.computeIfAbsent(customerId, Customer::new)
+                              : partition.customers.get(customerId);
+            if (customer == null) {
+                throw new IndexOutOfBoundsException("No customer with id " + customerId);
+            }
+            customer.leases++;
+        }
+        boolean loaded = false;
+        try {
+            synchronized (customer) {
+                if (customer.book == null) {
+                    customer.store = LoanStore.open(root.resolve(customerId));
+                    customer.book = new ConcurrentLoanBook(customer.store.getLedger(), customer.store.takeOrders());
+                    loaded = true;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            synchronized (partition) {
+                customer.leases--;
+            }
+            throw e;
+        }
+        List<Customer> victims;
+        synchronized (partition) {
+            if (loaded) {
+                partition.loads++;
+                dropSummary(partition, customerId);
+            }
+            if (!customer.resident) {
+                customer.resident = true;
+                customer.accountedLoans = 0;
+                partition.resident.put(customerId, customer);
+            } else {
+                partition.resident.get(customerId);
+            }
+            account(partition, customer);
+            victims = chooseVictims(partition);
+        }
+        evict(partition, victims);
+        return new Lease(customer);
+    }
+
+    public int getPartitionCount() { return partitions.length; }
+
+    public long getCustomerCount() {
+        long count = 0;
+        for (Partition partition : partitions) {
+            synchronized (partition) {
+                count += partition.customers.size();
+            }
+        }
+        return count;
+    }
+
+    public long getResidentCount() {
+        long count = 0;
+        for (Partition partition : partitions) {
+            synchronized (partition) {
+                count += partition.resident.size();
+            }
+        }
+        return count;
+    }
+
+    public long getResidentLoans() {
+        long count = 0;
+        for (Partition partition : partitions) {
+            synchronized (partition) {
+                count += partition.residentLoans;
+            }
+        }
+        return count;
+    }
+
+    public long getLoads() {
+        long count = 0;
+        for (Partition partition : partitions) {
+            synchronized (partition) {
+                count += partition.loads;
+            }
+        }
+        return count;
+    }
+
+    // Unpaid loans covered by the summaries kept for customers that are not
+    // resident.
+    public long getSummaryLoans() {
+        long count = 0;
+        for (Partition partition : partitions) {
+            synchronized (partition) {
+                count += partition.summaryLoans;
+            }
+        }
+        return count;
+    }
+
+    public long getEvictions() {
+        long count = 0;
+        for (Partition partition : partitions) {
+            synchronized (partition) {
+                count += partition.evictions;
+            }
+        }
+        return count;
+    }
+
+    // Exposure and overdue loans across all customers as of the given day.
+    public ExposureReport report(long epochDay) {
+        return ForkJoinPool.commonPool().invoke(new ReportTask(epochDay, 0, partitions.length));
+    }
+
+    // Syncs and closes every resident book, leased or not.
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (Partition partition : partitions) {
+            List<Customer> open;
+            synchronized (partition) {
+                open = new ArrayList<>(partition.resident.values());
+                partition.resident.clear();
+                partition.residentLoans = 0;
+                for (Customer customer : open) {
+                    customer.resident = false;
+                    customer.accountedLoans = 0;
+                }
+            }
+            for (Customer customer : open) {
+                synchronized (customer) {
+                    try {
+                        unload(partition, customer);
+                    } catch (IOException e) {
+                        failure = failure == null ? e : failure;
+                    }
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    static boolean isValidId(String id) {
+        if (id.isEmpty() || id.length() > MAX_ID_LENGTH || id.charAt(0) == '.') {
+            return false;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            boolean ok = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.';
+            if (!ok) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Partition partition(String customerId) {
+        int h = customerId.hashCode();
+        h ^= h >>> 16;
+        return partitions[h & (partitions.length - 1)];
+    }
+
+    private void release(Customer customer) {
+        Partition partition = partition(customer.id);
+        List<Customer> victims;
+        synchronized (partition) {
+            customer.leases--;
+            account(partition, customer);
+            victims = chooseVictims(partition);
+        }
+        evict(partition, victims);
+    }
+
+    // Brings the partition's resident-loan total up to date with the book's
+    // current size. Caller holds the partition lock.
+    private static void account(Partition partition, Customer customer) {
+        ConcurrentLoanBook book = customer.book;
+        if (customer.resident && book != null) {
+            long size = book.snapshot().size();
+            partition.residentLoans += size - customer.accountedLoans;
+            customer.accountedLoans = size;
+        }
+    }
+
+    // Unleased customers to drop, least recently used first, until the
+    // partition is back within its budget. Caller holds the partition lock.
+    private List<Customer> chooseVictims(Partition partition) {
+        List<Customer> victims = null;
+        Iterator<Customer> it = partition.resident.values().iterator();
+        while (partition.residentLoans > residentLoansPerPartition && it.hasNext()) {
+            Customer customer = it.next();
+            if (customer.leases > 0) {
+                continue;
+            }
+            it.remove();
+            customer.resident = false;
+            partition.residentLoans -= customer.accountedLoans;
+            customer.accountedLoans = 0;
+            partition.evictions++;
+            if (victims == null) {
+                victims = new ArrayList<>();
+            }
+            victims.add(customer);
+        }
+        return victims;
+    }
+
+    // Closes the victims' stores unless someone leased them again since they
+    // were chosen, in which case the new lease has already made them resident.
+    // A victim that cannot be saved stays resident for a later pass; the
+    // failure is logged rather than thrown, since the caller is leasing or
+    // releasing some other customer.
+    private void evict(Partition partition, List<Customer> victims) {
+        if (victims == null) {
+            return;
+        }
+        for (Customer customer : victims) {
+            synchronized (customer) {
+                synchronized (partition) {
+                    if (customer.leases > 0 || customer.resident) {
+                        continue;
+                    }
+                }
+                try {
+                    unload(partition, customer);
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("WARNING: Could not save customer " + customer.id + ": " + e);
+                    if (customer.book != null) {
+                        synchronized (partition) {
+                            customer.resident = true;
+                            partition.resident.put(customer.id, customer);
+                            partition.evictions--;
+                            account(partition, customer);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // Caller holds the customer's monitor. Saves before letting go of the
+    // book, so a failure leaves it open and intact.
+    private void unload(Partition partition, Customer customer) throws IOException {
+        if (customer.book == null) {
+            return;
+        }
+        customer.store.sync();
+        Summary summary = customer.book.readLedger(Summary::of);
+        customer.hotSummary = null;
+        customer.hotSummaryLoans = null;
+        LoanStore store = customer.store;
+        customer.book = null;
+        customer.store = null;
+        synchronized (partition) {
+            keepSummary(partition, customer.id, summary);
+        }
+        store.close();
+    }
+
+    // Keeps a summary for a customer that is not resident, dropping the least
+    // recently used others while the partition is over its share of the
+    // summary budget. Caller holds the partition lock.
+    private void keepSummary(Partition partition, String customerId, Summary summary) {
+        dropSummary(partition, customerId);
+        partition.summaries.put(customerId, summary);
+        partition.summaryLoans += weight(summary);
+        Iterator<Summary> it = partition.summaries.values().iterator();
+        while (partition.summaryLoans > summaryLoansPerPartition && it.hasNext()) {
+            Summary oldest = it.next();
+            if (oldest == summary) {
+                break;
+            }
+            it.remove();
+            partition.summaryLoans -= weight(oldest);
+        }
+    }
+
+    // Caller holds the partition lock.
+    private static void dropSummary(Partition partition, String customerId) {
+        Summary dropped = partition.summaries.remove(customerId);
+        if (dropped != null) {
+            partition.summaryLoans -= weight(dropped);
+        }
+    }
+
+    // Counted in unpaid loans, plus one so empty summaries count too.
+    private static long weight(Summary summary) {
+        return summary.getUnpaidCount() + 1L;
+    }
+
+    private ExposureReport reportPartition(Partition partition, long epochDay) {
+        Customer[] customers;
+        synchronized (partition) {
+            customers = partition.customers.values().toArray(new Customer[0]);
+        }
+        ExposureReport report = new ExposureReport(epochDay);
+        for (Customer customer : customers) {
+            Summary summary;
+            boolean resident;
+            synchronized (customer) {
+                resident = customer.book != null;
+                summary = resident ? hotSummary(customer) : coldSummary(partition, customer);
+            }
+            report.add(summary, resident);
+        }
+        return report;
+    }
+
+    // Cached until the book publishes another snapshot (payments publish
+    // one too). Caller holds the customer's monitor.
+    private static Summary hotSummary(Customer customer) {
+        LoanPortfolio loans = customer.book.snapshot();
+        if (customer.hotSummaryLoans != loans) {
+            customer.hotSummary = customer.book.readLedger(Summary::of);
+            customer.hotSummaryLoans = loans;
+        }
+        return customer.hotSummary;
+    }
+
+    // Caller holds the customer's monitor.
+    private Summary coldSummary(Partition partition, Customer customer) {
+        Summary summary;
+        synchronized (partition) {
+            summary = partition.summaries.get(customer.id);
+        }
+        if (summary == null) {
+            try {
+                summary = Summary.of(LoanStore.readLedger(root.resolve(customer.id)));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read customer " + customer.id, e);
+            }
+            synchronized (partition) {
+                keepSummary(partition, customer.id, summary);
+            }
+        }
+        return summary;
+    }
+
+    private class ReportTask extends RecursiveTask<ExposureReport> {
+        private static final long serialVersionUID = 1L;
+
+        private final long epochDay;
+        private final int lo;
+        private final int hi;
+
+        ReportTask(long epochDay, int lo, int hi) {
+            this.epochDay = epochDay;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected ExposureReport compute() {
+            if (hi - lo == 1) {
+                return reportPartition(partitions[lo], epochDay);
+            }
+            int mid = (lo + hi) >>> 1;
+            ReportTask right = new ReportTask(epochDay, mid, hi);
+            right.fork();
+            ExposureReport left = new ReportTask(epochDay, lo, mid).compute();
+            left.merge(right.join());
+            return left;
+        }
+    }
+}
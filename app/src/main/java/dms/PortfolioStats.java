@@ -0,0 +1,80 @@
+package dms;
+
+// Result of one PortfolioAggregator pass. The loan counts cover the whole
+// portfolio; the four metrics cover only the selected loans.
+class PortfolioStats {
+    private final int loanCount;
+    private final int paidCount;
+    private final int unpaidCount;
+    private final Metric principal;
+    private final Metric rate;
+    private final Metric interest;
+    private final Metric total;
+
+    PortfolioStats(int loanCount, int paidCount, Metric principal, Metric rate, Metric interest, Metric total) {
+        this.loanCount = loanCount;
+        this.paidCount = paidCount;
+        this.unpaidCount = loanCount - paidCount;
+        this.principal = principal;
+        this.rate = rate;
+        this.interest = interest;
+        this.total = total;
+    }
+
+    public int getLoanCount() { return loanCount; }
+    public int getPaidCount() { return paidCount; }
+    public int getUnpaidCount() { return unpaidCount; }
+    public long getSelectedCount() { return principal.count; }
+    public Metric getPrincipal() { return principal; }
+    public Metric getRate() { return rate; }
+    public Metric getInterest() { return interest; }
+    public Metric getTotal() { return total; }
+
+    // Count, sum, min, max and (count, mean, M2) variance state of one column.
+    // Values are hundredths (cents, or basis points for the rate column), so
+    // count, sum, min and max are exact; only the variance is floating point.
+    static class Metric {
+        long count;
+        long sum;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        double m2;
+
+        public long getCount() { return count; }
+        public double getSum() { return Money.toDouble(sum); }
+        public long getExactSum() { return sum; }
+        public double getMin() { return count == 0 ? 0 : Money.toDouble(min); }
+        public double getMax() { return count == 0 ? 0 : Money.toDouble(max); }
+        public double getAverage() { return count == 0 ? 0 : mean() / 100; }
+
+        // Population variance.
+        public double getVariance() { return count == 0 ? 0 : m2 / count / 10000; }
+
+        double mean() {
+            return (double) sum / count;
+        }
+
+        // Chan et al. pairwise merge; always called in the same tree order so
+        // sequential and parallel runs produce identical bits.
+        void merge(Metric other) {
+            if (other.count == 0) {
+                return;
+            }
+            if (count == 0) {
+                count = other.count;
+                sum = other.sum;
+                min = other.min;
+                max = other.max;
+                m2 = other.m2;
+                return;
+            }
+            long n = count + other.count;
+            double delta = other.mean() - mean();
+            m2 += other.m2 + delta * delta * count * other.count / n;
+            count = n;
+            sum = Math.addExact(sum, other.sum);
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+    }
+}
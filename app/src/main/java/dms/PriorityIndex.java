@@ -0,0 +1,342 @@
+package dms;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+// Persistent ordering of the unpaid loans in a portfolio, kept up to date as
+// loans are added and paid. It is a treap keyed by (order, id) with subtree
+// sizes, so updates cost O(log n) and rank queries (top-k, pages) cost
+// O(log n + k). Nodes are loan ids; links live in primitive arrays.
+//
+// Ties fall back to insertion order, matching the stable List.sort the
+// priority views used to run.
+class PriorityIndex implements LoanPortfolio.Listener {
+    private static final int NIL = -1;
+    private static final int[] NO_ORDER = new int[0];
+
+    private final LoanPortfolio loans;
+    private final LoanPortfolio.IdComparator order;
+    private int root = NIL;
+    private int[] left = new int[0];
+    private int[] right = new int[0];
+    private int[] size = new int[0];
+
+    PriorityIndex(LoanPortfolio loans, LoanPortfolio.IdComparator order) {
+        this(loans, order, NO_ORDER);
+    }
+
+    // Starts from the first presorted.length loans already in this order
+    // (see LoanOrders), so only loans added since are sorted. presorted may
+    // be null.
+    PriorityIndex(LoanPortfolio loans, LoanPortfolio.IdComparator order, int[] presorted) {
+        this.loans = loans;
+        this.order = order;
+        rebuild(presorted);
+        loans.addListener(this);
+    }
+
+    // Avalanche: highest interest rate first.
+    static PriorityIndex byRateDescending(LoanPortfolio loans) {
+        return new PriorityIndex(loans, rateDescending(loans));
+    }
+
+    // Snowball: smallest balance first.
+    static PriorityIndex byPrincipalAscending(LoanPortfolio loans) {
+        return new PriorityIndex(loans, principalAscending(loans));
+    }
+
+    static LoanPortfolio.IdComparator rateDescending(LoanPortfolio loans) {
+        return (a, b) -> Integer.compare(loans.getRateBps(b), loans.getRateBps(a));
+    }
+
+    static LoanPortfolio.IdComparator principalAscending(LoanPortfolio loans) {
+        return (a, b) -> Long.compare(loans.getPrincipalCents(a), loans.getPrincipalCents(b));
+    }
+
+    static LoanPortfolio.IdComparator dueDateAscending(LoanPortfolio loans) {
+        return (a, b) -> Integer.compare(loans.getDueEpochDay(a), loans.getDueEpochDay(b));
+    }
+
+    public int size() {
+        return sizeOf(root);
+    }
+
+    public boolean contains(int id) {
+        return id < size.length && size[id] > 0;
+    }
+
+    public int[] top(int k) {
+        return page(0, k);
+    }
+
+    // Loan ids at ranks [offset, offset + limit), in priority order.
+    public int[] page(int offset, int limit) {
+        int n = Math.max(0, Math.min(limit, size() - offset));
+        int[] ids = new int[n];
+        if (n == 0) {
+            return ids;
+        }
+        int[] stack = new int[64];
+        int depth = 0;
+        int t = root;
+        int k = offset;
+        while (t != NIL) {
+            int ls = sizeOf(left[t]);
+            if (k < ls) {
+                stack = push(stack, depth++, t);
+                t = left[t];
+            } else if (k == ls) {
+                stack = push(stack, depth++, t);
+                break;
+            } else {
+                k -= ls + 1;
+                t = right[t];
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            t = stack[--depth];
+            ids[i] = t;
+            for (t = right[t]; t != NIL; t = left[t]) {
+                stack = push(stack, depth++, t);
+            }
+        }
+        return ids;
+    }
+
+    // Loan id at the given rank (0 = highest priority).
+    public int select(int rank) {
+        if (rank < 0 || rank >= size()) {
+            throw new IndexOutOfBoundsException("rank " + rank + " of " + size());
+        }
+        int t = root;
+        while (true) {
+            int ls = sizeOf(left[t]);
+            if (rank < ls) {
+                t = left[t];
+            } else if (rank == ls) {
+                return t;
+            } else {
+                rank -= ls + 1;
+                t = right[t];
+            }
+        }
+    }
+
+    // Number of indexed loans that satisfy a predicate which holds for a
+    // prefix of the ordering, e.g. "due before day X" on a due-date index.
+    public int countWhile(IntPredicate inPrefix) {
+        int count = 0;
+        int t = root;
+        while (t != NIL) {
+            if (inPrefix.test(t)) {
+                count += sizeOf(left[t]) + 1;
+                t = right[t];
+            } else {
+                t = left[t];
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void loanAdded(int id) {
+        ensureCapacity(id + 1);
+        if (!loans.isPaid(id)) {
+            root = insert(root, id);
+        }
+    }
+
+    @Override
+    public void paidChanged(int id, boolean isPaid) {
+        if (isPaid && contains(id)) {
+            root = remove(root, id);
+        } else if (!isPaid && !contains(id)) {
+            root = insert(root, id);
+        }
+    }
+
+    // Bulk (re)build from the portfolio: sort once, then build the treap as a
+    // Cartesian tree over the sorted ids in linear time.
+    public void rebuild() {
+        rebuild(NO_ORDER);
+    }
+
+    // Loan ids [0, presorted.length) come in order from presorted, paid ones
+    // skipped; the rest are sorted and merged in.
+    private void rebuild(int[] presorted) {
+        int n = loans.size();
+        if (presorted == null || presorted.length > n) {
+            presorted = NO_ORDER;
+        }
+        ensureCapacity(n);
+        Arrays.fill(size, 0);
+        int[] known = new int[presorted.length];
+        int knownCount = 0;
+        for (int id : presorted) {
+            if (!loans.isPaid(id)) {
+                known[knownCount++] = id;
+            }
+        }
+        int[] added = new int[n - presorted.length];
+        int addedCount = 0;
+        for (int id = presorted.length; id < n; id++) {
+            if (!loans.isPaid(id)) {
+                added[addedCount++] = id;
+            }
+        }
+        added = Arrays.copyOf(added, addedCount);
+        LoanPortfolio.sort(added, this::compare);
+
+        int[] ids = new int[knownCount + addedCount];
+        for (int i = 0, p = 0, q = 0; i < ids.length; i++) {
+            if (q >= addedCount || (p < knownCount && compare(known[p], added[q]) < 0)) {
+                ids[i] = known[p++];
+            } else {
+                ids[i] = added[q++];
+            }
+        }
+        build(ids);
+    }
+
+    private void build(int[] ids) {
+        int[] stack = new int[ids.length];
+        int depth = 0;
+        for (int id : ids) {
+            int last = NIL;
+            while (depth > 0 && higher(id, stack[depth - 1])) {
+                last = stack[--depth];
+            }
+            left[id] = last;
+            right[id] = NIL;
+            if (depth > 0) {
+                right[stack[depth - 1]] = id;
+            }
+            stack[depth++] = id;
+        }
+        root = depth > 0 ? stack[0] : NIL;
+        fixSizes(root);
+    }
+
+    private int fixSizes(int t) {
+        if (t == NIL) {
+            return 0;
+        }
+        size[t] = 1 + fixSizes(left[t]) + fixSizes(right[t]);
+        return size[t];
+    }
+
+    private int insert(int t, int id) {
+        if (t == NIL) {
+            left[id] = NIL;
+            right[id] = NIL;
+            size[id] = 1;
+            return id;
+        }
+        if (compare(id, t) < 0) {
+            left[t] = insert(left[t], id);
+            if (higher(left[t], t)) {
+                t = rotateRight(t);
+            }
+        } else {
+            right[t] = insert(right[t], id);
+            if (higher(right[t], t)) {
+                t = rotateLeft(t);
+            }
+        }
+        update(t);
+        return t;
+    }
+
+    private int remove(int t, int id) {
+        if (t == id) {
+            int merged = merge(left[t], right[t]);
+            size[id] = 0;
+            return merged;
+        }
+        if (compare(id, t) < 0) {
+            left[t] = remove(left[t], id);
+        } else {
+            right[t] = remove(right[t], id);
+        }
+        update(t);
+        return t;
+    }
+
+    private int merge(int a, int b) {
+        if (a == NIL) {
+            return b;
+        }
+        if (b == NIL) {
+            return a;
+        }
+        if (higher(a, b)) {
+            right[a] = merge(right[a], b);
+            update(a);
+            return a;
+        }
+        left[b] = merge(a, left[b]);
+        update(b);
+        return b;
+    }
+
+    private int rotateRight(int t) {
+        int l = left[t];
+        left[t] = right[l];
+        right[l] = t;
+        update(t);
+        return l;
+    }
+
+    private int rotateLeft(int t) {
+        int r = right[t];
+        right[t] = left[r];
+        left[r] = t;
+        update(t);
+        return r;
+    }
+
+    private void update(int t) {
+        size[t] = 1 + sizeOf(left[t]) + sizeOf(right[t]);
+    }
+
+    private int sizeOf(int t) {
+        return t == NIL ? 0 : size[t];
+    }
+
+    private int compare(int a, int b) {
+        int c = order.compare(a, b);
+        return c != 0 ? c : Integer.compare(a, b);
+    }
+
+    // Heap priority derived from the id, so no per-node storage is needed.
+    private static boolean higher(int a, int b) {
+        int pa = mix(a);
+        int pb = mix(b);
+        return pa != pb ? pa > pb : a < b;
+    }
+
+    private static int mix(int id) {
+        int h = id * 0x9E3779B9;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return h;
+    }
+
+    private static int[] push(int[] stack, int depth, int value) {
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+        }
+        stack[depth] = value;
+        return stack;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed > size.length) {
+            int capacity = Math.max(needed, size.length + (size.length >> 1) + 16);
+            left = Arrays.copyOf(left, capacity);
+            right = Arrays.copyOf(right, capacity);
+            size = Arrays.copyOf(size, capacity);
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package dms;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.Charset;
+import java.time.LocalDate;
+
+// Text output for the menu screens. Lines are assembled in one reusable
+// byte array and handed to the stream in 64 KB chunks instead of one
+// println per line, and numbers are formatted by hand instead of through
+// String.format.
+//
+// Output is byte-for-byte what the printf/println code produced: fixed(v, n)
+// equals String.format("%.nf", v), the column methods pad like "%-Ns", and
+// lines end with the platform line separator. Formatter rounds the shortest
+// decimal form of a double half-up, so values within a few ulps of a
+// rounding tie take a BigDecimal detour to round the same digits.
+class ReportWriter {
+    private static final int BLOCK_SIZE = 1 << 16;
+    private static final long[] POWERS_OF_TEN = {1, 10, 100, 1000, 10000};
+
+    private final OutputStream out;
+    private final Charset charset;
+    private final byte[] newline;
+    private final byte[] buf = new byte[BLOCK_SIZE];
+    private int pos;
+
+    ReportWriter(OutputStream out, Charset charset) {
+        this.out = out;
+        this.charset = charset;
+        this.newline = System.lineSeparator().getBytes(charset);
+    }
+
+    // Writes through System.out with the charset its println would use.
+    static ReportWriter forStdout() {
+        String encoding = System.getProperty("sun.stdout.encoding");
+        return new ReportWriter(System.out, encoding != null ? Charset.forName(encoding) : Charset.defaultCharset());
+    }
+
+    public ReportWriter text(String s) {
+        if (s.length() > buf.length) {
+            bytes(s.getBytes(charset));
+            return this;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80) {
+                bytes(s.getBytes(charset));
+                return this;
+            }
+        }
+        ensure(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            buf[pos++] = (byte) s.charAt(i);
+        }
+        return this;
+    }
+
+    public ReportWriter newline() {
+        bytes(newline);
+        return this;
+    }
+
+    public ReportWriter line(String s) {
+        return text(s).newline();
+    }
+
+    public ReportWriter integer(long value) {
+        integerLength(value);
+        return this;
+    }
+
+    // String.format("%.2f", value)
+    public ReportWriter money(double value) {
+        fixedLength(value, 2);
+        return this;
+    }
+
+    // An exact amount in cents, as money(cents / 100.0) would print it.
+    public ReportWriter cents(long cents) {
+        centsLength(cents);
+        return this;
+    }
+
+    // String.format("%.<decimals>f", value) for 0 to 4 decimals.
+    public ReportWriter fixed(double value, int decimals) {
+        fixedLength(value, decimals);
+        return this;
+    }
+
+    // YYYY-MM-DD, as LocalDate.toString() prints it.
+    public ReportWriter date(long epochDay) {
+        dateLength(epochDay);
+        return this;
+    }
+
+    // String.format("%-<width>s", s)
+    public ReportWriter column(String s, int width) {
+        text(s);
+        return spaces(width - s.length());
+    }
+
+    // String.format("%-<width>d", value)
+    public ReportWriter column(long value, int width) {
+        return spaces(width - integerLength(value));
+    }
+
+    // String.format("%-<width>.<decimals>f", value)
+    public ReportWriter column(double value, int decimals, int width) {
+        return spaces(width - fixedLength(value, decimals));
+    }
+
+    // cents(cents) padded like "%-<width>s"
+    public ReportWriter centsColumn(long cents, int width) {
+        return spaces(width - centsLength(cents));
+    }
+
+    // String.format("%-<width>s", date.toString())
+    public ReportWriter dateColumn(long epochDay, int width) {
+        return spaces(width - dateLength(epochDay));
+    }
+
+    public ReportWriter spaces(int count) {
+        while (count > 0) {
+            int run = Math.min(count, buf.length);
+            ensure(run);
+            for (int i = 0; i < run; i++) {
+                buf[pos++] = ' ';
+            }
+            count -= run;
+        }
+        return this;
+    }
+
+    public void flush() {
+        try {
+            out.write(buf, 0, pos);
+            pos = 0;
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Returns the number of characters written.
+    private int integerLength(long value) {
+        if (value == Long.MIN_VALUE) {
+            String s = Long.toString(value);
+            text(s);
+            return s.length();
+        }
+        ensure(20);
+        int start = pos;
+        if (value < 0) {
+            buf[pos++] = '-';
+            value = -value;
+        }
+        int digitsStart = pos;
+        do {
+            buf[pos++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        for (int i = digitsStart, j = pos - 1; i < j; i++, j--) {
+            byte t = buf[i];
+            buf[i] = buf[j];
+            buf[j] = t;
+        }
+        return pos - start;
+    }
+
+    private int centsLength(long cents) {
+        if (cents == Long.MIN_VALUE) {
+            return fixedLength(Money.toDouble(cents), 2);
+        }
+        return unitsLength(cents < 0, Math.abs(cents), 2);
+    }
+
+    private int dateLength(long epochDay) {
+        long z = epochDay + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        long day = doy - (153 * mp + 2) / 5 + 1;
+        long month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+        if (year < 0 || year > 9999) {
+            String s = LocalDate.ofEpochDay(epochDay).toString();
+            text(s);
+            return s.length();
+        }
+        ensure(10);
+        buf[pos++] = (byte) ('0' + year / 1000);
+        buf[pos++] = (byte) ('0' + year / 100 % 10);
+        buf[pos++] = (byte) ('0' + year / 10 % 10);
+        buf[pos++] = (byte) ('0' + year % 10);
+        buf[pos++] = '-';
+        buf[pos++] = (byte) ('0' + month / 10);
+        buf[pos++] = (byte) ('0' + month % 10);
+        buf[pos++] = '-';
+        buf[pos++] = (byte) ('0' + day / 10);
+        buf[pos++] = (byte) ('0' + day % 10);
+        return 10;
+    }
+
+    private int fixedLength(double value, int decimals) {
+        boolean negative = Double.doubleToRawLongBits(value) < 0;
+        double magnitude = Math.abs(value);
+        if (magnitude * POWERS_OF_TEN[decimals] < 1e15) {
+            return unitsLength(negative, Money.round(magnitude, decimals), decimals);
+        }
+        String s = Double.isFinite(value)
+                ? (negative ? "-" : "") + new BigDecimal(Double.toString(magnitude))
+                        .setScale(decimals, RoundingMode.HALF_UP).toPlainString()
+                : String.format("%." + decimals + "f", value);
+        text(s);
+        return s.length();
+    }
+
+    // units / 10^decimals with exactly that many decimals; units >= 0.
+    private int unitsLength(boolean negative, long units, int decimals) {
+        long scale = POWERS_OF_TEN[decimals];
+        ensure(24);
+        int start = pos;
+        if (negative) {
+            buf[pos++] = '-';
+        }
+        integerLength(units / scale);
+        if (decimals > 0) {
+            long digits = units % scale;
+            buf[pos++] = '.';
+            for (long p = scale / 10; p > 0; p /= 10) {
+                buf[pos++] = (byte) ('0' + digits / p % 10);
+            }
+        }
+        return pos - start;
+    }
+
+    private void bytes(byte[] bytes) {
+        if (bytes.length > buf.length) {
+            flushBuffer();
+            write(bytes, bytes.length);
+            return;
+        }
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buf, pos, bytes.length);
+        pos += bytes.length;
+    }
+
+    private void ensure(int bytes) {
+        if (pos + bytes > buf.length) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() {
+        write(buf, pos);
+        pos = 0;
+    }
+
+    private void write(byte[] bytes, int length) {
+        try {
+            out.write(bytes, 0, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
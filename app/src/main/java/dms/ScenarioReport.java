@@ -0,0 +1,41 @@
+package dms;
+
+// Percentile summary of a ScenarioRunner run.
+class ScenarioReport {
+    private final int scenarios;
+    private final long seed;
+    private final double monthlyBudget;
+    private final int horizonMonths;
+    private final StreamingHistogram interest;
+    private final StreamingHistogram months;
+    private final long notDebtFree;
+
+    ScenarioReport(int scenarios, long seed, double monthlyBudget, int horizonMonths,
+                   StreamingHistogram interest, StreamingHistogram months, long notDebtFree) {
+        this.scenarios = scenarios;
+        this.seed = seed;
+        this.monthlyBudget = monthlyBudget;
+        this.horizonMonths = horizonMonths;
+        this.interest = interest;
+        this.months = months;
+        this.notDebtFree = notDebtFree;
+    }
+
+    public int getScenarios() { return scenarios; }
+    public long getSeed() { return seed; }
+    public double getMonthlyBudget() { return monthlyBudget; }
+    public int getHorizonMonths() { return horizonMonths; }
+
+    public double getInterestPercentile(double percentile) { return interest.getPercentile(percentile); }
+    public double getMeanInterest() { return interest.getMean(); }
+    public double getWorstInterest() { return interest.getMax(); }
+
+    // Scenarios that never clear the debt count as horizonMonths + 1.
+    public long getMonthsPercentile(double percentile) { return Math.round(months.getPercentile(percentile)); }
+
+    public long getNotDebtFreeCount() { return notDebtFree; }
+
+    public double getNotDebtFreeShare() {
+        return scenarios == 0 ? 0 : (double) notDebtFree / scenarios;
+    }
+}
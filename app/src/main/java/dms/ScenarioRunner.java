@@ -0,0 +1,131 @@
+package dms;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Monte Carlo stress test of a payoff order. Each scenario may shock the rates
+// of the loans treated as variable, skip whole months of payments, and cut the
+// monthly budget; it is then simulated with PayoffSimulator.
+//
+// Scenarios are spread over the common fork-join pool. The random streams are
+// split from the seed along a fixed task tree, and results are kept only as
+// mergeable histograms, so a seed reproduces the same report on any number of
+// cores without holding individual paths in memory.
+//
+// Scenarios run on PayoffSimulator's double balances. The report is a set of
+// percentiles over randomized estimates, which exact cents would not make any
+// more exact.
+class ScenarioRunner {
+    static final int LEAF_SCENARIOS = 256;
+
+    private final LoanPortfolio loans;
+    private final int[] order;
+    private final Config config;
+
+    static class Config {
+        int scenarios = 10_000;
+        long seed = 20240601L;
+        double monthlyBudget;
+        int horizonMonths = PayoffSimulator.DEFAULT_HORIZON_MONTHS;
+        // Chance that a loan carries a variable rate that gets shocked.
+        double variableRateShare = 0.3;
+        // Largest rate increase, in percentage points, applied to a variable loan.
+        double maxRateIncrease = 5.0;
+        // Chance that any single month's payment is missed.
+        double missedMonthProbability = 0.02;
+        // Chance of a budget cut for the whole scenario, and its largest size.
+        double budgetCutProbability = 0.2;
+        double maxBudgetCut = 0.3;
+
+        Config(double monthlyBudget) {
+            this.monthlyBudget = PayoffSimulator.checkBudget(monthlyBudget);
+        }
+    }
+
+    ScenarioRunner(LoanPortfolio loans, int[] order, Config config) {
+        this.loans = loans;
+        this.order = order.clone();
+        this.config = config;
+    }
+
+    public ScenarioReport run() {
+        Partial result = ForkJoinPool.commonPool().invoke(
+                new ScenarioTask(0, config.scenarios, new SplittableRandom(config.seed)));
+        return new ScenarioReport(config.scenarios, config.seed, config.monthlyBudget, config.horizonMonths,
+                result.interest, result.months, result.notDebtFree);
+    }
+
+    private Partial simulate(int scenarios, SplittableRandom random) {
+        Partial partial = new Partial();
+        PayoffSimulator simulator = new PayoffSimulator(config.horizonMonths);
+        simulator.load(loans, order);
+        int n = simulator.getLoanCount();
+        for (int s = 0; s < scenarios; s++) {
+            simulator.resetScenario();
+            for (int i = 0; i < n; i++) {
+                if (random.nextDouble() < config.variableRateShare) {
+                    simulator.shockRate(i, random.nextDouble() * config.maxRateIncrease);
+                }
+            }
+            for (int month = 1; month <= config.horizonMonths; month++) {
+                if (random.nextDouble() < config.missedMonthProbability) {
+                    simulator.setMissedMonth(month, true);
+                }
+            }
+            double budget = config.monthlyBudget;
+            if (random.nextDouble() < config.budgetCutProbability) {
+                budget *= 1 - random.nextDouble() * config.maxBudgetCut;
+            }
+            simulator.run(budget);
+
+            partial.interest.record(simulator.getTotalInterest());
+            if (simulator.getMonthsToDebtFree() >= 0) {
+                partial.months.record(simulator.getMonthsToDebtFree());
+            } else {
+                partial.months.record(config.horizonMonths + 1);
+                partial.notDebtFree++;
+            }
+        }
+        return partial;
+    }
+
+    private static class Partial {
+        final StreamingHistogram interest = new StreamingHistogram();
+        final StreamingHistogram months = new StreamingHistogram();
+        long notDebtFree;
+
+        void merge(Partial other) {
+            interest.merge(other.interest);
+            months.merge(other.months);
+            notDebtFree += other.notDebtFree;
+        }
+    }
+
+    private class ScenarioTask extends RecursiveTask<Partial> {
+        private static final long serialVersionUID = 1L;
+
+        private final int lo;
+        private final int hi;
+        private final SplittableRandom random;
+
+        ScenarioTask(int lo, int hi, SplittableRandom random) {
+            this.lo = lo;
+            this.hi = hi;
+            this.random = random;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (hi - lo <= LEAF_SCENARIOS) {
+                return simulate(hi - lo, random);
+            }
+            int mid = (lo + hi) >>> 1;
+            ScenarioTask right = new ScenarioTask(mid, hi, random.split());
+            right.fork();
+            Partial left = new ScenarioTask(lo, mid, random).compute();
+            left.merge(right.join());
+            return left;
+        }
+    }
+}
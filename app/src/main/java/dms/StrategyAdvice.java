@@ -0,0 +1,73 @@
+package dms;
+
+// Avalanche and Snowball simulated month by month under one budget, and
+// which of the two to follow. Avalanche wins when it saves more than 1% of
+// the interest (at least 1.00); Snowball wins when it is that much cheaper
+// or, at equal cost, clears the first loan sooner.
+//
+// Both results come from PayoffSimulator's double balances. The 1% margin is
+// far wider than their rounding error, so exact cents would not change the
+// advice.
+class StrategyAdvice {
+    enum Choice { AVALANCHE, SNOWBALL, EITHER }
+
+    private final PayoffResult avalanche;
+    private final PayoffResult snowball;
+    private final double minimumPayments;
+    private final double savings;
+    private final double threshold;
+    private final Choice choice;
+
+    private StrategyAdvice(PayoffResult avalanche, PayoffResult snowball, double minimumPayments) {
+        this.avalanche = avalanche;
+        this.snowball = snowball;
+        this.minimumPayments = minimumPayments;
+        this.savings = snowball.getTotalInterest() - avalanche.getTotalInterest();
+        this.threshold = Math.max(1.0, 0.01 * Math.min(avalanche.getTotalInterest(), snowball.getTotalInterest()));
+        if (savings > threshold) {
+            choice = Choice.AVALANCHE;
+        } else if (savings < -threshold || isSnowballFirstWinSooner()) {
+            choice = Choice.SNOWBALL;
+        } else {
+            choice = Choice.EITHER;
+        }
+    }
+
+    // Orders are the unpaid loan ids by rate (Avalanche) and by principal
+    // (Snowball). The simulator is reused and left loaded with Snowball.
+    static StrategyAdvice simulate(PayoffSimulator simulator, LoanPortfolio loans,
+                                   int[] avalancheOrder, int[] snowballOrder, double monthlyBudget) {
+        PayoffSimulator.checkBudget(monthlyBudget);
+        simulator.load(loans, avalancheOrder);
+        double minimumPayments = simulator.totalMinimumPayment();
+        simulator.run(monthlyBudget);
+        PayoffResult avalanche = simulator.result("AVALANCHE", monthlyBudget);
+
+        simulator.load(loans, snowballOrder);
+        simulator.run(monthlyBudget);
+        PayoffResult snowball = simulator.result("SNOWBALL", monthlyBudget);
+        return new StrategyAdvice(avalanche, snowball, minimumPayments);
+    }
+
+    public PayoffResult getAvalanche() { return avalanche; }
+    public PayoffResult getSnowball() { return snowball; }
+    public double getMinimumPayments() { return minimumPayments; }
+    public Choice getChoice() { return choice; }
+
+    // Interest Avalanche saves over Snowball; negative when Snowball is cheaper.
+    public double getSavings() { return savings; }
+
+    public boolean isSnowballCheaper() {
+        return savings < -threshold;
+    }
+
+    public boolean isBelowMinimum() {
+        return avalanche.getMonthlyBudget() < minimumPayments;
+    }
+
+    public boolean isSnowballFirstWinSooner() {
+        int avalancheFirstWin = avalanche.getFirstPayoffMonth();
+        int snowballFirstWin = snowball.getFirstPayoffMonth();
+        return snowballFirstWin >= 0 && (avalancheFirstWin < 0 || snowballFirstWin < avalancheFirstWin);
+    }
+}
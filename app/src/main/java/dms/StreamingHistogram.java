@@ -0,0 +1,70 @@
+package dms;
+
+// Fixed-size log-scale histogram for non-negative values. Percentiles come
+// back within RELATIVE_PRECISION of the true value, memory does not grow with
+// the number of samples, and two histograms merge by adding bucket counts, so
+// the merged result does not depend on which thread recorded what.
+class StreamingHistogram {
+    static final double RELATIVE_PRECISION = 0.001;
+
+    private static final double LOWEST = 0.01;
+    private static final double HIGHEST = 1e13;
+    private static final double LOG_BASE = Math.log1p(RELATIVE_PRECISION);
+    private static final int BUCKETS = 2 + (int) Math.ceil(Math.log(HIGHEST / LOWEST) / LOG_BASE);
+
+    // Bucket 0 holds everything below LOWEST.
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private double sum;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public void record(double value) {
+        counts[bucket(value)]++;
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    public void merge(StreamingHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public long getCount() { return count; }
+    public double getMin() { return count == 0 ? 0 : min; }
+    public double getMax() { return count == 0 ? 0 : max; }
+    public double getMean() { return count == 0 ? 0 : sum / count; }
+
+    // Value at the given percentile (0-100), reported as the bucket midpoint
+    // and clamped to the observed range.
+    public double getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                double value = i == 0 ? 0 : LOWEST * Math.exp((i - 0.5) * LOG_BASE);
+                return Math.max(min, Math.min(max, value));
+            }
+        }
+        return max;
+    }
+
+    private static int bucket(double value) {
+        if (!(value >= LOWEST)) {
+            return 0;
+        }
+        int i = 1 + (int) (Math.log(value / LOWEST) / LOG_BASE);
+        return Math.min(i, BUCKETS - 1);
+    }
+}
@@ -0,0 +1,125 @@
+package dms;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+
+class AlertSchedulerTest {
+    private static final LocalDate TODAY = LocalDate.of(2026, 3, 10);
+
+    // A UTC clock the test moves by hand.
+    static class ManualClock extends Clock {
+        volatile Instant now;
+
+        ManualClock(LocalDate date) {
+            set(date);
+        }
+
+        void set(LocalDate date) {
+            now = date.atTime(12, 0).toInstant(ZoneOffset.UTC);
+        }
+
+        @Override
+        public ZoneId getZone() { return ZoneOffset.UTC; }
+        @Override
+        public Clock withZone(ZoneId zone) { return this; }
+        @Override
+        public Instant instant() { return now; }
+    }
+
+    // Delivered alerts as "day loan tier", in delivery order within a day.
+    static class Recorder implements AlertSink {
+        final List<String> alerts = new ArrayList<>();
+
+        @Override
+        public synchronized void deliver(long epochDay, List<PaymentAlert> batch) {
+            for (PaymentAlert alert : batch) {
+                alerts.add(LocalDate.ofEpochDay(epochDay) + " " + alert.getLoanId() + " " + alert.getTier());
+            }
+            notifyAll();
+        }
+
+        synchronized TreeSet<String> await(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (alerts.size() < count && System.currentTimeMillis() < deadline) {
+                wait(100);
+            }
+            return new TreeSet<>(alerts);
+        }
+    }
+
+    private static TreeSet<String> set(String... alerts) {
+        return new TreeSet<>(List.of(alerts));
+    }
+
+    @Test
+    void raisesEachTierOnItsFirstDay() throws IOException, InterruptedException {
+        LoanPortfolio loans = new LoanPortfolio();
+        loans.add("Due in 5", 100, 5, 12, TODAY.plusDays(5));
+        loans.add("Due in 3", 100, 5, 12, TODAY.plusDays(3));
+        loans.add("Due tomorrow", 100, 5, 12, TODAY.plusDays(1));
+        loans.add("Due today", 100, 5, 12, TODAY);
+        loans.add("Overdue", 100, 5, 12, TODAY.minusDays(1));
+        int paid = loans.add("Paid", 100, 5, 12, TODAY);
+        loans.setPaid(paid, true);
+        ConcurrentLoanBook book = new ConcurrentLoanBook(loans);
+
+        ManualClock clock = new ManualClock(TODAY);
+        Recorder recorder = new Recorder();
+        AlertScheduler scheduler = new AlertScheduler(new CalendarDay(clock), recorder, 100, 0);
+        scheduler.start(book);
+        // The overdue loan has no tier left to reach
+        assertEquals(4, scheduler.getTimerCount());
+        assertEquals(set(
+                "2026-03-10 1 MEDIUM",
+                "2026-03-10 2 HIGH",
+                "2026-03-10 3 CRITICAL",
+                "2026-03-10 4 OVERDUE"), recorder.await(4));
+
+        // Two days pass while the thread sleeps; closing wakes it, and it
+        // fires both days before it stops
+        clock.set(TODAY.plusDays(2));
+        scheduler.close();
+        assertEquals(set(
+                "2026-03-10 1 MEDIUM",
+                "2026-03-10 2 HIGH",
+                "2026-03-10 3 CRITICAL",
+                "2026-03-10 4 OVERDUE",
+                "2026-03-11 2 CRITICAL",
+                "2026-03-11 3 OVERDUE",
+                "2026-03-12 0 MEDIUM",
+                "2026-03-12 1 HIGH",
+                "2026-03-12 2 OVERDUE"), recorder.await(9));
+        assertEquals(0, scheduler.getPendingCount());
+    }
+
+    @Test
+    void payingCancelsTheTimerAndDropsPendingAlerts() throws IOException, InterruptedException {
+        LoanPortfolio loans = new LoanPortfolio();
+        loans.add("Due tomorrow", 100, 5, 12, TODAY.plusDays(1));
+        loans.add("Due in 2", 100, 5, 12, TODAY.plusDays(2));
+        ConcurrentLoanBook book = new ConcurrentLoanBook(loans);
+
+        ManualClock clock = new ManualClock(TODAY);
+        Recorder recorder = new Recorder();
+        AlertScheduler scheduler = new AlertScheduler(new CalendarDay(clock), recorder, 100, 0);
+        scheduler.start(book);
+        assertEquals(set("2026-03-10 0 HIGH", "2026-03-10 1 MEDIUM"), recorder.await(2));
+        assertEquals(2, scheduler.getTimerCount());
+
+        book.setPaid(0, true);
+        assertEquals(1, scheduler.getTimerCount());
+        clock.set(TODAY.plusDays(1));
+        scheduler.close();
+        assertEquals(set("2026-03-10 0 HIGH", "2026-03-10 1 MEDIUM", "2026-03-11 1 HIGH"), recorder.await(3));
+    }
+}
@@ -0,0 +1,32 @@
+package dms;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+class AlertTierTest {
+    @Test
+    void tiersChangeAtEachBoundary() {
+        assertEquals(AlertTier.OVERDUE, AlertTier.forDaysLeft(Long.MIN_VALUE));
+        assertEquals(AlertTier.OVERDUE, AlertTier.forDaysLeft(-1));
+        assertEquals(AlertTier.CRITICAL, AlertTier.forDaysLeft(0));
+        assertEquals(AlertTier.HIGH, AlertTier.forDaysLeft(1));
+        assertEquals(AlertTier.MEDIUM, AlertTier.forDaysLeft(2));
+        assertEquals(AlertTier.MEDIUM, AlertTier.forDaysLeft(AlertTier.HORIZON_DAYS));
+        assertNull(AlertTier.forDaysLeft(AlertTier.HORIZON_DAYS + 1));
+        assertNull(AlertTier.forDaysLeft(Long.MAX_VALUE));
+    }
+
+    @Test
+    void firstDayIsWhereForDaysLeftEntersTheTier() {
+        for (long due = -5; due <= 5; due++) {
+            for (AlertTier tier : AlertTier.values()) {
+                long first = tier.firstDay(due);
+                assertEquals(tier, AlertTier.forDaysLeft(due - first), tier + " on its first day, due " + due);
+                assertNotEquals(tier, AlertTier.forDaysLeft(due - (first - 1)), tier + " the day before, due " + due);
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package dms;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Multi-threaded stress run for ConcurrentLoanBook:
+//
+//   java -cp app/target/classes:app/target/test-classes dms.ConcurrentLoanBookStress [seconds] [writers] [readers]
+//
+// Writers add loans, toggle paid flags and apply batches while readers check
+// every snapshot they see: counts agree with the paid bits, sizes never go
+// backwards, a snapshot never changes after it is published, and priority
+// pages are sorted and hold only loans unpaid in their snapshot. A run that
+// breaks an invariant fails with what broke and the run's counts; a clean one
+// exits quietly. ConcurrentLoanBookStressTest runs a short one with the unit
+// tests.
+class ConcurrentLoanBookStress {
+    private static final int INITIAL_LOANS = 100_000;
+
+    private final AtomicBoolean running = new AtomicBoolean(true);
+    private final ConcurrentLinkedQueue<String> failures = new ConcurrentLinkedQueue<>();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong reads = new AtomicLong();
+    private String summary = "not run";
+
+    public static void main(String[] args) throws InterruptedException {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int writers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int readers = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+
+        ConcurrentLoanBookStress stress = new ConcurrentLoanBookStress();
+        List<String> failures = stress.run(seconds, writers, readers);
+        if (!failures.isEmpty()) {
+            throw new IllegalStateException(stress.getSummary() + ": " + String.join("; ", failures));
+        }
+    }
+
+    // What the last run did, for failure messages.
+    String getSummary() {
+        return summary;
+    }
+
+    // Runs the writers and readers for the given time and returns the broken
+    // invariants they found (at most a few, as every thread stops at the first).
+    List<String> run(int seconds, int writers, int readers) throws InterruptedException {
+        LoanPortfolio loans = new LoanPortfolio();
+        SplittableRandom random = new SplittableRandom(42);
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < INITIAL_LOANS; i++) {
+            addRandomLoan(loans, random, today);
+        }
+        ConcurrentLoanBook book = new ConcurrentLoanBook(loans);
+
+        Thread[] threads = new Thread[writers + readers];
+        CountDownLatch start = new CountDownLatch(1);
+        for (int i = 0; i < threads.length; i++) {
+            SplittableRandom threadRandom = random.split();
+            boolean writer = i < writers;
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                    while (running.get() && failures.isEmpty()) {
+                        if (writer) {
+                            write(book, threadRandom, today);
+                        } else {
+                            read(book, threadRandom);
+                        }
+                    }
+                } catch (Throwable t) {
+                    failures.add(Thread.currentThread().getName() + ": " + t);
+                }
+            }, (writer ? "writer-" : "reader-") + i);
+            threads[i].start();
+        }
+
+        long began = System.nanoTime();
+        start.countDown();
+        Thread.sleep(seconds * 1000L);
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double elapsed = (System.nanoTime() - began) / 1e9;
+
+        LoanPortfolio last = book.snapshot();
+        try {
+            check(last);
+        } catch (IllegalStateException e) {
+            failures.add("final snapshot: " + e.getMessage());
+        }
+        summary = String.format("%d writer(s), %d reader(s), %.1fs: %,d writes, %,d snapshot checks, %,d loans (%,d paid)",
+                writers, readers, elapsed, writes.get(), reads.get(), last.size(), last.paidCount());
+        return new ArrayList<>(failures);
+    }
+
+    private void write(ConcurrentLoanBook book, SplittableRandom random, LocalDate today) {
+        int action = random.nextInt(10);
+        if (action < 3) {
+            book.addLoan("Loan " + random.nextInt(1000), 100 + random.nextInt(50_000), 1 + random.nextInt(300) / 10.0,
+                    1 + random.nextInt(60), today.plusDays(random.nextInt(-30, 90)));
+        } else if (action < 9) {
+            book.togglePaid(random.nextInt(book.snapshot().size()));
+        } else {
+            // Adds and toggles that readers must only ever see together
+            book.update(loans -> {
+                int id = addRandomLoan(loans, random, today);
+                loans.setPaid(id, true);
+                loans.setPaid(random.nextInt(loans.size()), random.nextBoolean());
+            });
+        }
+        writes.incrementAndGet();
+    }
+
+    private void read(ConcurrentLoanBook book, SplittableRandom random) {
+        LoanPortfolio snapshot = book.snapshot();
+        int size = snapshot.size();
+        int paid = snapshot.paidCount();
+        check(snapshot);
+
+        PortfolioStats stats = PortfolioAggregator.aggregate(snapshot, PortfolioAggregator.Selection.ALL, false);
+        expect(stats.getLoanCount() == size, "summary counted " + stats.getLoanCount() + " of " + size + " loans");
+        expect(stats.getPaidCount() == paid, "summary counted " + stats.getPaidCount() + " paid, snapshot has " + paid);
+
+        boolean byRate = random.nextBoolean();
+        ConcurrentLoanBook.Ranking ranking = byRate
+                ? book.avalanche(random.nextInt(1000), 200)
+                : book.snowball(random.nextInt(1000), 200);
+        LoanPortfolio ranked = ranking.getLoans();
+        expect(ranked.size() >= size, "ranking snapshot is older than one read before it");
+        expect(ranking.getTotal() == ranked.unpaidCount(),
+                "ranking has " + ranking.getTotal() + " loans, its snapshot " + ranked.unpaidCount() + " unpaid");
+        int[] ids = ranking.getIds();
+        for (int i = 0; i < ids.length; i++) {
+            expect(!ranked.isPaid(ids[i]), "paid loan " + ids[i] + " in a priority page");
+        }
+        for (int i = 1; i < ids.length; i++) {
+            boolean ordered = byRate
+                    ? ranked.getRate(ids[i - 1]) >= ranked.getRate(ids[i])
+                    : ranked.getPrincipal(ids[i - 1]) <= ranked.getPrincipal(ids[i]);
+            expect(ordered, "priority page out of order at rank " + i);
+        }
+
+        // The earlier snapshot must not have moved while the book changed
+        expect(snapshot.size() == size && snapshot.paidCount() == paid, "a published snapshot changed");
+        check(snapshot);
+        reads.incrementAndGet();
+    }
+
+    // paidCount agrees with the paid bits and with unpaidIds().
+    private static void check(LoanPortfolio snapshot) {
+        int paid = 0;
+        for (int id = 0; id < snapshot.size(); id++) {
+            if (snapshot.isPaid(id)) {
+                paid++;
+            }
+        }
+        expect(paid == snapshot.paidCount(), "paidCount " + snapshot.paidCount() + " but " + paid + " paid bits");
+        expect(snapshot.unpaidIds().length == snapshot.unpaidCount(), "unpaidIds disagrees with unpaidCount");
+    }
+
+    private static int addRandomLoan(LoanPortfolio loans, SplittableRandom random, LocalDate today) {
+        return loans.add("Loan " + random.nextInt(1000), 100 + random.nextInt(50_000), 1 + random.nextInt(300) / 10.0,
+                1 + random.nextInt(60), today.plusDays(random.nextInt(-30, 90)));
+    }
+
+    private static void expect(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
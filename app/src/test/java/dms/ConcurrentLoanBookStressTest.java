@@ -0,0 +1,15 @@
+package dms;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ConcurrentLoanBookStressTest {
+    @Test
+    void snapshotsStayConsistentUnderConcurrentWrites() throws InterruptedException {
+        ConcurrentLoanBookStress stress = new ConcurrentLoanBookStress();
+        List<String> failures = stress.run(2, 2, 2);
+        assertEquals(List.of(), failures, stress.getSummary());
+    }
+}
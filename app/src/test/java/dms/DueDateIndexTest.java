@@ -0,0 +1,67 @@
+package dms;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class DueDateIndexTest {
+    private static final int TODAY = 20_000;
+
+    // One unpaid loan due on each day from five days ago to five days out,
+    // plus a paid one due today.
+    private static LoanPortfolio loans() {
+        LoanPortfolio loans = new LoanPortfolio();
+        for (int offset = 5; offset >= -5; offset--) {
+            loans.add("Loan " + offset, 100, 5, 12, TODAY + offset);
+        }
+        int paid = loans.add("Paid", 100, 5, 12, TODAY);
+        loans.setPaid(paid, true);
+        return loans;
+    }
+
+    // Loan id of the one due on TODAY + offset.
+    private static int dueIn(int offset) {
+        return 5 - offset;
+    }
+
+    @Test
+    void rangesSplitAtToday() {
+        DueDateIndex index = new DueDateIndex(loans());
+        assertEquals(11, index.size());
+        assertEquals(5, index.countDueBefore(TODAY));
+        assertEquals(6, index.countDueOnOrBefore(TODAY));
+        assertArrayEquals(new int[] {dueIn(-5), dueIn(-4), dueIn(-3), dueIn(-2), dueIn(-1)}, index.overdue(TODAY));
+        assertArrayEquals(new int[] {dueIn(0)}, index.dueOn(TODAY));
+        assertArrayEquals(new int[] {dueIn(0), dueIn(1), dueIn(2)}, index.dueWithin(TODAY, 2));
+    }
+
+    @Test
+    void alertsCoverTheHorizonWithTheirTiers() {
+        List<PaymentAlert> alerts = new DueDateIndex(loans()).alerts(TODAY);
+        assertEquals(5 + 1 + AlertTier.HORIZON_DAYS, alerts.size());
+        for (int i = 0; i < alerts.size(); i++) {
+            PaymentAlert alert = alerts.get(i);
+            int offset = i - 5;
+            assertEquals(dueIn(offset), alert.getLoanId());
+            assertEquals(offset, alert.getDaysLeft());
+            assertEquals(AlertTier.forDaysLeft(offset), alert.getTier(), "due in " + offset);
+        }
+        assertEquals(AlertTier.OVERDUE, alerts.get(4).getTier());
+        assertEquals(AlertTier.CRITICAL, alerts.get(5).getTier());
+        assertEquals(AlertTier.HIGH, alerts.get(6).getTier());
+        assertEquals(AlertTier.MEDIUM, alerts.get(8).getTier());
+    }
+
+    @Test
+    void followsLoansAddedAndPaid() {
+        LoanPortfolio loans = loans();
+        DueDateIndex index = new DueDateIndex(loans);
+        loans.setPaid(dueIn(0), true);
+        int added = loans.add("Late", 100, 5, 12, TODAY + 3);
+        assertArrayEquals(new int[0], index.dueOn(TODAY));
+        assertArrayEquals(new int[] {dueIn(3), added}, index.dueOn(TODAY + 3));
+        assertEquals(5 + AlertTier.HORIZON_DAYS + 1, index.alerts(TODAY).size());
+    }
+}
@@ -0,0 +1,77 @@
+package dms;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+class LoanImporterTest {
+    // Parses the text from the middle of a larger buffer, the way the
+    // importer sees a field.
+    private static double parseDouble(String text) {
+        byte[] buf = ("|" + text + "|").getBytes(StandardCharsets.US_ASCII);
+        return LoanImporter.parseDouble(buf, 1, buf.length - 1);
+    }
+
+    private static long parseIsoDate(String text) {
+        byte[] buf = ("," + text + ",").getBytes(StandardCharsets.US_ASCII);
+        return LoanImporter.parseIsoDate(buf, 1, buf.length - 1);
+    }
+
+    private static void assertParsesLikeJdk(String text) {
+        assertEquals(Double.doubleToRawLongBits(Double.parseDouble(text)),
+                Double.doubleToRawLongBits(parseDouble(text)), text);
+    }
+
+    @Test
+    void parsesDecimalsExactlyAsTheJdkDoes() {
+        for (String text : new String[] {"0", "-0", "+7", "12.5", "-3.25", ".5", "5.", "0.1", "0.3", "2.675",
+                "1000000.01", "9999999999999.99", "123456789012345", "0.000000000000000001",
+                "00000000000000000000001.5", "1234567890123456789", "3.14159265358979323846",
+                "1e3", "1E-2", "-2.5e+4", "4.9e-324", "1e400"}) {
+            assertParsesLikeJdk(text);
+        }
+        SplittableRandom random = new SplittableRandom(17);
+        for (int i = 0; i < 100_000; i++) {
+            long mantissa = random.nextLong(1_000_000_000_000_000L);
+            int scale = random.nextInt(19);
+            String digits = Long.toString(mantissa);
+            while (digits.length() <= scale) {
+                digits = "0" + digits;
+            }
+            assertParsesLikeJdk(digits.substring(0, digits.length() - scale) + "." + digits.substring(digits.length() - scale));
+        }
+    }
+
+    @Test
+    void rejectsMalformedNumbers() {
+        for (String text : new String[] {"", "-", "+", ".", "-.", "abc", "1.2.3", "12a", "1e", "1e+", "e5",
+                "1,5", " 1", "1 ", "0x10", "1d", "NaN", "Infinity", "--1"}) {
+            assertTrue(Double.isNaN(parseDouble(text)), "'" + text + "'");
+        }
+    }
+
+    @Test
+    void parsesIsoDatesLikeLocalDate() {
+        for (LocalDate date = LocalDate.of(1599, 12, 1); date.isBefore(LocalDate.of(2401, 3, 1)); date = date.plusDays(13)) {
+            assertEquals(date.toEpochDay(), parseIsoDate(date.toString()), date.toString());
+        }
+        assertEquals(LocalDate.of(2000, 2, 29).toEpochDay(), parseIsoDate("2000-02-29"));
+        assertEquals(LocalDate.of(2024, 2, 29).toEpochDay(), parseIsoDate("2024-02-29"));
+        assertEquals(LocalDate.of(1969, 12, 31).toEpochDay(), parseIsoDate("1969-12-31"));
+        assertEquals(LocalDate.of(0, 1, 1).toEpochDay(), parseIsoDate("0000-01-01"));
+        assertEquals(LocalDate.of(9999, 12, 31).toEpochDay(), parseIsoDate("9999-12-31"));
+    }
+
+    @Test
+    void rejectsInvalidIsoDates() {
+        for (String text : new String[] {"", "2023-02-29", "1900-02-29", "2023-04-31", "2023-13-01", "2023-00-10",
+                "2023-01-00", "2023-01-32", "2023-1-01", "2023-01-1", "2023/01/01", "20230101", "2023-01-011",
+                "-001-01-01", "+2023-01-01", "2023-0a-01", "2023-01-01T00"}) {
+            assertEquals(Long.MIN_VALUE, parseIsoDate(text), "'" + text + "'");
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package dms;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LoanJournalTest {
+    @TempDir
+    Path dir;
+
+    // Replayed entries as text, in order.
+    static class Recorder implements LoanJournal.Replayer {
+        final List<String> entries = new ArrayList<>();
+
+        @Override
+        public void add(String name, double principal, double rate, int timeMonths, int dueEpochDay) {
+            entries.add("add " + name + " " + principal + " " + rate + " " + timeMonths + " " + dueEpochDay);
+        }
+
+        @Override
+        public void paid(int id, boolean isPaid) {
+            entries.add("paid " + id + " " + isPaid);
+        }
+
+        @Override
+        public void payment(int id, int kind, long amountCents, int epochDay, int linkedEvent) {
+            entries.add("payment " + id + " " + kind + " " + amountCents + " " + epochDay + " " + linkedEvent);
+        }
+    }
+
+    private Path writeJournal(long generation) throws IOException {
+        Path file = dir.resolve(LoanStore.JOURNAL_FILE);
+        try (LoanJournal journal = LoanJournal.create(file, generation)) {
+            journal.appendAdd("Car", 12_000.5, 4.25, 48, 20_000);
+            journal.appendPaid(0, true);
+            journal.appendPayment(0, 1, 5_000, 19_990, -1);
+            journal.appendAdd("Phone", 800, 0, 12, 20_100);
+            journal.sync();
+        }
+        return file;
+    }
+
+    private static List<String> replay(Path file, long generation) throws IOException {
+        Recorder recorder = new Recorder();
+        LoanJournal.read(file, generation, recorder);
+        return recorder.entries;
+    }
+
+    @Test
+    void replaysEveryEntryInOrder() throws IOException {
+        Path file = writeJournal(5);
+        assertEquals(List.of(
+                "add Car 12000.5 4.25 48 20000",
+                "paid 0 true",
+                "payment 0 1 5000 19990 -1",
+                "add Phone 800.0 0.0 12 20100"), replay(file, 5));
+    }
+
+    @Test
+    void replaysTheSameThroughSmallReadWindows() throws IOException {
+        Path file = writeJournal(2);
+        Recorder whole = new Recorder();
+        long validLength = LoanJournal.read(file, 2, whole);
+        // Windows smaller than an entry, and ones that end mid-entry
+        for (int window : new int[] {1, 20, 37, 64}) {
+            Recorder windowed = new Recorder();
+            assertEquals(validLength, LoanJournal.read(file, 2, windowed, window), "window of " + window);
+            assertEquals(whole.entries, windowed.entries, "window of " + window);
+        }
+    }
+
+    @Test
+    void ignoresJournalOfAnotherGeneration() throws IOException {
+        Path file = writeJournal(5);
+        Recorder recorder = new Recorder();
+        assertNull(LoanJournal.replay(file, 6, recorder));
+        assertEquals(List.of(), recorder.entries);
+    }
+
+    @Test
+    void stopsAtTruncatedEntryAndAppendsAfterIntactPrefix() throws IOException {
+        Path file = writeJournal(0);
+        long fullLength = Files.size(file);
+        // Cut the last entry in half, as a crash mid-write would
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(fullLength - 10);
+        }
+
+        Recorder recorder = new Recorder();
+        try (LoanJournal journal = LoanJournal.replay(file, 0, recorder)) {
+            assertEquals(3, recorder.entries.size());
+            assertEquals("payment 0 1 5000 19990 -1", recorder.entries.get(2));
+            journal.appendPaid(0, false);
+            journal.sync();
+        }
+        List<String> entries = replay(file, 0);
+        assertEquals(4, entries.size());
+        assertEquals("paid 0 false", entries.get(3));
+    }
+
+    @Test
+    void stopsAtCorruptEntry() throws IOException {
+        Path file = writeJournal(0);
+        // Flip the paid byte of the second entry (14 bytes at the end of the
+        // first): its checksum no longer matches
+        int firstEntry = 8 + 1 + 8 + 8 + 4 + 4 + 2 + "Car".length();
+        long paidByte = LoanJournal.HEADER_BYTES + firstEntry + 8 + 1 + 4;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, paidByte);
+            assertEquals(1, b.get(0));
+            channel.write(ByteBuffer.wrap(new byte[] {0}), paidByte);
+        }
+
+        Recorder recorder = new Recorder();
+        long validLength = LoanJournal.read(file, 0, recorder);
+        assertEquals(List.of("add Car 12000.5 4.25 48 20000"), recorder.entries);
+        assertEquals(LoanJournal.HEADER_BYTES + firstEntry, validLength);
+    }
+
+    @Test
+    void stopsAtZeroFilledTail() throws IOException {
+        Path file = writeJournal(0);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.allocate(64));
+        }
+        assertEquals(4, replay(file, 0).size());
+    }
+}
@@ -0,0 +1,204 @@
+package dms;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LoanSnapshotFileTest {
+    @TempDir
+    Path dir;
+
+    // Enough loans for the paid bitmap to span several words, with repeated
+    // names and ties on every sort key.
+    static LoanPortfolio portfolio() {
+        LoanPortfolio loans = new LoanPortfolio();
+        for (int i = 0; i < 150; i++) {
+            loans.add("Loan " + (i % 7), 100 + (i % 13) * 250.5, (i % 9) * 1.25, 6 + i % 30, 19_000 + (i * 37) % 400);
+        }
+        loans.add("Crédit ✓", 0.01, 0, 1, 0);
+        for (int id = 0; id < loans.size(); id += 3) {
+            loans.setPaid(id, true);
+        }
+        return loans;
+    }
+
+    static void assertSameLoans(LoanPortfolio expected, LoanPortfolio actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.paidCount(), actual.paidCount());
+        for (int id = 0; id < expected.size(); id++) {
+            assertEquals(expected.getName(id), actual.getName(id), "name of " + id);
+            assertEquals(expected.getPrincipalCents(id), actual.getPrincipalCents(id), "principal of " + id);
+            assertEquals(expected.getRateBps(id), actual.getRateBps(id), "rate of " + id);
+            assertEquals(expected.getTimeMonths(id), actual.getTimeMonths(id), "time of " + id);
+            assertEquals(expected.getDueEpochDay(id), actual.getDueEpochDay(id), "due date of " + id);
+            assertEquals(expected.isPaid(id), actual.isPaid(id), "paid flag of " + id);
+        }
+    }
+
+    @Test
+    void roundTripsCurrentVersionWithOrders() throws IOException {
+        LoanPortfolio loans = portfolio();
+        Path file = dir.resolve(LoanStore.SNAPSHOT_FILE);
+        LoanSnapshotFile.write(file, loans, 42);
+
+        LoanSnapshotFile snapshot = LoanSnapshotFile.read(file);
+        assertEquals(42, snapshot.getGeneration());
+        assertSameLoans(loans, snapshot.getLoans());
+
+        LoanOrders expected = LoanOrders.of(loans);
+        LoanOrders orders = snapshot.getOrders();
+        assertArrayEquals(expected.getByRate(), orders.getByRate());
+        assertArrayEquals(expected.getByPrincipal(), orders.getByPrincipal());
+        assertArrayEquals(expected.getByDueDate(), orders.getByDueDate());
+    }
+
+    @Test
+    void roundTripsEmptyPortfolio() throws IOException {
+        Path file = dir.resolve(LoanStore.SNAPSHOT_FILE);
+        LoanSnapshotFile.write(file, new LoanPortfolio(), 0);
+
+        LoanSnapshotFile snapshot = LoanSnapshotFile.read(file);
+        assertEquals(0, snapshot.getLoans().size());
+        assertEquals(0, snapshot.getOrders().size());
+    }
+
+    @Test
+    void loadedPortfolioAcceptsNewLoans() throws IOException {
+        LoanPortfolio loans = portfolio();
+        Path file = dir.resolve(LoanStore.SNAPSHOT_FILE);
+        LoanSnapshotFile.write(file, loans, 1);
+
+        LoanPortfolio loaded = LoanSnapshotFile.read(file).getLoans();
+        int id = loaded.add("Loan 3", 75, 2.5, 12, 19_500);
+        loans.add("Loan 3", 75, 2.5, 12, 19_500);
+        assertEquals(loans.size() - 1, id);
+        assertSameLoans(loans, loaded);
+    }
+
+    @Test
+    void readsVersionTwoWithoutOrders() throws IOException {
+        LoanPortfolio loans = portfolio();
+        Path file = dir.resolve(LoanStore.SNAPSHOT_FILE);
+        LoanSnapshotFile.write(file, loans, 7);
+        // Version 2 is version 3 up to the end of the names
+        long nameBytes;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(LoanSnapshotFile.HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(header, 0);
+            nameBytes = header.getLong(32);
+            header.putInt(8, LoanSnapshotFile.VERSION_NO_ORDERS).rewind();
+            channel.write(header, 0);
+            channel.truncate(LoanSnapshotFile.HEADER_BYTES + align(8L * loans.size())
+                    + 4 * align(4L * loans.size()) + 8L * ((loans.size() + 63) >>> 6) + nameBytes);
+        }
+
+        LoanSnapshotFile snapshot = LoanSnapshotFile.read(file);
+        assertEquals(7, snapshot.getGeneration());
+        assertNull(snapshot.getOrders());
+        assertSameLoans(loans, snapshot.getLoans());
+    }
+
+    @Test
+    void readsVersionOneDoubleColumns() throws IOException {
+        LoanPortfolio loans = portfolio();
+        Path file = dir.resolve(LoanStore.SNAPSHOT_FILE);
+        writeVersionOne(file, loans, 3);
+
+        LoanSnapshotFile snapshot = LoanSnapshotFile.read(file);
+        assertEquals(3, snapshot.getGeneration());
+        assertNull(snapshot.getOrders());
+        assertSameLoans(loans, snapshot.getLoans());
+    }
+
+    @Test
+    void rejectsOtherFiles() throws IOException {
+        Path file = dir.resolve(LoanStore.SNAPSHOT_FILE);
+        Files.write(file, new byte[LoanSnapshotFile.HEADER_BYTES]);
+        assertThrows(IOException.class, () -> LoanSnapshotFile.read(file));
+
+        Files.write(file, new byte[8]);
+        assertThrows(IOException.class, () -> LoanSnapshotFile.read(file));
+    }
+
+    @Test
+    void rejectsTruncatedFile() throws IOException {
+        Path file = dir.resolve(LoanStore.SNAPSHOT_FILE);
+        LoanSnapshotFile.write(file, portfolio(), 0);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 4);
+        }
+        assertThrows(IOException.class, () -> LoanSnapshotFile.read(file));
+    }
+
+    @Test
+    void rejectsUnknownVersion() throws IOException {
+        Path file = dir.resolve(LoanStore.SNAPSHOT_FILE);
+        LoanSnapshotFile.write(file, portfolio(), 0);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ByteBuffer version = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(99);
+            channel.write(version.flip(), 8);
+        }
+        assertThrows(IOException.class, () -> LoanSnapshotFile.read(file));
+    }
+
+    // The version 1 layout: principal and rate as doubles, no orders.
+    private static void writeVersionOne(Path file, LoanPortfolio loans, long generation) throws IOException {
+        int n = loans.size();
+        String[] dictionary = loans.nameDictionary();
+        ByteBuffer names = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < loans.nameCount(); i++) {
+            byte[] bytes = dictionary[i].getBytes(StandardCharsets.UTF_8);
+            names.putInt(bytes.length).put(bytes);
+        }
+        names.flip();
+        int words = (n + 63) >>> 6;
+
+        ByteBuffer out = ByteBuffer.allocate(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        out.putLong(LoanSnapshotFile.MAGIC).putInt(LoanSnapshotFile.VERSION_DOUBLE_COLUMNS).putInt(0)
+            .putLong(generation).putInt(n).putInt(loans.nameCount()).putLong(names.remaining());
+        out.position(LoanSnapshotFile.HEADER_BYTES);
+        for (int id = 0; id < n; id++) {
+            out.putDouble(loans.getPrincipal(id));
+        }
+        for (int id = 0; id < n; id++) {
+            out.putDouble(loans.getRate(id));
+        }
+        int[][] columns = {loans.timeMonthsColumn(), loans.dueEpochDayColumn(), loans.nameIdColumn()};
+        for (int[] column : columns) {
+            for (int id = 0; id < n; id++) {
+                out.putInt(column[id]);
+            }
+            out.position((int) align(out.position()));
+        }
+        for (int w = 0; w < words; w++) {
+            long word = 0;
+            for (int bit = 0; bit < 64 && w * 64 + bit < n; bit++) {
+                if (loans.isPaid(w * 64 + bit)) {
+                    word |= 1L << bit;
+                }
+            }
+            out.putLong(word);
+        }
+        out.put(names).flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(out);
+        }
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
@@ -0,0 +1,232 @@
+package dms;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LoanStoreTest {
+    @TempDir
+    Path dir;
+
+    private static void addLoans(LoanPortfolio loans, int count) {
+        for (int i = 0; i < count; i++) {
+            loans.add("Loan " + (i % 5), 500 + i * 10.25, 3 + i % 4, 12, 20_000 + i);
+        }
+    }
+
+    @Test
+    void reopensWhatWasJournaled() throws IOException {
+        LoanPortfolio expected = new LoanPortfolio();
+        long today = CalendarDay.SYSTEM.today();
+        try (LoanStore store = LoanStore.open(dir)) {
+            assertTrue(store.isCreated());
+            addLoans(store.getLoans(), 20);
+            addLoans(expected, 20);
+            store.getLoans().setPaid(4, true);
+            expected.setPaid(4, true);
+            store.getLedger().pay(7, 100_00, today - 3);
+        }
+
+        try (LoanStore store = LoanStore.open(dir)) {
+            assertFalse(store.isCreated());
+            LoanSnapshotFileTest.assertSameLoans(expected, store.getLoans());
+            PaymentLedger ledger = store.getLedger();
+            assertEquals(2, ledger.size());
+            assertEquals(expected.totalCents(4), ledger.getPaidCents(4));
+            assertEquals(100_00, ledger.getPaidCents(7));
+            assertEquals(today - 3, ledger.getEpochDay(ledger.lastEvent(7)));
+        }
+        LoanSnapshotFileTest.assertSameLoans(expected, LoanStore.read(dir));
+    }
+
+    @Test
+    void checkpointCarriesOrdersAndLaterChangesReplay() throws IOException {
+        LoanPortfolio expected = new LoanPortfolio();
+        try (LoanStore store = LoanStore.open(dir)) {
+            addLoans(store.getLoans(), 30);
+            addLoans(expected, 30);
+            store.checkpoint();
+            store.getLoans().add("After", 42, 1, 6, 20_500);
+            expected.add("After", 42, 1, 6, 20_500);
+            store.getLoans().setPaid(0, true);
+            expected.setPaid(0, true);
+        }
+
+        try (LoanStore store = LoanStore.open(dir)) {
+            LoanSnapshotFileTest.assertSameLoans(expected, store.getLoans());
+            LoanOrders orders = store.takeOrders();
+            assertNotNull(orders);
+            // Orders cover the snapshot; the loan added after it is journaled
+            assertEquals(30, orders.size());
+            assertNull(store.takeOrders());
+        }
+    }
+
+    @Test
+    void ignoresJournalAlreadyInSnapshot() throws IOException {
+        LoanPortfolio expected = new LoanPortfolio();
+        Path journal = dir.resolve(LoanStore.JOURNAL_FILE);
+        Path stale = dir.resolve("stale.journal");
+        try (LoanStore store = LoanStore.open(dir)) {
+            addLoans(store.getLoans(), 10);
+            addLoans(expected, 10);
+            store.flush();
+            Files.copy(journal, stale);
+            store.checkpoint();
+        }
+        // A crash between writing the snapshot and resetting the journal
+        Files.move(stale, journal, StandardCopyOption.REPLACE_EXISTING);
+
+        try (LoanStore store = LoanStore.open(dir)) {
+            LoanSnapshotFileTest.assertSameLoans(expected, store.getLoans());
+        }
+    }
+
+    @Test
+    void checkpointCompactsPaymentsAndLaterPaymentsReplay() throws IOException {
+        long today = CalendarDay.SYSTEM.today();
+        Path payments = dir.resolve(LoanStore.PAYMENTS_FILE);
+        Path stale = dir.resolve("stale.journal");
+        try (LoanStore store = LoanStore.open(dir)) {
+            addLoans(store.getLoans(), 10);
+            PaymentLedger ledger = store.getLedger();
+            ledger.pay(2, 50_00, today - 9);
+            int partial = ledger.pay(3, 20_00, today - 8);
+            ledger.pay(3, 30_00, today - 7);
+            store.flush();
+            Files.copy(payments, stale);
+            store.checkpoint();
+            assertEquals(LoanJournal.HEADER_BYTES, store.getPaymentsJournalBytes());
+            ledger.reverse(partial, today - 2);
+            ledger.pay(5, 10_00, today - 12);
+        }
+        // A crash between writing the snapshot and resetting the journal
+        // would leave this one behind; it must not replay on top
+        Path current = dir.resolve("current.journal");
+        Files.move(payments, current);
+        Files.move(stale, payments);
+        try (LoanStore store = LoanStore.open(dir)) {
+            assertEquals(3, store.getLedger().size());
+        }
+        Files.move(current, payments, StandardCopyOption.REPLACE_EXISTING);
+
+        try (LoanStore store = LoanStore.open(dir)) {
+            PaymentLedger ledger = store.getLedger();
+            assertEquals(5, ledger.size());
+            assertEquals(50_00, ledger.getPaidCents(2));
+            assertEquals(30_00, ledger.getPaidCents(3));
+            assertTrue(ledger.isReversed(1));
+            assertEquals(10_00, ledger.getPaidCents(5));
+            assertEquals(110_00, ledger.getReceivedCentsAt(today - 7));
+            assertEquals(90_00, ledger.getReceivedCentsAt(today));
+            assertEquals(90_00, ledger.totals().getReceivedCents());
+        }
+    }
+
+    @Test
+    void checkpointWritesStateFrozenWhenItBegan() throws IOException {
+        long today = CalendarDay.SYSTEM.today();
+        LoanPortfolio expected = new LoanPortfolio();
+        try (LoanStore store = LoanStore.open(dir)) {
+            addLoans(store.getLoans(), 10);
+            addLoans(expected, 10);
+            store.getLedger().pay(1, 10_00, today);
+            LoanStore.Checkpoint checkpoint = store.beginCheckpoint();
+            // Changes while the snapshot is being written go to the new journals
+            addLoans(store.getLoans(), 5);
+            addLoans(expected, 5);
+            store.getLedger().pay(12, 20_00, today);
+            store.finishCheckpoint(checkpoint);
+            assertFalse(store.needsCheckpoint());
+        }
+        assertEquals(10, LoanSnapshotFile.read(dir.resolve(LoanStore.SNAPSHOT_FILE)).getLoans().size());
+        assertFalse(Files.exists(dir.resolve(LoanStore.JOURNAL_FILE + LoanStore.RETIRED_SUFFIX)));
+
+        try (LoanStore store = LoanStore.open(dir)) {
+            LoanSnapshotFileTest.assertSameLoans(expected, store.getLoans());
+            assertEquals(2, store.getLedger().size());
+            assertEquals(20_00, store.getLedger().getPaidCents(12));
+        }
+    }
+
+    @Test
+    void finishesCheckpointInterruptedBeforeItsSnapshot() throws IOException {
+        long today = CalendarDay.SYSTEM.today();
+        LoanPortfolio expected = new LoanPortfolio();
+        try (LoanStore store = LoanStore.open(dir)) {
+            addLoans(store.getLoans(), 10);
+            addLoans(expected, 10);
+            store.getLedger().pay(1, 10_00, today);
+            // Journals retired, snapshots never written, as after a crash
+            store.beginCheckpoint();
+            addLoans(store.getLoans(), 5);
+            addLoans(expected, 5);
+            store.getLedger().pay(12, 20_00, today);
+        }
+        Path retired = dir.resolve(LoanStore.JOURNAL_FILE + LoanStore.RETIRED_SUFFIX);
+        Path retiredPayments = dir.resolve(LoanStore.PAYMENTS_FILE + LoanStore.RETIRED_SUFFIX);
+        assertTrue(Files.exists(retired));
+        assertTrue(Files.exists(retiredPayments));
+        LoanSnapshotFileTest.assertSameLoans(expected, LoanStore.read(dir));
+
+        try (LoanStore store = LoanStore.open(dir)) {
+            LoanSnapshotFileTest.assertSameLoans(expected, store.getLoans());
+            assertEquals(2, store.getLedger().size());
+            assertEquals(10_00, store.getLedger().getPaidCents(1));
+            assertEquals(20_00, store.getLedger().getPaidCents(12));
+        }
+        assertFalse(Files.exists(retired));
+        assertFalse(Files.exists(retiredPayments));
+        try (LoanStore store = LoanStore.open(dir)) {
+            LoanSnapshotFileTest.assertSameLoans(expected, store.getLoans());
+            assertEquals(2, store.getLedger().size());
+        }
+    }
+
+    @Test
+    void keepsIntactPrefixOfTruncatedJournal() throws IOException {
+        try (LoanStore store = LoanStore.open(dir)) {
+            addLoans(store.getLoans(), 3);
+        }
+        Path journal = dir.resolve(LoanStore.JOURNAL_FILE);
+        byte[] bytes = Files.readAllBytes(journal);
+        Files.write(journal, Arrays.copyOf(bytes, bytes.length - 5));
+
+        try (LoanStore store = LoanStore.open(dir)) {
+            assertEquals(2, store.getLoans().size());
+            store.getLoans().add("Replacement", 1, 1, 1, 20_000);
+        }
+        try (LoanStore store = LoanStore.open(dir)) {
+            assertEquals(3, store.getLoans().size());
+            assertEquals("Replacement", store.getLoans().getName(2));
+        }
+    }
+
+    @Test
+    void reconcilesFlagWhosePaymentWasLost() throws IOException {
+        long today = CalendarDay.SYSTEM.today();
+        try (LoanStore store = LoanStore.open(dir)) {
+            addLoans(store.getLoans(), 2);
+            store.getLedger().pay(1, store.getLedger().getBalanceCents(1), today);
+        }
+        // The payment journal survived, the paid flag did not
+        Path journal = dir.resolve(LoanStore.JOURNAL_FILE);
+        byte[] bytes = Files.readAllBytes(journal);
+        Files.write(journal, Arrays.copyOf(bytes, bytes.length - 14));
+
+        try (LoanStore store = LoanStore.open(dir)) {
+            assertTrue(store.getLoans().isPaid(1));
+            assertEquals(1, store.getLedger().size());
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package dms;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MetricsRegistryTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void escapesLabelValues() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        metrics.counter("dms_test_total", "Test counter", "path", "a\\b\"c\nd").add(2);
+        assertTrue(metrics.toPrometheus().contains("dms_test_total{path=\"a\\\\b\\\"c\\nd\"} 2\n"),
+                metrics.toPrometheus());
+    }
+
+    @Test
+    void spanCreatesEventOnlyWhileRecorded() throws IOException {
+        MetricsRegistry metrics = new MetricsRegistry();
+        MetricsRegistry.Span quiet = metrics.start("quiet");
+        assertFalse(quiet.isRecorded());
+        quiet.end(1);
+
+        Path file = dir.resolve("operations.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(OperationEvent.class).withThreshold(Duration.ZERO);
+            recording.start();
+            MetricsRegistry.Span span = metrics.start("recorded");
+            assertTrue(span.isRecorded());
+            span.end(42);
+            recording.stop();
+            recording.dump(file);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(e -> e.getEventType().getName().equals("dms.Operation"))
+                .collect(Collectors.toList());
+        assertEquals(1, events.size());
+        assertEquals("recorded", events.get(0).getString("operation"));
+        assertEquals(42, events.get(0).getLong("loans"));
+
+        // Both spans were timed either way
+        assertEquals(1, metrics.timer(MetricsRegistry.OPERATION_SECONDS, "", "operation", "quiet").getCount());
+        assertEquals(1, metrics.timer(MetricsRegistry.OPERATION_SECONDS, "", "operation", "recorded").getCount());
+        assertFalse(metrics.start("quiet again").isRecorded());
+    }
+}
@@ -0,0 +1,95 @@
+package dms;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+class MoneyTest {
+    // principal * bps * months / 120000, rounded half up.
+    private static BigDecimal exactInterest(long principalCents, int rateBps, int timeMonths) {
+        return BigDecimal.valueOf(principalCents)
+                .multiply(BigDecimal.valueOf((long) rateBps * timeMonths))
+                .divide(BigDecimal.valueOf(120_000), 0, RoundingMode.HALF_UP);
+    }
+
+    // Interest too large for a long must throw rather than wrap.
+    private static void assertExact(long principalCents, int rateBps, int timeMonths) {
+        String label = principalCents + " cents at " + rateBps + " bps for " + timeMonths + " months";
+        BigDecimal exact = exactInterest(principalCents, rateBps, timeMonths);
+        if (exact.unscaledValue().bitLength() > 63) {
+            assertThrows(ArithmeticException.class, () -> Money.interest(principalCents, rateBps, timeMonths), label);
+        } else {
+            assertEquals(exact.longValueExact(), Money.interest(principalCents, rateBps, timeMonths), label);
+        }
+    }
+
+    @Test
+    void reciprocalPathMatchesBigDecimal() {
+        SplittableRandom random = new SplittableRandom(13);
+        for (int i = 0; i < 1_000_000; i++) {
+            long principal = random.nextLong(1L << random.nextInt(1, 32));
+            int rate = random.nextInt(1 << random.nextInt(1, 17));
+            int months = 1 + random.nextInt(1 << random.nextInt(1, 15));
+            if ((long) rate * months <= Integer.MAX_VALUE) {
+                assertExact(principal, rate, months);
+            }
+        }
+    }
+
+    @Test
+    void reciprocalPathEdgesMatchBigDecimal() {
+        // Largest operands the fast path takes, and products on either side
+        // of a rounding tie
+        int max = Integer.MAX_VALUE;
+        assertExact(max, max, 1);
+        assertExact(max, 46_340, 46_341);
+        assertExact(max - 1, 1, max);
+        for (long k = 0; k < 2_000; k++) {
+            long tie = k * 120_000 + 60_000;
+            assertExact(tie, 1, 1);
+            assertExact(tie - 1, 1, 1);
+            assertExact(tie + 1, 1, 1);
+            assertExact(max - k, 120_000 - (int) k, 1);
+        }
+        assertExact(0, 0, 0);
+        assertExact(0, max, 1);
+        assertExact(max, 0, 12);
+    }
+
+    @Test
+    void largeAmountsSplitAndStayExact() {
+        SplittableRandom random = new SplittableRandom(19);
+        long maxCents = Money.cents(Money.MAX_AMOUNT);
+        int maxBps = Money.basisPoints(Money.MAX_RATE);
+        for (int i = 0; i < 200_000; i++) {
+            long principal = random.nextLong(maxCents + 1) >> random.nextInt(20);
+            int rate = random.nextInt(maxBps + 1) >> random.nextInt(24);
+            int months = 1 + random.nextInt(1_200);
+            assertExact(principal, rate, months);
+        }
+        assertExact(maxCents, maxBps, 1_200);
+        assertExact(1L << 31, 1, 1);
+        assertExact(1, 1 << 16, 1 << 15);
+    }
+
+    @Test
+    void centsRoundHalfUpLikeFormatter() {
+        assertEquals(268, Money.cents(2.675));
+        assertEquals(101, Money.cents(1.005));
+        assertEquals(-268, Money.cents(-2.675));
+        assertEquals(1, Money.cents(0.005));
+        assertEquals(1250, Money.basisPoints(12.5));
+        SplittableRandom random = new SplittableRandom(21);
+        for (int i = 0; i < 100_000; i++) {
+            long cents = random.nextLong(1_000_000_000_000_000L);
+            assertEquals(cents, Money.cents(Money.toDouble(cents)));
+        }
+        assertThrows(IllegalArgumentException.class, () -> Money.cents(Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> Money.cents(Money.MAX_AMOUNT * 2));
+        assertThrows(IllegalArgumentException.class, () -> Money.basisPoints(Double.POSITIVE_INFINITY));
+    }
+}
@@ -0,0 +1,205 @@
+package dms;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class PaymentLedgerTest {
+    private final long today = CalendarDay.SYSTEM.today();
+
+    private static LoanPortfolio loans(int count) {
+        LoanPortfolio loans = new LoanPortfolio();
+        for (int i = 0; i < count; i++) {
+            // 1,000.00 at 10% over 12 months: 1,100.00 in total
+            loans.add("Loan " + i, 1000, 10, 12, 20_000);
+        }
+        return loans;
+    }
+
+    @Test
+    void finalPaymentMarksLoanPaid() {
+        LoanPortfolio loans = loans(1);
+        PaymentLedger ledger = new PaymentLedger(loans);
+        int partial = ledger.pay(0, 400_00, today - 10);
+        assertEquals(PaymentLedger.Kind.PARTIAL, ledger.getKind(partial));
+        assertFalse(loans.isPaid(0));
+
+        int payment = ledger.pay(0, 700_00, today - 5);
+        assertEquals(PaymentLedger.Kind.PAYMENT, ledger.getKind(payment));
+        assertTrue(loans.isPaid(0));
+        assertEquals(0, ledger.getBalanceCents(0));
+        assertEquals(partial, ledger.getPreviousEvent(payment));
+    }
+
+    @Test
+    void reversalRestoresBalanceAndFlag() {
+        LoanPortfolio loans = loans(1);
+        PaymentLedger ledger = new PaymentLedger(loans);
+        int partial = ledger.pay(0, 400_00, today - 10);
+        int payment = ledger.pay(0, 700_00, today - 5);
+
+        int reversal = ledger.reverse(payment, today - 2);
+        assertEquals(PaymentLedger.Kind.REVERSAL, ledger.getKind(reversal));
+        assertEquals(-700_00, ledger.getAmountCents(reversal));
+        assertEquals(payment, ledger.getLinkedEvent(reversal));
+        assertTrue(ledger.isReversed(payment));
+        assertFalse(ledger.isReversed(partial));
+        assertFalse(loans.isPaid(0));
+        assertEquals(700_00, ledger.getBalanceCents(0));
+
+        assertThrows(IllegalArgumentException.class, () -> ledger.reverse(payment, today));
+        assertThrows(IllegalArgumentException.class, () -> ledger.reverse(reversal, today));
+        assertThrows(IndexOutOfBoundsException.class, () -> ledger.reverse(99, today));
+    }
+
+    @Test
+    void clearingPaidFlagReversesLatestPayment() {
+        LoanPortfolio loans = loans(1);
+        PaymentLedger ledger = new PaymentLedger(loans);
+        ledger.pay(0, 100_00, today - 3);
+        int payment = ledger.pay(0, 1000_00, today - 1);
+
+        loans.setPaid(0, false);
+        assertTrue(ledger.isReversed(payment));
+        assertEquals(1000_00, ledger.getBalanceCents(0));
+        assertEquals(today, ledger.getEpochDay(ledger.lastEvent(0)));
+
+        loans.setPaid(0, true);
+        assertEquals(0, ledger.getBalanceCents(0));
+        assertEquals(PaymentLedger.Kind.PAYMENT, ledger.getKind(ledger.lastEvent(0)));
+    }
+
+    @Test
+    void paidAtDayCountsEventsThroughThatDay() {
+        LoanPortfolio loans = loans(2);
+        PaymentLedger ledger = new PaymentLedger(loans);
+        ledger.pay(0, 100_00, today - 20);
+        int second = ledger.pay(0, 200_00, today - 10);
+        ledger.pay(1, 50_00, today - 15);
+        ledger.reverse(second, today - 5);
+
+        assertEquals(0, ledger.getPaidCentsAt(0, today - 21));
+        assertEquals(100_00, ledger.getPaidCentsAt(0, today - 20));
+        assertEquals(100_00, ledger.getPaidCentsAt(0, today - 11));
+        assertEquals(300_00, ledger.getPaidCentsAt(0, today - 10));
+        assertEquals(100_00, ledger.getPaidCentsAt(0, today - 5));
+        assertEquals(100_00, ledger.getPaidCentsAt(0, today));
+        assertEquals(50_00, ledger.getPaidCentsAt(1, today - 15));
+
+        assertArrayEquals(new long[] {300_00, 50_00}, ledger.getPaidCentsAt(today - 10));
+        assertEquals(350_00, ledger.getReceivedCentsAt(today - 10));
+        assertEquals(150_00, ledger.getReceivedCentsAt(today));
+    }
+
+    @Test
+    void backdatedPaymentOnAnotherLoanCountsOnItsDay() {
+        LoanPortfolio loans = loans(2);
+        PaymentLedger ledger = new PaymentLedger(loans);
+        ledger.pay(0, 100_00, today);
+        ledger.pay(1, 40_00, today - 30);
+
+        assertEquals(40_00, ledger.getReceivedCentsAt(today - 30));
+        assertArrayEquals(new long[] {0, 40_00}, ledger.getPaidCentsAt(today - 1));
+        assertEquals(140_00, ledger.getReceivedCentsAt(today));
+    }
+
+    @Test
+    void rejectsFutureAndOutOfOrderDates() {
+        LoanPortfolio loans = loans(2);
+        PaymentLedger ledger = new PaymentLedger(loans);
+        assertThrows(IllegalArgumentException.class, () -> ledger.pay(0, 100, today + 1));
+        int payment = ledger.pay(0, 100, today - 5);
+        assertThrows(IllegalArgumentException.class, () -> ledger.pay(0, 100, today - 6));
+        assertThrows(IllegalArgumentException.class, () -> ledger.reverse(payment, today - 6));
+        assertThrows(IllegalArgumentException.class, () -> ledger.reverse(payment, today + 1));
+        // Other loans keep their own order
+        ledger.pay(1, 100, today - 6);
+        assertEquals(2, ledger.size());
+    }
+
+    @Test
+    void rejectsPaymentsThatAreNotPositiveOrExceedBalance() {
+        PaymentLedger ledger = new PaymentLedger(loans(1));
+        assertThrows(IllegalArgumentException.class, () -> ledger.pay(0, 0, today));
+        assertThrows(IllegalArgumentException.class, () -> ledger.pay(0, 1100_01, today));
+        assertThrows(IndexOutOfBoundsException.class, () -> ledger.pay(1, 100, today));
+    }
+
+    @Test
+    void snapshotKeepsStateWhenLedgerChangesLater() {
+        LoanPortfolio loans = loans(2);
+        PaymentLedger ledger = new PaymentLedger(loans);
+        int payment = ledger.pay(0, 300_00, today - 5);
+        ledger.pay(1, 100_00, today - 2);
+        PaymentLedger snapshot = ledger.snapshot(loans.snapshot());
+
+        ledger.reverse(payment, today);
+        ledger.pay(1, 40_00, today);
+        ledger.pay(0, 10_00, today);
+        assertEquals(2, snapshot.size());
+        assertFalse(snapshot.isReversed(payment));
+        assertEquals(300_00, snapshot.getPaidCents(0));
+        assertEquals(1, snapshot.lastEvent(1));
+        assertEquals(400_00, snapshot.totals().getReceivedCents());
+        assertEquals(300_00, snapshot.getReceivedCentsAt(today - 3));
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.pay(1, 1, today));
+        assertThrows(IllegalArgumentException.class, () -> ledger.snapshot(loans));
+    }
+
+    // Many events, some backdated, so balances as of a day come from
+    // snapshots; each must match a walk over every event.
+    @Test
+    void paidAtDayMatchesFullReplayAcrossSnapshots() {
+        int loanCount = 50;
+        LoanPortfolio loans = new LoanPortfolio();
+        for (int i = 0; i < loanCount; i++) {
+            loans.add("Loan " + i, 1_000_000, 5, 12, 20_000);
+        }
+        PaymentLedger ledger = new PaymentLedger(loans);
+        Random random = new Random(11);
+        long start = today - 400;
+        long day = start;
+        long[] cursor = new long[loanCount];
+        Arrays.fill(cursor, start);
+        for (int i = 0; i < 3 * PaymentLedger.MIN_SNAPSHOT_INTERVAL; i++) {
+            if (i % 40 == 0 && day < today) {
+                day++;
+            }
+            int id = random.nextInt(loanCount);
+            // Mostly today's payments, some backdated to the loan's own latest day
+            if (random.nextInt(20) != 0) {
+                cursor[id] = day;
+            }
+            int last = ledger.lastEvent(id);
+            if (last >= 0 && random.nextInt(8) == 0 && ledger.getKind(last) != PaymentLedger.Kind.REVERSAL
+                    && !ledger.isReversed(last)) {
+                ledger.reverse(last, cursor[id]);
+            } else {
+                ledger.pay(id, 1 + random.nextInt(100_00), cursor[id]);
+            }
+        }
+        assertTrue(ledger.getSnapshotCount() > 0);
+
+        for (long asOf = start - 1; asOf <= today; asOf += 3) {
+            long[] expected = new long[loanCount];
+            long received = 0;
+            for (int e = 0; e < ledger.size(); e++) {
+                if (ledger.getEpochDay(e) <= asOf) {
+                    expected[ledger.getLoanId(e)] += ledger.getAmountCents(e);
+                    received += ledger.getAmountCents(e);
+                }
+            }
+            assertArrayEquals(expected, ledger.getPaidCentsAt(asOf), "paid as of day " + asOf);
+            assertEquals(received, ledger.getReceivedCentsAt(asOf), "received as of day " + asOf);
+            for (int id = 0; id < loanCount; id++) {
+                assertEquals(expected[id], ledger.getPaidCentsAt(id, asOf));
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package dms;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PaymentSnapshotFileTest {
+    @TempDir
+    Path dir;
+
+    private final long today = CalendarDay.SYSTEM.today();
+
+    private static LoanPortfolio loans(int count) {
+        LoanPortfolio loans = new LoanPortfolio();
+        for (int i = 0; i < count; i++) {
+            loans.add("Loan " + i, 1_000_000, 5, 12, 20_000);
+        }
+        return loans;
+    }
+
+    // Enough events for several as-of snapshots, with reversals and
+    // payments backdated against other loans.
+    private PaymentLedger ledger(LoanPortfolio loans) {
+        PaymentLedger ledger = new PaymentLedger(loans);
+        Random random = new Random(5);
+        long day = today - 300;
+        for (int i = 0; i < 2 * PaymentLedger.MIN_SNAPSHOT_INTERVAL + 100; i++) {
+            if (i % 30 == 0 && day < today) {
+                day++;
+            }
+            int id = random.nextInt(loans.size());
+            int last = ledger.lastEvent(id);
+            long on = Math.max(day - random.nextInt(3), last >= 0 ? ledger.getEpochDay(last) : 0);
+            if (last >= 0 && random.nextInt(6) == 0 && ledger.getKind(last) != PaymentLedger.Kind.REVERSAL
+                    && !ledger.isReversed(last)) {
+                ledger.reverse(last, on);
+            } else {
+                ledger.pay(id, 1 + random.nextInt(50_00), on);
+            }
+        }
+        return ledger;
+    }
+
+    @Test
+    void roundTripsEventsBalancesAndHistory() throws IOException {
+        LoanPortfolio loans = loans(40);
+        PaymentLedger ledger = ledger(loans);
+        Path file = dir.resolve(LoanStore.PAYMENTS_SNAPSHOT_FILE);
+        PaymentSnapshotFile.write(file, ledger, 9);
+
+        PaymentSnapshotFile snapshot = PaymentSnapshotFile.read(file, loans);
+        assertEquals(9, snapshot.getGeneration());
+        PaymentLedger loaded = snapshot.getLedger();
+        assertEquals(ledger.size(), loaded.size());
+        for (int e = 0; e < ledger.size(); e++) {
+            assertEquals(ledger.getLoanId(e), loaded.getLoanId(e), "loan of " + e);
+            assertEquals(ledger.getKind(e), loaded.getKind(e), "kind of " + e);
+            assertEquals(ledger.getAmountCents(e), loaded.getAmountCents(e), "amount of " + e);
+            assertEquals(ledger.getEpochDay(e), loaded.getEpochDay(e), "day of " + e);
+            assertEquals(ledger.getPreviousEvent(e), loaded.getPreviousEvent(e), "previous of " + e);
+            assertEquals(ledger.getLinkedEvent(e), loaded.getLinkedEvent(e), "link of " + e);
+        }
+        for (int id = 0; id < loans.size(); id++) {
+            assertEquals(ledger.getPaidCents(id), loaded.getPaidCents(id), "paid of " + id);
+            assertEquals(ledger.lastEvent(id), loaded.lastEvent(id), "last event of " + id);
+        }
+        assertEquals(ledger.totals().getReceivedCents(), loaded.totals().getReceivedCents());
+        assertEquals(ledger.getSnapshotCount() > 0, loaded.getSnapshotCount() > 0);
+        for (long asOf = today - 302; asOf <= today; asOf += 7) {
+            assertArrayEquals(ledger.getPaidCentsAt(asOf), loaded.getPaidCentsAt(asOf), "paid as of " + asOf);
+            assertEquals(ledger.getReceivedCentsAt(asOf), loaded.getReceivedCentsAt(asOf), "received as of " + asOf);
+        }
+    }
+
+    @Test
+    void loadedLedgerKeepsRecording() throws IOException {
+        LoanPortfolio loans = loans(3);
+        PaymentLedger ledger = new PaymentLedger(loans);
+        int first = ledger.pay(1, 100_00, today - 4);
+        Path file = dir.resolve(LoanStore.PAYMENTS_SNAPSHOT_FILE);
+        PaymentSnapshotFile.write(file, ledger, 0);
+
+        PaymentLedger loaded = PaymentSnapshotFile.read(file, loans(3)).getLedger();
+        int second = loaded.pay(1, 50_00, today - 1);
+        assertEquals(first, loaded.getPreviousEvent(second));
+        loaded.reverse(first, today);
+        loaded.pay(2, 20_00, today);
+        assertEquals(50_00, loaded.getPaidCents(1));
+        assertEquals(20_00, loaded.getPaidCents(2));
+        assertEquals(70_00, loaded.totals().getReceivedCents());
+    }
+
+    @Test
+    void rejectsTruncatedFileAndFewerLoans() throws IOException {
+        LoanPortfolio loans = loans(5);
+        PaymentLedger ledger = new PaymentLedger(loans);
+        ledger.pay(4, 10_00, today);
+        Path file = dir.resolve(LoanStore.PAYMENTS_SNAPSHOT_FILE);
+        PaymentSnapshotFile.write(file, ledger, 0);
+
+        assertThrows(IOException.class, () -> PaymentSnapshotFile.read(file, loans(2)));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 4);
+        }
+        assertThrows(IOException.class, () -> PaymentSnapshotFile.read(file, loans(5)));
+    }
+}
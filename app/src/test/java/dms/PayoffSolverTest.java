@@ -0,0 +1,69 @@
+package dms;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+class PayoffSolverTest {
+    private static final LocalDate START = LocalDate.of(2026, 1, 15);
+
+    // Loans with mixed rates, sizes and due dates, so the three fixed rules
+    // disagree and the due dates carry fees.
+    private static LoanPortfolio loans(SplittableRandom random, int count) {
+        LoanPortfolio loans = new LoanPortfolio();
+        for (int i = 0; i < count; i++) {
+            loans.add("Loan " + i, 200 + random.nextInt(15_000), random.nextInt(300) / 10.0,
+                    6 + random.nextInt(48), START.plusDays(random.nextInt(-30, 720)));
+        }
+        return loans;
+    }
+
+    private static PayoffPlan solve(LoanPortfolio loans, double budget, long timeBudgetMillis) {
+        PayoffSolver.Config config = new PayoffSolver.Config(budget);
+        config.timeBudgetMillis = timeBudgetMillis;
+        return new PayoffSolver(config).solve(loans, START);
+    }
+
+    private static void assertNoWorseThanBaseline(PayoffPlan plan, String label) {
+        assertTrue(plan.getTotalCost() <= plan.getBaselineCost() + 1e-6 * Math.max(1, plan.getBaselineCost()),
+                label + ": cost " + plan.getTotalCost() + " above " + plan.getBaseline() + " at " + plan.getBaselineCost());
+        assertEquals(Math.max(0, plan.getBaselineCost() - plan.getTotalCost()), plan.getSavings(), 1e-9, label);
+    }
+
+    @Test
+    void searchedPlanNeverCostsMoreThanTheBestFixedRule() {
+        SplittableRandom random = new SplittableRandom(31);
+        for (int trial = 0; trial < 40; trial++) {
+            LoanPortfolio loans = loans(random, 2 + random.nextInt(7));
+            PayoffSimulator simulator = new PayoffSimulator();
+            simulator.load(loans, loans.unpaidIds());
+            double budget = simulator.totalMinimumPayment() * (1 + random.nextDouble() * 2);
+            PayoffPlan plan = solve(loans, budget, 2_000);
+            assertTrue(plan.isSearched(), "trial " + trial);
+            assertNoWorseThanBaseline(plan, "trial " + trial);
+        }
+    }
+
+    @Test
+    void expiredOrSkippedSearchStillReturnsTheBaseline() {
+        SplittableRandom random = new SplittableRandom(37);
+        LoanPortfolio loans = loans(random, 40);
+        PayoffSimulator simulator = new PayoffSimulator();
+        simulator.load(loans, loans.unpaidIds());
+        double minimum = simulator.totalMinimumPayment();
+
+        // Out of time before the first node
+        PayoffPlan expired = solve(loans, minimum * 1.5, 0);
+        assertFalse(expired.isOptimal());
+        assertNoWorseThanBaseline(expired, "expired");
+
+        // Below the minimums only the fixed rules are compared
+        PayoffPlan skipped = solve(loans, minimum / 2, 2_000);
+        assertFalse(skipped.isSearched());
+        assertEquals(skipped.getBaselineCost(), skipped.getTotalCost(), 1e-6 * skipped.getBaselineCost());
+    }
+}
@@ -0,0 +1,67 @@
+package dms;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+class PortfolioAggregatorTest {
+    // Several leaves with an uneven tail, so the fork-join tree splits
+    // unevenly, and amounts wide enough for the variance to round.
+    private static LoanPortfolio portfolio() {
+        LoanPortfolio loans = new LoanPortfolio();
+        SplittableRandom random = new SplittableRandom(11);
+        for (int i = 0; i < 9 * PortfolioAggregator.LEAF_SIZE + 123; i++) {
+            int id = loans.addCents("Loan " + (i % 17), random.nextLong(1, 1_000_000_000_00L),
+                    random.nextInt(0, 40_00), 1 + random.nextInt(360), 19_000 + random.nextInt(2_000));
+            if (random.nextInt(4) == 0) {
+                loans.setPaid(id, true);
+            }
+        }
+        return loans;
+    }
+
+    private static void assertSameBits(PortfolioStats.Metric expected, PortfolioStats.Metric actual, String name) {
+        assertEquals(expected.getCount(), actual.getCount(), name + " count");
+        assertEquals(expected.getExactSum(), actual.getExactSum(), name + " sum");
+        assertEquals(expected.getMin(), actual.getMin(), name + " min");
+        assertEquals(expected.getMax(), actual.getMax(), name + " max");
+        assertEquals(Double.doubleToRawLongBits(expected.getVariance()),
+                Double.doubleToRawLongBits(actual.getVariance()), name + " variance");
+    }
+
+    @Test
+    void parallelMatchesSequentialBitForBit() {
+        LoanPortfolio loans = portfolio();
+        for (PortfolioAggregator.Selection selection : PortfolioAggregator.Selection.values()) {
+            PortfolioStats sequential = PortfolioAggregator.aggregate(loans, selection, false);
+            PortfolioStats parallel = PortfolioAggregator.aggregate(loans, selection, true);
+            assertEquals(sequential.getLoanCount(), parallel.getLoanCount());
+            assertEquals(sequential.getPaidCount(), parallel.getPaidCount());
+            assertSameBits(sequential.getPrincipal(), parallel.getPrincipal(), selection + " principal");
+            assertSameBits(sequential.getRate(), parallel.getRate(), selection + " rate");
+            assertSameBits(sequential.getInterest(), parallel.getInterest(), selection + " interest");
+            assertSameBits(sequential.getTotal(), parallel.getTotal(), selection + " total");
+        }
+    }
+
+    @Test
+    void sumsAreExactCents() {
+        LoanPortfolio loans = portfolio();
+        long principal = 0;
+        long interest = 0;
+        int unpaid = 0;
+        for (int id = 0; id < loans.size(); id++) {
+            if (!loans.isPaid(id)) {
+                principal += loans.getPrincipalCents(id);
+                interest += loans.interestCents(id);
+                unpaid++;
+            }
+        }
+        PortfolioStats stats = PortfolioAggregator.aggregate(loans, PortfolioAggregator.Selection.UNPAID, true);
+        assertEquals(unpaid, stats.getSelectedCount());
+        assertEquals(principal, stats.getPrincipal().getExactSum());
+        assertEquals(interest, stats.getInterest().getExactSum());
+        assertEquals(principal + interest, stats.getTotal().getExactSum());
+    }
+}
@@ -0,0 +1,120 @@
+package dms;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PortfolioRegistryTest {
+    @TempDir
+    Path root;
+
+    @Test
+    void lookupOfUnknownCustomerCreatesNothing() throws IOException {
+        try (PortfolioRegistry registry = new PortfolioRegistry(root, 4, 1000)) {
+            assertThrows(IndexOutOfBoundsException.class, () -> registry.lookup("ghost"));
+            assertFalse(Files.exists(root.resolve("ghost")));
+            assertEquals(0, registry.getCustomerCount());
+            assertEquals(0, registry.getResidentCount());
+        }
+    }
+
+    @Test
+    void lookupFindsCustomerCreatedByAcquire() throws IOException {
+        try (PortfolioRegistry registry = new PortfolioRegistry(root, 4, 1000)) {
+            try (PortfolioRegistry.Lease lease = registry.acquire("alice")) {
+                lease.getBook().addLoan("Car", 1000, 5, 12, CalendarDay.SYSTEM.todayDate());
+            }
+            try (PortfolioRegistry.Lease lease = registry.lookup("alice")) {
+                assertEquals(1, lease.getBook().snapshot().size());
+            }
+        }
+        // Known from its directory after a restart
+        try (PortfolioRegistry registry = new PortfolioRegistry(root, 4, 1000);
+             PortfolioRegistry.Lease lease = registry.lookup("alice")) {
+            assertEquals(1, lease.getBook().snapshot().size());
+        }
+    }
+
+    @Test
+    void customerThatCannotBeSavedStaysResidentAndOthersStillLease() throws IOException {
+        try (PortfolioRegistry registry = new PortfolioRegistry(root, 1, 10)) {
+            try (PortfolioRegistry.Lease lease = registry.acquire("alice")) {
+                addLoans(lease.getBook(), 20);
+            }
+            // Over budget on its own, so alice is evicted on release
+            assertEquals(0, registry.getResidentCount());
+
+            Path blocked = root.resolve("bob").resolve(LoanStore.SNAPSHOT_FILE);
+            try (PortfolioRegistry.Lease lease = registry.acquire("bob")) {
+                addLoans(lease.getBook(), 5);
+                // A directory in the snapshot's place makes every checkpoint fail
+                LoanStore.Checkpoint checkpoint = lease.getStore().beginCheckpoint();
+                Files.createDirectories(blocked.resolve("in-the-way"));
+                assertThrows(IOException.class, () -> lease.getStore().finishCheckpoint(checkpoint));
+            }
+            assertEquals(1, registry.getResidentCount());
+
+            // Loading alice evicts bob, whose save fails; alice's lease must not
+            try (PortfolioRegistry.Lease lease = registry.acquire("alice")) {
+                assertEquals(20, lease.getBook().snapshot().size());
+                assertEquals(2, registry.getResidentCount());
+            }
+            // Released leases are evictable again; bob stays until it can be saved
+            assertEquals(1, registry.getResidentCount());
+            assertEquals(5, registry.getResidentLoans());
+
+            Files.delete(blocked.resolve("in-the-way"));
+            Files.delete(blocked);
+        }
+        try (PortfolioRegistry registry = new PortfolioRegistry(root, 1, 10);
+             PortfolioRegistry.Lease lease = registry.lookup("bob")) {
+            assertEquals(5, lease.getBook().snapshot().size());
+            assertTrue(Files.isRegularFile(root.resolve("bob").resolve(LoanStore.SNAPSHOT_FILE)));
+        }
+    }
+
+    @Test
+    void reportCountsOutstandingBalancesWithinSummaryBudget() throws IOException {
+        long today = CalendarDay.SYSTEM.today();
+        // Books are evicted on release; summaries of 5 unpaid loans weigh 6,
+        // so the budget holds one of the three
+        try (PortfolioRegistry registry = new PortfolioRegistry(root, 1, 1, 8)) {
+            for (String id : new String[] {"a", "b", "c"}) {
+                try (PortfolioRegistry.Lease lease = registry.acquire(id)) {
+                    for (int i = 0; i < 5; i++) {
+                        lease.getBook().addLoan("Loan " + i, 100, 0, 12, CalendarDay.SYSTEM.todayDate());
+                    }
+                    lease.getBook().pay(0, 30_00, today);
+                }
+            }
+            assertEquals(0, registry.getResidentCount());
+            for (int run = 0; run < 2; run++) {
+                ExposureReport report = registry.report(today);
+                assertEquals(15, report.getUnpaidLoans());
+                assertEquals(3 * (500_00 - 30_00), report.getExposureCents());
+                assertTrue(registry.getSummaryLoans() <= 8, "summaries over budget: " + registry.getSummaryLoans());
+            }
+
+            try (PortfolioRegistry.Lease lease = registry.lookup("b")) {
+                lease.getBook().pay(1, 100_00, today);
+                ExposureReport report = registry.report(today);
+                assertEquals(1, report.getResidentCustomers());
+                assertEquals(14, report.getUnpaidLoans());
+                assertEquals(3 * (500_00 - 30_00) - 100_00, report.getExposureCents());
+            }
+        }
+    }
+
+    private static void addLoans(ConcurrentLoanBook book, int count) {
+        for (int i = 0; i < count; i++) {
+            book.addLoan("Loan " + i, 100 + i, 5, 12, CalendarDay.SYSTEM.todayDate());
+        }
+    }
+}
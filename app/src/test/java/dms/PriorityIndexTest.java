@@ -0,0 +1,116 @@
+package dms;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+class PriorityIndexTest {
+    // The unpaid ids in a stable sort on the comparator: ties stay in id order.
+    private static int[] expected(LoanPortfolio loans, LoanPortfolio.IdComparator order) {
+        return Arrays.stream(loans.unpaidIds()).boxed()
+                .sorted((Comparator<Integer>) order::compare)
+                .mapToInt(Integer::intValue).toArray();
+    }
+
+    private static void assertOrder(LoanPortfolio loans, LoanPortfolio.IdComparator order, PriorityIndex index) {
+        int[] expected = expected(loans, order);
+        assertEquals(expected.length, index.size());
+        assertArrayEquals(expected, index.page(0, expected.length));
+        for (int rank = 0; rank < expected.length; rank += 7) {
+            assertEquals(expected[rank], index.select(rank), "rank " + rank);
+            int limit = Math.min(5, expected.length - rank);
+            assertArrayEquals(Arrays.copyOfRange(expected, rank, rank + limit), index.page(rank, 5), "page at " + rank);
+        }
+    }
+
+    // Few distinct rates and principals, so most comparisons are ties.
+    private static int addLoan(LoanPortfolio loans, SplittableRandom random) {
+        return loans.addCents("Loan", 100_00 * (1 + random.nextInt(8)), 25 * random.nextInt(6), 12,
+                20_000 + random.nextInt(10));
+    }
+
+    @Test
+    void keepsOrderThroughInsertsRemovesAndToggles() {
+        LoanPortfolio loans = new LoanPortfolio();
+        SplittableRandom random = new SplittableRandom(3);
+        for (int i = 0; i < 200; i++) {
+            addLoan(loans, random);
+        }
+        PriorityIndex byRate = PriorityIndex.byRateDescending(loans);
+        PriorityIndex byPrincipal = PriorityIndex.byPrincipalAscending(loans);
+        PriorityIndex byDueDate = new PriorityIndex(loans, PriorityIndex.dueDateAscending(loans));
+
+        for (int step = 0; step < 1_000; step++) {
+            int action = random.nextInt(3);
+            if (action == 0) {
+                int id = addLoan(loans, random);
+                assertTrue(byRate.contains(id));
+            } else {
+                // Paying removes the loan; paying it again, or reopening an
+                // unpaid one, leaves the index as it was
+                int id = random.nextInt(loans.size());
+                boolean paid = action == 1;
+                loans.setPaid(id, paid);
+                loans.setPaid(id, paid);
+                assertEquals(!paid, byPrincipal.contains(id));
+            }
+            if (step % 50 == 0) {
+                assertOrder(loans, PriorityIndex.rateDescending(loans), byRate);
+                assertOrder(loans, PriorityIndex.principalAscending(loans), byPrincipal);
+                assertOrder(loans, PriorityIndex.dueDateAscending(loans), byDueDate);
+            }
+        }
+        assertOrder(loans, PriorityIndex.rateDescending(loans), byRate);
+        assertOrder(loans, PriorityIndex.principalAscending(loans), byPrincipal);
+        assertOrder(loans, PriorityIndex.dueDateAscending(loans), byDueDate);
+    }
+
+    @Test
+    void rebuildAndPresortedStartMatchIncrementalUpdates() {
+        LoanPortfolio loans = new LoanPortfolio();
+        SplittableRandom random = new SplittableRandom(8);
+        for (int i = 0; i < 300; i++) {
+            int id = addLoan(loans, random);
+            loans.setPaid(id, random.nextInt(3) == 0);
+        }
+        int[] presorted = new int[200];
+        for (int id = 0; id < presorted.length; id++) {
+            presorted[id] = id;
+        }
+        LoanPortfolio.IdComparator order = PriorityIndex.rateDescending(loans);
+        LoanPortfolio.sort(presorted, order);
+
+        PriorityIndex incremental = PriorityIndex.byRateDescending(loans);
+        PriorityIndex fromPresorted = new PriorityIndex(loans, order, presorted);
+        assertOrder(loans, order, fromPresorted);
+        incremental.rebuild();
+        assertOrder(loans, order, incremental);
+    }
+
+    @Test
+    void excludesPaidLoansAndBoundsRanks() {
+        LoanPortfolio loans = new LoanPortfolio();
+        loans.addCents("A", 500_00, 300, 12, 20_000);
+        loans.addCents("B", 100_00, 900, 12, 20_000);
+        loans.addCents("C", 300_00, 900, 12, 20_000);
+        PriorityIndex index = PriorityIndex.byRateDescending(loans);
+        assertArrayEquals(new int[] {1, 2, 0}, index.top(10));
+
+        loans.setPaid(1, true);
+        assertFalse(index.contains(1));
+        assertArrayEquals(new int[] {2, 0}, index.top(10));
+        assertArrayEquals(new int[0], index.page(2, 10));
+        assertThrows(IndexOutOfBoundsException.class, () -> index.select(2));
+
+        loans.setPaid(1, false);
+        assertArrayEquals(new int[] {1, 2, 0}, index.top(3));
+        assertEquals(2, index.countWhile(id -> loans.getRateBps(id) == 900));
+    }
+}
@@ -0,0 +1,145 @@
+package dms;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.Test;
+
+class ReportWriterTest {
+    private static final Charset UTF_8 = StandardCharsets.UTF_8;
+
+    // Renders through a ReportWriter and through String.format side by side
+    // and compares the bytes.
+    private static void assertSameBytes(Consumer<ReportWriter> actual, StringBuilder expected) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ReportWriter out = new ReportWriter(bytes, UTF_8);
+        actual.accept(out);
+        out.flush();
+        assertArrayEquals(expected.toString().getBytes(UTF_8), bytes.toByteArray());
+    }
+
+    private static String format(String format, Object... args) {
+        return String.format(Locale.ROOT, format, args);
+    }
+
+    // Values spread over every magnitude, plus ones that sit on or next to a
+    // rounding tie at each number of decimals.
+    private static double[] values() {
+        SplittableRandom random = new SplittableRandom(23);
+        double[] values = new double[20_000];
+        int n = 0;
+        for (double v : new double[] {0, -0.0, 0.005, 0.015, 0.125, 1.005, 2.675, 1.0005, 0.5, 1.5, 2.5, -0.5,
+                -2.675, -0.001, 99.995, 1e15, 1e16, 123456789.125, 9_999_999_999_999.99, Double.MIN_VALUE,
+                Double.MAX_VALUE, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY}) {
+            values[n++] = v;
+        }
+        while (n < values.length) {
+            double v;
+            switch (random.nextInt(3)) {
+                case 0:
+                    v = random.nextDouble() * Math.pow(10, random.nextInt(-3, 14));
+                    break;
+                case 1:
+                    // A tie at two decimals, or the double next to one
+                    v = (random.nextLong(10_000_000_000L) + 0.5) / 100;
+                    v = random.nextBoolean() ? v : Math.nextUp(v);
+                    break;
+                default:
+                    v = (random.nextLong(1_000_000) + 0.5) / Math.pow(10, random.nextInt(0, 5));
+                    break;
+            }
+            values[n++] = random.nextBoolean() ? v : -v;
+        }
+        return values;
+    }
+
+    @Test
+    void fixedPointMatchesFormatter() {
+        double[] values = values();
+        StringBuilder expected = new StringBuilder();
+        for (double v : values) {
+            for (int decimals = 0; decimals <= 4; decimals++) {
+                expected.append(format("%." + decimals + "f", v)).append(' ');
+            }
+            expected.append(format("%.2f", v)).append('|').append(format("%-14.3f", v)).append('|');
+        }
+        assertSameBytes(out -> {
+            for (double v : values) {
+                for (int decimals = 0; decimals <= 4; decimals++) {
+                    out.fixed(v, decimals).text(" ");
+                }
+                out.money(v).text("|").column(v, 3, 14).text("|");
+            }
+        }, expected);
+    }
+
+    @Test
+    void centsPrintAsMoneyOfTheirDouble() {
+        SplittableRandom random = new SplittableRandom(29);
+        long[] cents = new long[10_000];
+        for (int i = 0; i < cents.length; i++) {
+            cents[i] = random.nextLong(-100_000_000_000_000L, 100_000_000_000_000L) >> random.nextInt(48);
+        }
+        cents[0] = 0;
+        cents[1] = -1;
+        cents[2] = 5;
+        cents[3] = Long.MIN_VALUE;
+        StringBuilder expected = new StringBuilder();
+        for (long c : cents) {
+            expected.append(format("%.2f", Money.toDouble(c))).append('|')
+                    .append(format("%-16s", format("%.2f", Money.toDouble(c)))).append('|');
+        }
+        assertSameBytes(out -> {
+            for (long c : cents) {
+                out.cents(c).text("|").centsColumn(c, 16).text("|");
+            }
+        }, expected);
+    }
+
+    @Test
+    void integersDatesAndColumnsMatchFormatter() {
+        long[] integers = {0, 7, -7, 10, 999, -1000, Integer.MAX_VALUE, Long.MAX_VALUE, Long.MIN_VALUE};
+        long[] days = {0, -1, 19_000, 20_500, -719_528, -719_529, 2_932_896, 2_932_897, -1_000_000, 5_000_000};
+        StringBuilder expected = new StringBuilder();
+        for (long v : integers) {
+            expected.append(v).append('|').append(format("%-12d", v)).append('|');
+        }
+        for (long day : days) {
+            String date = LocalDate.ofEpochDay(day).toString();
+            expected.append(date).append('|').append(format("%-12s", date)).append('|');
+        }
+        expected.append(format("%-8s", "Crédit ✓")).append(format("%-3s", "too long"))
+                .append(System.lineSeparator());
+        assertSameBytes(out -> {
+            for (long v : integers) {
+                out.integer(v).text("|").column(v, 12).text("|");
+            }
+            for (long day : days) {
+                out.date(day).text("|").dateColumn(day, 12).text("|");
+            }
+            out.column("Crédit ✓", 8).column("too long", 3).newline();
+        }, expected);
+    }
+
+    @Test
+    void outputLargerThanOneBlockArrivesWhole() {
+        String wide = "x".repeat(100_000);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            expected.append("Line ").append(i).append(System.lineSeparator());
+        }
+        expected.append(wide).append(System.lineSeparator()).append(format("%-100000s|", "pad"));
+        assertSameBytes(out -> {
+            for (int i = 0; i < 10_000; i++) {
+                out.text("Line ").integer(i).newline();
+            }
+            out.line(wide).column("pad", 100_000).text("|");
+        }, expected);
+    }
+}
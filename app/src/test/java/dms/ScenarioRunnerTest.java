@@ -0,0 +1,60 @@
+package dms;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+class ScenarioRunnerTest {
+    private static final double[] PERCENTILES = {0, 1, 10, 25, 50, 75, 90, 99, 99.9, 100};
+
+    private static LoanPortfolio loans() {
+        LoanPortfolio loans = new LoanPortfolio();
+        SplittableRandom random = new SplittableRandom(4);
+        for (int i = 0; i < 12; i++) {
+            loans.add("Loan " + i, 500 + random.nextInt(20_000), 1 + random.nextInt(250) / 10.0,
+                    6 + random.nextInt(60), 20_000);
+        }
+        return loans;
+    }
+
+    // Not a whole number of leaves, so the task tree has an uneven tail.
+    private static ScenarioReport run(long seed) {
+        LoanPortfolio loans = loans();
+        ScenarioRunner.Config config = new ScenarioRunner.Config(1_500);
+        config.scenarios = 5 * ScenarioRunner.LEAF_SCENARIOS + 77;
+        config.seed = seed;
+        return new ScenarioRunner(loans, PriorityIndex.byRateDescending(loans).top(loans.size()), config).run();
+    }
+
+    private static void assertSameReport(ScenarioReport expected, ScenarioReport actual) {
+        assertEquals(expected.getScenarios(), actual.getScenarios());
+        assertEquals(expected.getSeed(), actual.getSeed());
+        assertEquals(expected.getNotDebtFreeCount(), actual.getNotDebtFreeCount());
+        assertEquals(Double.doubleToRawLongBits(expected.getMeanInterest()),
+                Double.doubleToRawLongBits(actual.getMeanInterest()), "mean interest");
+        assertEquals(expected.getWorstInterest(), actual.getWorstInterest(), "worst interest");
+        for (double p : PERCENTILES) {
+            assertEquals(expected.getInterestPercentile(p), actual.getInterestPercentile(p), "interest p" + p);
+            assertEquals(expected.getMonthsPercentile(p), actual.getMonthsPercentile(p), "months p" + p);
+        }
+    }
+
+    @Test
+    void sameSeedReproducesTheReport() {
+        ScenarioReport first = run(99);
+        for (int i = 0; i < 3; i++) {
+            assertSameReport(first, run(99));
+        }
+        assertNotEquals(first.getMeanInterest(), run(100).getMeanInterest());
+    }
+
+    @Test
+    void configRejectsBudgetsThatAreNotPositiveAmounts() {
+        for (double budget : new double[] {0, -1, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY}) {
+            assertThrows(IllegalArgumentException.class, () -> new ScenarioRunner.Config(budget), "budget " + budget);
+        }
+    }
+}
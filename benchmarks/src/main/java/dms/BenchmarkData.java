@@ -0,0 +1,67 @@
+package dms;
+
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+
+// Deterministic generated portfolios for the benchmarks. The mix roughly
+// follows a personal loan book: a few hundred distinct names, principals up
+// to 50k, rates 1-30%, terms up to five years, due dates from a month
+// overdue to a year out, and one loan in five already paid.
+final class BenchmarkData {
+    static final long SEED = 20240601L;
+    static final LocalDate TODAY = LocalDate.of(2025, 1, 15);
+
+    private static final String[] NAMES = {
+        "Credit Card", "Electric Bill", "Car Loan", "Personal Loan", "Student Loan", "Medical Bill",
+        "Mortgage", "Store Card", "Phone Plan", "Overdraft"
+    };
+
+    private BenchmarkData() {
+    }
+
+    static LoanPortfolio portfolio(int size) {
+        return portfolio(size, TODAY);
+    }
+
+    // The same mix with due dates around another day, e.g. the real one for
+    // books that a launched process reads against the system clock.
+    static LoanPortfolio portfolio(int size, LocalDate around) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        LoanPortfolio loans = new LoanPortfolio();
+        int today = (int) around.toEpochDay();
+        for (int i = 0; i < size; i++) {
+            int id = loans.add(name(random), principal(random), rate(random), 1 + random.nextInt(60),
+                    today + random.nextInt(-30, 366));
+            if (random.nextInt(5) == 0) {
+                loans.setPaid(id, true);
+            }
+        }
+        return loans;
+    }
+
+    // The same loans as portfolio(size), as Loan objects.
+    static Loan[] loanObjects(int size) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        Loan[] loans = new Loan[size];
+        for (int i = 0; i < size; i++) {
+            loans[i] = new Loan(name(random), principal(random), rate(random), 1 + random.nextInt(60),
+                    TODAY.plusDays(random.nextInt(-30, 366)));
+            if (random.nextInt(5) == 0) {
+                loans[i].setPaid(true);
+            }
+        }
+        return loans;
+    }
+
+    private static String name(SplittableRandom random) {
+        return NAMES[random.nextInt(NAMES.length)] + " " + random.nextInt(32);
+    }
+
+    private static double principal(SplittableRandom random) {
+        return (100 + random.nextInt(5_000_000)) / 100.0;
+    }
+
+    private static double rate(SplittableRandom random) {
+        return (100 + random.nextInt(2900)) / 100.0;
+    }
+}
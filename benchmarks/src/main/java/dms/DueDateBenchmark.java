@@ -0,0 +1,60 @@
+package dms;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The checkAlerts question, "which unpaid loans are overdue or due within
+// three days", answered by a full scan and by the DueDateIndex.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class DueDateBenchmark {
+    @Param({"10", "1000", "100000", "10000000"})
+    public int size;
+
+    private LoanPortfolio loans;
+    private DueDateIndex dueDates;
+    private long today;
+
+    @Setup
+    public void setUp() {
+        loans = BenchmarkData.portfolio(size);
+        dueDates = new DueDateIndex(loans);
+        today = BenchmarkData.TODAY.toEpochDay();
+    }
+
+    @Benchmark
+    public int alertScan() {
+        int alerts = 0;
+        for (int id = 0, n = loans.size(); id < n; id++) {
+            if (!loans.isPaid(id) && AlertTier.forDaysLeft(loans.getDaysUntilDue(id, today)) != null) {
+                alerts++;
+            }
+        }
+        return alerts;
+    }
+
+    @Benchmark
+    public List<PaymentAlert> alertIndex() {
+        return dueDates.alerts(today);
+    }
+
+    @Benchmark
+    public int urgentCount() {
+        return dueDates.countDueOnOrBefore(today + 7);
+    }
+}
@@ -0,0 +1,91 @@
+package dms;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Interest and total for every loan, through Loan objects and through the
+// columnar LoanPortfolio, as doubles and as exact cents. One operation is one
+// pass over the whole book.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class LoanCalculationBenchmark {
+    @Param({"10", "1000", "100000", "10000000"})
+    public int size;
+
+    private Loan[] loanObjects;
+    private LoanPortfolio loans;
+
+    @Setup
+    public void setUp() {
+        loanObjects = BenchmarkData.loanObjects(size);
+        loans = BenchmarkData.portfolio(size);
+    }
+
+    @Benchmark
+    public double loanInterest() {
+        double sum = 0;
+        for (Loan loan : loanObjects) {
+            sum += loan.calculateInterest();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double loanTotal() {
+        double sum = 0;
+        for (Loan loan : loanObjects) {
+            sum += loan.calculateTotal();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double portfolioInterest() {
+        double sum = 0;
+        for (int id = 0, n = loans.size(); id < n; id++) {
+            sum += loans.calculateInterest(id);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double portfolioTotal() {
+        double sum = 0;
+        for (int id = 0, n = loans.size(); id < n; id++) {
+            sum += loans.calculateTotal(id);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long portfolioInterestCents() {
+        long sum = 0;
+        for (int id = 0, n = loans.size(); id < n; id++) {
+            sum += loans.interestCents(id);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long portfolioTotalCents() {
+        long sum = 0;
+        for (int id = 0, n = loans.size(); id < n; id++) {
+            sum += loans.totalCents(id);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,57 @@
+package dms;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Cost of recording: one histogram sample, one counter increment and a whole
+// Span (two registry lookups, a sample, a counter add and a disabled JFR
+// event), on one thread and on eight threads sharing the same series.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+    private final MetricsRegistry registry = new MetricsRegistry();
+    private final LatencyHistogram histogram = registry.timer("bench_seconds", "Benchmark", "operation", "x");
+    private final LongAdder counter = registry.counter("bench_total", "Benchmark");
+    private long value = 12_345;
+
+    @Benchmark
+    public void recordSample() {
+        histogram.record(value++ & 0xFFFFF);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void recordSampleContended() {
+        histogram.record(System.nanoTime() & 0xFFFFF);
+    }
+
+    @Benchmark
+    public void incrementCounter() {
+        counter.increment();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void incrementCounterContended() {
+        counter.increment();
+    }
+
+    @Benchmark
+    public long span() {
+        return registry.start("benchmark").end(1);
+    }
+}
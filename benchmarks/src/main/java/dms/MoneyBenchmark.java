@@ -0,0 +1,87 @@
+package dms;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Summed interest and totals over the same loans, once with the old
+// floating-point formula on double principal/rate columns and once with
+// Money on cents and basis-point columns. One operation is one pass.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class MoneyBenchmark {
+    @Param({"10", "1000", "100000", "10000000"})
+    public int size;
+
+    private double[] principal;
+    private double[] rate;
+    private long[] principalCents;
+    private int[] rateBps;
+    private int[] timeMonths;
+
+    @Setup
+    public void setUp() {
+        LoanPortfolio loans = BenchmarkData.portfolio(size);
+        principal = new double[size];
+        rate = new double[size];
+        principalCents = new long[size];
+        rateBps = new int[size];
+        timeMonths = new int[size];
+        for (int id = 0; id < size; id++) {
+            principal[id] = loans.getPrincipal(id);
+            rate[id] = loans.getRate(id);
+            principalCents[id] = loans.getPrincipalCents(id);
+            rateBps[id] = loans.getRateBps(id);
+            timeMonths[id] = loans.getTimeMonths(id);
+        }
+    }
+
+    @Benchmark
+    public double doubleInterest() {
+        double sum = 0;
+        for (int i = 0; i < timeMonths.length; i++) {
+            sum += (principal[i] * rate[i] * timeMonths[i]) / (100 * 12);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long centsInterest() {
+        long sum = 0;
+        for (int i = 0; i < timeMonths.length; i++) {
+            sum += Money.interest(principalCents[i], rateBps[i], timeMonths[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double doubleTotal() {
+        double sum = 0;
+        for (int i = 0; i < timeMonths.length; i++) {
+            sum += principal[i] + (principal[i] * rate[i] * timeMonths[i]) / (100 * 12);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long centsTotal() {
+        long sum = 0;
+        for (int i = 0; i < timeMonths.length; i++) {
+            sum += Money.total(principalCents[i], rateBps[i], timeMonths[i]);
+        }
+        return sum;
+    }
+}
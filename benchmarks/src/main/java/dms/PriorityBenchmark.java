@@ -0,0 +1,85 @@
+package dms;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Avalanche and snowball orderings: sorting the unpaid loans from scratch,
+// rebuilding a PriorityIndex, reading the first page from a live index, and
+// keeping the indexes current while a paid flag flips.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class PriorityBenchmark {
+    @Param({"10", "1000", "100000", "10000000"})
+    public int size;
+
+    private LoanPortfolio loans;
+    private LoanPortfolio.IdComparator byRate;
+    private LoanPortfolio.IdComparator byPrincipal;
+    private PriorityIndex avalanche;
+    private PriorityIndex snowball;
+    private int nextToggle;
+
+    @Setup
+    public void setUp() {
+        loans = BenchmarkData.portfolio(size);
+        LoanPortfolio book = loans;
+        byRate = (a, b) -> Double.compare(book.getRate(b), book.getRate(a));
+        byPrincipal = (a, b) -> Double.compare(book.getPrincipal(a), book.getPrincipal(b));
+        avalanche = PriorityIndex.byRateDescending(loans);
+        snowball = PriorityIndex.byPrincipalAscending(loans);
+    }
+
+    @Benchmark
+    public int[] avalancheSort() {
+        int[] ids = loans.unpaidIds();
+        LoanPortfolio.sort(ids, byRate);
+        return ids;
+    }
+
+    @Benchmark
+    public int[] snowballSort() {
+        int[] ids = loans.unpaidIds();
+        LoanPortfolio.sort(ids, byPrincipal);
+        return ids;
+    }
+
+    @Benchmark
+    public int avalancheRebuild() {
+        avalanche.rebuild();
+        return avalanche.size();
+    }
+
+    @Benchmark
+    public int[] avalancheFirstPage() {
+        return avalanche.page(0, 10);
+    }
+
+    @Benchmark
+    public int[] snowballFirstPage() {
+        return snowball.page(0, 10);
+    }
+
+    // Two flips per operation so the book ends each one as it started.
+    @Benchmark
+    public int togglePaid() {
+        int id = nextToggle;
+        nextToggle = id + 1 < size ? id + 1 : 0;
+        loans.setPaid(id, !loans.isPaid(id));
+        loans.setPaid(id, !loans.isPaid(id));
+        return avalanche.size() + snowball.size();
+    }
+}
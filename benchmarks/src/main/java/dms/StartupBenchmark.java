@@ -0,0 +1,135 @@
+package dms;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Time to output of the command mode on a generated book, measured from
+// outside as a script sees it: process launch to the first byte on stdout
+// and to exit.
+//
+//   java -cp benchmarks/target/benchmarks.jar dms.StartupBenchmark [loans] [runs] [targetMillis]
+//
+// The book (1M loans by default) is written as a store with payments and
+// run through `prepare`, which also records a CDS archive. Each command then
+// runs on a plain JVM and on the fast-startup launch line: that archive, C1
+// only and the serial collector. Exits with status 1 when the median
+// fast-startup run of any command takes longer than the target (1000 ms by
+// default).
+class StartupBenchmark {
+    private static final List<String> STARTUP_FLAGS = List.of("-XX:TieredStopAtLevel=1", "-XX:+UseSerialGC");
+
+    private static final String[][] COMMANDS = {
+        {"summary"},
+        {"alerts"},
+        {"priority", "--avalanche", "--limit", "10"},
+    };
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        long targetMillis = args.length > 2 ? Long.parseLong(args[2]) : 1_000;
+
+        Path dir = Files.createTempDirectory("dms-startup");
+        try {
+            Path data = dir.resolve("data");
+            Path archive = dir.resolve("dms.jsa");
+            Files.createDirectories(data);
+            LoanSnapshotFile.write(data.resolve(LoanStore.SNAPSHOT_FILE),
+                    BenchmarkData.portfolio(size, LocalDate.now()), 0);
+            // Books the paid loans as payments, so startup replays a payment journal
+            LoanStore.open(data).close();
+
+            List<String> prepare = new ArrayList<>(STARTUP_FLAGS);
+            prepare.add("-XX:ArchiveClassesAtExit=" + archive);
+            launch(command(prepare, data, "prepare"));
+
+            List<String> plain = List.of();
+            List<String> fast = new ArrayList<>(STARTUP_FLAGS);
+            fast.add("-XX:SharedArchiveFile=" + archive);
+
+            System.out.println(String.format("%,d loans, %d runs per line; median (max) ms", size, runs));
+            System.out.println(String.format("%-40s %-12s %-12s %-14s %-14s",
+                    "command", "plain first", "plain done", "startup first", "startup done"));
+            boolean failed = false;
+            for (String[] words : COMMANDS) {
+                long[][] plainTimes = measure(command(plain, data, words), runs);
+                long[][] fastTimes = measure(command(fast, data, words), runs);
+                System.out.println(String.format("%-40s %-12s %-12s %-14s %-14s", String.join(" ", words),
+                        format(plainTimes[0]), format(plainTimes[1]), format(fastTimes[0]), format(fastTimes[1])));
+                failed |= median(fastTimes[1]) > targetMillis;
+            }
+            if (failed) {
+                System.out.println("FAILED: a fast-startup command took longer than " + targetMillis + " ms");
+                System.exit(1);
+            }
+            System.out.println("OK (target " + targetMillis + " ms)");
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private static List<String> command(List<String> flags, Path data, String... words) {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(flags);
+        command.add("-Ddms.data=" + data);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("dms.DebtManagementSystem");
+        command.addAll(Arrays.asList(words));
+        return command;
+    }
+
+    // Milliseconds to first output and to exit, one column per run.
+    private static long[][] measure(List<String> command, int runs) throws IOException, InterruptedException {
+        long[][] times = new long[2][runs];
+        for (int run = 0; run < runs; run++) {
+            long[] one = launch(command);
+            times[0][run] = one[0];
+            times[1][run] = one[1];
+        }
+        return times;
+    }
+
+    private static long[] launch(List<String> command) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        long firstByte;
+        try (InputStream out = process.getInputStream()) {
+            byte[] buf = new byte[1 << 16];
+            int n = out.read(buf);
+            firstByte = System.nanoTime() - start;
+            while (n >= 0) {
+                n = out.read(buf);
+            }
+        }
+        int status = process.waitFor();
+        long exit = System.nanoTime() - start;
+        if (status != 0) {
+            throw new IllegalStateException(String.join(" ", command) + " exited with status " + status);
+        }
+        return new long[] {firstByte / 1_000_000, exit / 1_000_000};
+    }
+
+    private static long median(long[] millis) {
+        long[] sorted = millis.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static String format(long[] millis) {
+        return median(millis) + " (" + Arrays.stream(millis).max().getAsLong() + ")";
+    }
+}
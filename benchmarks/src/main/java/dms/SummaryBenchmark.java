@@ -0,0 +1,49 @@
+package dms;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// viewFinancialSummary and the strategy analysis: the PortfolioAggregator
+// pass over all loans or the unpaid ones, on one thread and fork-join.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class SummaryBenchmark {
+    @Param({"10", "1000", "100000", "10000000"})
+    public int size;
+
+    private LoanPortfolio loans;
+
+    @Setup
+    public void setUp() {
+        loans = BenchmarkData.portfolio(size);
+    }
+
+    @Benchmark
+    public PortfolioStats summarySequential() {
+        return PortfolioAggregator.aggregate(loans, PortfolioAggregator.Selection.ALL, false);
+    }
+
+    @Benchmark
+    public PortfolioStats summaryParallel() {
+        return PortfolioAggregator.aggregate(loans, PortfolioAggregator.Selection.ALL, true);
+    }
+
+    @Benchmark
+    public PortfolioStats unpaidSequential() {
+        return PortfolioAggregator.aggregate(loans, PortfolioAggregator.Selection.UNPAID, false);
+    }
+}